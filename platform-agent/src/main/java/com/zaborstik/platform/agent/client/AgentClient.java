@@ -1,45 +1,270 @@
 package com.zaborstik.platform.agent.client;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaborstik.platform.agent.dto.AgentBatchResponse;
 import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentErrorCode;
+import com.zaborstik.platform.agent.dto.AgentEvent;
 import com.zaborstik.platform.agent.dto.AgentResponse;
+import com.zaborstik.platform.agent.dto.CircuitBreakerPolicy;
+import com.zaborstik.platform.agent.dto.ScreenshotPolicy;
+import com.zaborstik.platform.agent.dto.SessionResetMode;
+import com.zaborstik.platform.agent.service.CancellationToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 /**
  * Клиент для взаимодействия с Playwright сервером через HTTP.
  * Отправляет команды агенту и получает результаты выполнения.
+ * Команды отправляются асинхронно ({@link #executeAsync(AgentCommand, Duration)}); синхронные методы ждут
+ * тот же запрос. По умолчанию все клиенты делят один {@link HttpClient} ({@link AgentHttpOptions#defaults()})
+ * с общим пулом соединений и несколькими потоками обработки ответов.
+ * С {@link CircuitBreakerPolicy} клиент отклоняет команды сразу, пока агент недоступен
+ * ({@link CircuitBreaker}), вместо ожидания таймаута соединения или запроса на каждой.
+ * JSON пишется и читается общими читателями и писателями {@link AgentJson} прямо из байтов ответа.
+ * С включённым каналом ({@code webSocket}) {@link #initialize} открывает {@link WebSocketAgentTransport}:
+ * команды сессии идут по нему, а события агента получают слушатели {@link #addEventListener}. Агент без
+ * {@code /ws} или оборванный канал — команды снова идут по HTTP.
+ * {@link ScreenshotPolicy} передаётся агенту при инициализации; байты кадров не идут в JSON, агент отдаёт их по
+ * ссылке {@link #screenshotUri(String)}.
+ * Агент держит несколько сессий (контекст браузера и страница) в одном браузере: клиент {@link #withSession(String)}
+ * работает со своей сессией через заголовок {@value #SESSION_HEADER}, клиент без сессии — с сессией агента по
+ * умолчанию.
  * 
  * Client for interacting with Playwright server via HTTP.
  * Sends commands to agent and receives execution results.
+ * Commands are sent asynchronously ({@link #executeAsync(AgentCommand, Duration)}); the blocking methods wait
+ * for the same request. By default all clients share one {@link HttpClient} ({@link AgentHttpOptions#defaults()})
+ * with a common connection pool and a few response handling threads.
+ * With a {@link CircuitBreakerPolicy} the client rejects commands immediately while the agent is down
+ * ({@link CircuitBreaker}) instead of waiting out the connect or request timeout on each of them.
+ * JSON is written and read by the shared {@link AgentJson} readers and writers straight from the response bytes.
+ * With the channel enabled ({@code webSocket}) {@link #initialize} opens a {@link WebSocketAgentTransport}: the
+ * session commands go over it and agent events reach the {@link #addEventListener} listeners. For an agent without
+ * {@code /ws} or a broken channel commands go over HTTP again.
+ * The {@link ScreenshotPolicy} is sent to the agent on initialization; frame bytes do not travel in JSON, the agent
+ * serves them by the {@link #screenshotUri(String)} reference.
+ * The agent holds several sessions (a browser context and a page) in one browser: a {@link #withSession(String)}
+ * client works with its own session through the {@value #SESSION_HEADER} header, a client without a session uses
+ * the agent's default session.
  */
-public class AgentClient {
+public class AgentClient implements AgentTransport {
     private static final Logger log = LoggerFactory.getLogger(AgentClient.class);
-    
+    /** Заголовок с id сессии агента / agent session id header */
+    public static final String SESSION_HEADER = "X-Agent-Session";
+
     private final String baseUrl;
+    private final URI executeUri;
+    private final URI executeBatchUri;
     private final HttpClient httpClient;
-    private final ObjectMapper objectMapper;
     private final Duration defaultTimeout;
+    private final CircuitBreaker circuitBreaker;
+    private final boolean webSocket;
+    private final ScreenshotPolicy screenshotPolicy;
+    private final String sessionId;
+    private final List<Consumer<AgentEvent>> eventListeners = new CopyOnWriteArrayList<>();
+    private volatile WebSocketAgentTransport channel;
 
     public AgentClient(String baseUrl) {
         this(baseUrl, Duration.ofSeconds(30));
     }
 
     public AgentClient(String baseUrl, Duration defaultTimeout) {
-        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this(baseUrl, defaultTimeout, SharedHttpClient.INSTANCE);
+    }
+
+    /**
+     * @param httpClient HTTP-клиент, например {@link AgentHttpOptions#newHttpClient()} /
+     *                   HTTP client, e.g. {@link AgentHttpOptions#newHttpClient()}
+     */
+    public AgentClient(String baseUrl, Duration defaultTimeout, HttpClient httpClient) {
+        this(baseUrl, defaultTimeout, httpClient, null);
+    }
+
+    /**
+     * Клиент с автоматическим выключателем на общем HTTP-клиенте.
+     *
+     * Client with a circuit breaker on the shared HTTP client.
+     */
+    public AgentClient(String baseUrl, Duration defaultTimeout, CircuitBreakerPolicy circuitBreakerPolicy) {
+        this(baseUrl, defaultTimeout, SharedHttpClient.INSTANCE, circuitBreakerPolicy);
+    }
+
+    /**
+     * Клиент с выключателем и, при {@code webSocket}, постоянным каналом на общем HTTP-клиенте.
+     *
+     * Client with a circuit breaker and, with {@code webSocket}, a persistent channel on the shared HTTP client.
+     */
+    public AgentClient(String baseUrl, Duration defaultTimeout, CircuitBreakerPolicy circuitBreakerPolicy,
+                       boolean webSocket) {
+        this(baseUrl, defaultTimeout, SharedHttpClient.INSTANCE, circuitBreakerPolicy, webSocket);
+    }
+
+    /**
+     * @param httpClient           HTTP-клиент / HTTP client
+     * @param circuitBreakerPolicy политика выключателя, null — без выключателя /
+     *                             circuit breaker policy, null for none
+     */
+    public AgentClient(String baseUrl, Duration defaultTimeout, HttpClient httpClient,
+                       CircuitBreakerPolicy circuitBreakerPolicy) {
+        this(baseUrl, defaultTimeout, httpClient, circuitBreakerPolicy, false);
+    }
+
+    /**
+     * @param httpClient           HTTP-клиент / HTTP client
+     * @param circuitBreakerPolicy политика выключателя, null — без выключателя /
+     *                             circuit breaker policy, null for none
+     * @param webSocket            открывать постоянный канал {@code /ws} при инициализации /
+     *                             open the persistent {@code /ws} channel on initialization
+     */
+    public AgentClient(String baseUrl, Duration defaultTimeout, HttpClient httpClient,
+                       CircuitBreakerPolicy circuitBreakerPolicy, boolean webSocket) {
+        this(baseUrl, defaultTimeout, httpClient, circuitBreakerPolicy, webSocket, ScreenshotPolicy.defaultPolicy());
+    }
+
+    /**
+     * Клиент на общем HTTP-клиенте с политикой скриншотов сессий.
+     *
+     * Client on the shared HTTP client with a session screenshot policy.
+     */
+    public AgentClient(String baseUrl, Duration defaultTimeout, CircuitBreakerPolicy circuitBreakerPolicy,
+                       boolean webSocket, ScreenshotPolicy screenshotPolicy) {
+        this(baseUrl, defaultTimeout, SharedHttpClient.INSTANCE, circuitBreakerPolicy, webSocket, screenshotPolicy);
+    }
+
+    /**
+     * @param httpClient           HTTP-клиент / HTTP client
+     * @param circuitBreakerPolicy политика выключателя, null — без выключателя /
+     *                             circuit breaker policy, null for none
+     * @param webSocket            открывать постоянный канал {@code /ws} при инициализации /
+     *                             open the persistent {@code /ws} channel on initialization
+     * @param screenshotPolicy     политика скриншотов, передаётся агенту при инициализации /
+     *                             screenshot policy sent to the agent on initialization
+     */
+    public AgentClient(String baseUrl, Duration defaultTimeout, HttpClient httpClient,
+                       CircuitBreakerPolicy circuitBreakerPolicy, boolean webSocket,
+                       ScreenshotPolicy screenshotPolicy) {
+        this(trimSlash(baseUrl), defaultTimeout, httpClient,
+            circuitBreakerPolicy != null ? new CircuitBreaker(trimSlash(baseUrl), circuitBreakerPolicy) : null,
+            webSocket, screenshotPolicy, null);
+    }
+
+    private AgentClient(String baseUrl, Duration defaultTimeout, HttpClient httpClient, CircuitBreaker circuitBreaker,
+                        boolean webSocket, ScreenshotPolicy screenshotPolicy, String sessionId) {
+        this.baseUrl = baseUrl;
+        this.executeUri = URI.create(this.baseUrl + "/execute");
+        this.executeBatchUri = URI.create(this.baseUrl + "/execute-batch");
         this.defaultTimeout = defaultTimeout;
-        this.httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(10))
-            .build();
-        this.objectMapper = new ObjectMapper();
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient cannot be null");
+        this.circuitBreaker = circuitBreaker;
+        this.webSocket = webSocket;
+        this.screenshotPolicy = Objects.requireNonNull(screenshotPolicy, "screenshotPolicy cannot be null");
+        this.sessionId = sessionId;
+    }
+
+    private static String trimSlash(String baseUrl) {
+        return baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /**
+     * Клиент того же агента для отдельной сессии: свой контекст браузера и своя страница, общие HTTP-клиент и
+     * выключатель. Слушатели событий и канал не переносятся.
+     *
+     * Client of the same agent for a separate session: its own browser context and page, a shared HTTP client and
+     * circuit breaker. Event listeners and the channel are not carried over.
+     *
+     * @param sessionId id сессии на агенте / session id on the agent
+     */
+    public AgentClient withSession(String sessionId) {
+        Objects.requireNonNull(sessionId, "sessionId cannot be null");
+        if (sessionId.isBlank()) {
+            throw new IllegalArgumentException("sessionId cannot be blank");
+        }
+        return new AgentClient(baseUrl, defaultTimeout, httpClient, circuitBreaker, webSocket, screenshotPolicy,
+            sessionId);
+    }
+
+    /**
+     * Id сессии агента; null — сессия агента по умолчанию.
+     *
+     * Agent session id; null for the agent's default session.
+     */
+    public String sessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Состояние выключателя; {@link CircuitBreaker.State#CLOSED}, если выключателя нет.
+     *
+     * Circuit breaker state; {@link CircuitBreaker.State#CLOSED} when there is no breaker.
+     */
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker != null ? circuitBreaker.state() : CircuitBreaker.State.CLOSED;
+    }
+
+    /**
+     * Открыт ли постоянный канал к агенту. Whether the persistent channel to the agent is open.
+     */
+    public boolean isChannelOpen() {
+        WebSocketAgentTransport current = channel;
+        return current != null && current.isOpen();
+    }
+
+    /**
+     * Подписывает на события агента, приходящие по каналу; без канала событий нет. Слушатель вызывается на потоке
+     * {@link HttpClient} и не должен блокироваться.
+     *
+     * Subscribes to agent events arriving over the channel; there are no events without the channel. The listener
+     * runs on an {@link HttpClient} thread and must not block.
+     */
+    public void addEventListener(Consumer<AgentEvent> listener) {
+        eventListeners.add(Objects.requireNonNull(listener, "listener cannot be null"));
+    }
+
+    public void removeEventListener(Consumer<AgentEvent> listener) {
+        eventListeners.remove(listener);
+    }
+
+    public ScreenshotPolicy screenshotPolicy() {
+        return screenshotPolicy;
+    }
+
+    /**
+     * Адрес, по которому агент отдаёт байты скриншота: {@code GET /screenshots/<имя файла>}. Ссылка в ответе
+     * команды — путь на машине агента, берётся только имя файла.
+     *
+     * Address where the agent serves the screenshot bytes: {@code GET /screenshots/<file name>}. The reference in
+     * a command response is a path on the agent host; only the file name is used.
+     */
+    public URI screenshotUri(String screenshot) {
+        Objects.requireNonNull(screenshot, "screenshot cannot be null");
+        int separator = Math.max(screenshot.lastIndexOf('/'), screenshot.lastIndexOf('\\'));
+        String fileName = screenshot.substring(separator + 1);
+        if (fileName.isBlank()) {
+            throw new IllegalArgumentException("Screenshot reference has no file name: " + screenshot);
+        }
+        return URI.create(baseUrl + "/screenshots/" + URLEncoder.encode(fileName, StandardCharsets.UTF_8));
     }
 
     /**
@@ -52,57 +277,386 @@ public class AgentClient {
      * @throws AgentException если произошла ошибка при выполнении / if error occurred during execution
      */
     public AgentResponse execute(AgentCommand command) throws AgentException {
-        long startTime = System.currentTimeMillis();
-        
+        return execute(command, defaultTimeout);
+    }
+
+    /**
+     * Выполняет команду с явным таймаутом запроса (например, ограниченным дедлайном плана).
+     *
+     * Executes command with an explicit request timeout (e.g. capped by the plan deadline).
+     *
+     * @param command команда для выполнения / command to execute
+     * @param timeout таймаут HTTP-запроса / HTTP request timeout
+     * @return ответ агента / response from agent
+     */
+    public AgentResponse execute(AgentCommand command, Duration timeout) throws AgentException {
+        return execute(command, timeout, CancellationToken.none());
+    }
+
+    /**
+     * Выполняет команду с возможностью отмены: отмена токена прерывает HTTP-запрос.
+     *
+     * Executes command that can be cancelled: cancelling the token aborts the HTTP call.
+     *
+     * @param command      команда для выполнения / command to execute
+     * @param timeout      таймаут HTTP-запроса, null — таймаут по умолчанию / HTTP request timeout, null for default
+     * @param cancellation токен отмены / cancellation token
+     * @return ответ агента / response from agent
+     */
+    public AgentResponse execute(AgentCommand command, Duration timeout, CancellationToken cancellation)
+            throws AgentException {
+        if (cancellation != null && cancellation.isCancelled()) {
+            return AgentResponse.failure(AgentErrorCode.CANCELLED, "Command cancelled: " + cancellation.reason(), 0);
+        }
+        return await(executeAsync(command, timeout), "Command " + command.type(), cancellation,
+            AgentResponse::failure, AgentClient::communicationFailure);
+    }
+
+    /**
+     * Асинхронно выполняет команду с таймаутом по умолчанию.
+     *
+     * Executes command asynchronously with the default timeout.
+     */
+    public CompletableFuture<AgentResponse> executeAsync(AgentCommand command) {
+        return executeAsync(command, defaultTimeout);
+    }
+
+    /**
+     * Асинхронно выполняет команду. Поток вызывающего не блокируется; future завершается ответом агента,
+     * в том числе неуспешным при ошибке связи, и исключением только при отмене. Отмена future прерывает
+     * HTTP-обмен. Зависимые действия без суффикса {@code Async} выполняются на потоках {@link HttpClient},
+     * поэтому не должны блокироваться.
+     *
+     * Executes command asynchronously. The caller thread is not blocked; the future completes with the agent
+     * response, including a failed one on communication errors, and exceptionally only when cancelled.
+     * Cancelling the future aborts the HTTP exchange. Dependent non-{@code Async} stages run on
+     * {@link HttpClient} threads and therefore must not block.
+     *
+     * @param command команда для выполнения / command to execute
+     * @param timeout таймаут HTTP-запроса, null — таймаут по умолчанию / HTTP request timeout, null for default
+     */
+    @Override
+    public CompletableFuture<AgentResponse> executeAsync(AgentCommand command, Duration timeout) {
+        WebSocketAgentTransport current = channel;
+        if (current != null && current.isOpen()) {
+            return executeOverChannel(current, command, timeout);
+        }
+        byte[] requestBody;
         try {
             log.debug("Executing command: {}", command);
-            
-            String requestBody = objectMapper.writeValueAsString(command);
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/execute"))
-                .header("Content-Type", "application/json")
-                .timeout(defaultTimeout)
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            long executionTime = System.currentTimeMillis() - startTime;
+            requestBody = AgentJson.writeCommand(command);
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(AgentResponse.failure(AgentErrorCode.INVALID_COMMAND,
+                "Failed to serialize command: " + e.getMessage(), 0));
+        }
+        return post(executeUri, requestBody, timeout, AgentJson.RESPONSE_BODY, this::toAgentResponse,
+            AgentResponse::failure,
+            AgentClient::communicationFailure);
+    }
 
-            if (response.statusCode() != 200) {
-                try {
-                    AgentResponse errorResponse = objectMapper.readValue(response.body(), AgentResponse.class);
-                    log.error("Agent returned status {}: {}", response.statusCode(), errorResponse.error());
-                    return new AgentResponse(
-                        false,
-                        errorResponse.message(),
-                        errorResponse.error(),
-                        errorResponse.data(),
-                        executionTime
-                    );
-                } catch (Exception parseException) {
-                    String error = String.format("Agent returned status %d: %s",
-                        response.statusCode(), response.body());
-                    log.error(error);
-                    return AgentResponse.failure(error, executionTime);
+    private CompletableFuture<AgentResponse> executeOverChannel(WebSocketAgentTransport current, AgentCommand command,
+                                                                Duration timeout) {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquirePermission()) {
+            return CompletableFuture.completedFuture(
+                AgentResponse.failure(AgentErrorCode.CIRCUIT_OPEN, circuitOpenError(), 0L));
+        }
+        log.debug("Executing command over channel: {}", command);
+        CompletableFuture<AgentResponse> result = current.executeAsync(command, effectiveTimeout(timeout));
+        result.whenComplete((response, error) -> {
+            if (response == null) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.release();
                 }
+                return;
             }
+            AgentErrorCode errorCode = AgentErrorCode.fromCode(response.errorCode());
+            recordOutcome(errorCode != AgentErrorCode.AGENT_UNREACHABLE && errorCode != AgentErrorCode.AGENT_TIMEOUT,
+                response.executionTimeMs());
+        });
+        return result;
+    }
 
-            AgentResponse agentResponse = objectMapper.readValue(response.body(), AgentResponse.class);
-            log.debug("Command executed successfully in {}ms", executionTime);
-            return agentResponse;
+    /**
+     * Выполняет пакет команд за один HTTP-запрос с остановкой на первой ошибке и таймаутом по умолчанию.
+     *
+     * Executes a command batch in one HTTP request, stopping at the first failure, with the default timeout.
+     */
+    public AgentBatchResponse executeBatch(List<AgentCommand> commands) {
+        return executeBatch(commands, true, defaultTimeout, CancellationToken.none());
+    }
+
+    /**
+     * Выполняет пакет команд за один HTTP-запрос: агент выполняет их по порядку и возвращает ответ каждой.
+     * Таймаут действует на весь пакет. Агент без {@code /execute-batch} даёт ответ с
+     * {@link AgentBatchResponse#unsupported()}.
+     *
+     * Executes a command batch in one HTTP request: the agent runs the commands in order and returns a response
+     * per command. The timeout applies to the whole batch. An agent without {@code /execute-batch} yields
+     * a response with {@link AgentBatchResponse#unsupported()}.
+     *
+     * @param commands      команды пакета / batch commands
+     * @param stopOnFailure не выполнять команды после первой неуспешной / skip the commands after the first failure
+     * @param timeout       таймаут HTTP-запроса, null — таймаут по умолчанию / HTTP request timeout, null for default
+     * @param cancellation  токен отмены / cancellation token
+     */
+    public AgentBatchResponse executeBatch(List<AgentCommand> commands, boolean stopOnFailure, Duration timeout,
+                                           CancellationToken cancellation) {
+        if (cancellation != null && cancellation.isCancelled()) {
+            return AgentBatchResponse.failure(AgentErrorCode.CANCELLED, "Command cancelled: " + cancellation.reason(),
+                0);
+        }
+        return await(executeBatchAsync(commands, stopOnFailure, timeout), "Batch of " + commands.size(),
+            cancellation, AgentBatchResponse::failure, AgentClient::batchCommunicationFailure);
+    }
 
+    /**
+     * Асинхронный вариант {@link #executeBatch(List, boolean, Duration, CancellationToken)}; семантика future
+     * та же, что у {@link #executeAsync(AgentCommand, Duration)}.
+     *
+     * Asynchronous variant of {@link #executeBatch(List, boolean, Duration, CancellationToken)}; the future
+     * behaves like the one of {@link #executeAsync(AgentCommand, Duration)}.
+     */
+    public CompletableFuture<AgentBatchResponse> executeBatchAsync(List<AgentCommand> commands, boolean stopOnFailure,
+                                                                   Duration timeout) {
+        Objects.requireNonNull(commands, "commands cannot be null");
+        if (commands.isEmpty()) {
+            throw new IllegalArgumentException("commands cannot be empty");
+        }
+        byte[] requestBody;
+        try {
+            log.debug("Executing batch: {}", commands);
+            requestBody = AgentJson.writeBatch(commands, stopOnFailure);
         } catch (IOException e) {
+            return CompletableFuture.completedFuture(AgentBatchResponse.failure(AgentErrorCode.INVALID_COMMAND,
+                "Failed to serialize batch: " + e.getMessage(), 0));
+        }
+        return post(executeBatchUri, requestBody, timeout, AgentJson.BATCH_BODY, this::toBatchResponse,
+            AgentBatchResponse::failure,
+            AgentClient::batchCommunicationFailure);
+    }
+
+    /**
+     * Асинхронный POST; результат — собственный future, завершаемый ответом, в том числе при ошибке связи
+     * или разомкнутом выключателе, и исключением только при отмене.
+     *
+     * Asynchronous POST; the result is an own future completed with a response, including on communication
+     * errors or an open circuit breaker, and exceptionally only when cancelled.
+     */
+    private <B, T> CompletableFuture<T> post(URI uri, byte[] requestBody, Duration timeout,
+                                             HttpResponse.BodyHandler<B> bodyHandler,
+                                             BiFunction<HttpResponse<B>, Long, T> onResponse,
+                                             Failure<T> failure,
+                                             BiFunction<Throwable, Long, T> onError) {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquirePermission()) {
+            return CompletableFuture.completedFuture(
+                failure.apply(AgentErrorCode.CIRCUIT_OPEN, circuitOpenError(), 0L));
+        }
+        long startNanos = System.nanoTime();
+        HttpRequest request = newRequest(uri)
+            .header("Content-Type", "application/json")
+            .timeout(effectiveTimeout(timeout))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
+            .build();
+
+        CompletableFuture<HttpResponse<B>> exchange = httpClient.sendAsync(request, bodyHandler);
+        // Собственный future вместо зависимого от future HttpClient: отмена результата не должна
+        // превращаться в ответ с ошибкой связи. An own future instead of a dependent of the HttpClient one:
+        // cancelling the result must not turn into a communication failure response.
+        CompletableFuture<T> result = new CompletableFuture<>();
+        exchange.whenComplete((response, error) -> {
+            long executionTime = (System.nanoTime() - startNanos) / 1_000_000L;
+            if (result.isDone()) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.release();
+                }
+                return;
+            }
+            recordOutcome(error == null && !isGatewayError(response.statusCode()), executionTime);
+            result.complete(error != null
+                ? onError.apply(error, executionTime)
+                : onResponse.apply(response, executionTime));
+        });
+        // Отмена результата прерывает HTTP-обмен / cancelling the result aborts the HTTP exchange
+        result.whenComplete((ignored, error) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Ждёт результат {@link #post}; отмена токена отменяет future и прерывает обмен.
+     *
+     * Waits for a {@link #post} result; cancelling the token cancels the future and aborts the exchange.
+     */
+    private <T> T await(CompletableFuture<T> future, String what, CancellationToken cancellation,
+                        Failure<T> failure, BiFunction<Throwable, Long, T> onError) {
+        long startTime = System.currentTimeMillis();
+        CancellationToken token = cancellation != null ? cancellation : CancellationToken.none();
+        try (CancellationToken.Registration ignored = token.onCancel(() -> future.cancel(true))) {
+            return future.get();
+        } catch (CancellationException e) {
             long executionTime = System.currentTimeMillis() - startTime;
-            String error = "Failed to communicate with agent: " + e.getMessage();
-            log.error(error, e);
-            return AgentResponse.failure(error, executionTime);
+            log.info("{} cancelled after {}ms", what, executionTime);
+            return failure.apply(AgentErrorCode.CANCELLED,
+                "Command cancelled: " + (token.isCancelled() ? token.reason() : "aborted"), executionTime);
         } catch (InterruptedException e) {
+            future.cancel(true);
             Thread.currentThread().interrupt();
             long executionTime = System.currentTimeMillis() - startTime;
             String error = "Command execution interrupted: " + e.getMessage();
             log.error(error, e);
-            return AgentResponse.failure(error, executionTime);
+            return failure.apply(AgentErrorCode.CANCELLED, error, executionTime);
+        } catch (ExecutionException e) {
+            // post завершается ответом, а не исключением / post completes with a response
+            return onError.apply(e.getCause(), System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private void recordOutcome(boolean reached, long executionTime) {
+        if (circuitBreaker == null) {
+            return;
+        }
+        if (reached) {
+            circuitBreaker.onSuccess(executionTime);
+        } else {
+            circuitBreaker.onFailure(executionTime);
+        }
+    }
+
+    /**
+     * Ответ прокси перед агентом, а не самого агента (агент отвечает 500 на ошибку команды).
+     *
+     * A response of a proxy in front of the agent rather than the agent itself (the agent answers 500
+     * to a failed command).
+     */
+    private static boolean isGatewayError(int statusCode) {
+        return statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    private String circuitOpenError() {
+        return "Circuit breaker open for agent " + baseUrl;
+    }
+
+    private AgentResponse toAgentResponse(HttpResponse<AgentJson.Body<AgentResponse>> response, long executionTime) {
+        AgentJson.Body<AgentResponse> body = response.body();
+        if (response.statusCode() != 200) {
+            try {
+                AgentResponse errorResponse = body.value();
+                log.error("Agent returned status {}: {}", response.statusCode(), errorResponse.error());
+                return new AgentResponse(
+                    false,
+                    errorResponse.message(),
+                    errorResponse.error(),
+                    errorResponse.data(),
+                    executionTime,
+                    errorResponse.errorCode()
+                );
+            } catch (Exception parseException) {
+                String error = String.format("Agent returned status %d: %s", response.statusCode(), body.text());
+                log.error(error);
+                return AgentResponse.failure(isGatewayError(response.statusCode())
+                    ? AgentErrorCode.AGENT_UNREACHABLE : null, error, executionTime);
+            }
+        }
+        try {
+            AgentResponse agentResponse = body.value();
+            log.debug("Command executed successfully in {}ms", executionTime);
+            return agentResponse;
+        } catch (IOException e) {
+            return communicationFailure(e, executionTime);
+        }
+    }
+
+    private AgentBatchResponse toBatchResponse(HttpResponse<AgentJson.Body<AgentBatchResponse>> response,
+                                               long executionTime) {
+        if (response.statusCode() == 404) {
+            log.debug("Agent has no /execute-batch endpoint");
+            return AgentBatchResponse.unsupported(executionTime);
+        }
+        AgentJson.Body<AgentBatchResponse> body = response.body();
+        try {
+            AgentBatchResponse batch = body.value();
+            if (response.statusCode() != 200) {
+                log.error("Agent returned status {} for batch: {}", response.statusCode(), batch.error());
+                return new AgentBatchResponse(false, batch.results(), batch.error(), executionTime, false,
+                    batch.errorCode());
+            }
+            log.debug("Batch executed in {}ms", executionTime);
+            return batch;
+        } catch (IOException e) {
+            if (response.statusCode() == 200) {
+                return batchCommunicationFailure(e, executionTime);
+            }
+            String error = String.format("Agent returned status %d: %s", response.statusCode(), body.text());
+            log.error(error);
+            return AgentBatchResponse.failure(isGatewayError(response.statusCode())
+                ? AgentErrorCode.AGENT_UNREACHABLE : null, error, executionTime);
+        }
+    }
+
+    private static AgentResponse communicationFailure(Throwable error, long executionTime) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        String message = "Failed to communicate with agent: " + cause.getMessage();
+        log.error(message, cause);
+        AgentErrorCode errorCode = cause instanceof HttpTimeoutException
+            ? AgentErrorCode.AGENT_TIMEOUT
+            : AgentErrorCode.AGENT_UNREACHABLE;
+        return AgentResponse.failure(errorCode, message, executionTime);
+    }
+
+    private static AgentBatchResponse batchCommunicationFailure(Throwable error, long executionTime) {
+        AgentResponse failure = communicationFailure(error, executionTime);
+        return AgentBatchResponse.failure(AgentErrorCode.fromCode(failure.errorCode()), failure.error(),
+            executionTime);
+    }
+
+    /**
+     * Отправляет служебный запрос и ждёт ответ; для отменяемого токена отмена прерывает обмен.
+     *
+     * Sends a service request and waits for the response; for a cancellable token cancelling aborts the exchange.
+     */
+    private HttpResponse<String> send(HttpRequest request, CancellationToken cancellation)
+            throws IOException, InterruptedException {
+        if (cancellation == null || !cancellation.isCancellable()) {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        }
+        if (cancellation.isCancelled()) {
+            throw new CancellationException(cancellation.reason());
+        }
+        CompletableFuture<HttpResponse<String>> future =
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        try (CancellationToken.Registration ignored = cancellation.onCancel(() -> future.cancel(true))) {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (cancellation.isCancelled()) {
+                throw new CancellationException(cancellation.reason());
+            }
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Запрос к агенту с заголовком сессии, если она задана. Request to the agent with the session header, if any.
+     */
+    private HttpRequest.Builder newRequest(URI uri) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder().uri(uri);
+        return sessionId != null ? builder.header(SESSION_HEADER, sessionId) : builder;
+    }
+
+    private Duration effectiveTimeout(Duration timeout) {
+        if (timeout == null) {
+            return defaultTimeout;
         }
+        // HttpRequest требует положительный таймаут / HttpRequest requires a positive timeout
+        return timeout.isZero() || timeout.isNegative() ? Duration.ofMillis(1) : timeout;
     }
 
     /**
@@ -138,20 +692,42 @@ public class AgentClient {
      * @return ответ от агента / response from agent
      */
     public AgentResponse initialize(String baseUrl, boolean headless) throws AgentException {
+        return initialize(baseUrl, headless, defaultTimeout);
+    }
+
+    /**
+     * Инициализирует браузер с явным таймаутом запроса.
+     *
+     * Initializes browser with an explicit request timeout.
+     */
+    public AgentResponse initialize(String baseUrl, boolean headless, Duration timeout) throws AgentException {
+        return initialize(baseUrl, headless, timeout, CancellationToken.none());
+    }
+
+    /**
+     * Инициализирует браузер с возможностью отмены запроса.
+     *
+     * Initializes browser; cancelling the token aborts the request.
+     */
+    public AgentResponse initialize(String baseUrl, boolean headless, Duration timeout,
+                                    CancellationToken cancellation) throws AgentException {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquirePermission()) {
+            return AgentResponse.failure(AgentErrorCode.CIRCUIT_OPEN, circuitOpenError(), 0);
+        }
+        long startNanos = System.nanoTime();
+        boolean outcomeRecorded = false;
         try {
-            String requestBody = objectMapper.writeValueAsString(Map.of(
-                "baseUrl", baseUrl,
-                "headless", headless
-            ));
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(this.baseUrl + "/initialize"))
+            byte[] requestBody = AgentJson.writeInitialize(baseUrl, headless, screenshotPolicy);
+
+            HttpRequest request = newRequest(URI.create(this.baseUrl + "/initialize"))
                 .header("Content-Type", "application/json")
-                .timeout(defaultTimeout)
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .timeout(effectiveTimeout(timeout))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
                 .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = send(request, cancellation);
+            recordOutcome(!isGatewayError(response.statusCode()), (System.nanoTime() - startNanos) / 1_000_000L);
+            outcomeRecorded = true;
 
             if (response.statusCode() != 200) {
                 String error = String.format("Failed to initialize agent: status %d, body: %s", response.statusCode(), response.body());
@@ -159,24 +735,118 @@ public class AgentClient {
                 return AgentResponse.failure(error, 0);
             }
 
-            return objectMapper.readValue(response.body(), AgentResponse.class);
+            AgentResponse initialized = AgentJson.readResponse(response.body().getBytes(StandardCharsets.UTF_8));
+            if (webSocket && initialized.success()) {
+                openChannel(timeout);
+            }
+            return initialized;
 
+        } catch (CancellationException e) {
+            return AgentResponse.failure("Initialization cancelled: " + cancellation.reason(), 0);
+        } catch (IOException e) {
+            if (!outcomeRecorded) {
+                recordOutcome(false, (System.nanoTime() - startNanos) / 1_000_000L);
+                outcomeRecorded = true;
+            }
+            String error = "Failed to initialize agent: " + e.getMessage();
+            log.error(error, e);
+            return AgentResponse.failure(error, 0);
         } catch (Exception e) {
             String error = "Failed to initialize agent: " + e.getMessage();
             log.error(error, e);
             return AgentResponse.failure(error, 0);
+        } finally {
+            if (!outcomeRecorded && circuitBreaker != null) {
+                circuitBreaker.release();
+            }
         }
     }
 
     /**
-     * Закрывает браузер и освобождает ресурсы.
+     * Открывает канал новой сессии вместо прежнего; если агент его не принял, команды идут по HTTP.
+     *
+     * Opens the channel of the new session in place of the previous one; if the agent refuses it, commands go
+     * over HTTP.
+     */
+    private void openChannel(Duration timeout) {
+        closeChannel();
+        URI channelUri = URI.create(baseUrl.replaceFirst("^http", "ws") + "/ws"
+            + (sessionId != null ? "?session=" + URLEncoder.encode(sessionId, StandardCharsets.UTF_8) : ""));
+        Duration connectTimeout = effectiveTimeout(timeout);
+        try {
+            channel = WebSocketAgentTransport.connect(httpClient, channelUri, connectTimeout, this::dispatchEvent)
+                .get(connectTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Opening agent channel {} interrupted, commands go over HTTP", channelUri);
+        } catch (ExecutionException | TimeoutException e) {
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            log.warn("Agent channel {} is not available, commands go over HTTP: {}", channelUri, cause.toString());
+        }
+    }
+
+    private void closeChannel() {
+        WebSocketAgentTransport current = channel;
+        channel = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void dispatchEvent(AgentEvent event) {
+        for (Consumer<AgentEvent> listener : eventListeners) {
+            listener.accept(event);
+        }
+    }
+
+    /**
+     * Сбрасывает сессию между планами без новой инициализации: перезагрузка страницы или очистка cookies и
+     * хранилища ({@link SessionResetMode}). Агент без {@code /reset} отвечает неуспехом — сессию тогда нужно
+     * инициализировать заново.
+     *
+     * Resets the session between plans without a new initialization: a page reload or clearing cookies and storage
+     * ({@link SessionResetMode}). An agent without {@code /reset} answers with a failure; the session then has to be
+     * initialized again.
+     */
+    public AgentResponse reset(SessionResetMode mode, Duration timeout) {
+        Objects.requireNonNull(mode, "mode cannot be null");
+        if (mode == SessionResetMode.NONE) {
+            return AgentResponse.success("Session kept", Map.of(), 0);
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            HttpRequest request = newRequest(URI.create(baseUrl + "/reset"))
+                .header("Content-Type", "application/json")
+                .timeout(effectiveTimeout(timeout))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(AgentJson.writeReset(mode)))
+                .build();
+
+            HttpResponse<String> response = send(request, null);
+            long executionTime = System.currentTimeMillis() - startTime;
+            if (response.statusCode() != 200) {
+                return AgentResponse.failure(String.format("Failed to reset agent session: status %d, body: %s",
+                    response.statusCode(), response.body()), executionTime);
+            }
+            return AgentJson.readResponse(response.body().getBytes(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return AgentResponse.failure(AgentErrorCode.CANCELLED, "Session reset interrupted",
+                System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            log.warn("Failed to reset agent session {}: {}", sessionId, e.getMessage());
+            return communicationFailure(e, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Закрывает сессию и освобождает ресурсы; агент закрывает браузер вместе с последней сессией.
      * 
-     * Closes browser and releases resources.
+     * Closes the session and releases resources; the agent closes the browser together with its last session.
      */
     public AgentResponse close() throws AgentException {
+        closeChannel();
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/close"))
+            HttpRequest request = newRequest(URI.create(baseUrl + "/close"))
                 .timeout(Duration.ofSeconds(10))
                 .POST(HttpRequest.BodyPublishers.noBody())
                 .build();
@@ -187,12 +857,28 @@ public class AgentClient {
                 return AgentResponse.failure("Failed to close agent", 0);
             }
 
-            return objectMapper.readValue(response.body(), AgentResponse.class);
+            return AgentJson.readResponse(response.body().getBytes(StandardCharsets.UTF_8));
 
         } catch (Exception e) {
             log.error("Failed to close agent", e);
             return AgentResponse.failure("Failed to close agent: " + e.getMessage(), 0);
         }
     }
-}
 
+    /**
+     * Неуспешный ответ с кодом ошибки. Failed response with an error code.
+     */
+    @FunctionalInterface
+    private interface Failure<T> {
+        T apply(AgentErrorCode errorCode, String error, long executionTime);
+    }
+
+    /**
+     * Общий HTTP-клиент по умолчанию, создаётся при первом обращении.
+     *
+     * Default shared HTTP client, created on first use.
+     */
+    private static final class SharedHttpClient {
+        private static final HttpClient INSTANCE = AgentHttpOptions.defaults().newHttpClient();
+    }
+}
@@ -0,0 +1,79 @@
+package com.zaborstik.platform.agent.client;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Параметры HTTP-транспорта {@link AgentClient}.
+ * Один {@link HttpClient} держит общий пул соединений: при HTTP/1.1 соединения переиспользуются (keep-alive),
+ * при HTTP/2 запросы к одному агенту мультиплексируются в одном соединении. Ответы обрабатываются на
+ * небольшом фиксированном пуле потоков, поэтому тысячи команд в полёте не занимают по потоку каждая.
+ * Размер пула и время жизни простаивающих соединений JDK задаёт системными свойствами
+ * {@code jdk.httpclient.connectionPoolSize} и {@code jdk.httpclient.keepalive.timeout}.
+ *
+ * HTTP transport options of {@link AgentClient}.
+ * One {@link HttpClient} owns a shared connection pool: with HTTP/1.1 connections are kept alive and reused,
+ * with HTTP/2 requests to one agent are multiplexed over a single connection. Responses are handled on
+ * a small fixed thread pool, so thousands of in-flight commands do not pin a thread each.
+ * The JDK sizes the pool and idle connection lifetime via the {@code jdk.httpclient.connectionPoolSize}
+ * and {@code jdk.httpclient.keepalive.timeout} system properties.
+ *
+ * @param version        предпочитаемая версия; HTTP/2 имеет смысл только для агента за TLS (согласование ALPN):
+ *                       по http JDK шлёт в каждом новом соединении {@code Upgrade: h2c}, а Express агента h2c
+ *                       не поддерживает / preferred version; HTTP/2 only pays off for an agent behind TLS (ALPN
+ *                       negotiation): over http the JDK sends {@code Upgrade: h2c} on every new connection, which
+ *                       the agent's Express server does not support
+ * @param connectTimeout таймаут установки соединения / connection establishment timeout
+ * @param ioThreads      потоков обработки ответов / response handling threads
+ */
+public record AgentHttpOptions(HttpClient.Version version, Duration connectTimeout, int ioThreads) {
+
+    public AgentHttpOptions {
+        Objects.requireNonNull(version, "version cannot be null");
+        Objects.requireNonNull(connectTimeout, "connectTimeout cannot be null");
+        if (connectTimeout.isZero() || connectTimeout.isNegative()) {
+            throw new IllegalArgumentException("connectTimeout must be positive");
+        }
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("ioThreads must be >= 1");
+        }
+    }
+
+    /**
+     * HTTP/1.1 с keep-alive: агент — Express по http. HTTP/2 включается явно версией в конструкторе.
+     *
+     * HTTP/1.1 with keep-alive: the agent is Express over http. HTTP/2 is opted into via the constructor version.
+     */
+    public static AgentHttpOptions defaults() {
+        return new AgentHttpOptions(HttpClient.Version.HTTP_1_1, Duration.ofSeconds(10),
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * Создаёт HTTP-клиент с явным пулом потоков ({@code agent-http-N}, демоны).
+     *
+     * Creates an HTTP client with an explicit thread pool ({@code agent-http-N}, daemon threads).
+     */
+    public HttpClient newHttpClient() {
+        return HttpClient.newBuilder()
+            .version(version)
+            .connectTimeout(connectTimeout)
+            .executor(Executors.newFixedThreadPool(ioThreads, new IoThreadFactory()))
+            .build();
+    }
+
+    private static final class IoThreadFactory implements ThreadFactory {
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "agent-http-" + COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.zaborstik.platform.agent.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.zaborstik.platform.agent.dto.AgentBatchResponse;
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentEvent;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import com.zaborstik.platform.agent.dto.LazyJsonMap;
+import com.zaborstik.platform.agent.dto.ScreenshotPolicy;
+import com.zaborstik.platform.agent.dto.SessionResetMode;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * JSON-кодек протокола агента. Читатели и писатели Jackson создаются один раз и разделяются всеми клиентами
+ * (они неизменяемы и потокобезопасны), поэтому на команду не ищутся сериализаторы и не создаётся контекст
+ * маппера. Ответ разбирается один раз прямо из полученных байтов, без промежуточной строки, а
+ * {@link AgentResponse#data()} ссылается на эти байты ({@link LazyJsonMap}) и не превращается во вложенные
+ * {@link java.util.Map}, пока его не прочитают.
+ *
+ * JSON codec of the agent protocol. Jackson readers and writers are created once and shared by all clients
+ * (they are immutable and thread-safe), so no serializer lookup or mapper context is set up per command.
+ * A response is parsed once straight from the received bytes without an intermediate string, and
+ * {@link AgentResponse#data()} refers to those bytes ({@link LazyJsonMap}) instead of becoming nested
+ * {@link java.util.Map}s until someone reads it.
+ */
+public final class AgentJson {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectWriter COMMAND_WRITER = MAPPER.writerFor(AgentCommand.class);
+    private static final ObjectWriter BATCH_WRITER = MAPPER.writerFor(BatchRequest.class);
+    private static final ObjectWriter INITIALIZE_WRITER = MAPPER.writerFor(InitializeRequest.class);
+    private static final ObjectWriter RESET_WRITER = MAPPER.writerFor(ResetRequest.class);
+    private static final ObjectReader RESPONSE_READER = MAPPER.readerFor(AgentResponse.class);
+    private static final ObjectReader BATCH_READER = MAPPER.readerFor(AgentBatchResponse.class);
+    private static final ObjectWriter CHANNEL_WRITER = MAPPER.writerFor(ChannelRequest.class);
+    private static final ObjectReader CHANNEL_READER = MAPPER.readerFor(ChannelMessage.class);
+
+    static final HttpResponse.BodyHandler<Body<AgentResponse>> RESPONSE_BODY =
+        info -> new BodySubscriber<>(RESPONSE_READER);
+    static final HttpResponse.BodyHandler<Body<AgentBatchResponse>> BATCH_BODY =
+        info -> new BodySubscriber<>(BATCH_READER);
+
+    private AgentJson() {
+    }
+
+    public static byte[] writeCommand(AgentCommand command) throws IOException {
+        return COMMAND_WRITER.writeValueAsBytes(command);
+    }
+
+    public static byte[] writeBatch(List<AgentCommand> commands, boolean stopOnFailure) throws IOException {
+        return BATCH_WRITER.writeValueAsBytes(new BatchRequest(commands, stopOnFailure));
+    }
+
+    static byte[] writeInitialize(String baseUrl, boolean headless, ScreenshotPolicy screenshots) throws IOException {
+        return INITIALIZE_WRITER.writeValueAsBytes(new InitializeRequest(baseUrl, headless, screenshots));
+    }
+
+    static byte[] writeReset(SessionResetMode mode) throws IOException {
+        return RESET_WRITER.writeValueAsBytes(new ResetRequest(mode));
+    }
+
+    /**
+     * Разбирает ответ; {@code data} ссылается на {@code json}, поэтому массив нельзя менять после вызова.
+     *
+     * Parses a response; {@code data} refers to {@code json}, so the array must not change after the call.
+     */
+    public static AgentResponse readResponse(byte[] json) throws IOException {
+        return read(RESPONSE_READER, json);
+    }
+
+    public static AgentBatchResponse readBatchResponse(byte[] json) throws IOException {
+        return read(BATCH_READER, json);
+    }
+
+    static String writeChannelRequest(long id, AgentCommand command) throws IOException {
+        return CHANNEL_WRITER.writeValueAsString(new ChannelRequest(id, command));
+    }
+
+    static ChannelMessage readChannelMessage(byte[] json) throws IOException {
+        return read(CHANNEL_READER, json);
+    }
+
+    private static <T> T read(ObjectReader reader, byte[] json) throws IOException {
+        return reader.withAttribute(LazyJsonMap.SOURCE_ATTRIBUTE, json).readValue(json);
+    }
+
+    private record BatchRequest(List<AgentCommand> commands, boolean stopOnFailure) {
+    }
+
+    private record InitializeRequest(String baseUrl, boolean headless, ScreenshotPolicy screenshots) {
+    }
+
+    private record ResetRequest(SessionResetMode mode) {
+    }
+
+    private record ChannelRequest(long id, AgentCommand command) {
+    }
+
+    /**
+     * Сообщение канала агента: ответ на команду {@code id} или событие без {@code id}.
+     *
+     * Agent channel message: a response to command {@code id}, or an event without an {@code id}.
+     */
+    record ChannelMessage(Long id, AgentResponse response, AgentEvent event) {
+    }
+
+    /**
+     * Тело ответа: разобранное значение или ошибка разбора вместе с исходными байтами для сообщения об ошибке.
+     *
+     * Response body: the parsed value, or the parse error together with the raw bytes for the error message.
+     */
+    static final class Body<T> {
+        private final T value;
+        private final IOException parseError;
+        private final byte[] bytes;
+
+        private Body(T value, IOException parseError, byte[] bytes) {
+            this.value = value;
+            this.parseError = parseError;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return разобранное значение / the parsed value
+         * @throws IOException тело не разобрано / the body could not be parsed
+         */
+        T value() throws IOException {
+            if (parseError != null) {
+                throw parseError;
+            }
+            return value;
+        }
+
+        String text() {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Собирает буферы тела по мере получения и по окончании разбирает тело на потоке {@link java.net.http.HttpClient}.
+     * Разбор прямо из буферов декодировал бы все строки {@code data}, что дороже одной копии тела.
+     *
+     * Collects body buffers as they arrive and parses the body on the {@link java.net.http.HttpClient} thread on
+     * completion. Parsing straight from the buffers would decode every {@code data} string, which costs more than
+     * one copy of the body.
+     */
+    private static final class BodySubscriber<T> implements HttpResponse.BodySubscriber<Body<T>> {
+        private final ObjectReader reader;
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private final CompletableFuture<Body<T>> body = new CompletableFuture<>();
+        private int size;
+
+        private BodySubscriber(ObjectReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public CompletionStage<Body<T>> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for (ByteBuffer item : items) {
+                size += item.remaining();
+                buffers.add(item);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            buffers.clear();
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            byte[] bytes = new byte[size];
+            int offset = 0;
+            for (ByteBuffer buffer : buffers) {
+                int length = buffer.remaining();
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+            buffers.clear();
+            try {
+                body.complete(new Body<>(read(reader, bytes), null, bytes));
+            } catch (IOException e) {
+                body.complete(new Body<>(null, e, bytes));
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.zaborstik.platform.agent.client;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Способ доставки команды агенту: HTTP-запрос на команду ({@link AgentClient}) или постоянный канал сессии
+ * ({@link WebSocketAgentTransport}).
+ *
+ * Way a command reaches the agent: an HTTP request per command ({@link AgentClient}) or a persistent session
+ * channel ({@link WebSocketAgentTransport}).
+ */
+public interface AgentTransport {
+
+    /**
+     * Отправляет команду. Future завершается ответом агента, в том числе неуспешным при ошибке связи или таймауте,
+     * и исключением только при отмене; отмена future снимает ожидание ответа.
+     *
+     * Sends a command. The future completes with the agent response, including a failed one on communication
+     * errors or timeout, and exceptionally only when cancelled; cancelling the future stops waiting for the response.
+     *
+     * @param command команда / command
+     * @param timeout время ожидания ответа, null — по умолчанию / response timeout, null for the default
+     */
+    CompletableFuture<AgentResponse> executeAsync(AgentCommand command, Duration timeout);
+}
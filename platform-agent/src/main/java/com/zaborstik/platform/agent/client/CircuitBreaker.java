@@ -0,0 +1,171 @@
+package com.zaborstik.platform.agent.client;
+
+import com.zaborstik.platform.agent.dto.CircuitBreakerPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Автоматический выключатель одного агента: {@link State#CLOSED} — вызовы проходят и учитываются в окне,
+ * {@link State#OPEN} — вызовы отклоняются без обращения к агенту, {@link State#HALF_OPEN} — проходит
+ * ограниченное число пробных вызовов, по их исходу выключатель замыкается или снова размыкается.
+ * Учитываются только ошибки связи и медленные вызовы; ошибка самой команды (элемент не найден) означает,
+ * что агент отвечает, и считается успешным вызовом.
+ *
+ * Circuit breaker of a single agent: {@link State#CLOSED} — calls pass and are recorded in the window,
+ * {@link State#OPEN} — calls are rejected without contacting the agent, {@link State#HALF_OPEN} — a limited
+ * number of trial calls pass, and their outcome closes or reopens the breaker.
+ * Only communication failures and slow calls count; a failed command (element not found) means the agent
+ * responds and is recorded as a successful call.
+ */
+public final class CircuitBreaker {
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final CircuitBreakerPolicy policy;
+    private final LongSupplier nanoClock;
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int trialPermits;
+
+    public CircuitBreaker(String name, CircuitBreakerPolicy policy) {
+        this(name, policy, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, CircuitBreakerPolicy policy, LongSupplier nanoClock) {
+        this.name = Objects.requireNonNull(name, "name cannot be null");
+        this.policy = Objects.requireNonNull(policy, "policy cannot be null");
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock cannot be null");
+        this.failed = new boolean[policy.windowSize()];
+        this.slow = new boolean[policy.windowSize()];
+    }
+
+    /**
+     * Разрешает вызов; каждое разрешение должно завершиться {@link #onSuccess(long)}, {@link #onFailure(long)}
+     * или {@link #release()}.
+     *
+     * Permits a call; every permit must end with {@link #onSuccess(long)}, {@link #onFailure(long)}
+     * or {@link #release()}.
+     *
+     * @return false, если вызов нужно отклонить / false when the call must be rejected
+     */
+    public synchronized boolean tryAcquirePermission() {
+        switch (currentState()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (trialPermits > 0) {
+                    trialPermits--;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Вызов завершился ответом агента. The call ended with an agent response.
+     */
+    public synchronized void onSuccess(long durationMs) {
+        record(false, durationMs);
+    }
+
+    /**
+     * Вызов завершился ошибкой связи или таймаутом. The call ended with a communication failure or timeout.
+     */
+    public synchronized void onFailure(long durationMs) {
+        record(true, durationMs);
+    }
+
+    /**
+     * Вызов не дал результата (отменён); разрешение возвращается без учёта в окне.
+     *
+     * The call produced no outcome (cancelled); the permit is returned without being recorded.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && trialPermits < policy.halfOpenCalls()) {
+            trialPermits++;
+        }
+    }
+
+    public synchronized State state() {
+        return currentState();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    private State currentState() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAtNanos >= policy.openDuration().toNanos()) {
+            transition(State.HALF_OPEN);
+        }
+        return state;
+    }
+
+    private void record(boolean failure, long durationMs) {
+        if (currentState() == State.OPEN) {
+            // исход вызова, начатого до размыкания / outcome of a call started before opening
+            return;
+        }
+        boolean slowCall = durationMs >= policy.slowCallDuration().toMillis();
+        if (calls == failed.length) {
+            failures -= failed[next] ? 1 : 0;
+            slowCalls -= slow[next] ? 1 : 0;
+        } else {
+            calls++;
+        }
+        failed[next] = failure;
+        slow[next] = slowCall;
+        failures += failure ? 1 : 0;
+        slowCalls += slowCall ? 1 : 0;
+        next = (next + 1) % failed.length;
+
+        if (state == State.HALF_OPEN) {
+            if (calls >= policy.halfOpenCalls()) {
+                transition(exceedsThresholds() ? State.OPEN : State.CLOSED);
+            }
+        } else if (calls >= policy.minimumCalls() && exceedsThresholds()) {
+            transition(State.OPEN);
+        }
+    }
+
+    private boolean exceedsThresholds() {
+        return (double) failures / calls >= policy.failureRateThreshold()
+            || (double) slowCalls / calls >= policy.slowCallRateThreshold();
+    }
+
+    private void transition(State target) {
+        if (target == State.OPEN) {
+            log.warn("Circuit breaker for agent {} opened: {}/{} failed, {}/{} slow calls; rejecting calls for {}ms",
+                name, failures, calls, slowCalls, calls, policy.openDuration().toMillis());
+            openedAtNanos = nanoClock.getAsLong();
+        } else if (target == State.HALF_OPEN) {
+            log.info("Circuit breaker for agent {} half-open, letting {} trial calls through",
+                name, policy.halfOpenCalls());
+            trialPermits = policy.halfOpenCalls();
+        } else {
+            log.info("Circuit breaker for agent {} closed", name);
+        }
+        state = target;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        next = 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
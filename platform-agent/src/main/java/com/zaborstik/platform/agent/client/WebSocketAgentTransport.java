@@ -0,0 +1,238 @@
+package com.zaborstik.platform.agent.client;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentErrorCode;
+import com.zaborstik.platform.agent.dto.AgentEvent;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Постоянный WebSocket-канал к агенту ({@code /ws}) на время сессии. Команды уходят без ожидания предыдущих
+ * ответов и сопоставляются с ответами по {@code id} ({@code {"id":1,"command":{...}}} →
+ * {@code {"id":1,"response":{...}}}); агент выполняет их по порядку. Сообщения без {@code id} — события агента
+ * ({@link AgentEvent}), они передаются слушателю на потоке {@link HttpClient}, поэтому слушатель не должен
+ * блокироваться. После закрытия или обрыва канала ожидающие и новые команды получают ответ
+ * {@link AgentErrorCode#AGENT_UNREACHABLE}.
+ *
+ * Persistent WebSocket channel to the agent ({@code /ws}) for the duration of a session. Commands are sent without
+ * waiting for earlier responses and matched to responses by {@code id} ({@code {"id":1,"command":{...}}} →
+ * {@code {"id":1,"response":{...}}}); the agent runs them in order. Messages without an {@code id} are agent
+ * events ({@link AgentEvent}); they are passed to the listener on an {@link HttpClient} thread, so the listener
+ * must not block. Once the channel is closed or broken, pending and new commands get an
+ * {@link AgentErrorCode#AGENT_UNREACHABLE} response.
+ */
+public final class WebSocketAgentTransport implements AgentTransport, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(WebSocketAgentTransport.class);
+
+    private final URI uri;
+    private final Duration defaultTimeout;
+    private final Consumer<AgentEvent> eventListener;
+    private final Map<Long, CompletableFuture<AgentResponse>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final Object sendLock = new Object();
+    private CompletableFuture<WebSocket> sendChain;
+    private volatile WebSocket webSocket;
+    private volatile boolean open;
+
+    private WebSocketAgentTransport(URI uri, Duration defaultTimeout, Consumer<AgentEvent> eventListener) {
+        this.uri = uri;
+        this.defaultTimeout = defaultTimeout;
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * Открывает канал. Future завершается исключением, если агент не принял соединение (например, старая версия
+     * без {@code /ws}).
+     *
+     * Opens the channel. The future completes exceptionally when the agent refuses the connection (e.g. an older
+     * version without {@code /ws}).
+     *
+     * @param httpClient     HTTP-клиент / HTTP client
+     * @param uri            адрес канала, {@code ws://host:port/ws} / channel address, {@code ws://host:port/ws}
+     * @param defaultTimeout таймаут ответа по умолчанию / default response timeout
+     * @param eventListener  получатель событий агента / receiver of agent events
+     */
+    public static CompletableFuture<WebSocketAgentTransport> connect(HttpClient httpClient, URI uri,
+                                                                     Duration defaultTimeout,
+                                                                     Consumer<AgentEvent> eventListener) {
+        Objects.requireNonNull(httpClient, "httpClient cannot be null");
+        Objects.requireNonNull(uri, "uri cannot be null");
+        Objects.requireNonNull(defaultTimeout, "defaultTimeout cannot be null");
+        Objects.requireNonNull(eventListener, "eventListener cannot be null");
+        WebSocketAgentTransport transport = new WebSocketAgentTransport(uri, defaultTimeout, eventListener);
+        return httpClient.newWebSocketBuilder()
+            .connectTimeout(defaultTimeout)
+            .buildAsync(uri, transport.new Listener())
+            .thenApply(webSocket -> {
+                synchronized (transport.sendLock) {
+                    transport.webSocket = webSocket;
+                    transport.sendChain = CompletableFuture.completedFuture(webSocket);
+                    transport.open = true;
+                }
+                log.debug("Agent channel {} opened", uri);
+                return transport;
+            });
+    }
+
+    @Override
+    public CompletableFuture<AgentResponse> executeAsync(AgentCommand command, Duration timeout) {
+        if (!open) {
+            return CompletableFuture.completedFuture(closedFailure());
+        }
+        long id = nextId.incrementAndGet();
+        String request;
+        try {
+            request = AgentJson.writeChannelRequest(id, command);
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(AgentResponse.failure(AgentErrorCode.INVALID_COMMAND,
+                "Failed to serialize command: " + e.getMessage(), 0));
+        }
+        long startNanos = System.nanoTime();
+        Duration effectiveTimeout = timeout != null ? timeout : defaultTimeout;
+        CompletableFuture<AgentResponse> result = new CompletableFuture<>();
+        pending.put(id, result);
+        // отмена и таймаут тоже снимают ожидание / cancellation and timeout stop waiting as well
+        result.whenComplete((ignored, error) -> pending.remove(id));
+        CompletableFuture.delayedExecutor(effectiveTimeout.toMillis(), TimeUnit.MILLISECONDS).execute(() ->
+            result.complete(AgentResponse.failure(AgentErrorCode.AGENT_TIMEOUT,
+                "Agent did not answer within " + effectiveTimeout.toMillis() + "ms", elapsedMs(startNanos))));
+        send(request).whenComplete((ignored, error) -> {
+            if (error != null) {
+                result.complete(AgentResponse.failure(AgentErrorCode.AGENT_UNREACHABLE,
+                    "Failed to send command to agent channel: " + error.getMessage(), elapsedMs(startNanos)));
+            }
+        });
+        return result;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public URI uri() {
+        return uri;
+    }
+
+    /**
+     * Закрывает канал; ожидающие команды получают ответ с ошибкой.
+     *
+     * Closes the channel; pending commands get a failed response.
+     */
+    @Override
+    public void close() {
+        WebSocket current;
+        CompletableFuture<WebSocket> sent;
+        synchronized (sendLock) {
+            if (!open) {
+                return;
+            }
+            open = false;
+            current = webSocket;
+            sent = sendChain;
+        }
+        failPending("Agent channel closed");
+        sent.thenCompose(socket -> socket.sendClose(WebSocket.NORMAL_CLOSURE, "session closed"))
+            .whenComplete((ignored, error) -> {
+                if (error != null) {
+                    current.abort();
+                }
+            });
+    }
+
+    private CompletableFuture<WebSocket> send(String text) {
+        synchronized (sendLock) {
+            // WebSocket допускает одну незавершённую отправку / WebSocket allows one outstanding send
+            sendChain = sendChain.thenCompose(socket -> socket.sendText(text, true));
+            return sendChain;
+        }
+    }
+
+    private void onMessage(String text) {
+        AgentJson.ChannelMessage message;
+        try {
+            message = AgentJson.readChannelMessage(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.warn("Ignoring malformed message from agent channel {}: {}", uri, e.getMessage());
+            return;
+        }
+        if (message.id() != null) {
+            CompletableFuture<AgentResponse> result = pending.remove(message.id());
+            if (result != null && message.response() != null) {
+                result.complete(message.response());
+            }
+        } else if (message.event() != null && message.event().type() != null) {
+            try {
+                eventListener.accept(message.event());
+            } catch (RuntimeException e) {
+                log.warn("Agent event listener failed on {}", message.event(), e);
+            }
+        }
+    }
+
+    private void onClosed(String reason) {
+        synchronized (sendLock) {
+            open = false;
+        }
+        failPending(reason);
+    }
+
+    private void failPending(String reason) {
+        for (CompletableFuture<AgentResponse> result : pending.values()) {
+            result.complete(AgentResponse.failure(AgentErrorCode.AGENT_UNREACHABLE, reason, 0));
+        }
+        pending.clear();
+    }
+
+    private AgentResponse closedFailure() {
+        return AgentResponse.failure(AgentErrorCode.AGENT_UNREACHABLE, "Agent channel " + uri + " is closed", 0);
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    private final class Listener implements WebSocket.Listener {
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket socket, CharSequence data, boolean last) {
+            text.append(data);
+            if (last) {
+                String message = text.toString();
+                text.setLength(0);
+                onMessage(message);
+            }
+            socket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket socket, int statusCode, String reason) {
+            log.debug("Agent channel {} closed by agent: {} {}", uri, statusCode, reason);
+            onClosed("Agent closed the channel: " + statusCode + " " + reason);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket socket, Throwable error) {
+            log.warn("Agent channel {} failed: {}", uri, error.getMessage());
+            onClosed("Agent channel failed: " + error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.zaborstik.platform.agent.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Ответ агента на пакет команд ({@code POST /execute-batch}).
+ * {@code results} содержит ответы выполненных команд по порядку; при остановке на ошибке команды после
+ * неуспешной не выполняются и в список не попадают. {@code error} заполняется, если пакет не выполнялся
+ * совсем (ошибка связи, браузер не инициализирован). {@code unsupported} — агент не знает протокол пакетов
+ * (старая версия), команды нужно отправить по одной. {@code errorCode} — {@link AgentErrorCode} для {@code error}.
+ *
+ * Agent response to a command batch ({@code POST /execute-batch}).
+ * {@code results} holds the responses of executed commands in order; when stopping on failure the commands after
+ * the failed one are not executed and are absent. {@code error} is set when the batch did not run at all
+ * (communication failure, browser not initialized). {@code unsupported} means the agent does not know the batch
+ * protocol (older version) and the commands must be sent one by one. {@code errorCode} is the {@link AgentErrorCode}
+ * of {@code error}.
+ */
+public record AgentBatchResponse(boolean success, List<AgentResponse> results, String error, long executionTimeMs,
+                                 boolean unsupported, String errorCode) {
+    @JsonCreator
+    public AgentBatchResponse(@JsonProperty("success") boolean success,
+                              @JsonProperty("results") List<AgentResponse> results,
+                              @JsonProperty("error") String error,
+                              @JsonProperty("executionTimeMs") long executionTimeMs,
+                              @JsonProperty("unsupported") boolean unsupported,
+                              @JsonProperty("errorCode") String errorCode) {
+        this.success = success;
+        this.results = results != null ? List.copyOf(results) : List.of();
+        this.error = error;
+        this.executionTimeMs = executionTimeMs;
+        this.unsupported = unsupported;
+        this.errorCode = errorCode;
+    }
+
+    public AgentBatchResponse(boolean success, List<AgentResponse> results, String error, long executionTimeMs,
+                              boolean unsupported) {
+        this(success, results, error, executionTimeMs, unsupported, null);
+    }
+
+    public static AgentBatchResponse failure(String error, long executionTimeMs) {
+        return new AgentBatchResponse(false, List.of(), error, executionTimeMs, false);
+    }
+
+    public static AgentBatchResponse failure(AgentErrorCode errorCode, String error, long executionTimeMs) {
+        return new AgentBatchResponse(false, List.of(), error, executionTimeMs, false,
+            errorCode != null ? errorCode.name() : null);
+    }
+
+    public static AgentBatchResponse unsupported(long executionTimeMs) {
+        return new AgentBatchResponse(false, List.of(), "Agent does not support command batches", executionTimeMs,
+            true);
+    }
+
+    /**
+     * Ответ команды с индексом {@code index} или null, если она не выполнялась.
+     *
+     * Response of the command at {@code index}, or null when it was not executed.
+     */
+    public AgentResponse result(int index) {
+        return index >= 0 && index < results.size() ? results.get(index) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "AgentBatchResponse{success=" + success + ", results=" + results.size() +
+                ", error='" + error + "', executionTime=" + executionTimeMs + "ms}";
+    }
+}
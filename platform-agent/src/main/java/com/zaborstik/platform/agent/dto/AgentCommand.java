@@ -1,5 +1,6 @@
 package com.zaborstik.platform.agent.dto;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -20,7 +21,10 @@ public record AgentCommand(CommandType type, String target, String explanation,
         HIGHLIGHT,
         SCREENSHOT,
         SELECT_OPTION,
-        READ_TEXT
+        READ_TEXT,
+        RESOLVE_AND_CLICK,
+        RESOLVE_AND_HOVER,
+        RESOLVE_AND_TYPE
     }
 
     public AgentCommand(CommandType type, String target, String explanation, Map<String, Object> parameters) {
@@ -48,6 +52,26 @@ public record AgentCommand(CommandType type, String target, String explanation,
         );
     }
 
+    /**
+     * CLICK_AT для пакета команд: координаты берутся агентом из ответа RESOLVE_COORDS с индексом
+     * {@code coordsIndex} в том же пакете.
+     *
+     * CLICK_AT for a command batch: the agent takes the coordinates from the RESOLVE_COORDS response
+     * at {@code coordsIndex} in the same batch.
+     */
+    public static AgentCommand clickAtResolved(int coordsIndex, String explanation, String selectorUsed) {
+        if (coordsIndex < 0) {
+            throw new IllegalArgumentException("coordsIndex must be >= 0");
+        }
+        String normalizedSelector = selectorUsed != null ? selectorUsed : "";
+        return new AgentCommand(
+                CommandType.CLICK_AT,
+                normalizedSelector,
+                explanation,
+                Map.of("coordsFrom", coordsIndex, "selectorUsed", normalizedSelector)
+        );
+    }
+
     public static AgentCommand type(String selector, String text, String explanation) {
         return new AgentCommand(CommandType.TYPE, selector, explanation, Map.of("text", text));
     }
@@ -64,8 +88,56 @@ public record AgentCommand(CommandType type, String target, String explanation,
         return new AgentCommand(CommandType.RESOLVE_COORDS, selector, explanation, Map.of());
     }
 
+    /**
+     * Составная команда для CLICK, HOVER или TYPE: агент находит элемент и выполняет действие в одном вызове,
+     * координаты возвращаются в данных ответа. Параметры команды сохраняются.
+     *
+     * Fused command for CLICK, HOVER or TYPE: the agent resolves the element and acts in a single call,
+     * returning the coordinates in the response data. Command parameters are kept.
+     */
+    public static AgentCommand fused(AgentCommand command) {
+        Objects.requireNonNull(command, "command cannot be null");
+        CommandType fusedType = switch (command.type()) {
+            case CLICK -> CommandType.RESOLVE_AND_CLICK;
+            case HOVER -> CommandType.RESOLVE_AND_HOVER;
+            case TYPE -> CommandType.RESOLVE_AND_TYPE;
+            default -> throw new IllegalArgumentException("No fused command for " + command.type());
+        };
+        return new AgentCommand(fusedType, command.target(), command.explanation(), command.parameters());
+    }
+
+    /**
+     * WAIT по условию в записи {@link WaitCondition#parse(String)}.
+     *
+     * WAIT on a condition in {@link WaitCondition#parse(String)} notation.
+     */
     public static AgentCommand wait(String condition, String explanation, long timeoutMs) {
-        return new AgentCommand(CommandType.WAIT, condition, explanation, Map.of("timeout", timeoutMs));
+        return wait(WaitCondition.parse(condition), explanation, timeoutMs);
+    }
+
+    /**
+     * WAIT, который завершается, как только выполнено условие; {@code timeoutMs} — верхняя граница ожидания.
+     * Цель команды — строка условия для агентов без параметра {@code condition}.
+     *
+     * WAIT that completes as soon as the condition holds; {@code timeoutMs} is the upper bound of the wait.
+     * The command target is the condition string for agents without the {@code condition} parameter.
+     */
+    public static AgentCommand wait(WaitCondition condition, String explanation, long timeoutMs) {
+        Objects.requireNonNull(condition, "condition cannot be null");
+        return new AgentCommand(CommandType.WAIT, condition.legacyTarget(), explanation,
+            Map.of("timeout", timeoutMs, "condition", condition.kind().name(), "value", condition.value()));
+    }
+
+    /**
+     * Та же команда с заменённым или добавленным параметром.
+     *
+     * The same command with a parameter replaced or added.
+     */
+    public AgentCommand withParameter(String name, Object value) {
+        Objects.requireNonNull(name, "name cannot be null");
+        Map<String, Object> updated = new HashMap<>(parameters);
+        updated.put(name, value);
+        return new AgentCommand(type, target, explanation, updated);
     }
 
     public static AgentCommand explain(String message) {
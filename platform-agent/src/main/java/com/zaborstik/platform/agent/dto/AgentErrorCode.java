@@ -0,0 +1,70 @@
+package com.zaborstik.platform.agent.dto;
+
+/**
+ * Код ошибки в ответе агента ({@link AgentResponse#errorCode()}). Коды команд ставит Playwright-сервер,
+ * коды связи — {@link com.zaborstik.platform.agent.client.AgentClient}. Класс ошибки ({@link Category})
+ * определяет, повторять ли шаг и с какой задержкой ({@link RetryPolicy}).
+ *
+ * Error code in an agent response ({@link AgentResponse#errorCode()}). Command codes are set by the Playwright
+ * server, communication codes by {@link com.zaborstik.platform.agent.client.AgentClient}. The error class
+ * ({@link Category}) decides whether and how soon a step is retried ({@link RetryPolicy}).
+ */
+public enum AgentErrorCode {
+    /** Элемент ещё не появился, не видим или не готов к действию / element not attached, visible or actionable yet */
+    ELEMENT_NOT_READY(Category.ELEMENT_NOT_READY),
+    /** Переход на страницу не удался (сеть приложения) / page navigation failed (application network) */
+    NAVIGATION_FAILED(Category.TRANSIENT_NETWORK),
+    /** Агент недоступен / agent unreachable */
+    AGENT_UNREACHABLE(Category.TRANSIENT_NETWORK),
+    /** Агент не ответил за таймаут запроса / agent did not answer within the request timeout */
+    AGENT_TIMEOUT(Category.TRANSIENT_NETWORK),
+    /** Выключатель агента разомкнут / agent circuit breaker is open */
+    CIRCUIT_OPEN(Category.PERMANENT),
+    /** Браузер не инициализирован / browser not initialized */
+    NOT_INITIALIZED(Category.PERMANENT),
+    /** Неизвестная команда или неверные параметры / unknown command or invalid parameters */
+    INVALID_COMMAND(Category.PERMANENT),
+    /** Прочая ошибка команды / any other command failure */
+    COMMAND_FAILED(Category.PERMANENT),
+    /** Команда отменена / command cancelled */
+    CANCELLED(Category.PERMANENT);
+
+    /**
+     * Класс ошибки для решения о повторе. Error class used for the retry decision.
+     */
+    public enum Category {
+        /** Временный сбой связи: повтор с экспоненциальной задержкой / transient failure: exponential backoff */
+        TRANSIENT_NETWORK,
+        /** Элемент не готов: быстрый первый повтор / element not ready: fast first retry */
+        ELEMENT_NOT_READY,
+        /** Повтор не поможет / retrying will not help */
+        PERMANENT
+    }
+
+    private final Category category;
+
+    AgentErrorCode(Category category) {
+        this.category = category;
+    }
+
+    public Category category() {
+        return category;
+    }
+
+    /**
+     * Код по имени; null для null или неизвестного кода (агент другой версии).
+     *
+     * Code by name; null for null or an unknown code (an agent of another version).
+     */
+    public static AgentErrorCode fromCode(String code) {
+        if (code == null) {
+            return null;
+        }
+        for (AgentErrorCode value : values()) {
+            if (value.name().equals(code)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,71 @@
+package com.zaborstik.platform.agent.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * Событие, которое агент отправляет сам по постоянному каналу
+ * ({@link com.zaborstik.platform.agent.client.WebSocketAgentTransport}), без запроса.
+ * Тип, неизвестный этому клиенту (агент новее), — null; такие события отбрасываются.
+ *
+ * Event the agent pushes on its own over the persistent channel
+ * ({@link com.zaborstik.platform.agent.client.WebSocketAgentTransport}) without a request.
+ * The type is null for a type this client does not know (a newer agent); such events are dropped.
+ *
+ * @param type        тип события / event type
+ * @param data        данные события / event data
+ * @param timestampMs время события у агента, мс эпохи / agent-side event time, epoch ms
+ */
+public record AgentEvent(Type type, Map<String, Object> data, long timestampMs) {
+
+    public enum Type {
+        /** Основной фрейм перешёл на {@code data.url} / the main frame navigated to {@code data.url} */
+        NAVIGATED,
+        /** Страница загрузилась ({@code load}) / the page finished loading ({@code load}) */
+        PAGE_LOADED,
+        /** {@code console.error} на странице, {@code data.text} / page {@code console.error}, {@code data.text} */
+        CONSOLE_ERROR,
+        /** Необработанное исключение на странице, {@code data.message} / uncaught page error, {@code data.message} */
+        PAGE_ERROR;
+
+        /**
+         * Тип по имени; null для null или неизвестного типа. Type by name; null for null or an unknown type.
+         */
+        public static Type fromName(String name) {
+            if (name == null) {
+                return null;
+            }
+            for (Type value : values()) {
+                if (value.name().equals(name)) {
+                    return value;
+                }
+            }
+            return null;
+        }
+    }
+
+    @JsonCreator
+    public static AgentEvent of(@JsonProperty("type") String type,
+                                @JsonProperty("data") Map<String, Object> data,
+                                @JsonProperty("timestampMs") long timestampMs) {
+        return new AgentEvent(Type.fromName(type), data, timestampMs);
+    }
+
+    public AgentEvent {
+        data = data != null ? Map.copyOf(data) : Map.of();
+    }
+
+    /**
+     * URL события {@link Type#NAVIGATED}; null, если его нет. URL of a {@link Type#NAVIGATED} event; null if absent.
+     */
+    public String url() {
+        return data.get("url") instanceof String url ? url : null;
+    }
+
+    @Override
+    public String toString() {
+        return "AgentEvent{type=" + type + ", data=" + data + "}";
+    }
+}
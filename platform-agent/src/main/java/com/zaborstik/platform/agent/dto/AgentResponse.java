@@ -2,25 +2,40 @@ package com.zaborstik.platform.agent.dto;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import java.util.Map;
 
 /**
  * Ответ от агента после выполнения команды.
+ * {@code errorCode} — имя {@link AgentErrorCode} для неуспешного ответа; null у агентов старых версий.
+ * {@code data} из JSON — {@link LazyJsonMap}: вложенные значения разбираются только при обращении.
+ *
+ * Agent response after command execution.
+ * {@code errorCode} is an {@link AgentErrorCode} name for a failed response; null for older agents.
+ * {@code data} read from JSON is a {@link LazyJsonMap}: nested values are bound only when accessed.
  */
 public record AgentResponse(boolean success, String message, String error, Map<String, Object> data,
-                            long executionTimeMs) {
+                            long executionTimeMs, String errorCode) {
     @JsonCreator
     public AgentResponse(@JsonProperty("success") boolean success,
                          @JsonProperty("message") String message,
                          @JsonProperty("error") String error,
-                         @JsonProperty("data") Map<String, Object> data,
-                         @JsonProperty("executionTimeMs") long executionTimeMs) {
+                         @JsonProperty("data") @JsonDeserialize(using = LazyJsonMap.Deserializer.class)
+                         Map<String, Object> data,
+                         @JsonProperty("executionTimeMs") long executionTimeMs,
+                         @JsonProperty("errorCode") String errorCode) {
         this.success = success;
         this.message = message;
         this.error = error;
-        this.data = data != null ? Map.copyOf(data) : Map.of();
+        this.data = data == null ? Map.of() : data instanceof LazyJsonMap ? data : Map.copyOf(data);
         this.executionTimeMs = executionTimeMs;
+        this.errorCode = errorCode;
+    }
+
+    public AgentResponse(boolean success, String message, String error, Map<String, Object> data,
+                         long executionTimeMs) {
+        this(success, message, error, data, executionTimeMs, null);
     }
 
     public static AgentResponse success(String message, Map<String, Object> data, long executionTimeMs) {
@@ -31,10 +46,14 @@ public record AgentResponse(boolean success, String message, String error, Map<S
         return new AgentResponse(false, null, error, Map.of(), executionTimeMs);
     }
 
+    public static AgentResponse failure(AgentErrorCode errorCode, String error, long executionTimeMs) {
+        return new AgentResponse(false, null, error, Map.of(), executionTimeMs,
+            errorCode != null ? errorCode.name() : null);
+    }
+
     @Override
     public String toString() {
         return "AgentResponse{success=" + success + ", message='" + message +
-                "', error='" + error + "', executionTime=" + executionTimeMs + "ms}";
+                "', error='" + error + "', errorCode=" + errorCode + ", executionTime=" + executionTimeMs + "ms}";
     }
 }
-
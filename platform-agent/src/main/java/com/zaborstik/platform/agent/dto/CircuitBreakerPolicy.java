@@ -0,0 +1,59 @@
+package com.zaborstik.platform.agent.dto;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Политика автоматического выключателя (circuit breaker) для одного агента.
+ * Решение принимается по скользящему окну последних {@code windowSize} вызовов: если доля ошибок связи
+ * или медленных вызовов достигает порога, выключатель размыкается и вызовы отклоняются сразу,
+ * без ожидания таймаутов. Через {@code openDuration} пропускаются {@code halfOpenCalls} пробных вызовов.
+ *
+ * Circuit breaker policy for a single agent.
+ * Decisions are made over a sliding window of the last {@code windowSize} calls: when the share of
+ * communication failures or slow calls reaches a threshold the breaker opens and calls are rejected
+ * immediately instead of waiting out timeouts. After {@code openDuration} {@code halfOpenCalls} trial calls
+ * are let through.
+ *
+ * @param windowSize            размер окна вызовов / size of the call window
+ * @param minimumCalls          минимум вызовов в окне для решения / minimum calls in the window before deciding
+ * @param failureRateThreshold  доля ошибок связи для размыкания, (0, 1] / failure share that opens, (0, 1]
+ * @param slowCallDuration      вызов дольше считается медленным / calls longer than this are slow
+ * @param slowCallRateThreshold доля медленных вызовов для размыкания, (0, 1] / slow call share that opens, (0, 1]
+ * @param openDuration          время в разомкнутом состоянии / time spent open
+ * @param halfOpenCalls         пробных вызовов в полуоткрытом состоянии / trial calls while half-open
+ */
+public record CircuitBreakerPolicy(int windowSize, int minimumCalls, double failureRateThreshold,
+                                   Duration slowCallDuration, double slowCallRateThreshold,
+                                   Duration openDuration, int halfOpenCalls) {
+
+    public CircuitBreakerPolicy {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be >= 1");
+        }
+        if (minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("minimumCalls must be in [1, windowSize]");
+        }
+        if (!(failureRateThreshold > 0.0 && failureRateThreshold <= 1.0)) {
+            throw new IllegalArgumentException("failureRateThreshold must be in (0, 1]");
+        }
+        Objects.requireNonNull(slowCallDuration, "slowCallDuration cannot be null");
+        if (slowCallDuration.isZero() || slowCallDuration.isNegative()) {
+            throw new IllegalArgumentException("slowCallDuration must be positive");
+        }
+        if (!(slowCallRateThreshold > 0.0 && slowCallRateThreshold <= 1.0)) {
+            throw new IllegalArgumentException("slowCallRateThreshold must be in (0, 1]");
+        }
+        Objects.requireNonNull(openDuration, "openDuration cannot be null");
+        if (openDuration.isZero() || openDuration.isNegative()) {
+            throw new IllegalArgumentException("openDuration must be positive");
+        }
+        if (halfOpenCalls < 1 || halfOpenCalls > windowSize) {
+            throw new IllegalArgumentException("halfOpenCalls must be in [1, windowSize]");
+        }
+    }
+
+    public static CircuitBreakerPolicy defaultPolicy() {
+        return new CircuitBreakerPolicy(20, 5, 0.5, Duration.ofSeconds(10), 0.8, Duration.ofSeconds(15), 2);
+    }
+}
@@ -0,0 +1,52 @@
+package com.zaborstik.platform.agent.dto;
+
+import java.util.Set;
+
+/**
+ * Политика хеджирования идемпотентных шагов чтения.
+ *
+ * Hedging policy for idempotent read steps.
+ *
+ * @param operations    идемпотентные операции, которые можно хеджировать ({@code system.action.internalname}) /
+ *                      idempotent operations that may be hedged ({@code system.action.internalname})
+ * @param quantile      квантиль задержки операции, после которого отправляется хедж-запрос, например 0.95 /
+ *                      latency quantile of the operation after which a hedge request is sent, e.g. 0.95
+ * @param maxHedgeRatio максимальная доля хеджируемых запросов, например 0.1 /
+ *                      max share of eligible requests that may be hedged, e.g. 0.1
+ * @param minSamples    число наблюдений, после которого квантилю можно доверять /
+ *                      observations required before the quantile is trusted
+ */
+public record HedgePolicy(Set<String> operations, double quantile, double maxHedgeRatio, long minSamples) {
+
+    /** Без {@code wait}: её длительность задаёт шаг / no {@code wait}: the step sets its duration */
+    public static final Set<String> IDEMPOTENT_READ_OPERATIONS = Set.of("read_text", "take_screenshot");
+
+    public HedgePolicy {
+        operations = operations != null ? Set.copyOf(operations) : Set.of();
+        if (quantile <= 0.0 || quantile >= 1.0) {
+            throw new IllegalArgumentException("quantile must be within (0, 1)");
+        }
+        if (maxHedgeRatio < 0.0 || maxHedgeRatio > 1.0) {
+            throw new IllegalArgumentException("maxHedgeRatio must be within [0, 1]");
+        }
+        if (minSamples < 1) {
+            throw new IllegalArgumentException("minSamples must be >= 1");
+        }
+    }
+
+    public boolean isEnabled() {
+        return !operations.isEmpty() && maxHedgeRatio > 0.0;
+    }
+
+    public boolean isHedgeable(String operation) {
+        return operation != null && operations.contains(operation);
+    }
+
+    public static HedgePolicy defaultPolicy() {
+        return new HedgePolicy(IDEMPOTENT_READ_OPERATIONS, 0.95, 0.1, 20);
+    }
+
+    public static HedgePolicy disabled() {
+        return new HedgePolicy(Set.of(), 0.95, 0.0, 20);
+    }
+}
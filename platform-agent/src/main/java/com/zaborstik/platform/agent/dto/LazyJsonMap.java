@@ -0,0 +1,151 @@
+package com.zaborstik.platform.agent.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Неизменяемый JSON-объект из ответа агента ({@link AgentResponse#data()}), который хранит исходные байты
+ * и разбирает их только по требованию. {@link #get(Object)} и {@link #containsKey(Object)} просматривают байты,
+ * пропуская чужие значения без декодирования строк, и разбирают одно значение; перебор, размер и сравнение
+ * разбирают объект целиком один раз. Ленивым {@code data} становится, только если читатель передал байты тела
+ * атрибутом {@link #SOURCE_ATTRIBUTE} (так читает {@link com.zaborstik.platform.agent.client.AgentJson});
+ * иначе объект разбирается сразу.
+ *
+ * Immutable JSON object from an agent response ({@link AgentResponse#data()}) that keeps the source bytes and
+ * parses them only on demand. {@link #get(Object)} and {@link #containsKey(Object)} scan the bytes, skipping other
+ * values without decoding their strings, and bind a single value; iteration, size and equality bind the whole
+ * object once. {@code data} is lazy only when the reader passes the body bytes as the {@link #SOURCE_ATTRIBUTE}
+ * attribute (as {@link com.zaborstik.platform.agent.client.AgentJson} does); otherwise it is bound right away.
+ */
+public final class LazyJsonMap extends AbstractMap<String, Object> {
+    /**
+     * Атрибут чтения Jackson с {@code byte[]}, из которого читается ответ.
+     * Jackson read attribute holding the {@code byte[]} the response is read from.
+     */
+    public static final String SOURCE_ATTRIBUTE = LazyJsonMap.class.getName() + ".source";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE = new TypeReference<>() { };
+    private static final ObjectReader MAP_READER = MAPPER.readerFor(MAP_TYPE);
+    private static final ObjectReader VALUE_READER = MAPPER.readerFor(Object.class);
+    private static final Object ABSENT = new Object();
+
+    private final byte[] json;
+    private final int offset;
+    private final int length;
+    private volatile Map<String, Object> materialized;
+
+    private LazyJsonMap(byte[] json, int offset, int length) {
+        this.json = json;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Map<String, Object> map = materialized;
+        if (map != null) {
+            return map.get(key);
+        }
+        Object value = lookup(key);
+        return value == ABSENT ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Map<String, Object> map = materialized;
+        return map != null ? map.containsKey(key) : lookup(key) != ABSENT;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return materialize().entrySet();
+    }
+
+    /**
+     * Разобран ли объект целиком. Whether the whole object has been bound.
+     */
+    public boolean isMaterialized() {
+        return materialized != null;
+    }
+
+    private Map<String, Object> materialize() {
+        Map<String, Object> map = materialized;
+        if (map == null) {
+            synchronized (this) {
+                map = materialized;
+                if (map == null) {
+                    try {
+                        map = Collections.unmodifiableMap(
+                            MAP_READER.<LinkedHashMap<String, Object>>readValue(json, offset, length));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to read agent response data", e);
+                    }
+                    materialized = map;
+                }
+            }
+        }
+        return map;
+    }
+
+    private Object lookup(Object key) {
+        if (!(key instanceof String name)) {
+            return ABSENT;
+        }
+        try (JsonParser parser = MAPPER.createParser(json, offset, length)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (field.equals(name)) {
+                    return VALUE_READER.readValue(parser);
+                }
+                parser.skipChildren();
+            }
+            return ABSENT;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read agent response data", e);
+        }
+    }
+
+    /**
+     * Запоминает положение JSON-объекта в исходных байтах вместо построения {@link Map}.
+     *
+     * Records the position of a JSON object in the source bytes instead of binding it to a {@link Map}.
+     */
+    public static final class Deserializer extends StdDeserializer<Map<String, Object>> {
+
+        public Deserializer() {
+            super(Map.class);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map<String, Object> deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (!parser.isExpectedStartObjectToken()) {
+                return (Map<String, Object>) context.handleUnexpectedToken(Map.class, parser);
+            }
+            long start = parser.currentTokenLocation().getByteOffset();
+            if (!(context.getAttribute(SOURCE_ATTRIBUTE) instanceof byte[] json) || start < 0) {
+                return context.readValue(parser, context.getTypeFactory().constructType(MAP_TYPE));
+            }
+            // строки пропускаются без декодирования / strings are skipped without decoding
+            parser.skipChildren();
+            long end = parser.currentLocation().getByteOffset();
+            return new LazyJsonMap(json, (int) start, (int) (end - start));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.zaborstik.platform.agent.dto;
+
+import com.zaborstik.platform.core.plan.PlanStep;
+import com.zaborstik.platform.core.plan.PlanStepAction;
+
+import java.util.Set;
+
+/**
+ * Policy for redundant {@code open_page} steps.
+ * When enabled, navigation to the URL the browser session is already on is skipped.
+ *
+ * @param skipRedundant  skip {@code open_page} when the target equals the current page URL
+ * @param forcedActions  action ids ({@code plan_step_action.actionId}) that always navigate, e.g. to reload a page
+ */
+public record NavigationPolicy(boolean skipRedundant, Set<String> forcedActions) {
+
+    public NavigationPolicy {
+        forcedActions = forcedActions != null ? Set.copyOf(forcedActions) : Set.of();
+    }
+
+    /**
+     * @return true when the step may be skipped if the browser is already on its target page
+     */
+    public boolean maySkip(PlanStep step) {
+        if (!skipRedundant) {
+            return false;
+        }
+        for (PlanStepAction action : step.actions()) {
+            if (action.actionId() != null && forcedActions.contains(action.actionId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static NavigationPolicy defaultPolicy() {
+        return new NavigationPolicy(true, Set.of());
+    }
+
+    public static NavigationPolicy disabled() {
+        return new NavigationPolicy(false, Set.of());
+    }
+}
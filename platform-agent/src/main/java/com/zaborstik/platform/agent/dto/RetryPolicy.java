@@ -6,8 +6,17 @@ import java.util.Objects;
 
 /**
  * Retry policy for transient agent execution errors.
+ * Errors are classified by {@link AgentErrorCode}; responses without a code (older agents) fall back to
+ * {@code retryableErrorPatterns}. Retries wait {@code delayMs * backoffMultiplier^(n-1)}, capped at
+ * {@code maxDelayMs} and reduced by up to {@code jitter} of itself at random; the first retry of an
+ * element-not-ready error waits only {@code elementNotReadyDelayMs}. A plan makes at most
+ * {@code planRetryBudget} retries across all its steps.
  */
-public record RetryPolicy(int maxRetries, long delayMs, List<String> retryableErrorPatterns) {
+public record RetryPolicy(int maxRetries, long delayMs, List<String> retryableErrorPatterns,
+                          double backoffMultiplier, long maxDelayMs, double jitter,
+                          long elementNotReadyDelayMs, int planRetryBudget) {
+
+    public static final int UNLIMITED_BUDGET = Integer.MAX_VALUE;
 
     public RetryPolicy {
         if (maxRetries < 0) {
@@ -16,6 +25,21 @@ public record RetryPolicy(int maxRetries, long delayMs, List<String> retryableEr
         if (delayMs < 0) {
             throw new IllegalArgumentException("delayMs must be >= 0");
         }
+        if (backoffMultiplier < 1.0) {
+            throw new IllegalArgumentException("backoffMultiplier must be >= 1");
+        }
+        if (maxDelayMs < delayMs) {
+            throw new IllegalArgumentException("maxDelayMs must be >= delayMs");
+        }
+        if (!(jitter >= 0.0 && jitter <= 1.0)) {
+            throw new IllegalArgumentException("jitter must be in [0, 1]");
+        }
+        if (elementNotReadyDelayMs < 0) {
+            throw new IllegalArgumentException("elementNotReadyDelayMs must be >= 0");
+        }
+        if (planRetryBudget < 0) {
+            throw new IllegalArgumentException("planRetryBudget must be >= 0");
+        }
         retryableErrorPatterns = retryableErrorPatterns == null
             ? List.of()
             : retryableErrorPatterns.stream()
@@ -24,6 +48,13 @@ public record RetryPolicy(int maxRetries, long delayMs, List<String> retryableEr
                 .toList();
     }
 
+    /**
+     * Fixed delay policy without jitter or plan budget.
+     */
+    public RetryPolicy(int maxRetries, long delayMs, List<String> retryableErrorPatterns) {
+        this(maxRetries, delayMs, retryableErrorPatterns, 1.0, delayMs, 0.0, delayMs, UNLIMITED_BUDGET);
+    }
+
     public boolean isRetryable(String errorMessage) {
         if (errorMessage == null || errorMessage.isBlank() || retryableErrorPatterns.isEmpty()) {
             return false;
@@ -32,8 +63,39 @@ public record RetryPolicy(int maxRetries, long delayMs, List<String> retryableEr
         return retryableErrorPatterns.stream().anyMatch(normalizedError::contains);
     }
 
+    /**
+     * Classifies an error by its code; an unknown or missing code falls back to the message patterns.
+     */
+    public AgentErrorCode.Category classify(String errorCode, String errorMessage) {
+        AgentErrorCode code = AgentErrorCode.fromCode(errorCode);
+        if (code != null) {
+            return code.category();
+        }
+        return isRetryable(errorMessage) ? AgentErrorCode.Category.TRANSIENT_NETWORK : AgentErrorCode.Category.PERMANENT;
+    }
+
+    /**
+     * Delay before the given retry.
+     *
+     * @param category class of the failed attempt error
+     * @param retry    retry number, starting at 1
+     * @param random   uniform random value in [0, 1) applied as jitter
+     */
+    public long backoffMs(AgentErrorCode.Category category, int retry, double random) {
+        if (retry < 1) {
+            throw new IllegalArgumentException("retry must be >= 1");
+        }
+        double base;
+        if (category == AgentErrorCode.Category.ELEMENT_NOT_READY) {
+            base = retry == 1 ? elementNotReadyDelayMs : delayMs * Math.pow(backoffMultiplier, retry - 2);
+        } else {
+            base = delayMs * Math.pow(backoffMultiplier, retry - 1);
+        }
+        return Math.round(Math.min(base, maxDelayMs) * (1.0 - jitter * random));
+    }
+
     public static RetryPolicy defaultPolicy() {
-        return new RetryPolicy(2, 1000, List.of("timeout", "not found", "not visible"));
+        return new RetryPolicy(2, 1000, List.of("timeout", "not found", "not visible"), 2.0, 8000, 0.5, 100, 10);
     }
 
     public static RetryPolicy noRetry() {
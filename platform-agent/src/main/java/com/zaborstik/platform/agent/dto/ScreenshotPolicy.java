@@ -0,0 +1,95 @@
+package com.zaborstik.platform.agent.dto;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Политика скриншотов сессии агента: когда снимать кадр и какого он размера. Передаётся агенту при инициализации.
+ * Агент сохраняет кадр в файл с именем по SHA-256 содержимого (одинаковые кадры — один файл) и отдаёт его байты
+ * отдельным запросом {@code GET /screenshots/<имя>}, а в ответе команды — только ссылку и хеш.
+ *
+ * Screenshot policy of an agent session: when a frame is captured and how large it is. Sent to the agent on
+ * initialization. The agent stores a frame in a file named after the SHA-256 of its content (identical frames
+ * share one file) and serves its bytes out of band via {@code GET /screenshots/<name>}; a command response only
+ * carries the reference and the hash.
+ *
+ * @param mode        когда снимать / when to capture
+ * @param sampleEvery для {@link Mode#SAMPLED}: каждый N-й успешный шаг / for {@link Mode#SAMPLED}: every N-th
+ *                    successful step
+ * @param format      формат изображения / image format
+ * @param quality     качество JPEG, [1, 100]; для PNG не используется / JPEG quality, [1, 100]; unused for PNG
+ * @param maxWidth    максимальная ширина кадра в пикселях, кадр уменьшается пропорционально; 0 — ширина окна /
+ *                    maximum frame width in pixels, the frame is scaled down proportionally; 0 means viewport width
+ */
+public record ScreenshotPolicy(Mode mode, int sampleEvery, Format format, int quality, int maxWidth) {
+
+    public enum Mode {
+        /** Не снимать, в том числе при ошибке / never capture, not even on failure */
+        NEVER,
+        /** Только неуспешные шаги / failed steps only */
+        ON_FAILURE,
+        /** Неуспешные шаги и каждый N-й успешный / failed steps and every N-th successful one */
+        SAMPLED,
+        /** Каждый шаг / every step */
+        ALWAYS;
+
+        /**
+         * Режим по имени без учёта регистра; дефис равнозначен подчёркиванию ({@code on-failure}).
+         *
+         * Mode by case-insensitive name; a dash equals an underscore ({@code on-failure}).
+         */
+        public static Mode parse(String value) {
+            Objects.requireNonNull(value, "value cannot be null");
+            try {
+                return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown screenshot mode: " + value, e);
+            }
+        }
+    }
+
+    public enum Format {
+        PNG,
+        JPEG;
+
+        public static Format parse(String value) {
+            Objects.requireNonNull(value, "value cannot be null");
+            String normalized = value.trim().toUpperCase(Locale.ROOT);
+            if (normalized.equals("JPG")) {
+                return JPEG;
+            }
+            try {
+                return valueOf(normalized);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown screenshot format: " + value, e);
+            }
+        }
+    }
+
+    public ScreenshotPolicy {
+        Objects.requireNonNull(mode, "mode cannot be null");
+        Objects.requireNonNull(format, "format cannot be null");
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("sampleEvery must be >= 1");
+        }
+        if (quality < 1 || quality > 100) {
+            throw new IllegalArgumentException("quality must be in [1, 100]");
+        }
+        if (maxWidth < 0) {
+            throw new IllegalArgumentException("maxWidth must be >= 0");
+        }
+    }
+
+    /**
+     * Снимок только при ошибке, PNG в размере окна — поведение агента без политики.
+     *
+     * Capture on failure only, PNG at viewport size — the agent behaviour without a policy.
+     */
+    public static ScreenshotPolicy defaultPolicy() {
+        return new ScreenshotPolicy(Mode.ON_FAILURE, 1, Format.PNG, 80, 0);
+    }
+
+    public static ScreenshotPolicy never() {
+        return new ScreenshotPolicy(Mode.NEVER, 1, Format.PNG, 80, 0);
+    }
+}
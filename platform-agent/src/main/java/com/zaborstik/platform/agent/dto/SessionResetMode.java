@@ -0,0 +1,36 @@
+package com.zaborstik.platform.agent.dto;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Как агент приводит сессию в исходное состояние между планами без новой инициализации ({@code POST /reset}).
+ *
+ * How the agent brings a session back to a clean state between plans without a new initialization
+ * ({@code POST /reset}).
+ */
+public enum SessionResetMode {
+    /** Сессия не сбрасывается / the session is not reset */
+    NONE,
+    /** Перезагрузка текущей страницы / reload of the current page */
+    RELOAD,
+    /**
+     * Очистка cookies и localStorage/sessionStorage, переход на {@code about:blank} /
+     * cookies and localStorage/sessionStorage cleared, navigation to {@code about:blank}
+     */
+    CLEAR_STORAGE;
+
+    /**
+     * Режим по имени без учёта регистра; дефис равнозначен подчёркиванию ({@code clear-storage}).
+     *
+     * Mode by case-insensitive name; a dash equals an underscore ({@code clear-storage}).
+     */
+    public static SessionResetMode parse(String value) {
+        Objects.requireNonNull(value, "value cannot be null");
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown session reset mode: " + value, e);
+        }
+    }
+}
@@ -31,7 +31,8 @@ public record StepExecutionResult(String stepType, String stepTarget, boolean su
         this.executedAt = executedAt != null ? executedAt : Instant.now();
         this.executionTimeMs = executionTimeMs;
         this.screenshotPath = screenshotPath;
-        this.metadata = metadata != null ? Map.copyOf(metadata) : Map.of();
+        // данные ответа агента остаются неразобранными / agent response data stays unbound
+        this.metadata = metadata == null ? Map.of() : metadata instanceof LazyJsonMap ? metadata : Map.copyOf(metadata);
         this.retryCount = retryCount;
         this.stepIndex = stepIndex;
         this.commandType = commandType;
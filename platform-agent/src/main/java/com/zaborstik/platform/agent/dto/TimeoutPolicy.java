@@ -0,0 +1,44 @@
+package com.zaborstik.platform.agent.dto;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Timeout policy for plan execution.
+ *
+ * @param planTimeout        default time budget of the whole plan, null for unbounded
+ * @param defaultStepTimeout per-command timeout when the operation has no own value, null for the client default
+ * @param stepTimeouts       per-operation timeouts keyed by {@code system.action.internalname}
+ */
+public record TimeoutPolicy(Duration planTimeout, Duration defaultStepTimeout, Map<String, Duration> stepTimeouts) {
+
+    public TimeoutPolicy {
+        requirePositive(planTimeout, "planTimeout");
+        requirePositive(defaultStepTimeout, "defaultStepTimeout");
+        stepTimeouts = stepTimeouts != null ? Map.copyOf(stepTimeouts) : Map.of();
+        stepTimeouts.forEach((operation, timeout) -> requirePositive(timeout, "stepTimeouts." + operation));
+    }
+
+    /**
+     * Timeout for a command of the given operation, or null when the client default applies.
+     */
+    public Duration forOperation(String operation) {
+        if (operation != null) {
+            Duration timeout = stepTimeouts.get(operation);
+            if (timeout != null) {
+                return timeout;
+            }
+        }
+        return defaultStepTimeout;
+    }
+
+    public static TimeoutPolicy none() {
+        return new TimeoutPolicy(null, null, Map.of());
+    }
+
+    private static void requirePositive(Duration value, String name) {
+        if (value != null && (value.isZero() || value.isNegative())) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.zaborstik.platform.agent.dto;
+
+import java.util.Objects;
+
+/**
+ * Условие команды WAIT. Агент ждёт событие, после которого условие выполнено, и отвечает сразу; таймаут команды —
+ * только верхняя граница. Запись в цели шага {@code wait} ({@link #parse(String)}):
+ * {@code visible:<селектор>}, {@code text:<текст>}, {@code url:<glob>}, {@code networkidle},
+ * {@code load}/{@code domcontentloaded}/{@code result}; иначе цель — селектор видимого элемента.
+ *
+ * Condition of a WAIT command. The agent waits for the event that satisfies the condition and answers right away;
+ * the command timeout is only an upper bound. Notation in the {@code wait} step target ({@link #parse(String)}):
+ * {@code visible:<selector>}, {@code text:<text>}, {@code url:<glob>}, {@code networkidle},
+ * {@code load}/{@code domcontentloaded}/{@code result}; otherwise the target is the selector of a visible element.
+ *
+ * @param kind  вид условия / condition kind
+ * @param value селектор, текст, glob URL или состояние загрузки / selector, text, URL glob or load state
+ */
+public record WaitCondition(Kind kind, String value) {
+    private static final String VISIBLE_PREFIX = "visible:";
+    private static final String TEXT_PREFIX = "text:";
+    private static final String URL_PREFIX = "url:";
+    private static final String NETWORK_IDLE = "networkidle";
+    private static final String DOM_CONTENT_LOADED = "domcontentloaded";
+
+    public enum Kind {
+        /** Элемент по селектору виден / the element matching the selector is visible */
+        SELECTOR_VISIBLE,
+        /** Текст виден на странице / the text is visible on the page */
+        TEXT_PRESENT,
+        /** Нет сетевых запросов 500 мс / no network requests for 500 ms */
+        NETWORK_IDLE,
+        /** URL страницы соответствует glob / the page URL matches the glob */
+        URL_MATCHES,
+        /** Достигнуто состояние загрузки {@code load} или {@code domcontentloaded} / load state reached */
+        PAGE_LOADED
+    }
+
+    public WaitCondition {
+        Objects.requireNonNull(kind, "kind cannot be null");
+        if (kind == Kind.NETWORK_IDLE) {
+            value = NETWORK_IDLE;
+        } else if (kind == Kind.PAGE_LOADED && (value == null || value.isBlank())) {
+            value = DOM_CONTENT_LOADED;
+        } else if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException(kind + " wait condition requires a value");
+        }
+    }
+
+    public static WaitCondition visible(String selector) {
+        return new WaitCondition(Kind.SELECTOR_VISIBLE, selector);
+    }
+
+    public static WaitCondition text(String text) {
+        return new WaitCondition(Kind.TEXT_PRESENT, text);
+    }
+
+    public static WaitCondition networkIdle() {
+        return new WaitCondition(Kind.NETWORK_IDLE, null);
+    }
+
+    public static WaitCondition url(String glob) {
+        return new WaitCondition(Kind.URL_MATCHES, glob);
+    }
+
+    public static WaitCondition pageLoaded() {
+        return new WaitCondition(Kind.PAGE_LOADED, DOM_CONTENT_LOADED);
+    }
+
+    /**
+     * Условие из цели шага; null или пустая цель — загрузка DOM.
+     *
+     * Condition from a step target; a null or blank target means DOM content loaded.
+     */
+    public static WaitCondition parse(String target) {
+        if (target == null || target.isBlank() || target.equals("result") || target.equals(DOM_CONTENT_LOADED)) {
+            return pageLoaded();
+        }
+        if (target.equals("load")) {
+            return new WaitCondition(Kind.PAGE_LOADED, "load");
+        }
+        if (target.equals(NETWORK_IDLE)) {
+            return networkIdle();
+        }
+        if (target.startsWith(VISIBLE_PREFIX)) {
+            return visible(target.substring(VISIBLE_PREFIX.length()).trim());
+        }
+        if (target.startsWith(TEXT_PREFIX)) {
+            return text(target.substring(TEXT_PREFIX.length()).trim());
+        }
+        if (target.startsWith(URL_PREFIX)) {
+            return url(target.substring(URL_PREFIX.length()).trim());
+        }
+        return visible(target);
+    }
+
+    /**
+     * Цель команды для агентов, которые знают только строку условия: селектор или состояние загрузки.
+     *
+     * Command target for agents that only know the condition string: a selector or a load state.
+     */
+    public String legacyTarget() {
+        return switch (kind) {
+            case SELECTOR_VISIBLE, NETWORK_IDLE, PAGE_LOADED -> value;
+            case TEXT_PRESENT -> TEXT_PREFIX + value;
+            case URL_MATCHES -> URL_PREFIX + value;
+        };
+    }
+}
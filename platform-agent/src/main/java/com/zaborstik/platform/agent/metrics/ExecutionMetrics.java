@@ -0,0 +1,151 @@
+package com.zaborstik.platform.agent.metrics;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Реестр метрик горячего пути исполнения: задержки шагов и команд агента, повторы,
+ * инициализация браузера, ожидание в очереди и задержка асинхронной доставки колбэков.
+ * <p>
+ * Запись не выделяет память: гистограммы по типам команд создаются заранее, гистограмма операции —
+ * при первом её появлении. Гистограммы накопительные (без затухания), как того ожидают сборщики
+ * вроде Prometheus; {@link #snapshot()} возвращает перцентили, а {@link PrometheusTextFormat} — текст для экспорта.
+ * <p>
+ * Registry of execution hot-path metrics: step and agent command latencies, retries,
+ * browser initialization, queue wait and asynchronous callback delivery lag.
+ * <p>
+ * Recording is allocation-free: command type histograms are created up front, an operation histogram
+ * on the first occurrence of that operation. Histograms are cumulative (no decay), as scrapers such as
+ * Prometheus expect; {@link #snapshot()} exposes percentiles and {@link PrometheusTextFormat} the export text.
+ */
+public final class ExecutionMetrics {
+    private static final AgentCommand.CommandType[] COMMAND_TYPES = AgentCommand.CommandType.values();
+
+    private final ConcurrentMap<String, LatencyHistogram> stepLatency = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> retries = new ConcurrentHashMap<>();
+    private final LatencyHistogram[] commandLatency = new LatencyHistogram[COMMAND_TYPES.length];
+    private final LatencyHistogram initLatency = new LatencyHistogram(0);
+    private final LatencyHistogram queueWait = new LatencyHistogram(0);
+    private final ConcurrentMap<String, LatencyHistogram> callbackLag = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> callbackDropped = new ConcurrentHashMap<>();
+
+    public ExecutionMetrics() {
+        for (int i = 0; i < commandLatency.length; i++) {
+            commandLatency[i] = new LatencyHistogram(0);
+        }
+    }
+
+    /**
+     * Длительность шага со всеми попытками.
+     *
+     * Step duration including all attempts.
+     */
+    public void recordStep(String operation, long latencyMs) {
+        histogram(operation).record(latencyMs);
+    }
+
+    /**
+     * Длительность одного запроса к агенту.
+     *
+     * Duration of a single agent request.
+     */
+    public void recordCommand(AgentCommand.CommandType type, long latencyMs) {
+        Objects.requireNonNull(type, "type cannot be null");
+        commandLatency[type.ordinal()].record(latencyMs);
+    }
+
+    public void recordRetry(String operation) {
+        Objects.requireNonNull(operation, "operation cannot be null");
+        counter(retries, operation).increment();
+    }
+
+    /**
+     * Длительность {@code AgentClient.initialize}.
+     *
+     * Duration of {@code AgentClient.initialize}.
+     */
+    public void recordInit(long latencyMs) {
+        initLatency.record(latencyMs);
+    }
+
+    /**
+     * Время от постановки плана в очередь до начала выполнения.
+     *
+     * Time from queueing a plan to the start of its execution.
+     */
+    public void recordQueueWait(long latencyMs) {
+        queueWait.record(latencyMs);
+    }
+
+    /**
+     * Время от публикации события колбэка до его доставки слушателю {@code listener}.
+     *
+     * Time from publishing a callback event to its delivery to {@code listener}.
+     */
+    public void recordCallbackLag(String listener, long lagMs) {
+        Objects.requireNonNull(listener, "listener cannot be null");
+        histogram(callbackLag, listener).record(lagMs);
+    }
+
+    /**
+     * Событие колбэка отброшено: буфер слушателя {@code listener} переполнен.
+     *
+     * A callback event was dropped because the buffer of {@code listener} was full.
+     */
+    public void recordCallbackDrop(String listener) {
+        Objects.requireNonNull(listener, "listener cannot be null");
+        counter(callbackDropped, listener).increment();
+    }
+
+    /**
+     * Срез всех метрик; команды без наблюдений не включаются.
+     *
+     * Snapshot of all metrics; command types without observations are omitted.
+     */
+    public MetricsSnapshot snapshot() {
+        Map<String, HistogramSnapshot> steps = new TreeMap<>();
+        stepLatency.forEach((operation, histogram) -> steps.put(operation, histogram.snapshot()));
+        Map<String, HistogramSnapshot> commands = new TreeMap<>();
+        for (AgentCommand.CommandType type : COMMAND_TYPES) {
+            HistogramSnapshot snapshot = commandLatency[type.ordinal()].snapshot();
+            if (snapshot.count() > 0) {
+                commands.put(type.name(), snapshot);
+            }
+        }
+        Map<String, Long> retryCounts = new TreeMap<>();
+        retries.forEach((operation, counter) -> retryCounts.put(operation, counter.sum()));
+        Map<String, HistogramSnapshot> lag = new TreeMap<>();
+        callbackLag.forEach((listener, histogram) -> lag.put(listener, histogram.snapshot()));
+        Map<String, Long> dropped = new TreeMap<>();
+        callbackDropped.forEach((listener, counter) -> dropped.put(listener, counter.sum()));
+        return new MetricsSnapshot(steps, commands, retryCounts, initLatency.snapshot(), queueWait.snapshot(),
+            lag, dropped);
+    }
+
+    private LatencyHistogram histogram(String operation) {
+        Objects.requireNonNull(operation, "operation cannot be null");
+        return histogram(stepLatency, operation);
+    }
+
+    private static LatencyHistogram histogram(ConcurrentMap<String, LatencyHistogram> histograms, String key) {
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(key, ignored -> new LatencyHistogram(0));
+        }
+        return histogram;
+    }
+
+    private static LongAdder counter(ConcurrentMap<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, ignored -> new LongAdder());
+        }
+        return counter;
+    }
+}
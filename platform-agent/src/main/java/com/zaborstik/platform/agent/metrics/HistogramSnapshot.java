@@ -0,0 +1,22 @@
+package com.zaborstik.platform.agent.metrics;
+
+/**
+ * Срез {@link LatencyHistogram}. Перцентили — верхние границы корзин (точность ~25%).
+ *
+ * Snapshot of a {@link LatencyHistogram}. Percentiles are bucket upper bounds (~25% precision).
+ *
+ * @param count число наблюдений / number of observations
+ * @param sumMs сумма наблюдений, мс / sum of observations, ms
+ * @param maxMs максимальное наблюдение, мс / largest observation, ms
+ * @param p50Ms медиана, мс / median, ms
+ * @param p90Ms 90-й перцентиль, мс / 90th percentile, ms
+ * @param p95Ms 95-й перцентиль, мс / 95th percentile, ms
+ * @param p99Ms 99-й перцентиль, мс / 99th percentile, ms
+ */
+public record HistogramSnapshot(long count, long sumMs, long maxMs,
+                                long p50Ms, long p90Ms, long p95Ms, long p99Ms) {
+
+    public static HistogramSnapshot empty() {
+        return new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0);
+    }
+}
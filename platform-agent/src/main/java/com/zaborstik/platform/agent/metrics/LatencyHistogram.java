@@ -0,0 +1,182 @@
+package com.zaborstik.platform.agent.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Потокобезопасная гистограмма задержек с логарифмическими корзинами (шаг ~25%, от 1 мс до ~15 минут).
+ * Чтобы перцентили следовали за текущей нагрузкой, счётчики всех корзин делятся пополам
+ * каждые {@code decayInterval} записей.
+ *
+ * Thread-safe latency histogram with logarithmic buckets (~25% step, 1 ms to ~15 minutes).
+ * To make percentiles follow live traffic, every bucket is halved each {@code decayInterval} records.
+ */
+public final class LatencyHistogram {
+    private static final double GROWTH = 1.25;
+    private static final long[] UPPER_BOUNDS = buildBounds();
+
+    private final AtomicLongArray buckets = new AtomicLongArray(UPPER_BOUNDS.length);
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private final long decayInterval;
+
+    public LatencyHistogram() {
+        this(1_000);
+    }
+
+    /**
+     * @param decayInterval число записей между делениями пополам, 0 — без затухания /
+     *                      records between halvings, 0 disables decay
+     */
+    public LatencyHistogram(long decayInterval) {
+        if (decayInterval < 0) {
+            throw new IllegalArgumentException("decayInterval must be >= 0");
+        }
+        this.decayInterval = decayInterval;
+    }
+
+    /**
+     * Записывает наблюдение; не выделяет память.
+     *
+     * Records an observation; allocation-free.
+     */
+    public void record(long latencyMs) {
+        long value = Math.max(0, latencyMs);
+        buckets.incrementAndGet(bucketIndex(value));
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+        long total = recorded.incrementAndGet();
+        if (decayInterval > 0 && total % decayInterval == 0) {
+            decay();
+        }
+    }
+
+    /**
+     * Текущее (с учётом затухания) число наблюдений.
+     *
+     * Current (decayed) number of observations.
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Сумма (с учётом затухания) наблюдений в миллисекундах.
+     *
+     * Sum of (decayed) observations in milliseconds.
+     */
+    public long sum() {
+        return sum.get();
+    }
+
+    /**
+     * Максимальное наблюдение за всё время; затуханию не подвержено.
+     *
+     * Largest observation ever recorded; not affected by decay.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Согласованный срез счётчика, суммы и основных перцентилей.
+     *
+     * Consistent view of count, sum and the main percentiles.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = copyBuckets();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return new HistogramSnapshot(total, sum.get(), max.get(),
+            percentile(counts, total, 0.50),
+            percentile(counts, total, 0.90),
+            percentile(counts, total, 0.95),
+            percentile(counts, total, 0.99));
+    }
+
+    /**
+     * Верхняя граница корзины, в которую попадает перцентиль; 0, если наблюдений нет.
+     *
+     * Upper bound of the bucket holding the percentile; 0 when there are no observations.
+     *
+     * @param quantile значение от 0 до 1 / value from 0 to 1
+     */
+    public long percentile(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0) {
+            throw new IllegalArgumentException("quantile must be within [0, 1]");
+        }
+        long[] counts = copyBuckets();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return percentile(counts, total, quantile);
+    }
+
+    private long[] copyBuckets() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    private static long percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return UPPER_BOUNDS[i];
+            }
+        }
+        return UPPER_BOUNDS[UPPER_BOUNDS.length - 1];
+    }
+
+    private void decay() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.updateAndGet(i, value -> value >> 1);
+        }
+        sum.updateAndGet(value -> value >> 1);
+    }
+
+    private static int bucketIndex(long latencyMs) {
+        int low = 0;
+        int high = UPPER_BOUNDS.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (UPPER_BOUNDS[mid] >= latencyMs) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private static long[] buildBounds() {
+        long[] bounds = new long[62];
+        double bound = 1.0;
+        long previous = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            long value = Math.max(previous + 1, Math.round(bound));
+            bounds[i] = value;
+            previous = value;
+            bound *= GROWTH;
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,37 @@
+package com.zaborstik.platform.agent.metrics;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Неизменяемый срез {@link ExecutionMetrics}.
+ *
+ * Immutable snapshot of {@link ExecutionMetrics}.
+ *
+ * @param stepLatency     длительность шага (все попытки) по {@code system.action.internalname} /
+ *                        step duration (all attempts) per {@code system.action.internalname}
+ * @param commandLatency  длительность запроса к агенту по типу команды / agent request duration per command type
+ * @param retries         число повторов по операции / retry count per operation
+ * @param initLatency     длительность инициализации браузера / browser initialization duration
+ * @param queueWait       ожидание плана в очереди исполнителя / plan wait time in the executor queue
+ * @param callbackLag     задержка доставки колбэков по слушателю / callback delivery lag per listener
+ * @param callbackDropped отброшенные события колбэков по слушателю / dropped callback events per listener
+ */
+public record MetricsSnapshot(Map<String, HistogramSnapshot> stepLatency,
+                              Map<String, HistogramSnapshot> commandLatency,
+                              Map<String, Long> retries,
+                              HistogramSnapshot initLatency,
+                              HistogramSnapshot queueWait,
+                              Map<String, HistogramSnapshot> callbackLag,
+                              Map<String, Long> callbackDropped) {
+
+    public MetricsSnapshot {
+        stepLatency = stepLatency != null ? Map.copyOf(stepLatency) : Map.of();
+        commandLatency = commandLatency != null ? Map.copyOf(commandLatency) : Map.of();
+        retries = retries != null ? Map.copyOf(retries) : Map.of();
+        Objects.requireNonNull(initLatency, "initLatency cannot be null");
+        Objects.requireNonNull(queueWait, "queueWait cannot be null");
+        callbackLag = callbackLag != null ? Map.copyOf(callbackLag) : Map.of();
+        callbackDropped = callbackDropped != null ? Map.copyOf(callbackDropped) : Map.of();
+    }
+}
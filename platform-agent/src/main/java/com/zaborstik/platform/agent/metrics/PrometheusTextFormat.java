@@ -0,0 +1,96 @@
+package com.zaborstik.platform.agent.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Представляет {@link MetricsSnapshot} в текстовом формате экспозиции Prometheus (версия 0.0.4).
+ * Гистограммы задержек выводятся как summary с квантилями 0.5/0.9/0.95/0.99 и сериями {@code _sum}/{@code _count}.
+ *
+ * Renders a {@link MetricsSnapshot} in the Prometheus text exposition format (version 0.0.4).
+ * Latency histograms are written as summaries with 0.5/0.9/0.95/0.99 quantiles and {@code _sum}/{@code _count} series.
+ */
+public final class PrometheusTextFormat {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String STEP_LATENCY = "platform_step_latency_milliseconds";
+    private static final String COMMAND_LATENCY = "platform_agent_command_latency_milliseconds";
+    private static final String INIT_LATENCY = "platform_agent_init_latency_milliseconds";
+    private static final String QUEUE_WAIT = "platform_executor_queue_wait_milliseconds";
+    private static final String RETRIES = "platform_step_retries_total";
+    private static final String CALLBACK_LAG = "platform_callback_lag_milliseconds";
+    private static final String CALLBACK_DROPPED = "platform_callback_dropped_total";
+
+    private PrometheusTextFormat() {
+    }
+
+    public static String format(MetricsSnapshot snapshot) {
+        StringBuilder out = new StringBuilder(1024);
+        writeSummaries(out, STEP_LATENCY, "Plan step duration including retries", "operation",
+            snapshot.stepLatency());
+        writeSummaries(out, COMMAND_LATENCY, "Agent request duration per command type", "command",
+            snapshot.commandLatency());
+        writeSummaries(out, INIT_LATENCY, "Browser initialization duration", null,
+            Map.of("", snapshot.initLatency()));
+        writeSummaries(out, QUEUE_WAIT, "Plan wait time before execution starts", null,
+            Map.of("", snapshot.queueWait()));
+
+        writeSummaries(out, CALLBACK_LAG, "Delay between publishing a step callback and its delivery", "listener",
+            snapshot.callbackLag());
+
+        writeCounters(out, RETRIES, "Step retries per operation", "operation", snapshot.retries());
+        writeCounters(out, CALLBACK_DROPPED, "Step callback events dropped on a full listener buffer", "listener",
+            snapshot.callbackDropped());
+        return out.toString();
+    }
+
+    private static void writeCounters(StringBuilder out, String name, String help, String labelName,
+                                      Map<String, Long> counters) {
+        header(out, name, help, "counter");
+        new TreeMap<>(counters).forEach((labelValue, count) -> {
+            out.append(name).append('{').append(labelName).append("=\"").append(escape(labelValue)).append("\"} ")
+                .append(count).append('\n');
+        });
+    }
+
+    private static void writeSummaries(StringBuilder out, String name, String help, String labelName,
+                                       Map<String, HistogramSnapshot> histograms) {
+        header(out, name, help, "summary");
+        new TreeMap<>(histograms).forEach((labelValue, histogram) -> {
+            String labels = labelName != null ? labelName + "=\"" + escape(labelValue) + "\"" : "";
+            sample(out, name, labels, "0.5", histogram.p50Ms());
+            sample(out, name, labels, "0.9", histogram.p90Ms());
+            sample(out, name, labels, "0.95", histogram.p95Ms());
+            sample(out, name, labels, "0.99", histogram.p99Ms());
+            out.append(name).append("_sum");
+            braces(out, labels);
+            out.append(' ').append(histogram.sumMs()).append('\n');
+            out.append(name).append("_count");
+            braces(out, labels);
+            out.append(' ').append(histogram.count()).append('\n');
+        });
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String quantile, long value) {
+        out.append(name).append('{');
+        if (!labels.isEmpty()) {
+            out.append(labels).append(',');
+        }
+        out.append("quantile=\"").append(quantile).append("\"} ").append(value).append('\n');
+    }
+
+    private static void braces(StringBuilder out, String labels) {
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,20 @@
+package com.zaborstik.platform.agent.pool;
+
+import com.zaborstik.platform.agent.client.CircuitBreaker;
+
+/**
+ * Снимок состояния агента в {@link AgentPool}.
+ *
+ * Snapshot of an agent state in {@link AgentPool}.
+ *
+ * @param url           адрес агента / agent URL
+ * @param inFlight      выполняющихся на агенте планов / plans running on the agent
+ * @param latencyMs     EWMA задержки шага, 0 — ещё нет замеров / step latency EWMA, 0 when not measured yet
+ * @param healthy       проходит проверку {@code /health} / passes the {@code /health} check
+ * @param draining      выводится из пула и не получает новых сессий / being removed and gets no new sessions
+ * @param sessionsTotal сессий, выданных агенту / sessions routed to the agent
+ * @param circuit       состояние выключателя клиента / client circuit breaker state
+ */
+public record AgentEndpointStats(String url, int inFlight, double latencyMs, boolean healthy, boolean draining,
+                                 long sessionsTotal, CircuitBreaker.State circuit) {
+}
@@ -0,0 +1,405 @@
+package com.zaborstik.platform.agent.pool;
+
+import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.client.CircuitBreaker;
+import com.zaborstik.platform.agent.client.AgentException;
+import com.zaborstik.platform.agent.service.AgentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Пул Playwright-агентов для горизонтального масштабирования исполнения.
+ * Новая сессия (запуск плана, {@link #acquire()}) направляется на здоровый агент со свободной сессией
+ * ({@link AgentPoolOptions#maxSessionsPerAgent()}) и наименьшей оценкой {@code (inFlight + 1) * latency}, где
+ * inFlight — выполняющиеся на агенте планы, а latency — EWMA задержки шага (для агента без замеров — средняя по пулу).
+ * Каждая аренда получает свой {@link AgentService} с отдельной сессией браузера на агенте
+ * ({@link AgentClient#withSession(String)}), поэтому одновременные планы не делят страницу; освобождённые сессии
+ * переиспользуются следующими арендами.
+ * Фоновая проверка ({@link #start()}) вызывает {@link AgentClient#isAvailable()}; после
+ * {@link AgentPoolOptions#unhealthyAfter()} неуспешных проверок подряд агент не получает сессий до первой успешной.
+ * Агент с разомкнутым выключателем клиента ({@link AgentClient#circuitState()}) исключается сразу, не дожидаясь
+ * проверок, и возвращается в маршрутизацию, когда выключатель переходит в полуоткрытое состояние.
+ * {@link #removeEndpoint(String)} выводит агент плавно: новые сессии на него не идут, а после завершения
+ * выполняющихся его сессии браузера закрываются.
+ *
+ * Pool of Playwright agents for horizontal scaling of execution.
+ * A new session (a plan run, {@link #acquire()}) is routed to a healthy agent with a free session
+ * ({@link AgentPoolOptions#maxSessionsPerAgent()}) and the lowest {@code (inFlight + 1) * latency} score, where
+ * inFlight is the number of plans running on the agent and latency is the step latency EWMA (the pool average for
+ * an agent without samples). Every lease gets its own {@link AgentService} with a separate browser session on the
+ * agent ({@link AgentClient#withSession(String)}), so concurrent plans never share a page; released sessions are
+ * reused by later leases.
+ * The background check ({@link #start()}) calls {@link AgentClient#isAvailable()}; after
+ * {@link AgentPoolOptions#unhealthyAfter()} consecutive failed checks an agent gets no sessions until a check passes.
+ * An agent whose client circuit breaker is open ({@link AgentClient#circuitState()}) is excluded immediately, without
+ * waiting for checks, and is routed to again once the breaker turns half-open.
+ * {@link #removeEndpoint(String)} drains an agent gracefully: it gets no new sessions, and once the running ones
+ * finish its browser sessions are closed.
+ */
+public class AgentPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(AgentPool.class);
+
+    private final Function<String, AgentClient> clientFactory;
+    private final Function<AgentClient, AgentService> serviceFactory;
+    private final AgentPoolOptions options;
+    private final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService probes;
+
+    /**
+     * Пул, в котором сервис каждого агента — копия {@code template} ({@link AgentService#withClient(AgentClient)}).
+     *
+     * Pool where the service of every agent is a copy of {@code template} ({@link AgentService#withClient(AgentClient)}).
+     */
+    public AgentPool(List<String> urls, AgentService template, AgentPoolOptions options) {
+        this(urls, AgentClient::new, Objects.requireNonNull(template, "template cannot be null")::withClient, options);
+    }
+
+    /**
+     * @param urls           адреса агентов / agent URLs
+     * @param clientFactory  клиент по адресу агента / client for an agent URL
+     * @param serviceFactory сервис для клиента агента / service for an agent client
+     */
+    public AgentPool(List<String> urls, Function<String, AgentClient> clientFactory,
+                     Function<AgentClient, AgentService> serviceFactory, AgentPoolOptions options) {
+        Objects.requireNonNull(urls, "urls cannot be null");
+        this.clientFactory = Objects.requireNonNull(clientFactory, "clientFactory cannot be null");
+        this.serviceFactory = Objects.requireNonNull(serviceFactory, "serviceFactory cannot be null");
+        this.options = Objects.requireNonNull(options, "options cannot be null");
+        for (String url : urls) {
+            addEndpoint(url);
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "agent-pool-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.probes = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Запускает фоновые проверки здоровья; первая выполняется сразу.
+     *
+     * Starts background health checks; the first one runs immediately.
+     */
+    public void start() {
+        long intervalMs = options.healthCheckInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::checkHealthQuietly, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Выдаёт сессию на наименее загруженном здоровом агенте.
+     *
+     * Leases a session on the least loaded healthy agent.
+     *
+     * @throws AgentException если нет здорового агента со свободной сессией /
+     *                        when no healthy agent has a free session
+     */
+    public Lease acquire() throws AgentException {
+        return tryAcquire().orElseThrow(() ->
+            new AgentException("No healthy agent available in pool of " + endpoints.size()));
+    }
+
+    /**
+     * Как {@link #acquire()}, но без исключения. Same as {@link #acquire()} without an exception.
+     */
+    public Optional<Lease> tryAcquire() {
+        while (true) {
+            Endpoint endpoint = selectEndpoint();
+            if (endpoint == null) {
+                return Optional.empty();
+            }
+            if (endpoint.inFlight.incrementAndGet() <= options.maxSessionsPerAgent() && endpoint.acceptsSessions()) {
+                AgentService service;
+                try {
+                    service = endpoint.takeSession();
+                } catch (RuntimeException e) {
+                    endpoint.release();
+                    throw e;
+                }
+                endpoint.sessions.increment();
+                return Optional.of(new Lease(endpoint, service));
+            }
+            // Агент заняли или начали выводить между выбором и захватом /
+            // the agent was filled up or started draining after selection
+            endpoint.release();
+        }
+    }
+
+    private Endpoint selectEndpoint() {
+        double knownLatency = 0.0;
+        int known = 0;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.acceptsSessions() && endpoint.latencyMs > 0.0) {
+                knownLatency += endpoint.latencyMs;
+                known++;
+            }
+        }
+        double defaultLatency = known > 0 ? knownLatency / known : 1.0;
+
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Endpoint endpoint : endpoints) {
+            int inFlight = endpoint.inFlight.get();
+            if (!endpoint.acceptsSessions() || inFlight >= options.maxSessionsPerAgent()) {
+                continue;
+            }
+            double latency = endpoint.latencyMs > 0.0 ? endpoint.latencyMs : defaultLatency;
+            double score = (inFlight + 1) * Math.max(latency, 1.0);
+            if (best == null || score < bestScore || (score == bestScore && inFlight < best.inFlight.get())) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Добавляет агента; он сразу получает сессии, пока проверка не покажет обратное.
+     *
+     * Adds an agent; it gets sessions right away unless a check says otherwise.
+     */
+    public void addEndpoint(String url) {
+        Objects.requireNonNull(url, "url cannot be null");
+        synchronized (endpoints) {
+            if (find(url) != null) {
+                throw new IllegalArgumentException("Agent already in pool: " + url);
+            }
+            AgentClient client = clientFactory.apply(url);
+            endpoints.add(new Endpoint(url, client, serviceFactory.apply(client)));
+        }
+        log.info("Agent {} added to pool", url);
+    }
+
+    /**
+     * Выводит агента из пула: новые сессии на него не направляются, future завершается, когда закончатся
+     * выполняющиеся на нём планы и будут закрыты его браузерные сессии.
+     *
+     * Drains an agent out of the pool: no new sessions are routed to it, the future completes once the plans
+     * running on it finish and its browser sessions are closed.
+     */
+    public CompletableFuture<Void> removeEndpoint(String url) {
+        Endpoint endpoint;
+        synchronized (endpoints) {
+            endpoint = find(url);
+            if (endpoint == null) {
+                throw new IllegalArgumentException("Agent not in pool: " + url);
+            }
+            endpoint.draining = true;
+        }
+        log.info("Draining agent {} ({} plans in flight)", url, endpoint.inFlight.get());
+        if (endpoint.inFlight.get() == 0) {
+            endpoint.finishDrain();
+        }
+        return endpoint.drained;
+    }
+
+    private Endpoint find(String url) {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.url.equals(url)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет всех агентов параллельно и ждёт результатов.
+     *
+     * Checks all agents in parallel and waits for the results.
+     */
+    public void checkHealth() {
+        List<CompletableFuture<Void>> checks = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.draining) {
+                checks.add(CompletableFuture.runAsync(() -> probe(endpoint), probes));
+            }
+        }
+        CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void checkHealthQuietly() {
+        try {
+            checkHealth();
+        } catch (RuntimeException e) {
+            log.warn("Agent pool health check failed: {}", e.getMessage());
+        }
+    }
+
+    private void probe(Endpoint endpoint) {
+        boolean available;
+        try {
+            available = endpoint.client.isAvailable();
+        } catch (RuntimeException e) {
+            available = false;
+        }
+        if (available) {
+            endpoint.failedChecks.set(0);
+            if (!endpoint.healthy) {
+                log.info("Agent {} is healthy again", endpoint.url);
+                endpoint.healthy = true;
+            }
+        } else if (endpoint.failedChecks.incrementAndGet() >= options.unhealthyAfter() && endpoint.healthy) {
+            log.warn("Agent {} failed {} health checks, excluded from routing", endpoint.url,
+                endpoint.failedChecks.get());
+            endpoint.healthy = false;
+        }
+    }
+
+    public List<AgentEndpointStats> stats() {
+        List<AgentEndpointStats> stats = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            stats.add(new AgentEndpointStats(endpoint.url, endpoint.inFlight.get(), endpoint.latencyMs,
+                endpoint.healthy, endpoint.draining, endpoint.sessions.sum(), endpoint.circuitState()));
+        }
+        return stats;
+    }
+
+    /**
+     * Останавливает проверки здоровья; сессии агентов не закрываются.
+     *
+     * Stops health checks; agent sessions are not closed.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        probes.shutdownNow();
+    }
+
+    /**
+     * Сессия на агенте пула; {@link #close()} освобождает её.
+     *
+     * Session on a pool agent; {@link #close()} releases it.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Endpoint endpoint;
+        private final AgentService service;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(Endpoint endpoint, AgentService service) {
+            this.endpoint = endpoint;
+            this.service = service;
+        }
+
+        /**
+         * Сервис сессии, принадлежащей только этой аренде. Service of a session owned by this lease alone.
+         */
+        public AgentService service() {
+            return service;
+        }
+
+        public String url() {
+            return endpoint.url;
+        }
+
+        /**
+         * Учитывает задержку шага в EWMA агента.
+         *
+         * Feeds a step latency into the agent EWMA.
+         */
+        public void recordLatency(long latencyMs) {
+            endpoint.recordLatency(Math.max(0, latencyMs));
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                endpoint.idleSessions.addFirst(service);
+                endpoint.release();
+            }
+        }
+    }
+
+    private final class Endpoint {
+        private final String url;
+        private final AgentClient client;
+        private final Deque<AgentService> idleSessions = new ConcurrentLinkedDeque<>();
+        private final List<AgentService> allSessions = new CopyOnWriteArrayList<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger failedChecks = new AtomicInteger();
+        private final LongAdder sessions = new LongAdder();
+        private final CompletableFuture<Void> drained = new CompletableFuture<>();
+        private final AtomicBoolean drainFinished = new AtomicBoolean();
+        private volatile double latencyMs;
+        private volatile boolean healthy = true;
+        private volatile boolean draining;
+
+        private Endpoint(String url, AgentClient client, AgentService service) {
+            this.url = url;
+            this.client = client;
+            Objects.requireNonNull(service, "service cannot be null");
+            idleSessions.add(service);
+            allSessions.add(service);
+        }
+
+        /**
+         * Свободная сессия агента; если все заняты — новая сессия на том же агенте.
+         *
+         * A free session of the agent; when all of them are taken, a new session on the same agent.
+         */
+        AgentService takeSession() {
+            AgentService service = idleSessions.pollFirst();
+            if (service == null) {
+                service = Objects.requireNonNull(serviceFactory.apply(client.withSession("pool-" + UUID.randomUUID())),
+                    "service cannot be null");
+                allSessions.add(service);
+            }
+            return service;
+        }
+
+        boolean acceptsSessions() {
+            return healthy && !draining && circuitState() != CircuitBreaker.State.OPEN;
+        }
+
+        CircuitBreaker.State circuitState() {
+            CircuitBreaker.State state = client.circuitState();
+            return state != null ? state : CircuitBreaker.State.CLOSED;
+        }
+
+        synchronized void recordLatency(long sampleMs) {
+            latencyMs = latencyMs == 0.0
+                ? sampleMs
+                : latencyMs + options.latencyAlpha() * (sampleMs - latencyMs);
+        }
+
+        void release() {
+            if (inFlight.decrementAndGet() == 0 && draining) {
+                finishDrain();
+            }
+        }
+
+        void finishDrain() {
+            if (!drainFinished.compareAndSet(false, true)) {
+                return;
+            }
+            endpoints.remove(this);
+            for (AgentService service : allSessions) {
+                try {
+                    service.close();
+                } catch (RuntimeException e) {
+                    log.warn("Failed to close session of drained agent {}: {}", url, e.getMessage());
+                }
+            }
+            log.info("Agent {} drained and removed from pool", url);
+            drained.complete(null);
+        }
+    }
+}
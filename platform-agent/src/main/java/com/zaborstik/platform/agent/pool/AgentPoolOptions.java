@@ -0,0 +1,43 @@
+package com.zaborstik.platform.agent.pool;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Параметры {@link AgentPool}.
+ *
+ * Options of {@link AgentPool}.
+ *
+ * @param healthCheckInterval интервал фоновой проверки {@code /health} каждого агента /
+ *                            interval of the background {@code /health} check of every agent
+ * @param unhealthyAfter      подряд неуспешных проверок, после которых агент исключается из маршрутизации /
+ *                            consecutive failed checks after which an agent is excluded from routing
+ * @param latencyAlpha        вес нового замера в EWMA задержки шага, (0, 1] /
+ *                            weight of a new sample in the step latency EWMA, (0, 1]
+ * @param maxSessionsPerAgent одновременных сессий браузера (и планов) на агенте; каждая аренда сверх первой
+ *                            открывает свою сессию агента / concurrent browser sessions (and plans) per agent;
+ *                            every lease beyond the first one opens its own agent session
+ */
+public record AgentPoolOptions(Duration healthCheckInterval, int unhealthyAfter, double latencyAlpha,
+                               int maxSessionsPerAgent) {
+
+    public AgentPoolOptions {
+        Objects.requireNonNull(healthCheckInterval, "healthCheckInterval cannot be null");
+        if (healthCheckInterval.isZero() || healthCheckInterval.isNegative()) {
+            throw new IllegalArgumentException("healthCheckInterval must be positive");
+        }
+        if (unhealthyAfter < 1) {
+            throw new IllegalArgumentException("unhealthyAfter must be >= 1");
+        }
+        if (!(latencyAlpha > 0.0 && latencyAlpha <= 1.0)) {
+            throw new IllegalArgumentException("latencyAlpha must be in (0, 1]");
+        }
+        if (maxSessionsPerAgent < 1) {
+            throw new IllegalArgumentException("maxSessionsPerAgent must be >= 1");
+        }
+    }
+
+    public static AgentPoolOptions defaults() {
+        return new AgentPoolOptions(Duration.ofSeconds(5), 2, 0.2, 1);
+    }
+}
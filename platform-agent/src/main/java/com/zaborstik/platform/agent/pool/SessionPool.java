@@ -0,0 +1,393 @@
+package com.zaborstik.platform.agent.pool;
+
+import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.client.AgentException;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import com.zaborstik.platform.agent.service.AgentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Пул тёплых браузерных сессий: для каждого базового URL заранее открыто несколько сессий агента
+ * ({@link AgentService#openSession()}), и план, получивший сессию ({@link #acquire(String)}), начинается без
+ * инициализации браузера. Сессии открываются и возвращаются в фоне: после аренды пул дополняется до цели, а
+ * вернувшаяся сессия сбрасывается ({@link SessionPoolOptions#resetMode()}) и снова ждёт плана первой в очереди (до
+ * {@link SessionPoolOptions#maxWarm()} ожидающих). Сессия после неуспешного плана, неудачного сброса или
+ * {@link SessionPoolOptions#maxPlansPerSession()} планов закрывается.
+ * Цель тёплых сессий следует за спросом: раз в {@link SessionPoolOptions#resizeInterval()} пик одновременных аренд
+ * за интервал сглаживается EWMA, а цель — его округление вверх в пределах
+ * [{@link SessionPoolOptions#minWarm()}, {@link SessionPoolOptions#maxWarm()}]; дольше всех ожидающие сессии сверх
+ * цели закрываются. Если тёплой сессии нет, план получает новую и инициализирует её сам.
+ *
+ * Pool of warm browser sessions: for every base URL a few agent sessions are opened ahead of time
+ * ({@link AgentService#openSession()}), and a plan that leases one ({@link #acquire(String)}) starts without browser
+ * initialization. Sessions are opened and returned in the background: after a lease the pool is refilled up to the
+ * target, and a returned session is reset ({@link SessionPoolOptions#resetMode()}) and waits for a plan again at the
+ * head of the queue (up to {@link SessionPoolOptions#maxWarm()} waiting). A session is closed after a failed plan,
+ * a failed reset or {@link SessionPoolOptions#maxPlansPerSession()} plans.
+ * The warm session target follows demand: every {@link SessionPoolOptions#resizeInterval()} the peak of concurrent
+ * leases over the interval is smoothed by an EWMA and the target is its ceiling within
+ * [{@link SessionPoolOptions#minWarm()}, {@link SessionPoolOptions#maxWarm()}]; the longest waiting sessions above
+ * the target are closed. Without a warm session a plan gets a fresh one and initializes it itself.
+ */
+public class SessionPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(SessionPool.class);
+    /** Спрос ниже порога считается отсутствующим / demand below the threshold counts as none */
+    private static final double IDLE_DEMAND = 0.05;
+
+    private final String defaultBaseUrl;
+    private final Function<String, AgentService> sessionFactory;
+    private final SessionPoolOptions options;
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+    private volatile boolean closed;
+
+    /**
+     * Пул, в котором каждая сессия — копия {@code template} со своей сессией агента
+     * ({@link AgentClient#withSession(String)}) и базовым URL.
+     *
+     * Pool where every session is a copy of {@code template} with its own agent session
+     * ({@link AgentClient#withSession(String)}) and base URL.
+     */
+    public SessionPool(AgentService template, SessionPoolOptions options) {
+        this(Objects.requireNonNull(template, "template cannot be null").baseUrl(),
+            baseUrl -> template.withClient(template.client().withSession("pool-" + UUID.randomUUID()), baseUrl),
+            options);
+    }
+
+    /**
+     * @param defaultBaseUrl базовый URL для {@link #acquire()}, его сессии прогреваются при {@link #start()} /
+     *                       base URL for {@link #acquire()}, its sessions are warmed up on {@link #start()}
+     * @param sessionFactory новая неоткрытая сессия для базового URL / new unopened session for a base URL
+     */
+    public SessionPool(String defaultBaseUrl, Function<String, AgentService> sessionFactory,
+                       SessionPoolOptions options) {
+        this.defaultBaseUrl = Objects.requireNonNull(defaultBaseUrl, "defaultBaseUrl cannot be null");
+        this.sessionFactory = Objects.requireNonNull(sessionFactory, "sessionFactory cannot be null");
+        this.options = Objects.requireNonNull(options, "options cannot be null");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-pool-resize");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workers = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Прогревает сессии базового URL по умолчанию и запускает пересчёт размера пула.
+     *
+     * Warms up the sessions of the default base URL and starts pool resizing.
+     */
+    public void start() {
+        refill(slot(defaultBaseUrl));
+        long intervalMs = options.resizeInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::resizeQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public Lease acquire() {
+        return acquire(defaultBaseUrl);
+    }
+
+    /**
+     * Выдаёт тёплую сессию базового URL, а если её нет — новую, которую план инициализирует сам; пул дополняется
+     * в фоне.
+     *
+     * Leases a warm session of the base URL or, when there is none, a fresh one the plan initializes itself; the
+     * pool is refilled in the background.
+     */
+    public Lease acquire(String baseUrl) {
+        Objects.requireNonNull(baseUrl, "baseUrl cannot be null");
+        if (closed) {
+            throw new IllegalStateException("Session pool is closed");
+        }
+        Slot slot = slot(baseUrl);
+        Session session;
+        synchronized (slot) {
+            session = slot.idle.pollFirst();
+            slot.leased++;
+            slot.peakLeased = Math.max(slot.peakLeased, slot.leased);
+            if (session == null) {
+                // Промах: цель сразу растёт до текущего спроса / a miss raises the target to the current demand
+                slot.target = Math.max(slot.target, Math.min(slot.leased, options.maxWarm()));
+            }
+        }
+        if (session != null) {
+            slot.warmHits.increment();
+        } else {
+            slot.coldStarts.increment();
+            try {
+                session = new Session(sessionFactory.apply(baseUrl));
+            } catch (RuntimeException e) {
+                synchronized (slot) {
+                    slot.leased--;
+                }
+                throw e;
+            }
+            log.debug("No warm session for {}, plan initializes a new one", baseUrl);
+        }
+        refill(slot);
+        return new Lease(slot, session, session.service.isSessionOpen());
+    }
+
+    /**
+     * Пересчитывает спрос и цель тёплых сессий каждого базового URL, закрывает лишние и дополняет недостающие.
+     *
+     * Recalculates demand and the warm session target of every base URL, closes surplus sessions and opens
+     * missing ones.
+     */
+    public void resize() {
+        for (Slot slot : slots.values()) {
+            List<Session> surplus = new ArrayList<>();
+            synchronized (slot) {
+                int observed = slot.peakLeased;
+                slot.peakLeased = slot.leased;
+                slot.demand += options.demandAlpha() * (observed - slot.demand);
+                int wanted = slot.demand < IDLE_DEMAND ? 0 : (int) Math.ceil(slot.demand);
+                slot.target = Math.max(options.minWarm(), Math.min(options.maxWarm(), wanted));
+                while (slot.idle.size() > slot.target) {
+                    surplus.add(slot.idle.pollLast());
+                }
+            }
+            for (Session session : surplus) {
+                submit(() -> closeQuietly(session));
+            }
+            refill(slot);
+        }
+    }
+
+    private void resizeQuietly() {
+        try {
+            resize();
+        } catch (RuntimeException e) {
+            log.warn("Session pool resize failed: {}", e.getMessage());
+        }
+    }
+
+    private Slot slot(String baseUrl) {
+        return slots.computeIfAbsent(baseUrl, Slot::new);
+    }
+
+    private void refill(Slot slot) {
+        if (closed) {
+            return;
+        }
+        int missing;
+        synchronized (slot) {
+            missing = slot.target - slot.idle.size() - slot.warming;
+            if (missing <= 0) {
+                return;
+            }
+            slot.warming += missing;
+        }
+        for (int i = 0; i < missing; i++) {
+            submit(() -> warm(slot));
+        }
+    }
+
+    private void warm(Slot slot) {
+        Session session = null;
+        try {
+            AgentService service = sessionFactory.apply(slot.baseUrl);
+            session = new Session(service);
+            AgentResponse response = service.openSession();
+            if (response == null || !response.success()) {
+                log.warn("Failed to warm up session for {}: {}", slot.baseUrl,
+                    response != null ? response.error() : "no response");
+                closeQuietly(session);
+                session = null;
+            }
+        } catch (AgentException | RuntimeException e) {
+            log.warn("Failed to warm up session for {}: {}", slot.baseUrl, e.getMessage());
+            if (session != null) {
+                closeQuietly(session);
+                session = null;
+            }
+        } finally {
+            boolean kept = false;
+            synchronized (slot) {
+                slot.warming--;
+                if (session != null && !closed && slot.idle.size() < slot.target) {
+                    slot.idle.addFirst(session);
+                    kept = true;
+                }
+            }
+            if (session != null && !kept) {
+                closeQuietly(session);
+            }
+        }
+    }
+
+    /**
+     * Возвращает сессию после плана: сброс и ожидание следующего плана либо закрытие.
+     *
+     * Takes a session back after a plan: reset and wait for the next plan, or close.
+     */
+    private void recycle(Slot slot, Session session) {
+        session.plans++;
+        AgentService service = session.service;
+        boolean reusable = !closed && service.isSessionOpen()
+            && (options.maxPlansPerSession() == 0 || session.plans < options.maxPlansPerSession());
+        if (reusable && service.resetSession(options.resetMode())) {
+            boolean kept = false;
+            synchronized (slot) {
+                // Сброшенная сессия дешевле новой: она остаётся, даже если пул уже дополнен до цели.
+                // A reset session is cheaper than a new one: it stays even if the pool was refilled to the target.
+                if (!closed && slot.idle.size() < options.maxWarm()) {
+                    slot.idle.addFirst(session);
+                    kept = true;
+                }
+            }
+            if (kept) {
+                slot.recycled.increment();
+                return;
+            }
+        }
+        slot.discarded.increment();
+        closeQuietly(session);
+        refill(slot);
+    }
+
+    private void submit(Runnable task) {
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private static void closeQuietly(Session session) {
+        try {
+            session.service.close();
+        } catch (RuntimeException e) {
+            log.warn("Failed to close pooled session: {}", e.getMessage());
+        }
+    }
+
+    public List<SessionPoolStats> stats() {
+        List<SessionPoolStats> stats = new ArrayList<>(slots.size());
+        for (Slot slot : slots.values()) {
+            synchronized (slot) {
+                stats.add(new SessionPoolStats(slot.baseUrl, slot.idle.size(), slot.leased, slot.warming,
+                    slot.target, slot.demand, slot.warmHits.sum(), slot.coldStarts.sum(), slot.recycled.sum(),
+                    slot.discarded.sum()));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Останавливает пересчёт и закрывает тёплые сессии; арендованные закрываются при возврате.
+     *
+     * Stops resizing and closes warm sessions; leased ones are closed when returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        List<Session> idle = new ArrayList<>();
+        for (Slot slot : slots.values()) {
+            synchronized (slot) {
+                idle.addAll(slot.idle);
+                slot.idle.clear();
+            }
+        }
+        idle.forEach(SessionPool::closeQuietly);
+        workers.shutdown();
+    }
+
+    /**
+     * Сессия, выданная плану; {@link #close()} возвращает её в пул.
+     *
+     * Session leased to a plan; {@link #close()} returns it to the pool.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Slot slot;
+        private final Session session;
+        private final boolean warm;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(Slot slot, Session session, boolean warm) {
+            this.slot = slot;
+            this.session = session;
+            this.warm = warm;
+        }
+
+        /**
+         * Сервис сессии; план запускается с {@code reuseSession}, чтобы тёплая сессия не инициализировалась заново.
+         *
+         * Service of the session; the plan runs with {@code reuseSession} so a warm session is not initialized again.
+         */
+        public AgentService service() {
+            return session.service;
+        }
+
+        public String baseUrl() {
+            return slot.baseUrl;
+        }
+
+        /**
+         * Была ли сессия открыта до плана. Whether the session was open before the plan.
+         */
+        public boolean warm() {
+            return warm;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                synchronized (slot) {
+                    slot.leased--;
+                }
+                submit(() -> recycle(slot, session));
+            }
+        }
+    }
+
+    private static final class Session {
+        private final AgentService service;
+        /** Выполненных планов; меняется только арендатором / completed plans; changed by the lessee only */
+        private int plans;
+
+        private Session(AgentService service) {
+            this.service = Objects.requireNonNull(service, "service cannot be null");
+        }
+    }
+
+    /** Сессии одного базового URL; изменяемые поля — под монитором слота / mutable fields are guarded by the slot */
+    private final class Slot {
+        private final String baseUrl;
+        private final Deque<Session> idle = new ArrayDeque<>();
+        private final LongAdder warmHits = new LongAdder();
+        private final LongAdder coldStarts = new LongAdder();
+        private final LongAdder recycled = new LongAdder();
+        private final LongAdder discarded = new LongAdder();
+        private int leased;
+        private int warming;
+        private int peakLeased;
+        private int target;
+        private double demand;
+
+        private Slot(String baseUrl) {
+            this.baseUrl = baseUrl;
+            this.target = options.minWarm();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.zaborstik.platform.agent.pool;
+
+import com.zaborstik.platform.agent.dto.SessionResetMode;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Параметры {@link SessionPool}.
+ *
+ * Options of {@link SessionPool}.
+ *
+ * @param minWarm            тёплых сессий на базовый URL при отсутствии спроса /
+ *                           warm sessions per base URL without demand
+ * @param maxWarm            предел тёплых сессий на базовый URL при пиковом спросе /
+ *                           limit of warm sessions per base URL under peak demand
+ * @param resetMode          сброс сессии при возврате в пул / session reset when it returns to the pool
+ * @param maxPlansPerSession планов на сессию, после которых она закрывается вместо возврата; 0 — без ограничения /
+ *                           plans per session after which it is closed instead of returned; 0 means unlimited
+ * @param resizeInterval     интервал пересчёта спроса и размера пула / interval of demand and pool size recalculation
+ * @param demandAlpha        вес нового замера в EWMA пика одновременных аренд, (0, 1] /
+ *                           weight of a new sample in the EWMA of peak concurrent leases, (0, 1]
+ */
+public record SessionPoolOptions(int minWarm, int maxWarm, SessionResetMode resetMode, int maxPlansPerSession,
+                                 Duration resizeInterval, double demandAlpha) {
+
+    public SessionPoolOptions {
+        Objects.requireNonNull(resetMode, "resetMode cannot be null");
+        Objects.requireNonNull(resizeInterval, "resizeInterval cannot be null");
+        if (minWarm < 0) {
+            throw new IllegalArgumentException("minWarm must be >= 0");
+        }
+        if (maxWarm < 1 || maxWarm < minWarm) {
+            throw new IllegalArgumentException("maxWarm must be >= 1 and >= minWarm");
+        }
+        if (maxPlansPerSession < 0) {
+            throw new IllegalArgumentException("maxPlansPerSession must be >= 0");
+        }
+        if (resizeInterval.isZero() || resizeInterval.isNegative()) {
+            throw new IllegalArgumentException("resizeInterval must be positive");
+        }
+        if (!(demandAlpha > 0.0 && demandAlpha <= 1.0)) {
+            throw new IllegalArgumentException("demandAlpha must be in (0, 1]");
+        }
+    }
+
+    public static SessionPoolOptions defaults() {
+        return new SessionPoolOptions(1, 4, SessionResetMode.CLEAR_STORAGE, 50, Duration.ofSeconds(10), 0.3);
+    }
+}
@@ -0,0 +1,22 @@
+package com.zaborstik.platform.agent.pool;
+
+/**
+ * Снимок сессий одного базового URL в {@link SessionPool}.
+ *
+ * Snapshot of the sessions of one base URL in {@link SessionPool}.
+ *
+ * @param baseUrl    базовый URL приложения / application base URL
+ * @param idle       тёплых сессий в ожидании плана / warm sessions waiting for a plan
+ * @param leased     сессий, выданных планам / sessions leased to plans
+ * @param warming    сессий, открывающихся в фоне / sessions being opened in the background
+ * @param target     текущая цель тёплых сессий / current warm session target
+ * @param demand     EWMA пика одновременных аренд / EWMA of peak concurrent leases
+ * @param warmHits   аренд тёплой сессии / leases of a warm session
+ * @param coldStarts аренд без тёплой сессии (инициализация в плане) /
+ *                   leases without a warm session (initialization inside the plan)
+ * @param recycled   сессий, сброшенных и возвращённых в пул / sessions reset and returned to the pool
+ * @param discarded  сессий, закрытых после плана / sessions closed after a plan
+ */
+public record SessionPoolStats(String baseUrl, int idle, int leased, int warming, int target, double demand,
+                               long warmHits, long coldStarts, long recycled, long discarded) {
+}
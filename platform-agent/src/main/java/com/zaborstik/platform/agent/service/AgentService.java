@@ -2,55 +2,217 @@ package com.zaborstik.platform.agent.service;
 
 import com.zaborstik.platform.agent.client.AgentClient;
 import com.zaborstik.platform.agent.client.AgentException;
+import com.zaborstik.platform.agent.dto.AgentBatchResponse;
 import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentErrorCode;
+import com.zaborstik.platform.agent.dto.AgentEvent;
 import com.zaborstik.platform.agent.dto.AgentResponse;
+import com.zaborstik.platform.agent.dto.HedgePolicy;
+import com.zaborstik.platform.agent.dto.NavigationPolicy;
 import com.zaborstik.platform.agent.dto.RetryPolicy;
+import com.zaborstik.platform.agent.dto.SessionResetMode;
 import com.zaborstik.platform.agent.dto.StepExecutionResult;
-import com.zaborstik.platform.core.domain.Action;
-import com.zaborstik.platform.core.domain.UIBinding;
+import com.zaborstik.platform.agent.dto.TimeoutPolicy;
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+import com.zaborstik.platform.agent.trace.Span;
 import com.zaborstik.platform.core.plan.Plan;
 import com.zaborstik.platform.core.plan.PlanStep;
-import com.zaborstik.platform.core.plan.PlanStepAction;
 import com.zaborstik.platform.core.resolver.Resolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Сервис для выполнения планов через UI-агента.
- * Преобразует PlanStep в AgentCommand и выполняет их через AgentClient.
+ * Компилирует план в AgentCommand ({@link PlanCompiler}) и выполняет их через AgentClient.
  * 
  * Service for executing plans through UI agent.
- * Converts PlanStep to AgentCommand and executes them through AgentClient.
+ * Compiles the plan into AgentCommands ({@link PlanCompiler}) and executes them through AgentClient.
  */
 public class AgentService {
     private static final Logger log = LoggerFactory.getLogger(AgentService.class);
+    private static final String[] COMMAND_SPAN_NAMES = commandSpanNames();
+    private static final String NAVIGATION_SKIPPED = "already on page";
+    private static final String ERROR_CODE = "errorCode";
+    private static final String WAITED_MS = "waitedMs";
+    private static final String SCREENSHOT = "screenshot";
+    private static final String SCREENSHOT_SHA256 = "screenshotSha256";
 
     private final AgentClient agentClient;
     private final Resolver resolver;
+    private final PlanCompiler compiler;
+    /** Настройки сервиса, копируются в {@link #withClient} / service options, copied by {@link #withClient} */
+    private final AgentServiceOptions options;
     private final String baseUrl;
     private final boolean headless;
     private final RetryPolicy retryPolicy;
+    private final TimeoutPolicy timeoutPolicy;
+    private final HedgePolicy hedgePolicy;
+    /**
+     * Вторая сессия агента для хедж-запросов; создаётся при первом хеджируемом чтении и закрывается вместе с сессией
+     * или при её сбросе. Second agent session for hedges; created on the first hedgeable read and closed with the
+     * session or on its reset.
+     */
+    private volatile HedgeMirror hedgeMirror;
+    private final Object mirrorLock = new Object();
+    private final HedgedRequestSender hedgedSender;
+    private final ExecutionMetrics metrics;
+    private final NavigationPolicy navigationPolicy;
+    /**
+     * Текущий способ отправки шагов с координатами; понижается, если агент не поддерживает выбранный.
+     * Current way of sending coordinate steps; downgraded when the agent does not support the chosen one.
+     */
+    private volatile CoordinateStepMode coordinateMode;
+    /**
+     * Объединять соседние шаги на одной цели ({@link CommandCoalescer}); выключается, если агент не поддерживает
+     * пакеты. Coalesce adjacent steps on the same target ({@link CommandCoalescer}); switched off when the agent
+     * does not support batches.
+     */
+    private volatile boolean coalesceCommands;
+    private volatile boolean sessionOpen;
+    /**
+     * URL страницы, открытой в сессии; null — неизвестно (после ошибки или команды, которая может перейти).
+     * URL of the page open in the session; null when unknown (after a failure or a possibly navigating command).
+     */
+    private volatile String currentUrl;
+    /** Число событий перехода из канала агента / number of navigation events from the agent channel */
+    private final AtomicLong navigationEvents = new AtomicLong();
 
     public AgentService(AgentClient agentClient, Resolver resolver, String baseUrl, boolean headless) {
-        this(agentClient, resolver, baseUrl, headless, RetryPolicy.defaultPolicy());
+        this(agentClient, resolver, baseUrl, headless, AgentServiceOptions.defaults());
     }
 
     public AgentService(AgentClient agentClient, Resolver resolver, String baseUrl, boolean headless,
                         RetryPolicy retryPolicy) {
+        this(agentClient, resolver, baseUrl, headless, AgentServiceOptions.defaults().withRetryPolicy(retryPolicy));
+    }
+
+    /**
+     * @param options политики и режимы отправки сервиса / service policies and send modes
+     */
+    public AgentService(AgentClient agentClient, Resolver resolver, String baseUrl, boolean headless,
+                        AgentServiceOptions options) {
         this.agentClient = agentClient;
         this.resolver = resolver;
+        this.compiler = new PlanCompiler(resolver);
         this.baseUrl = baseUrl;
         this.headless = headless;
-        this.retryPolicy = Objects.requireNonNull(retryPolicy, "retryPolicy cannot be null");
+        this.options = Objects.requireNonNull(options, "options cannot be null");
+        this.retryPolicy = options.retryPolicy();
+        this.timeoutPolicy = options.timeoutPolicy();
+        this.hedgePolicy = options.hedgePolicy();
+        this.hedgedSender = hedgePolicy.isEnabled() && agentClient != null
+            ? new HedgedRequestSender(agentClient, this::readyMirror, hedgePolicy)
+            : null;
+        this.metrics = options.metrics();
+        this.navigationPolicy = options.navigationPolicy();
+        this.coordinateMode = options.coordinateMode();
+        this.coalesceCommands = options.coalesceCommands();
+        if (agentClient != null) {
+            agentClient.addEventListener(this::onAgentEvent);
+        }
+    }
+
+    /**
+     * Событие канала агента: переход основного фрейма делает текущий URL снова известным, в том числе после клика.
+     *
+     * Agent channel event: a main frame navigation makes the current URL known again, including after a click.
+     */
+    private void onAgentEvent(AgentEvent event) {
+        if (event.type() == AgentEvent.Type.NAVIGATED && sessionOpen) {
+            currentUrl = absoluteUrl(event.url());
+            invalidateMirror();
+            navigationEvents.incrementAndGet();
+        }
+    }
+
+    /**
+     * Сервис с теми же политиками, резолвером и метриками, но другим агентом, например для узла {@code AgentPool}.
+     * Состояние сессии не копируется; у нового сервиса своя зеркальная сессия для хедж-запросов.
+     *
+     * Service with the same policies, resolver and metrics but another agent, e.g. for an {@code AgentPool} node.
+     * Session state is not copied; the new service gets its own mirror session for hedges.
+     */
+    public AgentService withClient(AgentClient client) {
+        return withClient(client, baseUrl);
+    }
+
+    /**
+     * Сервис с другим агентом и другим базовым URL приложения, например для сессии {@code SessionPool}.
+     *
+     * Service with another agent and another application base URL, e.g. for a {@code SessionPool} session.
+     */
+    public AgentService withClient(AgentClient client, String baseUrl) {
+        Objects.requireNonNull(client, "client cannot be null");
+        return new AgentService(client, resolver, baseUrl, headless, options);
+    }
+
+    public AgentClient client() {
+        return agentClient;
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Открыта ли браузерная сессия, которую следующий план с {@link ExecutionOptions#reuseSession()} возьмёт без
+     * инициализации. Whether a browser session is open that the next plan with
+     * {@link ExecutionOptions#reuseSession()} takes without initialization.
+     */
+    public boolean isSessionOpen() {
+        return sessionOpen;
+    }
+
+    /**
+     * Открывает браузерную сессию заранее, до плана: следующий план с {@link ExecutionOptions#reuseSession()}
+     * начинается без инициализации. Уже открытая сессия открывается заново.
+     *
+     * Opens the browser session ahead of a plan: the next plan with {@link ExecutionOptions#reuseSession()} starts
+     * without initialization. An already open session is opened again.
+     */
+    public AgentResponse openSession() throws AgentException {
+        return initialize(new Run(ExecutionDeadline.none(), CancellationToken.none(), false, Span.noop(),
+            new AtomicInteger()));
+    }
+
+    /**
+     * Приводит открытую сессию в исходное состояние между планами ({@link AgentClient#reset}); при неудаче сессия
+     * считается закрытой.
+     *
+     * Brings the open session back to a clean state between plans ({@link AgentClient#reset}); on failure the
+     * session is considered closed.
+     *
+     * @return сессия открыта и сброшена / the session is open and has been reset
+     */
+    public boolean resetSession(SessionResetMode mode) {
+        Objects.requireNonNull(mode, "mode cannot be null");
+        closeMirror();
+        if (!sessionOpen) {
+            return false;
+        }
+        if (mode == SessionResetMode.NONE) {
+            return true;
+        }
+        AgentResponse response = agentClient.reset(mode, timeoutPolicy.defaultStepTimeout());
+        forgetPage();
+        if (response == null || !response.success()) {
+            log.warn("Failed to reset browser session: {}", response != null ? response.error() : "no response");
+            sessionOpen = false;
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -70,16 +232,62 @@ public class AgentService {
     }
 
     public List<StepExecutionResult> executePlan(Plan plan, boolean stopOnFailure, StepExecutionCallback callback) {
+        return executePlan(plan, callback, ExecutionOptions.defaults().withStopOnFailure(stopOnFailure));
+    }
+
+    /**
+     * Выполняет план с параметрами запуска (дедлайн, остановка на ошибке).
+     * Остаток дедлайна ограничивает таймауты команд и повторы; по истечении бюджета
+     * следующие шаги не запускаются.
+     *
+     * Executes plan with run options (deadline, stop on failure).
+     * The remaining deadline caps command timeouts and retries; once the budget is gone
+     * no further steps are started.
+     * <p>
+     * План сначала компилируется ({@link PlanCompiler}); если хотя бы один шаг невыполним, возвращаются
+     * ошибки компиляции, а браузер не запускается. The plan is compiled first ({@link PlanCompiler});
+     * when any step cannot be executed, compilation failures are returned and the browser is not started.
+     * <p>
+     * Отмена {@link ExecutionOptions#cancellation()} прерывает текущий запрос к агенту и ожидание повтора,
+     * а браузерная сессия закрывается. Cancelling {@link ExecutionOptions#cancellation()} aborts the
+     * in-flight agent request and retry wait, and the browser session is closed.
+     */
+    public List<StepExecutionResult> executePlan(Plan plan, StepExecutionCallback callback, ExecutionOptions options) {
         Objects.requireNonNull(plan, "plan cannot be null");
         StepExecutionCallback effectiveCallback = callback != null ? callback : StepExecutionCallback.noOp();
+        ExecutionOptions effectiveOptions = options != null ? options : ExecutionOptions.defaults();
+        ExecutionDeadline deadline = resolveDeadline(effectiveOptions);
+        CancellationToken cancellation = effectiveOptions.cancellation();
+        Span planSpan = effectiveOptions.traceSpan().child("agent.plan")
+            .setAttribute("plan.id", plan.id())
+            .setAttribute("plan.steps", plan.steps().size());
+        Run run = new Run(deadline, cancellation, effectiveOptions.reuseSession(), planSpan, new AtomicInteger());
 
-        log.info("Starting plan execution: {}", plan.id());
+        log.info("Starting plan execution: {} ({})", plan.id(), deadline);
+        // Пропуск навигации действует только внутри плана: план в переиспользованной сессии не знает, что оставил
+        // предыдущий, и его первый open_page выполняется всегда.
+        // The navigation skip applies within one plan only: a plan in a reused session does not know what the
+        // previous one left behind, so its first open_page always runs.
+        forgetPage();
         List<StepExecutionResult> results = new ArrayList<>();
         boolean success = true;
 
         safeOnPlanStarted(effectiveCallback, plan);
+        CompiledPlan program;
+        try (Span compileSpan = planSpan.child("plan.compile")) {
+            program = compiler.compile(plan);
+            compileSpan.setAttribute("compile.problems", program.problems().size());
+        }
+        if (!program.isExecutable()) {
+            // Невыполнимый план отклоняется до запуска браузера.
+            // An unexecutable plan is rejected before the browser is started.
+            results.addAll(rejected(program));
+            planSpan.recordError("plan is not executable").end();
+            safeOnPlanCompleted(effectiveCallback, plan, List.copyOf(results), false);
+            return results;
+        }
         try {
-            AgentResponse initResponse = agentClient.initialize(baseUrl, headless);
+            AgentResponse initResponse = initialize(run);
             if (!initResponse.success()) {
                 log.error("Failed to initialize agent: {}", initResponse.error());
                 results.add(StepExecutionResult.failure(
@@ -96,19 +304,57 @@ public class AgentService {
                 return results;
             }
 
-            List<PlanStep> steps = plan.steps();
+            List<CompiledPlan.Step> steps = program.steps();
+            // шаг, на котором остановилась группа, выполняется отдельно / the step a group stopped at runs alone
+            int runAloneIndex = -1;
             for (int stepIndex = 0; stepIndex < steps.size(); stepIndex++) {
-                PlanStep step = steps.get(stepIndex);
+                CompiledPlan.Step compiled = steps.get(stepIndex);
+                PlanStep step = compiled.step();
+                if (cancellation.isCancelled()) {
+                    log.info("Plan {} cancelled before step {}: {}", plan.id(), step.id(), cancellation.reason());
+                    results.add(cancelled(step, stepIndex, 0, 0, cancellation));
+                    success = false;
+                    break;
+                }
+                if (deadline.isExpired()) {
+                    log.warn("Plan {} deadline exceeded before step {}, remaining steps are not executed",
+                        plan.id(), step.id());
+                    results.add(deadlineExceeded(step, stepIndex));
+                    success = false;
+                    break;
+                }
+                if (coalesceCommands && stepIndex != runAloneIndex) {
+                    Coalesced coalesced = executeCoalesced(steps, stepIndex, run, effectiveCallback, results);
+                    if (coalesced.halted()) {
+                        success = false;
+                        break;
+                    }
+                    if (coalesced.stopped()) {
+                        runAloneIndex = stepIndex + coalesced.completed();
+                    }
+                    if (coalesced.completed() > 0) {
+                        stepIndex += coalesced.completed() - 1;
+                        continue;
+                    }
+                }
                 safeOnStepStarted(effectiveCallback, step, stepIndex, steps.size());
 
-                StepExecutionResult result = executeStep(step, stepIndex);
+                StepExecutionResult result = executeStep(compiled, run);
+                if (!result.success() && cancellation.isCancelled()) {
+                    result = cancelled(step, stepIndex, result.executionTimeMs(), result.retryCount(), cancellation);
+                }
                 results.add(result);
                 safeOnStepCompleted(effectiveCallback, step, result, stepIndex);
+                if (cancellation.isCancelled()) {
+                    log.info("Plan {} cancelled during step {}: {}", plan.id(), step.id(), cancellation.reason());
+                    success = false;
+                    break;
+                }
 
                 if (!result.success()) {
                     success = false;
                     log.error("Step execution failed: {}", result.error());
-                    if (stopOnFailure) {
+                    if (effectiveOptions.stopOnFailure()) {
                         break;
                     }
                 }
@@ -132,16 +378,181 @@ public class AgentService {
             return results;
         } finally {
             boolean finalSuccess = success && results.stream().allMatch(StepExecutionResult::success);
+            if (cancellation.isCancelled()) {
+                releaseSession(plan);
+            } else if (!finalSuccess) {
+                // После ошибки состояние страницы неизвестно: следующий запуск инициализирует браузер заново.
+                // After a failure the page state is unknown: the next run initializes the browser again.
+                sessionOpen = false;
+                forgetPage();
+            }
+            planSpan.setAttribute("plan.success", finalSuccess)
+                .setAttribute("plan.cancelled", cancellation.isCancelled());
+            if (!finalSuccess) {
+                planSpan.recordError("plan failed");
+            }
+            planSpan.end();
             safeOnPlanCompleted(effectiveCallback, plan, List.copyOf(results), finalSuccess);
         }
     }
 
     /**
-     * Выполняет один шаг плана.
+     * Выполняет один шаг плана. Все попытки используют одну и ту же скомпилированную команду.
      * 
-     * Executes one plan step.
+     * Executes one plan step. All attempts reuse the same compiled command.
      */
-    private StepExecutionResult executeStep(PlanStep step, int stepIndex) {
+    private StepExecutionResult executeStep(CompiledPlan.Step compiled, Run run) {
+        long startNanos = System.nanoTime();
+        Span stepSpan = run.span().child("plan.step")
+            .setAttribute("plan.id", compiled.step().planId())
+            .setAttribute("step.id", compiled.step().id())
+            .setAttribute("step.index", compiled.stepIndex())
+            .setAttribute("step.operation", compiled.operation());
+        try {
+            StepExecutionResult result = executeStepWithRetries(compiled, run, stepSpan);
+            stepSpan.setAttribute("step.retries", result.retryCount());
+            if (!result.success()) {
+                stepSpan.recordError(result.error());
+            }
+            return result;
+        } finally {
+            stepSpan.end();
+            metrics.recordStep(compiled.operation(), elapsedMs(startNanos));
+        }
+    }
+
+    /**
+     * Выполняет группу шагов {@link CommandCoalescer} одним пакетом, начиная с шага {@code from}. Начало и завершение
+     * сообщаются после ответа и только для выполненных шагов, каждое начало — прямо перед завершением своего шага,
+     * поэтому шаг, до которого пакет не дошёл, не получает колбэков. С первого неуспешного шага план
+     * продолжается обычным порядком, с повторами. Если план отменён или дедлайн истёк (до отправки или во время
+     * пакета), невыполненные шаги группы завершаются как отменённые или просроченные, и план останавливается.
+     *
+     * Runs the {@link CommandCoalescer} group starting at step {@code from} as one batch. Starts and completions are
+     * reported after the response and only for executed steps, each start right before the completion of its step,
+     * so a step the batch never reached gets no callbacks. From the
+     * first failed step on the plan continues the regular way, with retries. If the plan is cancelled or its
+     * deadline expires (before sending or during the batch), the unfinished group steps complete as cancelled or
+     * deadline-exceeded and the plan stops.
+     *
+     * @return число завершённых шагов, остановка группы на неуспешном шаге и остановка плана /
+     *         number of finished steps, whether the group stopped at a failed step and whether the plan stops
+     */
+    private Coalesced executeCoalesced(List<CompiledPlan.Step> steps, int from, Run run, StepExecutionCallback callback,
+                                 List<StepExecutionResult> results) {
+        List<CompiledPlan.Step> group = CommandCoalescer.group(steps, from,
+            coordinateMode == CoordinateStepMode.FUSED, this::runsAlone);
+        if (group.isEmpty()) {
+            return Coalesced.NONE;
+        }
+        if (run.cancellation().isCancelled() || run.deadline().isExpired()) {
+            return halt(group, 0, run, results);
+        }
+        List<AgentCommand> commands = group.stream().map(CommandCoalescer::command).toList();
+        AgentBatchResponse batch;
+        try (Span span = run.span().child("plan.step_group")
+                .setAttribute("step.index", from)
+                .setAttribute("group.size", group.size())) {
+            batch = sendBatch(commands, groupTimeout(group, run.deadline()), run.cancellation(), span);
+        }
+        if (batch.unsupported()) {
+            coalesceCommands = false;
+            log.warn("Agent does not support /execute-batch, steps are no longer coalesced");
+            return Coalesced.NONE;
+        }
+        int completed = 0;
+        for (CompiledPlan.Step compiled : group) {
+            AgentResponse response = batch.result(completed);
+            if (response == null || !response.success()) {
+                break;
+            }
+            PlanStep step = compiled.step();
+            StepExecutionResult result = StepExecutionResult.success(
+                step.id(),
+                step.displayName(),
+                response.message(),
+                response.executionTimeMs(),
+                extractScreenshotPath(response.data()),
+                response.data(),
+                0,
+                compiled.stepIndex(),
+                commands.get(completed).type().name()
+            );
+            results.add(result);
+            safeOnStepStarted(callback, step, compiled.stepIndex(), steps.size());
+            safeOnStepCompleted(callback, step, result, compiled.stepIndex());
+            metrics.recordStep(compiled.operation(), response.executionTimeMs());
+            completed++;
+        }
+        boolean stopped = completed < group.size();
+        if (stopped && (run.cancellation().isCancelled() || run.deadline().isExpired())) {
+            return halt(group, completed, run, results);
+        }
+        if (stopped) {
+            log.debug("Coalesced group stopped at step {}, continuing step by step",
+                group.get(completed).step().id());
+        }
+        return new Coalesced(completed, stopped, false);
+    }
+
+    /**
+     * Завершает шаги группы начиная с {@code from} как отменённые или просроченные. Как и в цикле шагов, колбэки
+     * для них не вызываются: шаги не выполнялись.
+     *
+     * Completes the group steps from {@code from} on as cancelled or deadline-exceeded. As in the step loop, no
+     * callbacks are invoked for them: the steps did not run.
+     */
+    private Coalesced halt(List<CompiledPlan.Step> group, int from, Run run, List<StepExecutionResult> results) {
+        boolean cancelled = run.cancellation().isCancelled();
+        PlanStep first = group.get(from).step();
+        if (cancelled) {
+            log.info("Plan {} cancelled at coalesced step {}: {}", first.planId(), first.id(),
+                run.cancellation().reason());
+        } else {
+            log.warn("Plan {} deadline exceeded at coalesced step {}, remaining steps are not executed",
+                first.planId(), first.id());
+        }
+        for (CompiledPlan.Step compiled : group.subList(from, group.size())) {
+            PlanStep step = compiled.step();
+            StepExecutionResult result = cancelled
+                ? cancelled(step, compiled.stepIndex(), 0, 0, run.cancellation())
+                : deadlineExceeded(step, compiled.stepIndex());
+            results.add(result);
+        }
+        return new Coalesced(group.size(), false, true);
+    }
+
+    /**
+     * Шаги, которые не объединяются: навигация (пропуск повторной), WAIT (таймаут ожидания) и хеджируемые чтения.
+     *
+     * Steps that are never coalesced: navigation (redundant skip), WAIT (wait timeout) and hedged reads.
+     */
+    private boolean runsAlone(CompiledPlan.Step step) {
+        String operation = step.operation();
+        return "open_page".equals(operation) || "wait".equals(operation)
+            || (hedgedSender != null && hedgePolicy.isHedgeable(operation));
+    }
+
+    /**
+     * Таймаут пакета — сумма таймаутов шагов группы в пределах дедлайна; без таймаута у шага — по умолчанию.
+     *
+     * Batch timeout is the sum of the group step timeouts within the deadline; a step without one means the default.
+     */
+    private Duration groupTimeout(List<CompiledPlan.Step> group, ExecutionDeadline deadline) {
+        Duration total = Duration.ZERO;
+        for (CompiledPlan.Step compiled : group) {
+            Duration timeout = timeoutPolicy.forOperation(compiled.operation());
+            if (timeout == null) {
+                return deadline.cap(null);
+            }
+            total = total.plus(timeout);
+        }
+        return deadline.cap(total);
+    }
+
+    private StepExecutionResult executeStepWithRetries(CompiledPlan.Step compiled, Run run, Span stepSpan) {
+        PlanStep step = compiled.step();
+        int stepIndex = compiled.stepIndex();
         int maxAttempts = retryPolicy.maxRetries() + 1;
         StepExecutionResult lastFailure = null;
 
@@ -149,17 +560,40 @@ public class AgentService {
             int retryCount = attempt - 1;
             log.info("Executing step {} attempt {}/{}", step.id(), attempt, maxAttempts);
 
-            StepExecutionResult result = executeStepOnce(step, stepIndex, retryCount);
+            StepExecutionResult result = executeStepOnce(compiled, retryCount, run, stepSpan);
             if (result.success()) {
                 return result;
             }
 
             lastFailure = result;
-            if (!shouldRetry(result, attempt, maxAttempts)) {
+            if (attempt >= maxAttempts) {
+                return result;
+            }
+            AgentErrorCode.Category category = retryPolicy.classify(errorCode(result), result.error());
+            if (category == AgentErrorCode.Category.PERMANENT) {
+                return result;
+            }
+            if (run.retries().get() >= retryPolicy.planRetryBudget()) {
+                log.warn("Not retrying step {}: plan retry budget of {} is exhausted", step.id(),
+                    retryPolicy.planRetryBudget());
+                return result;
+            }
+            long delayMs = retryPolicy.backoffMs(category, attempt, ThreadLocalRandom.current().nextDouble());
+            if (!hasBudgetForRetry(run.deadline(), delayMs)) {
+                log.warn("Not retrying step {}: plan deadline budget is exhausted", step.id());
                 return result;
             }
+            run.retries().incrementAndGet();
+            log.warn("Retrying step {} in {}ms after {} error: {}", step.id(), delayMs, category, result.error());
 
-            sleepBeforeRetry();
+            try (Span ignored = stepSpan.child("step.retry_wait")
+                    .setAttribute("retry.category", category.name())
+                    .setAttribute("retry.delay_ms", delayMs)) {
+                if (!sleepBeforeRetry(delayMs, run.cancellation())) {
+                    return result;
+                }
+            }
+            metrics.recordRetry(compiled.operation());
         }
 
         return lastFailure != null
@@ -176,74 +610,43 @@ public class AgentService {
             );
     }
 
-    private boolean isCoordinateStep(String operationInternalName) {
-        return "click".equals(operationInternalName)
-            || "hover".equals(operationInternalName)
-            || "type".equals(operationInternalName);
-    }
-
-    /**
-     * Тип UI-операции для исполнителя: {@code system.action.internalname} первого шага с валидным {@code actionId}.
-     * Если действий нет — устаревший fallback: {@link PlanStep#workflowStepInternalName()}, если это не состояние ЖЦ шага.
-     */
-    private String resolveExecutorInternalName(PlanStep step) {
-        for (PlanStepAction a : step.actions()) {
-            if (a.actionId() == null || a.actionId().isBlank()) {
-                continue;
-            }
-            Optional<Action> found = resolver.findAction(a.actionId());
-            if (found.isPresent()) {
-                return found.get().internalName();
-            }
-        }
-        String w = step.workflowStepInternalName();
-        if (w != null && !resolver.isWorkflowStepInternalName(w)) {
-            return w;
-        }
-        return null;
-    }
-
-    private StepExecutionResult executeStepOnce(PlanStep step, int stepIndex, int retryCount) {
+    private StepExecutionResult executeStepOnce(CompiledPlan.Step compiled, int retryCount, Run run, Span stepSpan) {
+        PlanStep step = compiled.step();
+        int stepIndex = compiled.stepIndex();
         long startTime = System.currentTimeMillis();
         log.debug("Executing step: {}", step);
 
         try {
-            String operation = resolveExecutorInternalName(step);
-            if (operation == null) {
-                return StepExecutionResult.failure(
-                    step.id(),
-                    step.displayName(),
-                    "Cannot resolve executor operation: add plan_step_action with a valid action id "
-                        + "(system.action.internalname defines the UI operation).",
-                    System.currentTimeMillis() - startTime,
-                    Map.of(),
-                    retryCount,
-                    stepIndex,
-                    null
-                );
+            String operation = compiled.operation();
+            Duration timeout = run.deadline().cap(timeoutPolicy.forOperation(operation));
+            if (compiled.isCoordinateStep()) {
+                return executeCoordinateStep(compiled, startTime, retryCount, timeout, run.cancellation(), stepSpan);
             }
 
-            if (isCoordinateStep(operation)) {
-                return executeCoordinateStep(step, operation, startTime, stepIndex, retryCount);
-            }
-
-            AgentCommand command = convertToCommand(step, operation);
-            if (command == null) {
-                String error = "Unknown executor operation: " + operation;
-                return StepExecutionResult.failure(
-                    step.id(),
-                    step.displayName(),
-                    error,
-                    System.currentTimeMillis() - startTime,
-                    Map.of(),
-                    retryCount,
-                    stepIndex,
-                    null
-                );
+            AgentCommand command = capWaitTimeout(compiled.command(), timeout);
+            if (command.type() == AgentCommand.CommandType.OPEN_PAGE) {
+                String url = absoluteUrl(command.target());
+                if (url != null && url.equals(currentUrl) && navigationPolicy.maySkip(step)) {
+                    log.debug("Skipping open_page of step {}: already on {}", step.id(), url);
+                    stepSpan.setAttribute("step.navigation_skipped", true);
+                    return StepExecutionResult.success(
+                        step.id(),
+                        step.displayName(),
+                        "Skipped: " + NAVIGATION_SKIPPED,
+                        System.currentTimeMillis() - startTime,
+                        null,
+                        Map.of("skipped", NAVIGATION_SKIPPED, "url", url),
+                        retryCount,
+                        stepIndex,
+                        command.type().name()
+                    );
+                }
             }
-
-            AgentResponse response = agentClient.execute(command);
+            AgentResponse response = hedgedSender != null && hedgePolicy.isHedgeable(operation)
+                ? sendHedged(operation, command, timeout, run.cancellation(), stepSpan)
+                : send(command, timeout, run.cancellation(), stepSpan);
             long executionTime = System.currentTimeMillis() - startTime;
+            Map<String, Object> metadata = waitMetadata(command, response);
 
             if (response.success()) {
                 String screenshotPath = extractScreenshotPath(response.data());
@@ -253,7 +656,7 @@ public class AgentService {
                     response.message(),
                     executionTime,
                     screenshotPath,
-                    response.data(),
+                    metadata,
                     retryCount,
                     stepIndex,
                     command.type().name()
@@ -264,7 +667,7 @@ public class AgentService {
                 step.displayName(),
                 response.error(),
                 executionTime,
-                response.data(),
+                failureMetadata(metadata, response.errorCode()),
                 retryCount,
                 stepIndex,
                 command.type().name()
@@ -296,85 +699,182 @@ public class AgentService {
         }
     }
 
-    private StepExecutionResult executeCoordinateStep(PlanStep step, String operation,
+    private StepExecutionResult executeCoordinateStep(CompiledPlan.Step compiled,
                                                       long startTime,
-                                                      int stepIndex, int retryCount) throws AgentException {
-        String selector = resolveSelector(step.entityId());
-        if (selector == null || selector.isBlank()) {
-            return StepExecutionResult.failure(
+                                                      int retryCount,
+                                                      Duration timeout,
+                                                      CancellationToken cancellation,
+                                                      Span stepSpan) throws AgentException {
+        if (coordinateMode == CoordinateStepMode.FUSED) {
+            StepExecutionResult fused = executeFusedStep(compiled, startTime, retryCount, timeout, cancellation,
+                stepSpan);
+            if (fused != null) {
+                return fused;
+            }
+        }
+        if (coordinateMode == CoordinateStepMode.BATCH) {
+            StepExecutionResult batched = executeCoordinateBatch(compiled, startTime, retryCount, timeout,
+                cancellation, stepSpan);
+            if (batched != null) {
+                return batched;
+            }
+        }
+        String selector = compiled.selector();
+
+        AgentResponse coordsResponse = send(compiled.resolveCoords(), timeout, cancellation, stepSpan);
+        if (!coordsResponse.success()) {
+            return coordinateResult(compiled, startTime, retryCount, coordsResponse, null, null);
+        }
+
+        AgentCommand command = compiled.command();
+        if (command.type() == AgentCommand.CommandType.CLICK) {
+            double x = extractRequiredNumber(coordsResponse.data(), "x");
+            double y = extractRequiredNumber(coordsResponse.data(), "y");
+            command = AgentCommand.clickAt(x, y, command.explanation(), selector);
+        }
+
+        AgentResponse executeResponse = send(command, timeout, cancellation, stepSpan);
+        return coordinateResult(compiled, startTime, retryCount, coordsResponse, command, executeResponse);
+    }
+
+    /**
+     * Шаг с координатами одной составной командой: агент находит элемент и действует сразу, поэтому элемент
+     * не может сместиться между вызовами. Данные ответа уже содержат координаты и {@code selectorUsed}.
+     *
+     * Coordinate step as one fused command: the agent resolves the element and acts at once, so the element
+     * cannot move between calls. The response data already holds the coordinates and {@code selectorUsed}.
+     *
+     * @return результат шага или null, если агент не знает составных команд /
+     *         step result, or null when the agent does not know fused commands
+     */
+    private StepExecutionResult executeFusedStep(CompiledPlan.Step compiled,
+                                                 long startTime,
+                                                 int retryCount,
+                                                 Duration timeout,
+                                                 CancellationToken cancellation,
+                                                 Span stepSpan) throws AgentException {
+        AgentCommand command = compiled.fusedCommand();
+        AgentResponse response = send(command, timeout, cancellation, stepSpan);
+        if (!response.success() && isUnknownCommand(response)) {
+            coordinateMode = CoordinateStepMode.FUSED.fallback();
+            log.warn("Agent does not support {}, switching coordinate steps to {}", command.type(), coordinateMode);
+            return null;
+        }
+        PlanStep step = compiled.step();
+        long executionTime = System.currentTimeMillis() - startTime;
+        if (response.success()) {
+            return StepExecutionResult.success(
                 step.id(),
                 step.displayName(),
-                "Target selector is empty for coordinate step",
-                System.currentTimeMillis() - startTime,
-                Map.of(),
+                response.message(),
+                executionTime,
+                extractScreenshotPath(response.data()),
+                response.data(),
                 retryCount,
-                stepIndex,
-                null
+                compiled.stepIndex(),
+                command.type().name()
             );
         }
+        return StepExecutionResult.failure(
+            step.id(),
+            step.displayName(),
+            response.error(),
+            executionTime,
+            failureMetadata(response.data(), response.errorCode()),
+            retryCount,
+            compiled.stepIndex(),
+            command.type().name()
+        );
+    }
 
-        String explanation = step.displayName();
-        AgentResponse coordsResponse = agentClient.execute(AgentCommand.resolveCoords(selector, explanation));
-        long executionTime = System.currentTimeMillis() - startTime;
+    /**
+     * Агент старой версии отвечает на незнакомый тип команды ошибкой {@code Unknown command type}.
+     *
+     * An older agent answers an unfamiliar command type with an {@code Unknown command type} error.
+     */
+    private static boolean isUnknownCommand(AgentResponse response) {
+        return response.error() != null && response.error().startsWith("Unknown command type");
+    }
+
+    /**
+     * Шаг с координатами одним пакетом: RESOLVE_COORDS и команда шага, CLICK получает координаты из первой
+     * команды пакета на стороне агента. Результат совпадает с последовательной отправкой.
+     *
+     * Coordinate step as one batch: RESOLVE_COORDS and the step command, CLICK takes the coordinates from the first
+     * batch command on the agent side. The result is the same as with sequential sends.
+     *
+     * @return результат шага или null, если агент не поддерживает пакеты /
+     *         step result, or null when the agent does not support batches
+     */
+    private StepExecutionResult executeCoordinateBatch(CompiledPlan.Step compiled,
+                                                       long startTime,
+                                                       int retryCount,
+                                                       Duration timeout,
+                                                       CancellationToken cancellation,
+                                                       Span stepSpan) {
+        AgentCommand command = compiled.command();
+        if (command.type() == AgentCommand.CommandType.CLICK) {
+            command = AgentCommand.clickAtResolved(0, command.explanation(), compiled.selector());
+        }
+        AgentBatchResponse batch = sendBatch(List.of(compiled.resolveCoords(), command), timeout, cancellation,
+            stepSpan);
+        if (batch.unsupported()) {
+            coordinateMode = CoordinateStepMode.BATCH.fallback();
+            log.warn("Agent does not support /execute-batch, sending commands one by one");
+            return null;
+        }
+        AgentResponse coordsResponse = batch.result(0);
+        if (coordsResponse == null) {
+            coordsResponse = new AgentResponse(false, null, batch.error(), Map.of(), batch.executionTimeMs(),
+                batch.errorCode());
+        }
         if (!coordsResponse.success()) {
+            return coordinateResult(compiled, startTime, retryCount, coordsResponse, null, null);
+        }
+        AgentResponse executeResponse = batch.result(1);
+        if (executeResponse == null) {
+            executeResponse = new AgentResponse(false, null,
+                batch.error() != null ? batch.error() : "Batch ended before " + command.type(), Map.of(), 0,
+                batch.errorCode());
+        }
+        return coordinateResult(compiled, startTime, retryCount, coordsResponse, command, executeResponse);
+    }
+
+    /**
+     * Результат шага с координатами; {@code command == null} — шаг остановился на RESOLVE_COORDS.
+     *
+     * Result of a coordinate step; {@code command == null} means the step stopped at RESOLVE_COORDS.
+     */
+    private StepExecutionResult coordinateResult(CompiledPlan.Step compiled, long startTime, int retryCount,
+                                                 AgentResponse coordsResponse, AgentCommand command,
+                                                 AgentResponse executeResponse) {
+        PlanStep step = compiled.step();
+        long executionTime = System.currentTimeMillis() - startTime;
+        if (command == null) {
             return StepExecutionResult.failure(
                 step.id(),
                 step.displayName(),
                 coordsResponse.error(),
                 executionTime,
-                mergeMetadata(selector, coordsResponse.data(), null),
+                failureMetadata(mergeMetadata(compiled.selector(), coordsResponse.data(), null),
+                    coordsResponse.errorCode()),
                 retryCount,
-                stepIndex,
+                compiled.stepIndex(),
                 AgentCommand.CommandType.RESOLVE_COORDS.name()
             );
         }
-
-        AgentCommand command;
-        switch (operation) {
-            case "click":
-                double x = extractRequiredNumber(coordsResponse.data(), "x");
-                double y = extractRequiredNumber(coordsResponse.data(), "y");
-                command = AgentCommand.clickAt(x, y, explanation, selector);
-                break;
-            case "hover":
-                command = AgentCommand.hover(selector, explanation);
-                break;
-            case "type":
-                String rawMeta = step.actions().isEmpty() ? ""
-                    : step.actions().get(0).metaValue() != null ? step.actions().get(0).metaValue() : "";
-                boolean pressEnter = rawMeta.endsWith("\\n");
-                String typeText = pressEnter ? rawMeta.substring(0, rawMeta.length() - 2) : rawMeta;
-                command = pressEnter
-                    ? AgentCommand.typeAndSubmit(selector, typeText, explanation)
-                    : AgentCommand.type(selector, typeText, explanation);
-                break;
-            default:
-                return StepExecutionResult.failure(
-                    step.id(),
-                    step.displayName(),
-                    "Unknown coordinate step type: " + operation,
-                    System.currentTimeMillis() - startTime,
-                    Map.of(),
-                    retryCount,
-                    stepIndex,
-                    null
-                );
-        }
-
-        AgentResponse executeResponse = agentClient.execute(command);
-        executionTime = System.currentTimeMillis() - startTime;
-        Map<String, Object> mergedMetadata = mergeMetadata(selector, coordsResponse.data(), executeResponse.data());
-        String screenshotPath = extractScreenshotPath(executeResponse.data());
+        Map<String, Object> mergedMetadata =
+            mergeMetadata(compiled.selector(), coordsResponse.data(), executeResponse.data());
         if (executeResponse.success()) {
             return StepExecutionResult.success(
                 step.id(),
                 step.displayName(),
                 executeResponse.message(),
                 executionTime,
-                screenshotPath,
+                extractScreenshotPath(executeResponse.data()),
                 mergedMetadata,
                 retryCount,
-                stepIndex,
+                compiled.stepIndex(),
                 command.type().name()
             );
         }
@@ -383,19 +883,392 @@ public class AgentService {
             step.displayName(),
             executeResponse.error(),
             executionTime,
-            mergedMetadata,
+            failureMetadata(mergedMetadata, executeResponse.errorCode()),
             retryCount,
-            stepIndex,
+            compiled.stepIndex(),
             command.type().name()
         );
     }
 
+    /**
+     * Отправляет пакет с остановкой на первой ошибке. Задержка каждой команды в метриках — время выполнения,
+     * сообщённое агентом.
+     *
+     * Sends a batch that stops at the first failure. Each command latency in metrics is the execution time
+     * reported by the agent.
+     */
+    private AgentBatchResponse sendBatch(List<AgentCommand> commands, Duration timeout,
+                                         CancellationToken cancellation, Span stepSpan) {
+        Span span = stepSpan.child("agent.batch").setAttribute("batch.size", commands.size());
+        long navigationsBefore = navigationEvents.get();
+        try {
+            AgentBatchResponse batch = agentClient.executeBatch(commands, true, timeout, cancellation);
+            if (batch.unsupported()) {
+                return batch;
+            }
+            if (batch.results().isEmpty()) {
+                forgetPage();
+            }
+            for (int i = 0; i < batch.results().size() && i < commands.size(); i++) {
+                AgentResponse response = batch.results().get(i);
+                trackNavigation(commands.get(i), response, navigationsBefore);
+                metrics.recordCommand(commands.get(i).type(), response.executionTimeMs());
+            }
+            if (!batch.success()) {
+                span.recordError(batch.error() != null ? batch.error() : failedError(batch));
+            }
+            return batch;
+        } catch (RuntimeException e) {
+            forgetPage();
+            span.recordError(e.getMessage());
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    private static String failedError(AgentBatchResponse batch) {
+        return batch.results().stream()
+            .filter(response -> !response.success())
+            .map(AgentResponse::error)
+            .findFirst()
+            .orElse("batch failed");
+    }
+
+    private AgentResponse send(AgentCommand command, Duration timeout, CancellationToken cancellation,
+                               Span stepSpan) throws AgentException {
+        long startNanos = System.nanoTime();
+        Span span = stepSpan.child(COMMAND_SPAN_NAMES[command.type().ordinal()]);
+        long navigationsBefore = navigationEvents.get();
+        try {
+            AgentResponse response;
+            if (cancellation.isCancellable()) {
+                response = agentClient.execute(command, timeout, cancellation);
+            } else {
+                response = timeout != null ? agentClient.execute(command, timeout) : agentClient.execute(command);
+            }
+            trackNavigation(command, response, navigationsBefore);
+            return traced(span, response);
+        } catch (AgentException | RuntimeException e) {
+            forgetPage();
+            span.recordError(e.getMessage());
+            throw e;
+        } finally {
+            span.end();
+            metrics.recordCommand(command.type(), elapsedMs(startNanos));
+        }
+    }
+
+    private AgentResponse sendHedged(String operation, AgentCommand command, Duration timeout,
+                                     CancellationToken cancellation, Span stepSpan) throws AgentException {
+        long startNanos = System.nanoTime();
+        Span span = stepSpan.child(COMMAND_SPAN_NAMES[command.type().ordinal()]).setAttribute("agent.hedged", true);
+        try {
+            openMirror();
+            return traced(span, hedgedSender.send(operation, command, timeout, cancellation));
+        } catch (AgentException | RuntimeException e) {
+            span.recordError(e.getMessage());
+            throw e;
+        } finally {
+            span.end();
+            metrics.recordCommand(command.type(), elapsedMs(startNanos));
+        }
+    }
+
+    /**
+     * Обновляет URL текущей страницы по результату команды. После ошибки и после команд, которые могут
+     * вызвать переход (клик, отправка формы, выбор значения), страница считается неизвестной, если только канал
+     * агента не сообщил о переходе во время команды: событие приходит раньше ответа и уже задало URL.
+     *
+     * Updates the current page URL from a command result. After a failure and after commands that may
+     * navigate (click, form submit, option select) the page is considered unknown, unless the agent channel
+     * reported a navigation while the command ran: the event is sent before the response and already set the URL.
+     */
+    private void trackNavigation(AgentCommand command, AgentResponse response, long navigationsBefore) {
+        if (response == null || !response.success()) {
+            forgetPage();
+            return;
+        }
+        boolean navigationReported = navigationEvents.get() != navigationsBefore;
+        switch (command.type()) {
+            case OPEN_PAGE -> {
+                currentUrl = absoluteUrl(command.target());
+                HedgeMirror mirror = hedgeMirror;
+                if (mirror != null) {
+                    mirror.follow(currentUrl);
+                }
+            }
+            case CLICK, CLICK_AT, RESOLVE_AND_CLICK, SELECT_OPTION -> {
+                invalidateMirror();
+                if (!navigationReported) {
+                    forgetPage();
+                }
+            }
+            case TYPE, RESOLVE_AND_TYPE -> {
+                invalidateMirror();
+                if (Boolean.TRUE.equals(command.parameters().get("pressEnter")) && !navigationReported) {
+                    forgetPage();
+                }
+            }
+            case HOVER, RESOLVE_AND_HOVER -> invalidateMirror();
+            default -> { }
+        }
+    }
+
+    /**
+     * Страница сессии неизвестна: навигация не пропускается, зеркало для хедж-запросов устарело.
+     *
+     * The session page is unknown: navigation is not skipped and the hedge mirror is stale.
+     */
+    private void forgetPage() {
+        currentUrl = null;
+        invalidateMirror();
+    }
+
+    /**
+     * Страница изменилась не загрузкой (клик, ввод, наведение, переход из канала): зеркало не совпадает с ней.
+     *
+     * The page changed other than by a load (click, typing, hover, channel navigation): the mirror no longer matches.
+     */
+    private void invalidateMirror() {
+        HedgeMirror mirror = hedgeMirror;
+        if (mirror != null) {
+            mirror.invalidate();
+        }
+    }
+
+    /**
+     * Зеркало, создаваемое при первом хеджируемом чтении; новое зеркало сразу открывает текущую страницу.
+     *
+     * The mirror, created on the first hedgeable read; a new mirror opens the current page right away.
+     */
+    private void openMirror() {
+        synchronized (mirrorLock) {
+            if (hedgeMirror == null) {
+                HedgeMirror mirror = new HedgeMirror(agentClient, baseUrl, headless,
+                    timeoutPolicy.defaultStepTimeout());
+                mirror.follow(currentUrl);
+                hedgeMirror = mirror;
+            }
+        }
+    }
+
+    /**
+     * Клиент зеркала для хедж-запроса, если оно показывает текущую страницу. Mirror client for a hedge request when
+     * it shows the current page.
+     */
+    private AgentClient readyMirror() {
+        HedgeMirror mirror = hedgeMirror;
+        return mirror != null ? mirror.readyFor(currentUrl) : null;
+    }
+
+    /**
+     * Закрывает зеркало вместе с сессией или при её сбросе; следующее хеджируемое чтение откроет новое.
+     *
+     * Closes the mirror with the session or on its reset; the next hedgeable read opens a new one.
+     */
+    private void closeMirror() {
+        HedgeMirror mirror;
+        synchronized (mirrorLock) {
+            mirror = hedgeMirror;
+            hedgeMirror = null;
+        }
+        if (mirror != null) {
+            mirror.close();
+        }
+    }
+
+    /**
+     * URL навигации так, как его откроет агент: относительный путь дополняется baseUrl, завершающий '/' отбрасывается.
+     *
+     * Navigation URL as the agent opens it: a relative path is prefixed with baseUrl, a trailing '/' is dropped.
+     */
+    private String absoluteUrl(String target) {
+        if (target == null || target.isBlank()) {
+            return null;
+        }
+        String url = target.startsWith("http") ? target : (baseUrl != null ? baseUrl : "") + target;
+        return url.length() > 1 && url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    private static AgentResponse traced(Span span, AgentResponse response) {
+        if (response != null && !response.success()) {
+            span.recordError(response.error());
+        }
+        return response;
+    }
+
+    private AgentResponse initialize(Run run) throws AgentException {
+        if (run.reuseSession() && sessionOpen) {
+            log.debug("Reusing open browser session");
+            return AgentResponse.success("Session reused", Map.of(), 0);
+        }
+        Duration timeout = run.deadline().cap(timeoutPolicy.defaultStepTimeout());
+        AgentResponse response;
+        long startNanos = System.nanoTime();
+        Span span = run.span().child("agent.initialize");
+        try {
+            if (run.cancellation().isCancellable()) {
+                response = agentClient.initialize(baseUrl, headless, timeout, run.cancellation());
+            } else {
+                response = timeout != null
+                    ? agentClient.initialize(baseUrl, headless, timeout)
+                    : agentClient.initialize(baseUrl, headless);
+            }
+            traced(span, response);
+        } catch (AgentException | RuntimeException e) {
+            span.recordError(e.getMessage());
+            throw e;
+        } finally {
+            span.end();
+            metrics.recordInit(elapsedMs(startNanos));
+        }
+        sessionOpen = response != null && response.success();
+        forgetPage();
+        return response;
+    }
+
+    /**
+     * Закрывает браузерную сессию отменённого плана, чтобы освободить агента.
+     *
+     * Closes the browser session of a cancelled plan to free the agent.
+     */
+    private void releaseSession(Plan plan) {
+        sessionOpen = false;
+        forgetPage();
+        closeMirror();
+        try {
+            AgentResponse response = agentClient.close();
+            if (response != null && !response.success()) {
+                log.warn("Failed to release browser session of cancelled plan {}: {}", plan.id(), response.error());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to release browser session of cancelled plan {}: {}", plan.id(), e.getMessage());
+        }
+    }
+
+    private ExecutionDeadline resolveDeadline(ExecutionOptions options) {
+        if (options.deadline().isBounded() || timeoutPolicy.planTimeout() == null) {
+            return options.deadline();
+        }
+        return ExecutionDeadline.after(timeoutPolicy.planTimeout());
+    }
+
+    /**
+     * WAIT не должен ждать дольше, чем позволяет таймаут команды.
+     *
+     * WAIT must not wait longer than the command timeout allows.
+     */
+    private AgentCommand capWaitTimeout(AgentCommand command, Duration timeout) {
+        if (command == null || timeout == null || command.type() != AgentCommand.CommandType.WAIT) {
+            return command;
+        }
+        Object waitTimeout = command.parameters().get("timeout");
+        if (waitTimeout instanceof Number number && number.longValue() <= timeout.toMillis()) {
+            return command;
+        }
+        return command.withParameter("timeout", timeout.toMillis());
+    }
+
+    /**
+     * Данные ответа WAIT с фактическим временем ожидания {@code waitedMs}; агент, который его не сообщает,
+     * даёт время выполнения команды.
+     *
+     * WAIT response data with the actual wait time {@code waitedMs}; for an agent that does not report it,
+     * the command execution time is used.
+     */
+    private static Map<String, Object> waitMetadata(AgentCommand command, AgentResponse response) {
+        if (command.type() != AgentCommand.CommandType.WAIT || response.data().containsKey(WAITED_MS)) {
+            return response.data();
+        }
+        Map<String, Object> metadata = new HashMap<>(response.data());
+        metadata.put(WAITED_MS, response.executionTimeMs());
+        return metadata;
+    }
+
+    private boolean hasBudgetForRetry(ExecutionDeadline deadline, long delayMs) {
+        return deadline.remaining()
+            .map(remaining -> remaining.toMillis() > delayMs)
+            .orElse(true);
+    }
+
+    private StepExecutionResult cancelled(PlanStep step, int stepIndex, long executionTimeMs, int retryCount,
+                                          CancellationToken cancellation) {
+        return StepExecutionResult.failure(
+            step.id(),
+            step.displayName(),
+            "Plan cancelled: " + cancellation.reason(),
+            executionTimeMs,
+            Map.of("cancelled", true),
+            retryCount,
+            stepIndex,
+            null
+        );
+    }
+
+    /**
+     * Результаты отклонённого плана, по одному на каждый шаг в порядке {@code stepIndex}: шаги с ошибкой компиляции
+     * помечаются {@code compilationFailed}, остальные — невыполненными из-за отклонения плана.
+     *
+     * Results of a rejected plan, one per step in {@code stepIndex} order: steps that failed to compile are marked
+     * {@code compilationFailed}, the others as not executed because the plan was rejected.
+     */
+    private List<StepExecutionResult> rejected(CompiledPlan program) {
+        Map<Integer, CompiledPlan.Problem> problems = new HashMap<>();
+        for (CompiledPlan.Problem problem : program.problems()) {
+            log.error("Step {} cannot be executed: {}", problem.step().id(), problem.message());
+            problems.putIfAbsent(problem.stepIndex(), problem);
+        }
+        List<PlanStep> steps = program.plan().steps();
+        List<StepExecutionResult> results = new ArrayList<>(steps.size());
+        for (int i = 0; i < steps.size(); i++) {
+            PlanStep step = steps.get(i);
+            CompiledPlan.Problem problem = problems.get(i);
+            results.add(StepExecutionResult.failure(
+                step.id(),
+                step.displayName(),
+                problem != null ? problem.message() : "Step was not executed: plan rejected",
+                0,
+                problem != null ? Map.of("compilationFailed", true) : Map.of("planRejected", true),
+                0,
+                i,
+                null
+            ));
+        }
+        return results;
+    }
+
+    private StepExecutionResult deadlineExceeded(PlanStep step, int stepIndex) {
+        return StepExecutionResult.failure(
+            step.id(),
+            step.displayName(),
+            "Plan deadline exceeded",
+            0,
+            Map.of("deadlineExceeded", true),
+            0,
+            stepIndex,
+            null
+        );
+    }
+
+    /**
+     * Ссылка на скриншот шага. Кадр с хешем ({@code screenshotSha256}) агент отдаёт по HTTP, поэтому ссылка —
+     * его адрес на агенте; иначе — путь, который вернул агент.
+     *
+     * Reference to the step screenshot. The agent serves a frame that has a hash ({@code screenshotSha256}) over
+     * HTTP, so the reference is its address on the agent; otherwise it is the path the agent returned.
+     */
     private String extractScreenshotPath(Map<String, Object> data) {
         if (data == null) {
             return null;
         }
-        Object screenshot = data.get("screenshot");
-        return screenshot instanceof String screenshotPath ? screenshotPath : null;
+        Object screenshot = data.get(SCREENSHOT);
+        if (!(screenshot instanceof String screenshotPath) || screenshotPath.isBlank()) {
+            return null;
+        }
+        return data.get(SCREENSHOT_SHA256) instanceof String
+            ? agentClient.screenshotUri(screenshotPath).toString()
+            : screenshotPath;
     }
 
     private double extractRequiredNumber(Map<String, Object> data, String key) {
@@ -417,101 +1290,45 @@ public class AgentService {
         return merged;
     }
 
-    private String resolveSelector(String target) {
-        if (target != null && target.startsWith("action(") && target.endsWith(")")) {
-            String actionId = target.substring(7, target.length() - 1);
-            Optional<UIBinding> binding = resolver.findUIBinding(actionId);
-            if (binding.isPresent()) {
-                return binding.get().selector();
-            }
-            log.warn("UIBinding not found for action: {}, using target as selector", actionId);
-        }
-        return target != null ? target : "";
+    private static String errorCode(StepExecutionResult result) {
+        return result.metadata().get(ERROR_CODE) instanceof String code ? code : null;
     }
 
     /**
-     * Преобразует PlanStep в AgentCommand.
-     * Тип операции — {@code system.action.internalname} (см. {@link #resolveExecutorInternalName(PlanStep)}).
-     * entityId — target, displayName — explanation; plan_step_action задаёт actionId и metaValue.
+     * Данные неуспешного ответа с кодом ошибки под ключом {@code errorCode}.
+     *
+     * Data of a failed response with the error code under the {@code errorCode} key.
      */
-    private AgentCommand convertToCommand(PlanStep step, String operationInternalName) {
-        String type = operationInternalName;
-        String target = step.entityId();
-        String explanation = step.displayName();
-
-        switch (type) {
-            case "open_page":
-                String url = target;
-                if (!step.actions().isEmpty() && step.actions().get(0).metaValue() != null
-                        && !step.actions().get(0).metaValue().isBlank()) {
-                    url = step.actions().get(0).metaValue();
-                }
-                return AgentCommand.openPage(url != null ? url : "", explanation);
-
-            case "click":
-                return AgentCommand.click(resolveSelector(target), explanation);
-
-            case "hover":
-                return AgentCommand.hover(resolveSelector(target), explanation);
-
-            case "type":
-                String rawText = step.actions().isEmpty() ? ""
-                    : step.actions().get(0).metaValue() != null ? step.actions().get(0).metaValue() : "";
-                boolean submitAfterType = rawText.endsWith("\\n");
-                String cleanText = submitAfterType ? rawText.substring(0, rawText.length() - 2) : rawText;
-                return submitAfterType
-                    ? AgentCommand.typeAndSubmit(resolveSelector(target), cleanText, explanation)
-                    : AgentCommand.type(resolveSelector(target), cleanText, explanation);
-
-            case "wait":
-                long timeout = 5000L;
-                if (!step.actions().isEmpty() && step.actions().get(0).metaValue() != null) {
-                    try {
-                        timeout = Long.parseLong(step.actions().get(0).metaValue());
-                    } catch (NumberFormatException ignored) { }
-                }
-                return AgentCommand.wait(target != null ? target : "result", explanation, timeout);
-
-            case "explain":
-                return AgentCommand.explain(explanation);
-
-            case "select_option":
-                String selectValue = step.actions().isEmpty() ? ""
-                    : step.actions().get(0).metaValue() != null ? step.actions().get(0).metaValue() : "";
-                return AgentCommand.selectOption(resolveSelector(target), selectValue, explanation);
-
-            case "read_text":
-                return AgentCommand.readText(resolveSelector(target), explanation);
-
-            case "take_screenshot":
-                return AgentCommand.screenshot(target != null ? target : "fullpage", explanation);
-
-            default:
-                log.warn("Unknown step type: {}", type);
-                return null;
+    private static Map<String, Object> failureMetadata(Map<String, Object> data, String errorCode) {
+        if (errorCode == null) {
+            return data;
         }
+        Map<String, Object> metadata = data != null ? new HashMap<>(data) : new HashMap<>();
+        metadata.put(ERROR_CODE, errorCode);
+        return metadata;
     }
 
-    private boolean shouldRetry(StepExecutionResult result, int attempt, int maxAttempts) {
-        if (attempt >= maxAttempts) {
+    /**
+     * Ждёт задержку перед повтором; возвращает false, если ожидание прервано отменой или прерыванием потока.
+     *
+     * Waits the retry delay; returns false when the wait was cut short by cancellation or thread interrupt.
+     */
+    private boolean sleepBeforeRetry(long delayMs, CancellationToken cancellation) {
+        if (cancellation.isCancelled()) {
             return false;
         }
-        String error = result.error();
-        boolean retryable = retryPolicy.isRetryable(error);
-        if (retryable) {
-            log.warn("Retrying step due to retryable error: {}", error);
+        if (delayMs <= 0) {
+            return true;
         }
-        return retryable;
-    }
-
-    private void sleepBeforeRetry() {
-        if (retryPolicy.delayMs() <= 0) {
-            return;
+        if (cancellation.await(Duration.ofMillis(delayMs))) {
+            log.info("Retry delay aborted: plan cancelled");
+            return false;
         }
-        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryPolicy.delayMs()));
         if (Thread.currentThread().isInterrupted()) {
             log.warn("Retry delay interrupted");
+            return false;
         }
+        return true;
     }
 
     private void safeOnPlanStarted(StepExecutionCallback callback, Plan plan) {
@@ -548,12 +1365,46 @@ public class AgentService {
         }
     }
 
+    /**
+     * Метрики исполнения этого сервиса.
+     *
+     * Execution metrics of this service.
+     */
+    public ExecutionMetrics metrics() {
+        return metrics;
+    }
+
+    private static String[] commandSpanNames() {
+        AgentCommand.CommandType[] types = AgentCommand.CommandType.values();
+        String[] names = new String[types.length];
+        for (AgentCommand.CommandType type : types) {
+            names[type.ordinal()] = "agent." + type.name().toLowerCase(Locale.ROOT);
+        }
+        return names;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    /**
+     * Статистика хеджирования; пусто, если хеджирование выключено.
+     *
+     * Hedging statistics; empty when hedging is disabled.
+     */
+    public Optional<HedgedRequestSender> hedging() {
+        return Optional.ofNullable(hedgedSender);
+    }
+
     /**
      * Закрывает браузер и освобождает ресурсы.
      * 
      * Closes browser and releases resources.
      */
     public void close() {
+        sessionOpen = false;
+        currentUrl = null;
+        closeMirror();
         try {
             agentClient.close();
             log.info("Agent closed successfully");
@@ -561,5 +1412,24 @@ public class AgentService {
             log.error("Failed to close agent", e);
         }
     }
-}
 
+    /**
+     * Состояние одного запуска плана; {@code retries} — повторы шагов, израсходованные из бюджета плана.
+     *
+     * State of one plan run; {@code retries} counts step retries taken from the plan budget.
+     */
+    private record Run(ExecutionDeadline deadline, CancellationToken cancellation, boolean reuseSession, Span span,
+                       AtomicInteger retries) {
+    }
+
+    /**
+     * Итог группы {@link CommandCoalescer}: завершённые шаги, остановка на неуспешном шаге и остановка плана
+     * (отмена или дедлайн).
+     *
+     * Outcome of a {@link CommandCoalescer} group: finished steps, whether it stopped at a failed step and whether
+     * the plan stops (cancellation or deadline).
+     */
+    private record Coalesced(int completed, boolean stopped, boolean halted) {
+        static final Coalesced NONE = new Coalesced(0, false, false);
+    }
+}
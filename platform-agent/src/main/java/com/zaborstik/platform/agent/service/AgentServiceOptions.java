@@ -0,0 +1,79 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.dto.HedgePolicy;
+import com.zaborstik.platform.agent.dto.NavigationPolicy;
+import com.zaborstik.platform.agent.dto.RetryPolicy;
+import com.zaborstik.platform.agent.dto.TimeoutPolicy;
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+
+/**
+ * Политики и режимы отправки {@link AgentService}; не заданные (null) значения заменяются значениями по умолчанию.
+ * <p>
+ * Policies and send modes of {@link AgentService}; unset (null) values fall back to the defaults.
+ *
+ * @param retryPolicy      политика повторов шагов / step retry policy
+ * @param timeoutPolicy    таймауты плана и команд / plan and command timeouts
+ * @param hedgePolicy      хеджирование идемпотентных шагов; хедж-запросы идут во вторую сессию того же агента
+ *                         ({@link HedgeMirror}) / hedging of idempotent steps; hedges go to a second session of the
+ *                         same agent ({@link HedgeMirror})
+ * @param metrics          реестр метрик исполнения, может быть общим для нескольких сервисов /
+ *                         execution metrics registry, may be shared by several services
+ * @param navigationPolicy пропуск повторной навигации на текущую страницу / skipping navigation to the current page
+ * @param coordinateMode   способ отправки шагов с координатами; без поддержки у агента сервис переходит к
+ *                         {@link CoordinateStepMode#fallback()} / how coordinate steps are sent; the service falls
+ *                         back to {@link CoordinateStepMode#fallback()} when the agent lacks support
+ * @param coalesceCommands объединять соседние шаги на одной цели в один пакет ({@link CommandCoalescer}) /
+ *                         coalesce adjacent steps on the same target into one batch ({@link CommandCoalescer})
+ */
+public record AgentServiceOptions(RetryPolicy retryPolicy, TimeoutPolicy timeoutPolicy, HedgePolicy hedgePolicy,
+                                  ExecutionMetrics metrics, NavigationPolicy navigationPolicy,
+                                  CoordinateStepMode coordinateMode, boolean coalesceCommands) {
+
+    public AgentServiceOptions {
+        retryPolicy = retryPolicy != null ? retryPolicy : RetryPolicy.defaultPolicy();
+        timeoutPolicy = timeoutPolicy != null ? timeoutPolicy : TimeoutPolicy.none();
+        hedgePolicy = hedgePolicy != null ? hedgePolicy : HedgePolicy.disabled();
+        metrics = metrics != null ? metrics : new ExecutionMetrics();
+        navigationPolicy = navigationPolicy != null ? navigationPolicy : NavigationPolicy.defaultPolicy();
+        coordinateMode = coordinateMode != null ? coordinateMode : CoordinateStepMode.SEQUENTIAL;
+    }
+
+    public static AgentServiceOptions defaults() {
+        return new AgentServiceOptions(null, null, null, null, null, null, false);
+    }
+
+    public AgentServiceOptions withRetryPolicy(RetryPolicy retryPolicy) {
+        return new AgentServiceOptions(retryPolicy, timeoutPolicy, hedgePolicy, metrics, navigationPolicy,
+            coordinateMode, coalesceCommands);
+    }
+
+    public AgentServiceOptions withTimeoutPolicy(TimeoutPolicy timeoutPolicy) {
+        return new AgentServiceOptions(retryPolicy, timeoutPolicy, hedgePolicy, metrics, navigationPolicy,
+            coordinateMode, coalesceCommands);
+    }
+
+    public AgentServiceOptions withHedgePolicy(HedgePolicy hedgePolicy) {
+        return new AgentServiceOptions(retryPolicy, timeoutPolicy, hedgePolicy, metrics, navigationPolicy,
+            coordinateMode, coalesceCommands);
+    }
+
+    public AgentServiceOptions withMetrics(ExecutionMetrics metrics) {
+        return new AgentServiceOptions(retryPolicy, timeoutPolicy, hedgePolicy, metrics, navigationPolicy,
+            coordinateMode, coalesceCommands);
+    }
+
+    public AgentServiceOptions withNavigationPolicy(NavigationPolicy navigationPolicy) {
+        return new AgentServiceOptions(retryPolicy, timeoutPolicy, hedgePolicy, metrics, navigationPolicy,
+            coordinateMode, coalesceCommands);
+    }
+
+    public AgentServiceOptions withCoordinateMode(CoordinateStepMode coordinateMode) {
+        return new AgentServiceOptions(retryPolicy, timeoutPolicy, hedgePolicy, metrics, navigationPolicy,
+            coordinateMode, coalesceCommands);
+    }
+
+    public AgentServiceOptions withCoalesceCommands(boolean coalesceCommands) {
+        return new AgentServiceOptions(retryPolicy, timeoutPolicy, hedgePolicy, metrics, navigationPolicy,
+            coordinateMode, coalesceCommands);
+    }
+}
@@ -0,0 +1,513 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.plan.PlanStep;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Асинхронная доставка событий {@link StepExecutionCallback}.
+ * <p>
+ * Диспетчер сам является колбэком: {@link AgentService} вызывает его на потоке исполнения, а он лишь
+ * кладёт событие в ограниченный lock-free кольцевой буфер каждого подписчика. Каждый подписчик
+ * обслуживается своим потоком, поэтому медленный слушатель (запись в БД, push в UI) не задерживает
+ * ни шаги плана, ни других слушателей. Поведение при переполнении задаёт {@link OverflowPolicy},
+ * задержку доставки по каждому слушателю показывает {@link #stats()} и пишет {@link ExecutionMetrics}.
+ * Колбэк отдельного запуска плана доставляется через {@link #route(String, StepExecutionCallback)}: поток канала
+ * общий для всех запусков, а {@link Route#close()} дожидается доставки событий запуска.
+ * <p>
+ * Asynchronous delivery of {@link StepExecutionCallback} events.
+ * <p>
+ * The dispatcher is a callback itself: {@link AgentService} calls it on the executing thread and it only
+ * puts the event into the bounded lock-free ring buffer of every subscriber. Each subscriber is served by
+ * its own thread, so a slow listener (DB persistence, UI push) delays neither plan steps nor other
+ * listeners. {@link OverflowPolicy} defines the overflow behavior; {@link #stats()} reports per-listener lag,
+ * which is also recorded in {@link ExecutionMetrics}.
+ * The callback of a single plan run is delivered through {@link #route(String, StepExecutionCallback)}: the channel
+ * thread is shared by all runs, and {@link Route#close()} waits until the events of the run are delivered.
+ */
+public final class CallbackDispatcher implements StepExecutionCallback, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(CallbackDispatcher.class);
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final Duration DEFAULT_CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * Поведение при заполненном буфере подписчика.
+     *
+     * Behavior when the subscriber buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Новое событие отбрасывается. The new event is discarded.
+         */
+        DROP,
+        /**
+         * Поток исполнения ждёт свободного места. The executing thread waits for free space.
+         */
+        BLOCK,
+        /**
+         * События шагов схлопываются до последнего; события плана не теряются (ждут места).
+         * Step events collapse to the latest one; plan events are never lost (they wait for space).
+         */
+        COALESCE
+    }
+
+    /**
+     * Метрики одного слушателя.
+     *
+     * Metrics of one listener.
+     *
+     * @param published  событий опубликовано / events published
+     * @param delivered  событий доставлено / events delivered
+     * @param dropped    событий отброшено (DROP) / events dropped (DROP)
+     * @param coalesced  событий заменено более новыми (COALESCE) / events replaced by newer ones (COALESCE)
+     * @param failures   исключений слушателя / listener exceptions
+     * @param pending    событий ждёт доставки / events awaiting delivery
+     * @param lastLagMs  задержка последней доставки / lag of the last delivery
+     * @param maxLagMs   максимальная задержка доставки / maximum delivery lag
+     */
+    public record ListenerStats(String name, long published, long delivered, long dropped, long coalesced,
+                                long failures, int pending, long lastLagMs, long maxLagMs) {
+    }
+
+    private final int capacity;
+    private final OverflowPolicy defaultPolicy;
+    private final ExecutionMetrics metrics;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    public CallbackDispatcher() {
+        this(DEFAULT_CAPACITY, OverflowPolicy.DROP);
+    }
+
+    /**
+     * @param capacity      ёмкость буфера каждого подписчика / buffer capacity of each subscriber
+     * @param defaultPolicy политика переполнения по умолчанию / default overflow policy
+     */
+    public CallbackDispatcher(int capacity, OverflowPolicy defaultPolicy) {
+        this(capacity, defaultPolicy, null);
+    }
+
+    /**
+     * @param metrics реестр для задержки доставки и отброшенных событий по слушателю, может быть null /
+     *                registry for per-listener delivery lag and dropped events, may be null
+     */
+    public CallbackDispatcher(int capacity, OverflowPolicy defaultPolicy, ExecutionMetrics metrics) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.defaultPolicy = Objects.requireNonNull(defaultPolicy, "defaultPolicy cannot be null");
+        this.metrics = metrics;
+    }
+
+    public CallbackDispatcher subscribe(String name, StepExecutionCallback listener) {
+        return subscribe(name, listener, defaultPolicy);
+    }
+
+    /**
+     * Подписывает слушателя и запускает его поток доставки.
+     *
+     * Subscribes the listener and starts its delivery thread.
+     */
+    public CallbackDispatcher subscribe(String name, StepExecutionCallback listener, OverflowPolicy policy) {
+        Objects.requireNonNull(name, "name cannot be null");
+        Objects.requireNonNull(listener, "listener cannot be null");
+        Objects.requireNonNull(policy, "policy cannot be null");
+        if (closed) {
+            throw new IllegalStateException("dispatcher is closed");
+        }
+        Subscriber subscriber = new Subscriber(name, listener, policy, new EventRing<>(capacity));
+        subscribers.add(subscriber);
+        subscriber.thread.start();
+        return this;
+    }
+
+    /**
+     * Колбэк одного запуска, события которого доставляет поток канала {@code name} (канал создаётся при первом
+     * обращении с политикой по умолчанию). Рассылку подписчикам маршрут не затрагивает; после закрытия маршрута
+     * или диспетчера события доставляются синхронно.
+     *
+     * Callback of a single run whose events are delivered by the thread of channel {@code name} (the channel is
+     * created on first use with the default policy). Subscribers do not receive routed events; once the route or
+     * the dispatcher is closed, events are delivered synchronously.
+     */
+    public Route route(String name, StepExecutionCallback callback) {
+        Objects.requireNonNull(name, "name cannot be null");
+        Objects.requireNonNull(callback, "callback cannot be null");
+        return new Route(channel(name), callback);
+    }
+
+    private synchronized Subscriber channel(String name) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.listener == null && subscriber.name.equals(name)) {
+                return subscriber;
+            }
+        }
+        if (closed) {
+            return null;
+        }
+        Subscriber channel = new Subscriber(name, null, defaultPolicy, new EventRing<>(capacity));
+        subscribers.add(channel);
+        channel.thread.start();
+        return channel;
+    }
+
+    @Override
+    public void onStepStarted(PlanStep step, int stepIndex, int totalSteps) {
+        publish(Event.stepStarted(step, stepIndex, totalSteps, null));
+    }
+
+    @Override
+    public void onStepCompleted(PlanStep step, StepExecutionResult result, int stepIndex) {
+        publish(Event.stepCompleted(step, result, stepIndex, null));
+    }
+
+    @Override
+    public void onPlanStarted(Plan plan) {
+        publish(Event.planStarted(plan, null));
+    }
+
+    @Override
+    public void onPlanCompleted(Plan plan, List<StepExecutionResult> results, boolean success) {
+        publish(Event.planCompleted(plan, results, success, null));
+    }
+
+    public List<ListenerStats> stats() {
+        return subscribers.stream().map(Subscriber::stats).toList();
+    }
+
+    /**
+     * Прекращает приём событий и ждёт доставки уже принятых (не дольше 5 секунд).
+     *
+     * Stops accepting events and waits for accepted ones to be delivered (at most 5 seconds).
+     */
+    @Override
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT);
+    }
+
+    public void close(Duration timeout) {
+        synchronized (this) {
+            closed = true;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (Subscriber subscriber : subscribers) {
+            LockSupport.unpark(subscriber.thread);
+            long remainingMs = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            try {
+                subscriber.thread.join(Math.max(1, remainingMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (subscriber.thread.isAlive()) {
+                log.warn("Callback listener {} did not drain in time, {} events pending",
+                    subscriber.name, subscriber.pending());
+                subscriber.thread.interrupt();
+            }
+        }
+    }
+
+    private void publish(Event event) {
+        if (closed) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.listener != null) {
+                subscriber.publish(event);
+            }
+        }
+    }
+
+    /**
+     * Колбэк запуска, доставляемый через канал диспетчера; {@link #close()} ждёт доставки его событий
+     * (не дольше 5 секунд).
+     *
+     * Run callback delivered through a dispatcher channel; {@link #close()} waits for its events to be delivered
+     * (at most 5 seconds).
+     */
+    public final class Route implements StepExecutionCallback, AutoCloseable {
+        private final Subscriber channel;
+        private final StepExecutionCallback target;
+        private final AtomicLong outstanding = new AtomicLong();
+        private volatile boolean done;
+
+        private Route(Subscriber channel, StepExecutionCallback target) {
+            this.channel = channel;
+            this.target = target;
+        }
+
+        @Override
+        public void onStepStarted(PlanStep step, int stepIndex, int totalSteps) {
+            publish(Event.stepStarted(step, stepIndex, totalSteps, this));
+        }
+
+        @Override
+        public void onStepCompleted(PlanStep step, StepExecutionResult result, int stepIndex) {
+            publish(Event.stepCompleted(step, result, stepIndex, this));
+        }
+
+        @Override
+        public void onPlanStarted(Plan plan) {
+            publish(Event.planStarted(plan, this));
+        }
+
+        @Override
+        public void onPlanCompleted(Plan plan, List<StepExecutionResult> results, boolean success) {
+            publish(Event.planCompleted(plan, results, success, this));
+        }
+
+        private void publish(Event event) {
+            if (channel == null || done || closed) {
+                event.deliver(target);
+                return;
+            }
+            outstanding.incrementAndGet();
+            if (!channel.publish(event) && closed) {
+                event.deliver(target);
+            }
+        }
+
+        private void settled() {
+            outstanding.decrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            done = true;
+            long deadline = System.nanoTime() + DEFAULT_CLOSE_TIMEOUT.toNanos();
+            while (outstanding.get() > 0) {
+                if (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()) {
+                    log.warn("Callback channel {} did not deliver {} run events in time",
+                        channel.name, outstanding.get());
+                    return;
+                }
+                LockSupport.unpark(channel.thread);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            }
+        }
+    }
+
+    private enum EventType {
+        PLAN_STARTED,
+        STEP_STARTED,
+        STEP_COMPLETED,
+        PLAN_COMPLETED
+    }
+
+    /**
+     * @param route маршрут запуска; null — событие для подписчиков / run route; null for a subscriber event
+     */
+    private record Event(EventType type, Plan plan, PlanStep step, StepExecutionResult result,
+                         List<StepExecutionResult> results, int stepIndex, int totalSteps, boolean success,
+                         Route route, long enqueuedAtNanos) {
+
+        private static Event stepStarted(PlanStep step, int stepIndex, int totalSteps, Route route) {
+            return new Event(EventType.STEP_STARTED, null, step, null, null, stepIndex, totalSteps, false, route,
+                System.nanoTime());
+        }
+
+        private static Event stepCompleted(PlanStep step, StepExecutionResult result, int stepIndex, Route route) {
+            return new Event(EventType.STEP_COMPLETED, null, step, result, null, stepIndex, 0, false, route,
+                System.nanoTime());
+        }
+
+        private static Event planStarted(Plan plan, Route route) {
+            return new Event(EventType.PLAN_STARTED, plan, null, null, null, -1, 0, false, route, System.nanoTime());
+        }
+
+        private static Event planCompleted(Plan plan, List<StepExecutionResult> results, boolean success,
+                                           Route route) {
+            return new Event(EventType.PLAN_COMPLETED, plan, null, null, results, -1, 0, success, route,
+                System.nanoTime());
+        }
+
+        private void settled() {
+            if (route != null) {
+                route.settled();
+            }
+        }
+
+        private boolean isStepEvent() {
+            return type == EventType.STEP_STARTED || type == EventType.STEP_COMPLETED;
+        }
+
+        private void deliver(StepExecutionCallback listener) {
+            switch (type) {
+                case PLAN_STARTED -> listener.onPlanStarted(plan);
+                case STEP_STARTED -> listener.onStepStarted(step, stepIndex, totalSteps);
+                case STEP_COMPLETED -> listener.onStepCompleted(step, result, stepIndex);
+                case PLAN_COMPLETED -> listener.onPlanCompleted(plan, results, success);
+            }
+        }
+    }
+
+    /**
+     * Подписчик или канал маршрутов ({@code listener == null}): буфер, поток доставки и счётчики.
+     * При COALESCE переполнившее буфер событие шага ждёт в {@code latest}; пока оно там, новые события шагов
+     * заменяют его, а события плана ждут, так что порядок доставки сохраняется.
+     *
+     * Subscriber or route channel ({@code listener == null}): buffer, delivery thread and counters.
+     * Under COALESCE a step event that overflowed the buffer waits in {@code latest}; while it is there newer
+     * step events replace it and plan events wait, so delivery order is preserved.
+     */
+    private final class Subscriber implements Runnable {
+        private final String name;
+        private final StepExecutionCallback listener;
+        private final OverflowPolicy policy;
+        private final EventRing<Event> ring;
+        private final AtomicReference<Event> latest = new AtomicReference<>();
+        private final Thread thread;
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong maxLagNanos = new AtomicLong();
+        private volatile long lastLagNanos;
+        private volatile boolean idle;
+
+        private Subscriber(String name, StepExecutionCallback listener, OverflowPolicy policy, EventRing<Event> ring) {
+            this.name = name;
+            this.listener = listener;
+            this.policy = policy;
+            this.ring = ring;
+            this.thread = new Thread(this, "step-callback-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private boolean publish(Event event) {
+            published.incrementAndGet();
+            boolean accepted = switch (policy) {
+                case DROP -> ring.offer(event);
+                case BLOCK -> offerBlocking(event);
+                case COALESCE -> event.isStepEvent() ? offerCoalescing(event) : offerAfterLatest(event);
+            };
+            if (!accepted) {
+                dropped.incrementAndGet();
+                if (metrics != null) {
+                    metrics.recordCallbackDrop(name);
+                }
+                event.settled();
+            }
+            if (idle) {
+                LockSupport.unpark(thread);
+            }
+            return accepted;
+        }
+
+        private boolean offerBlocking(Event event) {
+            while (!ring.offer(event)) {
+                if (closed || Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                LockSupport.unpark(thread);
+                Thread.onSpinWait();
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+            return true;
+        }
+
+        private boolean offerCoalescing(Event event) {
+            if (latest.get() == null && ring.offer(event)) {
+                return true;
+            }
+            Event replaced = latest.getAndSet(event);
+            if (replaced != null) {
+                coalesced.incrementAndGet();
+                replaced.settled();
+            }
+            return true;
+        }
+
+        private boolean offerAfterLatest(Event event) {
+            while (latest.get() != null) {
+                if (closed || Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+            return offerBlocking(event);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Event event = next();
+                if (event != null) {
+                    deliver(event);
+                    continue;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (closed) {
+                    // Событие, опубликованное до close(), могло быть ещё не видно при последнем poll.
+                    // An event published before close() may not have been visible to the last poll.
+                    while ((event = next()) != null && !Thread.currentThread().isInterrupted()) {
+                        deliver(event);
+                    }
+                    return;
+                }
+                idle = true;
+                if (ring.size() == 0 && latest.get() == null) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+            }
+        }
+
+        private Event next() {
+            Event event = ring.poll();
+            return event != null ? event : latest.getAndSet(null);
+        }
+
+        private void deliver(Event event) {
+            try {
+                event.deliver(event.route() != null ? event.route().target : listener);
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+                log.warn("Callback listener {} failed on {}: {}", name, event.type(), e.getMessage());
+            }
+            long lag = System.nanoTime() - event.enqueuedAtNanos();
+            lastLagNanos = lag;
+            maxLagNanos.accumulateAndGet(lag, Math::max);
+            delivered.incrementAndGet();
+            if (metrics != null) {
+                metrics.recordCallbackLag(name, TimeUnit.NANOSECONDS.toMillis(lag));
+            }
+            event.settled();
+        }
+
+        private int pending() {
+            return ring.size() + (latest.get() != null ? 1 : 0);
+        }
+
+        private ListenerStats stats() {
+            return new ListenerStats(
+                name,
+                published.get(),
+                delivered.get(),
+                dropped.get(),
+                coalesced.get(),
+                failures.get(),
+                pending(),
+                TimeUnit.NANOSECONDS.toMillis(lastLagNanos),
+                TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get())
+            );
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.zaborstik.platform.agent.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Токен кооперативной отмены выполнения плана.
+ * Отмена прерывает ожидание перед повтором, активные HTTP-запросы к агенту
+ * (через зарегистрированные обработчики) и запуск следующих шагов.
+ * <p>
+ * Cooperative cancellation token of a plan run.
+ * Cancelling aborts retry waits, in-flight agent HTTP calls (through registered handlers)
+ * and prevents further steps from starting.
+ */
+public final class CancellationToken {
+    private static final Logger log = LoggerFactory.getLogger(CancellationToken.class);
+    private static final CancellationToken NONE = new CancellationToken(false);
+
+    private final boolean cancellable;
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+    private final Set<Registration> handlers = ConcurrentHashMap.newKeySet();
+    private volatile String reason;
+
+    private CancellationToken(boolean cancellable) {
+        this.cancellable = cancellable;
+    }
+
+    /**
+     * Новый токен, который можно отменить.
+     *
+     * New token that can be cancelled.
+     */
+    public static CancellationToken create() {
+        return new CancellationToken(true);
+    }
+
+    /**
+     * Токен, который никогда не отменяется.
+     *
+     * Token that is never cancelled.
+     */
+    public static CancellationToken none() {
+        return NONE;
+    }
+
+    public boolean isCancellable() {
+        return cancellable;
+    }
+
+    public boolean isCancelled() {
+        return cancelled.getCount() == 0;
+    }
+
+    /**
+     * Причина отмены или null, если токен не отменён.
+     *
+     * Cancellation reason or null when the token is not cancelled.
+     */
+    public String reason() {
+        return reason;
+    }
+
+    /**
+     * Отменяет токен и вызывает зарегистрированные обработчики.
+     *
+     * Cancels the token and runs registered handlers.
+     *
+     * @return true, если этот вызов отменил токен / true if this call cancelled the token
+     */
+    public boolean cancel(String reason) {
+        if (!cancellable) {
+            throw new UnsupportedOperationException("CancellationToken.none() cannot be cancelled");
+        }
+        synchronized (this) {
+            if (isCancelled()) {
+                return false;
+            }
+            this.reason = reason != null ? reason : "cancelled";
+            cancelled.countDown();
+        }
+        for (Registration handler : handlers) {
+            handler.fire();
+        }
+        return true;
+    }
+
+    /**
+     * Регистрирует обработчик отмены. Если токен уже отменён, обработчик вызывается сразу.
+     * Регистрацию нужно закрыть, когда операция завершилась.
+     *
+     * Registers a cancellation handler. Runs it immediately when the token is already cancelled.
+     * Close the registration once the operation has finished.
+     */
+    public Registration onCancel(Runnable handler) {
+        Objects.requireNonNull(handler, "handler cannot be null");
+        Registration registration = new Registration(handler);
+        if (!cancellable) {
+            return registration;
+        }
+        handlers.add(registration);
+        if (isCancelled()) {
+            registration.fire();
+        }
+        return registration;
+    }
+
+    /**
+     * Ждёт указанное время или до отмены.
+     *
+     * Waits for the given duration or until cancelled.
+     *
+     * @return true, если токен отменён / true if the token is cancelled
+     */
+    public boolean await(Duration timeout) {
+        Objects.requireNonNull(timeout, "timeout cannot be null");
+        try {
+            return cancelled.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return isCancelled();
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (!cancellable) {
+            return "CancellationToken{none}";
+        }
+        return isCancelled() ? "CancellationToken{cancelled=" + reason + "}" : "CancellationToken{active}";
+    }
+
+    /**
+     * Регистрация обработчика отмены; обработчик вызывается не более одного раза.
+     *
+     * Cancellation handler registration; the handler runs at most once.
+     */
+    public final class Registration implements AutoCloseable {
+        private final Runnable handler;
+
+        private Registration(Runnable handler) {
+            this.handler = handler;
+        }
+
+        private void fire() {
+            if (handlers.remove(this)) {
+                try {
+                    handler.run();
+                } catch (RuntimeException e) {
+                    log.warn("Cancellation handler failed: {}", e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            handlers.remove(this);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Объединение соседних шагов на одной цели в одну составную команду агента. Группа — один или несколько
+ * «косметических» шагов ({@code explain}, {@code hover}) и, возможно, следующий за ними шаг на той же цели
+ * ({@link com.zaborstik.platform.core.plan.PlanStep#entityId()}), например {@code explain → hover → click}.
+ * Шаг с координатами входит в группу только составной командой ({@link CompiledPlan.Step#fusedCommand()}), иначе
+ * группа заканчивается перед ним.
+ *
+ * Coalescing of adjacent steps on the same target into one composite agent command. A group is one or more
+ * "cosmetic" steps ({@code explain}, {@code hover}) optionally followed by one more step on the same target
+ * ({@link com.zaborstik.platform.core.plan.PlanStep#entityId()}), e.g. {@code explain → hover → click}.
+ * A coordinate step joins a group only as a fused command ({@link CompiledPlan.Step#fusedCommand()}); otherwise
+ * the group ends before it.
+ */
+final class CommandCoalescer {
+    static final Set<String> COSMETIC_OPERATIONS = Set.of("explain", "hover");
+
+    private CommandCoalescer() {
+    }
+
+    /**
+     * Группа, начинающаяся с шага {@code from}; пустой список, если объединять нечего (меньше двух шагов).
+     *
+     * The group starting at step {@code from}; an empty list when there is nothing to coalesce (fewer than
+     * two steps).
+     *
+     * @param fusedCommands  шаги с координатами отправляются составными командами /
+     *                       coordinate steps are sent as fused commands
+     * @param excluded       шаги, которые выполняются только отдельно (например, хеджируемые) /
+     *                       steps that must run on their own (e.g. hedged ones)
+     */
+    static List<CompiledPlan.Step> group(List<CompiledPlan.Step> steps, int from, boolean fusedCommands,
+                                         Predicate<CompiledPlan.Step> excluded) {
+        Objects.requireNonNull(steps, "steps cannot be null");
+        CompiledPlan.Step first = steps.get(from);
+        String target = first.step().entityId();
+        if (target == null || target.isBlank() || !isCosmetic(first) || !joinable(first, fusedCommands, excluded)) {
+            return List.of();
+        }
+        List<CompiledPlan.Step> group = new ArrayList<>();
+        group.add(first);
+        for (int i = from + 1; i < steps.size() && isCosmetic(group.get(group.size() - 1)); i++) {
+            CompiledPlan.Step next = steps.get(i);
+            if (!target.equals(next.step().entityId()) || !joinable(next, fusedCommands, excluded)) {
+                break;
+            }
+            group.add(next);
+        }
+        return group.size() > 1 ? List.copyOf(group) : List.of();
+    }
+
+    /**
+     * Команда шага в составе группы. Command of a step within a group.
+     */
+    static AgentCommand command(CompiledPlan.Step step) {
+        return step.isCoordinateStep() ? step.fusedCommand() : step.command();
+    }
+
+    private static boolean isCosmetic(CompiledPlan.Step step) {
+        return COSMETIC_OPERATIONS.contains(step.operation());
+    }
+
+    private static boolean joinable(CompiledPlan.Step step, boolean fusedCommands,
+                                    Predicate<CompiledPlan.Step> excluded) {
+        if (step.isCoordinateStep() && (!fusedCommands || step.fusedCommand() == null)) {
+            return false;
+        }
+        return !excluded.test(step);
+    }
+}
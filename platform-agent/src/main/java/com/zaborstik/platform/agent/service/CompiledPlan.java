@@ -0,0 +1,82 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.plan.PlanStep;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * План, скомпилированный в программу команд агента.
+ * Все операции, селекторы и параметры шагов разрешены заранее; программа неизменяема
+ * и используется повторно всеми попытками шага.
+ *
+ * Plan compiled into a program of agent commands.
+ * Operations, selectors and step parameters are resolved up front; the program is immutable
+ * and shared by all attempts of a step.
+ *
+ * @param plan     исходный план / source plan
+ * @param steps    скомпилированные шаги в порядке плана / compiled steps in plan order
+ * @param problems ошибки компиляции; непустой список означает, что план невыполним /
+ *                 compilation problems; a non-empty list means the plan cannot be executed
+ */
+public record CompiledPlan(Plan plan, List<Step> steps, List<Problem> problems) {
+
+    public CompiledPlan {
+        Objects.requireNonNull(plan, "plan cannot be null");
+        steps = steps != null ? List.copyOf(steps) : List.of();
+        problems = problems != null ? List.copyOf(problems) : List.of();
+    }
+
+    public boolean isExecutable() {
+        return problems.isEmpty();
+    }
+
+    /**
+     * Скомпилированный шаг.
+     * Для шагов по координатам ({@code click}, {@code hover}, {@code type}) {@link #resolveCoords()}
+     * запрашивает координаты перед {@link #command()}; команда {@code click} превращается в CLICK_AT
+     * по полученным координатам. {@link #fusedCommand()} делает то же одним вызовом агента.
+     *
+     * Compiled step.
+     * Coordinate steps ({@code click}, {@code hover}, {@code type}) send {@link #resolveCoords()}
+     * before {@link #command()}; the {@code click} command becomes CLICK_AT at the resolved coordinates.
+     * {@link #fusedCommand()} does the same in a single agent call.
+     *
+     * @param step          исходный шаг / source step
+     * @param stepIndex     индекс шага в плане / step index in plan
+     * @param operation     {@code system.action.internalname} шага / step UI operation
+     * @param selector      разрешённый селектор или null для операций без селектора /
+     *                      resolved selector or null for operations without one
+     * @param command       команда операции / operation command
+     * @param resolveCoords команда RESOLVE_COORDS или null / RESOLVE_COORDS command or null
+     * @param fusedCommand  составная команда шага с координатами или null / fused coordinate command or null
+     */
+    public record Step(PlanStep step, int stepIndex, String operation, String selector,
+                       AgentCommand command, AgentCommand resolveCoords, AgentCommand fusedCommand) {
+
+        public Step {
+            Objects.requireNonNull(step, "step cannot be null");
+            Objects.requireNonNull(operation, "operation cannot be null");
+            Objects.requireNonNull(command, "command cannot be null");
+        }
+
+        public boolean isCoordinateStep() {
+            return resolveCoords != null;
+        }
+    }
+
+    /**
+     * Причина, по которой шаг невозможно выполнить.
+     *
+     * Reason why a step cannot be executed.
+     */
+    public record Problem(PlanStep step, int stepIndex, String message) {
+
+        public Problem {
+            Objects.requireNonNull(step, "step cannot be null");
+            Objects.requireNonNull(message, "message cannot be null");
+        }
+    }
+}
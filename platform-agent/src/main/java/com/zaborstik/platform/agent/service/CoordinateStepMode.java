@@ -0,0 +1,27 @@
+package com.zaborstik.platform.agent.service;
+
+/**
+ * Способ отправки шага с координатами ({@code click}, {@code hover}, {@code type}). Если агент не поддерживает
+ * выбранный способ, {@link AgentService} переходит к {@link #fallback()}.
+ *
+ * How a coordinate step ({@code click}, {@code hover}, {@code type}) is sent. When the agent does not support
+ * the chosen mode, {@link AgentService} switches to {@link #fallback()}.
+ */
+public enum CoordinateStepMode {
+    /** RESOLVE_COORDS и команда шага отдельными запросами / RESOLVE_COORDS and the step command as separate requests */
+    SEQUENTIAL,
+    /** RESOLVE_COORDS и команда шага одним {@code /execute-batch} / both commands in one {@code /execute-batch} */
+    BATCH,
+    /**
+     * Одна составная команда (RESOLVE_AND_CLICK, RESOLVE_AND_HOVER, RESOLVE_AND_TYPE): агент находит элемент
+     * и действует в одном вызове. One fused command: the agent resolves the element and acts in a single call.
+     */
+    FUSED;
+
+    public CoordinateStepMode fallback() {
+        return switch (this) {
+            case FUSED -> BATCH;
+            case BATCH, SEQUENTIAL -> SEQUENTIAL;
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package com.zaborstik.platform.agent.service;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Дедлайн выполнения плана (монотонные часы {@link System#nanoTime()}).
+ * Остаток бюджета ограничивает таймауты команд и количество повторов.
+ * <p>
+ * Plan execution deadline (monotonic {@link System#nanoTime()} clock).
+ * The remaining budget caps command timeouts and retry counts.
+ */
+public final class ExecutionDeadline {
+    private static final ExecutionDeadline NONE = new ExecutionDeadline(0, false);
+
+    private final long deadlineNanos;
+    private final boolean bounded;
+
+    private ExecutionDeadline(long deadlineNanos, boolean bounded) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Дедлайн без ограничения по времени.
+     *
+     * Deadline without a time limit.
+     */
+    public static ExecutionDeadline none() {
+        return NONE;
+    }
+
+    /**
+     * Дедлайн через {@code budget} от текущего момента.
+     *
+     * Deadline {@code budget} from now.
+     */
+    public static ExecutionDeadline after(Duration budget) {
+        Objects.requireNonNull(budget, "budget cannot be null");
+        if (budget.isNegative()) {
+            throw new IllegalArgumentException("budget must be >= 0");
+        }
+        return new ExecutionDeadline(System.nanoTime() + budget.toNanos(), true);
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public boolean isExpired() {
+        return bounded && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Остаток бюджета; пусто для неограниченного дедлайна.
+     *
+     * Remaining budget; empty for an unbounded deadline.
+     */
+    public Optional<Duration> remaining() {
+        if (!bounded) {
+            return Optional.empty();
+        }
+        return Optional.of(Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime())));
+    }
+
+    /**
+     * Ограничивает таймаут остатком бюджета. Возвращает null, если ограничений нет.
+     *
+     * Caps timeout with the remaining budget. Returns null when there is no limit at all.
+     */
+    public Duration cap(Duration timeout) {
+        Optional<Duration> remaining = remaining();
+        if (remaining.isEmpty()) {
+            return timeout;
+        }
+        if (timeout == null || remaining.get().compareTo(timeout) < 0) {
+            return remaining.get();
+        }
+        return timeout;
+    }
+
+    @Override
+    public String toString() {
+        return bounded
+            ? "ExecutionDeadline{remaining=" + remaining().orElse(Duration.ZERO).toMillis() + "ms}"
+            : "ExecutionDeadline{none}";
+    }
+}
@@ -0,0 +1,57 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.trace.Span;
+
+/**
+ * Параметры одного запуска плана.
+ * <p>
+ * Options of a single plan run.
+ *
+ * @param stopOnFailure остановить выполнение после первого неуспешного шага / stop after the first failed step
+ * @param deadline      дедлайн плана; {@link ExecutionDeadline#none()} — использовать
+ *                      {@link com.zaborstik.platform.agent.dto.TimeoutPolicy#planTimeout()} /
+ *                      plan deadline; {@link ExecutionDeadline#none()} falls back to the policy plan timeout
+ * @param cancellation  токен отмены запуска / run cancellation token
+ * @param reuseSession  не переинициализировать браузер, если сессия уже открыта предыдущим запуском /
+ *                      skip browser initialization when a previous run left the session open
+ * @param traceSpan     родительский span трассы запуска; {@link Span#noop()} — без трассировки /
+ *                      parent span of the run trace; {@link Span#noop()} disables tracing
+ */
+public record ExecutionOptions(boolean stopOnFailure, ExecutionDeadline deadline, CancellationToken cancellation,
+                               boolean reuseSession, Span traceSpan) {
+
+    public ExecutionOptions {
+        deadline = deadline != null ? deadline : ExecutionDeadline.none();
+        cancellation = cancellation != null ? cancellation : CancellationToken.none();
+        traceSpan = traceSpan != null ? traceSpan : Span.noop();
+    }
+
+    public ExecutionOptions(boolean stopOnFailure, ExecutionDeadline deadline, CancellationToken cancellation,
+                            boolean reuseSession) {
+        this(stopOnFailure, deadline, cancellation, reuseSession, Span.noop());
+    }
+
+    public static ExecutionOptions defaults() {
+        return new ExecutionOptions(false, ExecutionDeadline.none(), CancellationToken.none(), false);
+    }
+
+    public ExecutionOptions withStopOnFailure(boolean stopOnFailure) {
+        return new ExecutionOptions(stopOnFailure, deadline, cancellation, reuseSession, traceSpan);
+    }
+
+    public ExecutionOptions withDeadline(ExecutionDeadline deadline) {
+        return new ExecutionOptions(stopOnFailure, deadline, cancellation, reuseSession, traceSpan);
+    }
+
+    public ExecutionOptions withCancellation(CancellationToken cancellation) {
+        return new ExecutionOptions(stopOnFailure, deadline, cancellation, reuseSession, traceSpan);
+    }
+
+    public ExecutionOptions withReuseSession(boolean reuseSession) {
+        return new ExecutionOptions(stopOnFailure, deadline, cancellation, reuseSession, traceSpan);
+    }
+
+    public ExecutionOptions withTraceSpan(Span traceSpan) {
+        return new ExecutionOptions(stopOnFailure, deadline, cancellation, reuseSession, traceSpan);
+    }
+}
@@ -0,0 +1,172 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.client.AgentException;
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Вторая сессия на том же агенте для хедж-запросов {@link HedgedRequestSender}.
+ * Зеркало повторяет только загрузку страницы основной сессии ({@code open_page}) в фоне; любое другое изменение
+ * страницы (клик, ввод, ошибка, новая инициализация) делает его устаревшим до следующей загрузки. Хедж-запрос
+ * отправляется, лишь пока зеркало показывает ту же свежезагруженную страницу, иначе ответ второй сессии мог бы
+ * прочитать другое состояние.
+ *
+ * Зеркало не держит своего потока: синхронизация идёт в общем пуле хедж-запросов, по одной за раз.
+ *
+ * Second session on the same agent for {@link HedgedRequestSender} hedge requests.
+ * The mirror only replays page loads of the primary session ({@code open_page}) in the background; any other page
+ * change (a click, typing, a failure, a new initialization) makes it stale until the next load. A hedge is only sent
+ * while the mirror shows the same freshly loaded page, otherwise the second session could read a different state.
+ * The mirror has no thread of its own: syncs run one at a time on the shared hedge request pool.
+ */
+final class HedgeMirror implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(HedgeMirror.class);
+
+    private final AgentClient primary;
+    private final String baseUrl;
+    private final boolean headless;
+    private final Duration timeout;
+    private final Executor executor;
+    /** Поколение страницы основной сессии / page generation of the primary session */
+    private final AtomicLong generation = new AtomicLong();
+    /** Сериализует работу с сессией зеркала / serializes work with the mirror session */
+    private final Object sessionLock = new Object();
+    /** Пишется под {@link #sessionLock} / written under {@link #sessionLock} */
+    private volatile AgentClient client;
+    private boolean initialized;
+    private volatile boolean closed;
+    /** URL, который показывает зеркало в текущем поколении; null — не синхронизировано / null when out of sync */
+    private volatile String syncedUrl;
+
+    HedgeMirror(AgentClient primary, String baseUrl, boolean headless, Duration timeout) {
+        this(primary, baseUrl, headless, timeout, HedgedRequestSender.sharedExecutor());
+    }
+
+    HedgeMirror(AgentClient primary, String baseUrl, boolean headless, Duration timeout, Executor executor) {
+        this.primary = Objects.requireNonNull(primary, "primary cannot be null");
+        this.baseUrl = baseUrl;
+        this.headless = headless;
+        this.timeout = timeout;
+        this.executor = Objects.requireNonNull(executor, "executor cannot be null");
+    }
+
+    /**
+     * Основная сессия загрузила страницу {@code url}; зеркало открывает её же в фоне.
+     *
+     * The primary session loaded {@code url}; the mirror opens the same page in the background.
+     */
+    void follow(String url) {
+        long current;
+        synchronized (this) {
+            current = generation.incrementAndGet();
+            syncedUrl = null;
+        }
+        if (url == null || closed) {
+            return;
+        }
+        try {
+            executor.execute(() -> sync(current, url));
+        } catch (RejectedExecutionException e) {
+            log.debug("Hedge pool rejected mirroring of page {}", url);
+        }
+    }
+
+    /**
+     * Страница основной сессии изменилась не загрузкой; зеркало устарело.
+     *
+     * The primary session page changed other than by a load; the mirror is stale.
+     */
+    void invalidate() {
+        follow(null);
+    }
+
+    /**
+     * Клиент зеркала, если оно показывает {@code currentUrl}, иначе null.
+     *
+     * The mirror client when it shows {@code currentUrl}, otherwise null.
+     */
+    AgentClient readyFor(String currentUrl) {
+        String synced = syncedUrl;
+        return currentUrl != null && currentUrl.equals(synced) ? client : null;
+    }
+
+    private void sync(long expected, String url) {
+        synchronized (sessionLock) {
+            if (generation.get() == expected && !closed) {
+                open(expected, url);
+            }
+        }
+    }
+
+    private void open(long expected, String url) {
+        try {
+            if (client == null) {
+                client = primary.withSession("hedge-" + UUID.randomUUID());
+                if (client == null) {
+                    return;
+                }
+            }
+            if (!initialized) {
+                AgentResponse response = timeout != null
+                    ? client.initialize(baseUrl, headless, timeout)
+                    : client.initialize(baseUrl, headless);
+                initialized = response != null && response.success();
+                if (!initialized) {
+                    log.debug("Hedge mirror session not initialized: {}", response != null ? response.error() : null);
+                    return;
+                }
+            }
+            AgentCommand open = AgentCommand.openPage(url, "hedge mirror");
+            AgentResponse response = timeout != null ? client.execute(open, timeout) : client.execute(open);
+            if (response != null && response.success()) {
+                synchronized (this) {
+                    if (generation.get() == expected) {
+                        syncedUrl = url;
+                    }
+                }
+            }
+        } catch (AgentException | RuntimeException e) {
+            log.debug("Hedge mirror failed to open {}: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Закрывает сессию зеркала на агенте; после этого зеркало больше не синхронизируется.
+     *
+     * Closes the mirror session on the agent; the mirror does not sync any more afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        invalidate();
+        try {
+            executor.execute(this::closeSession);
+        } catch (RejectedExecutionException e) {
+            closeSession();
+        }
+    }
+
+    private void closeSession() {
+        synchronized (sessionLock) {
+            if (client == null || !initialized) {
+                return;
+            }
+            initialized = false;
+            try {
+                client.close();
+            } catch (AgentException | RuntimeException e) {
+                log.debug("Failed to close hedge mirror session: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.client.AgentException;
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import com.zaborstik.platform.agent.dto.HedgePolicy;
+import com.zaborstik.platform.agent.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Отправка идемпотентных команд с хеджированием.
+ *
+ * Если ответ основной сессии не пришёл за наблюдаемый перцентиль задержки операции, тот же запрос
+ * отправляется второй сессии с тем же состоянием страницы; побеждает первый успешный ответ, проигравший запрос
+ * отменяется. Если такой сессии сейчас нет, запрос ждёт основную. Доля хеджированных запросов ограничена
+ * {@link HedgePolicy#maxHedgeRatio()}. Все отправители и зеркала {@link HedgeMirror} делят один пул демон-потоков,
+ * поэтому копии сервиса для сессий пулов не заводят своих потоков.
+ *
+ * Sends idempotent commands with hedging.
+ *
+ * When the primary session has not answered within the observed latency quantile of the operation,
+ * the same request is sent to a second session with the same page state; the first successful response wins and
+ * the loser is cancelled. When no such session is available right now, the request waits for the primary.
+ * The share of hedged requests is capped by {@link HedgePolicy#maxHedgeRatio()}. All senders and
+ * {@link HedgeMirror} mirrors share one pool of daemon threads, so service copies for pooled sessions start no
+ * threads of their own.
+ */
+public final class HedgedRequestSender {
+    private static final Logger log = LoggerFactory.getLogger(HedgedRequestSender.class);
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+    /** Простаивающие потоки завершаются через минуту / idle threads exit after a minute */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "agent-hedge-" + THREAD_INDEX.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AgentClient primary;
+    private final Supplier<AgentClient> hedge;
+    private final HedgePolicy policy;
+    private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong eligibleRequests = new AtomicLong();
+    private final AtomicLong hedgedRequests = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    public HedgedRequestSender(AgentClient primary, AgentClient hedge, HedgePolicy policy) {
+        this(primary, constant(Objects.requireNonNull(hedge, "hedge cannot be null")), policy);
+    }
+
+    /**
+     * @param hedge клиент сессии для хедж-запроса в момент хеджирования; null — сессии с тем же состоянием
+     *              страницы сейчас нет / client of the hedge session at hedging time; null when no session with
+     *              the same page state is available right now
+     */
+    public HedgedRequestSender(AgentClient primary, Supplier<AgentClient> hedge, HedgePolicy policy) {
+        this.primary = Objects.requireNonNull(primary, "primary cannot be null");
+        this.hedge = Objects.requireNonNull(hedge, "hedge cannot be null");
+        this.policy = Objects.requireNonNull(policy, "policy cannot be null");
+    }
+
+    /**
+     * Общий пул хедж-запросов и синхронизации зеркал. Shared pool of hedge requests and mirror syncs.
+     */
+    static ExecutorService sharedExecutor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Выполняет команду операции, при необходимости с хеджированием.
+     *
+     * Executes command of the operation, hedging it when needed.
+     */
+    public AgentResponse send(String operation, AgentCommand command, Duration timeout,
+                              CancellationToken cancellation) throws AgentException {
+        LatencyHistogram histogram = latencies.computeIfAbsent(operation, key -> new LatencyHistogram());
+        long eligible = eligibleRequests.incrementAndGet();
+        long startedAt = System.nanoTime();
+        long thresholdMs = histogram.count() >= policy.minSamples() ? histogram.percentile(policy.quantile()) : -1;
+
+        if (thresholdMs < 0) {
+            AgentResponse response = primary.execute(command, timeout, cancellation);
+            histogram.record(elapsedMs(startedAt));
+            return response;
+        }
+
+        CancellationToken primaryToken = CancellationToken.create();
+        CancellationToken hedgeToken = CancellationToken.create();
+        try (CancellationToken.Registration ignored = cancellation.onCancel(() -> {
+            primaryToken.cancel(cancellation.reason());
+            hedgeToken.cancel(cancellation.reason());
+        })) {
+            CompletableFuture<AgentResponse> first = submit(primary, command, timeout, primaryToken);
+            AgentResponse response = awaitWithin(first, thresholdMs);
+            if (response == null) {
+                AgentClient hedgeClient = hedge.get();
+                if (hedgeClient != null && reserveHedge(eligible)) {
+                    log.debug("Hedging {} after {}ms (threshold {}ms)", command.type(), elapsedMs(startedAt), thresholdMs);
+                    CompletableFuture<AgentResponse> second =
+                        submit(hedgeClient, command, remaining(timeout, startedAt), hedgeToken);
+                    response = firstSuccessful(first, second);
+                } else {
+                    response = join(first);
+                }
+            }
+            histogram.record(elapsedMs(startedAt));
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return AgentResponse.failure("Command execution interrupted", elapsedMs(startedAt));
+        } finally {
+            primaryToken.cancel("hedge settled");
+            hedgeToken.cancel("hedge settled");
+        }
+    }
+
+    public long eligibleRequests() {
+        return eligibleRequests.get();
+    }
+
+    public long hedgedRequests() {
+        return hedgedRequests.get();
+    }
+
+    public long hedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * Текущий порог хеджирования операции, -1 пока наблюдений недостаточно.
+     *
+     * Current hedge threshold of the operation, -1 while there are too few observations.
+     */
+    public long thresholdMs(String operation) {
+        LatencyHistogram histogram = latencies.get(operation);
+        if (histogram == null || histogram.count() < policy.minSamples()) {
+            return -1;
+        }
+        return histogram.percentile(policy.quantile());
+    }
+
+    private CompletableFuture<AgentResponse> submit(AgentClient client, AgentCommand command, Duration timeout,
+                                                    CancellationToken token) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.execute(command, timeout, token);
+            } catch (AgentException e) {
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR);
+    }
+
+    private boolean reserveHedge(long eligible) {
+        long current;
+        do {
+            current = hedgedRequests.get();
+            if (current + 1 > policy.maxHedgeRatio() * eligible) {
+                return false;
+            }
+        } while (!hedgedRequests.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private AgentResponse firstSuccessful(CompletableFuture<AgentResponse> first,
+                                          CompletableFuture<AgentResponse> second)
+            throws AgentException, InterruptedException {
+        try {
+            CompletableFuture.anyOf(first, second).get();
+        } catch (ExecutionException ignored) {
+            // ошибка одного из запросов разбирается ниже / a failed request is handled below
+        }
+        boolean hedgeFirst = !first.isDone();
+        CompletableFuture<AgentResponse> winner = hedgeFirst ? second : first;
+        CompletableFuture<AgentResponse> other = hedgeFirst ? first : second;
+        AgentResponse response = joinQuietly(winner);
+        if (response == null || !response.success()) {
+            AgentResponse fallback = joinQuietly(other);
+            if (fallback != null && (fallback.success() || response == null)) {
+                hedgeFirst = !hedgeFirst;
+                response = fallback;
+            }
+        }
+        if (response == null) {
+            return join(first);
+        }
+        if (hedgeFirst) {
+            hedgeWins.incrementAndGet();
+        }
+        return response;
+    }
+
+    private static AgentResponse awaitWithin(CompletableFuture<AgentResponse> future, long thresholdMs)
+            throws AgentException, InterruptedException {
+        try {
+            return unwrap(() -> future.get(Math.max(1, thresholdMs), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            return null;
+        }
+    }
+
+    private static AgentResponse join(CompletableFuture<AgentResponse> future)
+            throws AgentException, InterruptedException {
+        try {
+            return unwrap(future::get);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static AgentResponse joinQuietly(CompletableFuture<AgentResponse> future) throws InterruptedException {
+        try {
+            return join(future);
+        } catch (AgentException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static AgentResponse unwrap(FutureGet get)
+            throws AgentException, InterruptedException, TimeoutException {
+        try {
+            return get.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AgentException agentException) {
+                throw agentException;
+            }
+            throw new AgentException("Hedged request failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static Supplier<AgentClient> constant(AgentClient client) {
+        return () -> client;
+    }
+
+    private static Duration remaining(Duration timeout, long startedAtNanos) {
+        if (timeout == null) {
+            return null;
+        }
+        Duration left = timeout.minusNanos(System.nanoTime() - startedAtNanos);
+        return left.isNegative() || left.isZero() ? Duration.ofMillis(1) : left;
+    }
+
+    private static long elapsedMs(long startedAtNanos) {
+        return (System.nanoTime() - startedAtNanos) / 1_000_000;
+    }
+
+    @FunctionalInterface
+    private interface FutureGet {
+        AgentResponse get() throws InterruptedException, ExecutionException, TimeoutException;
+    }
+}
@@ -0,0 +1,189 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.WaitCondition;
+import com.zaborstik.platform.core.domain.Action;
+import com.zaborstik.platform.core.domain.UIBinding;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.plan.PlanStep;
+import com.zaborstik.platform.core.plan.PlanStepAction;
+import com.zaborstik.platform.core.resolver.Resolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Предварительная компиляция плана в программу команд агента.
+ * Разрешает операцию, селектор и параметры каждого шага до запуска браузера и проверяет,
+ * что план выполним: неизвестная операция или пустой селектор обнаруживаются без обращения к агенту.
+ *
+ * Pre-flight compilation of a plan into a program of agent commands.
+ * Resolves operation, selector and parameters of every step before the browser is launched and checks
+ * that the plan is executable: an unknown operation or an empty selector is detected without calling the agent.
+ */
+public final class PlanCompiler {
+    private static final Logger log = LoggerFactory.getLogger(PlanCompiler.class);
+
+    private static final Set<String> COORDINATE_OPERATIONS = Set.of("click", "hover", "type");
+    private static final Set<String> SELECTOR_OPERATIONS =
+        Set.of("click", "hover", "type", "select_option", "read_text");
+    private static final long DEFAULT_WAIT_TIMEOUT_MS = 5000L;
+
+    private final Resolver resolver;
+
+    public PlanCompiler(Resolver resolver) {
+        this.resolver = Objects.requireNonNull(resolver, "resolver cannot be null");
+    }
+
+    /**
+     * Компилирует все шаги плана; ошибки собираются, а не прерывают компиляцию.
+     *
+     * Compiles all plan steps; problems are collected instead of aborting compilation.
+     */
+    public CompiledPlan compile(Plan plan) {
+        Objects.requireNonNull(plan, "plan cannot be null");
+        List<CompiledPlan.Step> steps = new ArrayList<>(plan.steps().size());
+        List<CompiledPlan.Problem> problems = new ArrayList<>();
+        for (int stepIndex = 0; stepIndex < plan.steps().size(); stepIndex++) {
+            PlanStep step = plan.steps().get(stepIndex);
+            try {
+                String problem = compileStep(step, stepIndex, steps);
+                if (problem != null) {
+                    problems.add(new CompiledPlan.Problem(step, stepIndex, problem));
+                }
+            } catch (RuntimeException e) {
+                problems.add(new CompiledPlan.Problem(step, stepIndex, "Step compilation failed: " + e.getMessage()));
+            }
+        }
+        if (!problems.isEmpty()) {
+            log.warn("Plan {} is not executable: {} invalid step(s)", plan.id(), problems.size());
+        }
+        return new CompiledPlan(plan, steps, problems);
+    }
+
+    /**
+     * @return описание ошибки или null, если шаг добавлен в программу /
+     *         problem description or null when the step was added to the program
+     */
+    private String compileStep(PlanStep step, int stepIndex, List<CompiledPlan.Step> steps) {
+        String operation = resolveExecutorInternalName(step);
+        if (operation == null) {
+            return "Cannot resolve executor operation: add plan_step_action with a valid action id "
+                + "(system.action.internalname defines the UI operation).";
+        }
+
+        String selector = SELECTOR_OPERATIONS.contains(operation) ? resolveSelector(step.entityId()) : null;
+        if (selector != null && selector.isBlank()) {
+            return COORDINATE_OPERATIONS.contains(operation)
+                ? "Target selector is empty for coordinate step"
+                : "Target selector is empty for " + operation + " step";
+        }
+
+        AgentCommand command = convertToCommand(step, operation, selector);
+        if (command == null) {
+            return "Unknown executor operation: " + operation;
+        }
+        boolean coordinateStep = COORDINATE_OPERATIONS.contains(operation);
+        AgentCommand resolveCoords = coordinateStep ? AgentCommand.resolveCoords(selector, step.displayName()) : null;
+        AgentCommand fusedCommand = coordinateStep ? AgentCommand.fused(command) : null;
+        steps.add(new CompiledPlan.Step(step, stepIndex, operation, selector, command, resolveCoords, fusedCommand));
+        return null;
+    }
+
+    /**
+     * Тип UI-операции для исполнителя: {@code system.action.internalname} первого шага с валидным {@code actionId}.
+     * Если действий нет — устаревший fallback: {@link PlanStep#workflowStepInternalName()}, если это не состояние ЖЦ шага.
+     */
+    private String resolveExecutorInternalName(PlanStep step) {
+        for (PlanStepAction a : step.actions()) {
+            if (a.actionId() == null || a.actionId().isBlank()) {
+                continue;
+            }
+            Optional<Action> found = resolver.findAction(a.actionId());
+            if (found.isPresent()) {
+                return found.get().internalName();
+            }
+        }
+        String w = step.workflowStepInternalName();
+        if (w != null && !resolver.isWorkflowStepInternalName(w)) {
+            return w;
+        }
+        return null;
+    }
+
+    private String resolveSelector(String target) {
+        if (target != null && target.startsWith("action(") && target.endsWith(")")) {
+            String actionId = target.substring(7, target.length() - 1);
+            Optional<UIBinding> binding = resolver.findUIBinding(actionId);
+            if (binding.isPresent()) {
+                return binding.get().selector();
+            }
+            log.warn("UIBinding not found for action: {}, using target as selector", actionId);
+        }
+        return target != null ? target : "";
+    }
+
+    /**
+     * Преобразует PlanStep в AgentCommand.
+     * entityId — target, displayName — explanation; plan_step_action задаёт actionId и metaValue.
+     */
+    private AgentCommand convertToCommand(PlanStep step, String operation, String selector) {
+        String target = step.entityId();
+        String explanation = step.displayName();
+        String metaValue = firstMetaValue(step);
+
+        switch (operation) {
+            case "open_page":
+                String url = metaValue != null && !metaValue.isBlank() ? metaValue : target;
+                return AgentCommand.openPage(url != null ? url : "", explanation);
+
+            case "click":
+                return AgentCommand.click(selector, explanation);
+
+            case "hover":
+                return AgentCommand.hover(selector, explanation);
+
+            case "type":
+                String rawText = metaValue != null ? metaValue : "";
+                boolean submitAfterType = rawText.endsWith("\\n");
+                String cleanText = submitAfterType ? rawText.substring(0, rawText.length() - 2) : rawText;
+                return submitAfterType
+                    ? AgentCommand.typeAndSubmit(selector, cleanText, explanation)
+                    : AgentCommand.type(selector, cleanText, explanation);
+
+            case "wait":
+                long timeout = DEFAULT_WAIT_TIMEOUT_MS;
+                if (metaValue != null) {
+                    try {
+                        timeout = Long.parseLong(metaValue);
+                    } catch (NumberFormatException ignored) { }
+                }
+                return AgentCommand.wait(WaitCondition.parse(target), explanation, timeout);
+
+            case "explain":
+                return AgentCommand.explain(explanation);
+
+            case "select_option":
+                return AgentCommand.selectOption(selector, metaValue != null ? metaValue : "", explanation);
+
+            case "read_text":
+                return AgentCommand.readText(selector, explanation);
+
+            case "take_screenshot":
+                return AgentCommand.screenshot(target != null ? target : "fullpage", explanation);
+
+            default:
+                log.warn("Unknown step type: {}", operation);
+                return null;
+        }
+    }
+
+    private static String firstMetaValue(PlanStep step) {
+        return step.actions().isEmpty() ? null : step.actions().get(0).metaValue();
+    }
+}
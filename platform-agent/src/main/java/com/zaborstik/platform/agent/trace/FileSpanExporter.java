@@ -0,0 +1,254 @@
+package com.zaborstik.platform.agent.trace;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронный экспорт span в локальный файл в формате OTLP/JSON: каждая строка — один
+ * {@code ExportTraceServiceRequest} ({@code {"resourceSpans":[...]}}), как у file exporter OpenTelemetry Collector.
+ * <p>
+ * {@link #export(SpanData)} только кладёт span в ограниченную очередь (при переполнении span отбрасывается);
+ * запись пачками выполняет отдельный поток. При превышении {@code maxFileBytes} файл {@code spans.jsonl}
+ * переименовывается в {@code spans.1.jsonl} (старые архивы сдвигаются), хранится не более {@code maxFiles} файлов.
+ * <p>
+ * Asynchronous span export to a local file in OTLP/JSON: every line is one
+ * {@code ExportTraceServiceRequest} ({@code {"resourceSpans":[...]}}), as written by the OpenTelemetry Collector
+ * file exporter.
+ * <p>
+ * {@link #export(SpanData)} only enqueues the span into a bounded queue (spans are dropped when it is full);
+ * a dedicated thread writes them in batches. When {@code maxFileBytes} is exceeded, {@code spans.jsonl}
+ * is renamed to {@code spans.1.jsonl} (older archives are shifted) and at most {@code maxFiles} files are kept.
+ */
+public final class FileSpanExporter implements SpanExporter {
+    private static final Logger log = LoggerFactory.getLogger(FileSpanExporter.class);
+    private static final String FILE_PREFIX = "spans";
+    private static final String FILE_SUFFIX = ".jsonl";
+    private static final int MAX_BATCH = 256;
+    private static final long DEFAULT_MAX_FILE_BYTES = 16L * 1024 * 1024;
+    private static final int DEFAULT_MAX_FILES = 5;
+    private static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    private static final long CLOSE_TIMEOUT_MS = 5_000;
+
+    private final Path directory;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final String serviceName;
+    private final BlockingQueue<SpanData> queue;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closed;
+    private BufferedWriter out;
+    private long fileBytes;
+
+    public FileSpanExporter(Path directory, String serviceName) throws IOException {
+        this(directory, serviceName, DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_FILES, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param directory     каталог файлов трасс / trace file directory
+     * @param serviceName   значение атрибута ресурса {@code service.name} / {@code service.name} resource attribute
+     * @param maxFileBytes  размер файла, после которого выполняется ротация / file size that triggers rotation
+     * @param maxFiles      число хранимых файлов вместе с текущим / number of kept files including the current one
+     * @param queueCapacity ёмкость очереди экспорта / export queue capacity
+     */
+    public FileSpanExporter(Path directory, String serviceName, long maxFileBytes, int maxFiles, int queueCapacity)
+            throws IOException {
+        this.directory = Objects.requireNonNull(directory, "directory cannot be null");
+        this.serviceName = Objects.requireNonNull(serviceName, "serviceName cannot be null");
+        if (maxFileBytes <= 0) {
+            throw new IllegalArgumentException("maxFileBytes must be > 0");
+        }
+        if (maxFiles < 1) {
+            throw new IllegalArgumentException("maxFiles must be >= 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be >= 1");
+        }
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Files.createDirectories(directory);
+        openCurrent();
+        this.writer = new Thread(this::drainLoop, "trace-exporter");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void export(SpanData span) {
+        if (closed || !queue.offer(span)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Текущий файл трасс.
+     *
+     * Current trace file.
+     */
+    public Path currentFile() {
+        return directory.resolve(FILE_PREFIX + FILE_SUFFIX);
+    }
+
+    public long exportedCount() {
+        return exported.get();
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Дописывает оставшиеся в очереди span и закрывает файл.
+     *
+     * Writes the spans left in the queue and closes the file.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("Trace exporter did not finish within {} ms", CLOSE_TIMEOUT_MS);
+        }
+    }
+
+    private void drainLoop() {
+        List<SpanData> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                SpanData first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeCurrent();
+        }
+    }
+
+    private void write(List<SpanData> batch) {
+        try {
+            String line = objectMapper.writeValueAsString(toRequest(batch)) + "\n";
+            out.write(line);
+            out.flush();
+            fileBytes += line.getBytes(StandardCharsets.UTF_8).length;
+            exported.addAndGet(batch.size());
+            if (fileBytes >= maxFileBytes) {
+                rotate();
+            }
+        } catch (IOException e) {
+            dropped.addAndGet(batch.size());
+            log.warn("Failed to write {} span(s) to {}: {}", batch.size(), currentFile(), e.getMessage());
+        }
+    }
+
+    private void rotate() throws IOException {
+        closeCurrent();
+        if (maxFiles == 1) {
+            Files.deleteIfExists(currentFile());
+        } else {
+            Files.deleteIfExists(archive(maxFiles - 1));
+            for (int i = maxFiles - 2; i >= 1; i--) {
+                if (Files.exists(archive(i))) {
+                    Files.move(archive(i), archive(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(currentFile(), archive(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        openCurrent();
+    }
+
+    private Path archive(int index) {
+        return directory.resolve(FILE_PREFIX + "." + index + FILE_SUFFIX);
+    }
+
+    private void openCurrent() throws IOException {
+        Path file = currentFile();
+        out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileBytes = Files.size(file);
+    }
+
+    private void closeCurrent() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("Failed to close trace file {}: {}", currentFile(), e.getMessage());
+        }
+    }
+
+    private ObjectNode toRequest(List<SpanData> batch) {
+        ObjectNode request = objectMapper.createObjectNode();
+        ObjectNode resourceSpans = request.putArray("resourceSpans").addObject();
+        addAttribute(resourceSpans.putObject("resource").putArray("attributes"), "service.name", serviceName);
+        ObjectNode scopeSpans = resourceSpans.putArray("scopeSpans").addObject();
+        scopeSpans.putObject("scope").put("name", Tracer.class.getPackageName());
+        ArrayNode spans = scopeSpans.putArray("spans");
+        for (SpanData span : batch) {
+            ObjectNode node = spans.addObject();
+            node.put("traceId", span.traceId());
+            node.put("spanId", span.spanId());
+            if (span.parentSpanId() != null) {
+                node.put("parentSpanId", span.parentSpanId());
+            }
+            node.put("name", span.name());
+            node.put("kind", 1);
+            node.put("startTimeUnixNano", Long.toString(span.startEpochNanos()));
+            node.put("endTimeUnixNano", Long.toString(span.endEpochNanos()));
+            ArrayNode attributes = node.putArray("attributes");
+            for (Map.Entry<String, Object> attribute : span.attributes().entrySet()) {
+                addAttribute(attributes, attribute.getKey(), attribute.getValue());
+            }
+            if (span.error() != null) {
+                node.putObject("status").put("code", 2).put("message", span.error());
+            }
+        }
+        return request;
+    }
+
+    private static void addAttribute(ArrayNode attributes, String key, Object value) {
+        ObjectNode attribute = attributes.addObject();
+        attribute.put("key", key);
+        ObjectNode anyValue = attribute.putObject("value");
+        if (value instanceof Boolean bool) {
+            anyValue.put("boolValue", bool);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            anyValue.put("intValue", Long.toString(((Number) value).longValue()));
+        } else if (value instanceof Number number) {
+            anyValue.put("doubleValue", number.doubleValue());
+        } else {
+            anyValue.put("stringValue", String.valueOf(value));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.zaborstik.platform.agent.trace;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Фаза выполнения с атрибутами. Span создаётся {@link Tracer#startTrace(String)} или {@link #child(String)};
+ * если трасса не попала в выборку, возвращается {@link #noop()}, и все операции над ним ничего не делают.
+ * {@link #end()} идемпотентен и передаёт span экспортёру.
+ *
+ * Execution phase with attributes. A span is created by {@link Tracer#startTrace(String)} or {@link #child(String)};
+ * when the trace is not sampled, {@link #noop()} is returned and every operation on it does nothing.
+ * {@link #end()} is idempotent and hands the span to the exporter.
+ */
+public final class Span implements AutoCloseable {
+    private static final Span NOOP = new Span(null, null, null, null, null);
+
+    private final Tracer tracer;
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final long startEpochNanos;
+    private final long startNanoTime;
+    private Map<String, Object> attributes;
+    private String error;
+    private boolean ended;
+
+    Span(Tracer tracer, String traceId, String spanId, String parentSpanId, String name) {
+        this.tracer = tracer;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.startEpochNanos = tracer != null ? tracer.epochNanos() : 0;
+        this.startNanoTime = tracer != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Span, который ничего не записывает.
+     *
+     * Span that records nothing.
+     */
+    public static Span noop() {
+        return NOOP;
+    }
+
+    public boolean isRecording() {
+        return tracer != null;
+    }
+
+    /**
+     * Дочерний span той же трассы; для невыбранной трассы — {@link #noop()}.
+     *
+     * Child span of the same trace; {@link #noop()} for an unsampled trace.
+     */
+    public Span child(String name) {
+        if (tracer == null) {
+            return NOOP;
+        }
+        Objects.requireNonNull(name, "name cannot be null");
+        return new Span(tracer, traceId, tracer.newSpanId(), spanId, name);
+    }
+
+    public Span setAttribute(String key, Object value) {
+        if (tracer == null || value == null) {
+            return this;
+        }
+        Objects.requireNonNull(key, "key cannot be null");
+        synchronized (this) {
+            if (attributes == null) {
+                attributes = new LinkedHashMap<>();
+            }
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Помечает span как завершённый с ошибкой.
+     *
+     * Marks the span as failed.
+     */
+    public Span recordError(String message) {
+        if (tracer != null) {
+            synchronized (this) {
+                error = message != null ? message : "error";
+            }
+        }
+        return this;
+    }
+
+    public String traceId() {
+        return traceId;
+    }
+
+    public String spanId() {
+        return spanId;
+    }
+
+    public void end() {
+        if (tracer == null) {
+            return;
+        }
+        SpanData data;
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            long endEpochNanos = startEpochNanos + (System.nanoTime() - startNanoTime);
+            data = new SpanData(traceId, spanId, parentSpanId, name, startEpochNanos, endEpochNanos,
+                attributes, error);
+        }
+        tracer.export(data);
+    }
+
+    @Override
+    public void close() {
+        end();
+    }
+}
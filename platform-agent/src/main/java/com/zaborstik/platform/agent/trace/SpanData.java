@@ -0,0 +1,33 @@
+package com.zaborstik.platform.agent.trace;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Завершённый span, готовый к экспорту.
+ *
+ * Finished span ready for export.
+ *
+ * @param traceId         идентификатор трассы (32 hex-символа) / trace id (32 hex chars)
+ * @param spanId          идентификатор span (16 hex-символов) / span id (16 hex chars)
+ * @param parentSpanId    родительский span или null для корня / parent span or null for the root
+ * @param name            имя фазы / phase name
+ * @param startEpochNanos начало, наносекунды Unix-эпохи / start, Unix epoch nanoseconds
+ * @param endEpochNanos   конец, наносекунды Unix-эпохи / end, Unix epoch nanoseconds
+ * @param attributes      атрибуты (строки, числа, boolean) / attributes (strings, numbers, booleans)
+ * @param error           сообщение об ошибке или null / error message or null
+ */
+public record SpanData(String traceId, String spanId, String parentSpanId, String name,
+                       long startEpochNanos, long endEpochNanos, Map<String, Object> attributes, String error) {
+
+    public SpanData {
+        Objects.requireNonNull(traceId, "traceId cannot be null");
+        Objects.requireNonNull(spanId, "spanId cannot be null");
+        Objects.requireNonNull(name, "name cannot be null");
+        attributes = attributes != null ? Map.copyOf(attributes) : Map.of();
+    }
+
+    public long durationNanos() {
+        return endEpochNanos - startEpochNanos;
+    }
+}
@@ -0,0 +1,17 @@
+package com.zaborstik.platform.agent.trace;
+
+/**
+ * Получатель завершённых span. {@link #export(SpanData)} вызывается на потоке исполнения плана
+ * и не должен блокироваться.
+ *
+ * Receiver of finished spans. {@link #export(SpanData)} is called on the plan execution thread
+ * and must not block.
+ */
+public interface SpanExporter extends AutoCloseable {
+
+    void export(SpanData span);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,102 @@
+package com.zaborstik.platform.agent.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Точка входа трассировки с head-сэмплированием: решение о записи принимается один раз при
+ * {@link #startTrace(String)} и наследуется всеми дочерними span. Невыбранные трассы не создают объектов
+ * и не обращаются к экспортёру.
+ *
+ * Tracing entry point with head sampling: the recording decision is made once in
+ * {@link #startTrace(String)} and inherited by every child span. Unsampled traces allocate nothing
+ * and never reach the exporter.
+ */
+public final class Tracer implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(Tracer.class);
+    private static final Tracer NOOP = new Tracer(span -> { }, 0.0);
+
+    private final SpanExporter exporter;
+    private final double sampleRatio;
+
+    /**
+     * @param exporter    получатель завершённых span / receiver of finished spans
+     * @param sampleRatio доля записываемых трасс от 0 до 1 / fraction of recorded traces from 0 to 1
+     */
+    public Tracer(SpanExporter exporter, double sampleRatio) {
+        this.exporter = Objects.requireNonNull(exporter, "exporter cannot be null");
+        if (sampleRatio < 0.0 || sampleRatio > 1.0) {
+            throw new IllegalArgumentException("sampleRatio must be within [0, 1]");
+        }
+        this.sampleRatio = sampleRatio;
+    }
+
+    /**
+     * Трассировщик, не записывающий ничего.
+     *
+     * Tracer that records nothing.
+     */
+    public static Tracer noop() {
+        return NOOP;
+    }
+
+    /**
+     * Начинает новую трассу; с вероятностью {@code 1 - sampleRatio} возвращает {@link Span#noop()}.
+     *
+     * Starts a new trace; returns {@link Span#noop()} with probability {@code 1 - sampleRatio}.
+     */
+    public Span startTrace(String name) {
+        Objects.requireNonNull(name, "name cannot be null");
+        if (sampleRatio <= 0.0 || (sampleRatio < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRatio)) {
+            return Span.noop();
+        }
+        return new Span(this, newTraceId(), newSpanId(), null, name);
+    }
+
+    public double sampleRatio() {
+        return sampleRatio;
+    }
+
+    void export(SpanData span) {
+        try {
+            exporter.export(span);
+        } catch (RuntimeException e) {
+            log.warn("Failed to export span {}: {}", span.name(), e.getMessage());
+        }
+    }
+
+    long epochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    String newSpanId() {
+        return hex(nonZeroRandom());
+    }
+
+    private static String newTraceId() {
+        return hex(ThreadLocalRandom.current().nextLong()) + hex(nonZeroRandom());
+    }
+
+    private static long nonZeroRandom() {
+        long value;
+        do {
+            value = ThreadLocalRandom.current().nextLong();
+        } while (value == 0);
+        return value;
+    }
+
+    private static String hex(long value) {
+        String digits = Long.toHexString(value);
+        return "0".repeat(16 - digits.length()) + digits;
+    }
+
+    @Override
+    public void close() {
+        exporter.close();
+    }
+}
@@ -4,6 +4,7 @@
  * Секции:
  * - server — порт и headless;
  * - paths — каталог скриншотов;
+ * - screenshots — политика скриншотов по умолчанию (сессия может переопределить её в /initialize);
  * - delays — все задержки в миллисекундах (см. комментарии у каждого поля);
  * - timeouts — таймауты ожидания селекторов и команд;
  * - browser — базовый URL и размер окна;
@@ -56,6 +57,22 @@ function buildConfig() {
                 process.env.SCREENSHOTS_DIR || path.join(rootDir, 'screenshots'),
         },
 
+        screenshots: {
+            /**
+             * Когда снимать: NEVER, ON_FAILURE, SAMPLED (ошибки и каждый sampleEvery-й успешный шаг), ALWAYS.
+             * Переопределение: SCREENSHOT_MODE.
+             */
+            mode: (process.env.SCREENSHOT_MODE || 'ON_FAILURE').toUpperCase().replace('-', '_'),
+            /** Для SAMPLED: снимать каждый N-й успешный шаг; переопределение: SCREENSHOT_SAMPLE_EVERY */
+            sampleEvery: intEnv('SCREENSHOT_SAMPLE_EVERY', 10, { min: 1 }),
+            /** Формат кадра: PNG или JPEG; переопределение: SCREENSHOT_FORMAT */
+            format: (process.env.SCREENSHOT_FORMAT || 'PNG').toUpperCase(),
+            /** Качество JPEG (1–100); переопределение: SCREENSHOT_QUALITY */
+            quality: intEnv('SCREENSHOT_QUALITY', 80, { min: 1, max: 100 }),
+            /** Максимальная ширина кадра (пиксели), кадр уменьшается пропорционально; 0 — ширина окна */
+            maxWidth: intEnv('SCREENSHOT_MAX_WIDTH', 0, { min: 0 }),
+        },
+
         delays: {
             /**
              * Общий множитель для «человеческих» случайных задержек (delayMs).
@@ -7,7 +7,9 @@
 
 const { chromium } = require('playwright');
 const express = require('express');
+const { WebSocketServer } = require('ws');
 const path = require('path');
+const crypto = require('crypto');
 const fs = require('fs');
 const config = require('./playwright-server.config.js');
 
@@ -21,11 +23,21 @@ if (!fs.existsSync(SCREENSHOTS_DIR)) {
     fs.mkdirSync(SCREENSHOTS_DIR, { recursive: true });
 }
 
+/** Один браузер на процесс; у каждой сессии свой контекст (cookies, хранилище) и своя страница. */
 let browser = null;
-let context = null;
-let page = null;
-let baseUrl = null;
-let cursorState = { x: 0, y: 0, initialized: false };
+let browserHeadless = null;
+/**
+ * Сессии по id из заголовка X-Agent-Session (у канала /ws — параметр ?session=); без него — сессия 'default'.
+ * Сессия: { id, context, page, baseUrl, cursorState, screenshotPolicy, successfulSteps }; политика скриншотов —
+ * config.screenshots, переопределённая в /initialize, successfulSteps — для режима SAMPLED.
+ */
+const sessions = new Map();
+const DEFAULT_SESSION = 'default';
+const SESSION_HEADER = 'X-Agent-Session';
+/** Имя файла скриншота: SHA-256 содержимого и формат. */
+const SCREENSHOT_NAME = /^[0-9a-f]{64}\.(png|jpeg)$/;
+/** Открытые каналы /ws: получают события страницы своей сессии (channel.sessionId). */
+const channels = new Set();
 
 function randomBetween(min, max) {
     return min + Math.random() * (max - min);
@@ -77,24 +89,30 @@ function buildHumanPath(fromX, fromY, toX, toY, steps) {
     return points;
 }
 
-async function ensureCursorInitialized(page) {
-    if (cursorState.initialized) {
+function newCursorState() {
+    return { x: 0, y: 0, initialized: false };
+}
+
+async function ensureCursorInitialized(session) {
+    if (session.cursorState.initialized) {
         return;
     }
+    const { page } = session;
     const ci = config.cursorInit;
     const vb = config.browser;
     const viewport = page.viewportSize() || { width: vb.viewportWidth, height: vb.viewportHeight };
     const startX = randomBetween(viewport.width * ci.startXMinFrac, viewport.width * ci.startXMaxFrac);
     const startY = randomBetween(viewport.height * ci.startYMinFrac, viewport.height * ci.startYMaxFrac);
     await page.mouse.move(startX, startY);
-    cursorState = { x: startX, y: startY, initialized: true };
+    session.cursorState = { x: startX, y: startY, initialized: true };
 }
 
 // Плавное движение курсора с легкой рандомизацией траектории и скорости.
-async function smoothMove(page, toX, toY, options = {}) {
-    await ensureCursorInitialized(page);
-    const fromX = cursorState.x;
-    const fromY = cursorState.y;
+async function smoothMove(session, toX, toY, options = {}) {
+    await ensureCursorInitialized(session);
+    const { page } = session;
+    const fromX = session.cursorState.x;
+    const fromY = session.cursorState.y;
     const sm = config.smoothMove;
     const distance = Math.hypot(toX - fromX, toY - fromY);
     const steps = options.steps || Math.max(
@@ -108,7 +126,7 @@ async function smoothMove(page, toX, toY, options = {}) {
         await page.waitForTimeout(delayMs(config.delays.smoothMovePointMinMs, config.delays.smoothMovePointMaxMs));
     }
 
-    cursorState = { x: toX, y: toY, initialized: true };
+    session.cursorState = { x: toX, y: toY, initialized: true };
 }
 
 // Подсветка элемента
@@ -164,32 +182,142 @@ function mergeCoordinates(target, coords) {
     return target;
 }
 
-async function captureStepScreenshot(page, prefix = 'step') {
-    const screenshotPath = path.join(SCREENSHOTS_DIR, `${prefix}-${Date.now()}.png`);
-    await page.screenshot({ path: screenshotPath, fullPage: false });
-    return screenshotPath;
+/**
+ * Снимает кадр по политике сессии (формат, качество, ширина) и сохраняет его в файл с именем по SHA-256
+ * содержимого: одинаковые кадры пишутся один раз. Байты отдаёт GET /screenshots/:name, в ответ команды
+ * попадают только ссылка, хеш и размер.
+ */
+async function captureScreenshot(session) {
+    const policy = session.screenshotPolicy;
+    const format = policy.format === 'JPEG' ? 'jpeg' : 'png';
+    const buffer = await screenshotBuffer(session.page, format, policy);
+    const sha256 = crypto.createHash('sha256').update(buffer).digest('hex');
+    const screenshotPath = path.join(SCREENSHOTS_DIR, `${sha256}.${format}`);
+    if (!fs.existsSync(screenshotPath)) {
+        await fs.promises.writeFile(screenshotPath, buffer);
+    }
+    return {
+        screenshot: screenshotPath,
+        screenshotSha256: sha256,
+        screenshotFormat: format,
+        screenshotBytes: buffer.length
+    };
+}
+
+/** Байты кадра окна; при maxWidth меньше ширины окна Chromium уменьшает кадр сам (CDP, clip.scale). */
+async function screenshotBuffer(target, format, policy) {
+    const quality = format === 'jpeg' ? policy.quality : undefined;
+    const viewport = target.viewportSize();
+    const maxWidth = policy.maxWidth;
+    if (!maxWidth || !viewport || maxWidth >= viewport.width) {
+        return target.screenshot({ type: format, quality, fullPage: false });
+    }
+    // clip в координатах документа: окно сдвинуто на прокрутку
+    const scroll = await target.evaluate(() => ({ x: window.scrollX, y: window.scrollY }));
+    const cdp = await target.context().newCDPSession(target);
+    try {
+        const { data } = await cdp.send('Page.captureScreenshot', {
+            format,
+            quality,
+            clip: { ...scroll, width: viewport.width, height: viewport.height, scale: maxWidth / viewport.width }
+        });
+        return Buffer.from(data, 'base64');
+    } finally {
+        await cdp.detach();
+    }
+}
+
+/** Снимать ли кадр успешного шага: ALWAYS — каждый, SAMPLED — каждый sampleEvery-й. */
+function captureOnSuccess(session) {
+    switch (session.screenshotPolicy.mode) {
+        case 'ALWAYS':
+            return true;
+        case 'SAMPLED':
+            session.successfulSteps++;
+            return session.successfulSteps % session.screenshotPolicy.sampleEvery === 0;
+        default:
+            return false;
+    }
+}
+
+/** Добавляет к результату успешного шага кадр по политике; ошибка снимка не делает шаг неуспешным. */
+async function withStepScreenshot(session, result) {
+    if ((result && result.screenshot) || !captureOnSuccess(session)) {
+        return result;
+    }
+    try {
+        return { ...(result || {}), ...(await captureScreenshot(session)) };
+    } catch (error) {
+        console.error('[SCREENSHOT ERROR]', error.message);
+        return result;
+    }
+}
+
+// Байты скриншота по имени файла из ответа команды: передаются потоком, вне JSON
+app.get('/screenshots/:name', (req, res) => {
+    const { name } = req.params;
+    if (!SCREENSHOT_NAME.test(name)) {
+        return res.status(404).end();
+    }
+    // имя — хеш содержимого, файл не меняется
+    res.sendFile(path.join(SCREENSHOTS_DIR, name), { maxAge: '365d', immutable: true }, error => {
+        if (error && !res.headersSent) {
+            res.status(error.statusCode || 404).end();
+        }
+    });
+});
+
+function sessionId(req) {
+    return req.get(SESSION_HEADER) || DEFAULT_SESSION;
+}
+
+function sessionFor(req) {
+    return sessions.get(sessionId(req));
+}
+
+/** Закрывает контекст сессии; браузер остаётся для остальных сессий. */
+async function closeSession(id) {
+    const session = sessions.get(id);
+    if (!session) {
+        return;
+    }
+    sessions.delete(id);
+    await session.context.close().catch(error => console.error('[CLOSE ERROR]', error.message));
+}
+
+/**
+ * Браузер для новой сессии: запущенный переиспользуется (новая сессия — только новый контекст), перезапускается,
+ * если отключился или нужен другой режим headless и других сессий нет.
+ */
+async function ensureBrowser(headless) {
+    if (browser && browser.isConnected()) {
+        if (browserHeadless === headless || sessions.size > 0) {
+            return browser;
+        }
+        await browser.close();
+    }
+    browser = await chromium.launch({
+        headless: headless,
+    });
+    browserHeadless = headless;
+    return browser;
 }
 
 // Health check
 app.get('/health', (req, res) => {
-    res.json({ status: 'ok', browser: browser !== null });
+    res.json({ status: 'ok', browser: browser !== null, sessions: sessions.size });
 });
 
-// Инициализация браузера
+// Инициализация сессии: новый контекст и страница; прежний контекст этой сессии закрывается
 app.post('/initialize', async (req, res) => {
+    const id = sessionId(req);
     try {
-        const { baseUrl: url, headless = config.server.headless } = req.body;
-        baseUrl = url || config.browser.defaultBaseUrl;
-
-        if (browser) {
-            await browser.close();
-        }
+        const { baseUrl: url, headless = config.server.headless, screenshots } = req.body;
 
-        browser = await chromium.launch({
-            headless: headless,
-        });
+        await closeSession(id);
+        await ensureBrowser(headless);
 
-        context = await browser.newContext({
+        const context = await browser.newContext({
             viewport: {
                 width: config.browser.viewportWidth,
                 height: config.browser.viewportHeight,
@@ -225,13 +353,22 @@ app.post('/initialize', async (req, res) => {
             });
         }, initPayload);
 
-        page = await context.newPage();
-        cursorState = { x: 0, y: 0, initialized: false };
+        const session = {
+            id,
+            context,
+            page: await context.newPage(),
+            baseUrl: url || config.browser.defaultBaseUrl,
+            cursorState: newCursorState(),
+            screenshotPolicy: { ...config.screenshots, ...(screenshots || {}) },
+            successfulSteps: 0
+        };
+        sessions.set(id, session);
+        watchPage(session);
 
         res.json({
             success: true,
             message: 'Browser initialized',
-            data: { baseUrl, headless },
+            data: { baseUrl: session.baseUrl, headless, screenshots: session.screenshotPolicy, session: id },
             executionTimeMs: 0
         });
     } catch (error) {
@@ -244,185 +381,431 @@ app.post('/initialize', async (req, res) => {
     }
 });
 
-// Выполнение команды
-app.post('/execute', async (req, res) => {
-    const startTime = Date.now();
-    
-    if (!page) {
-        return res.status(400).json({
-            success: false,
-            error: 'Browser not initialized. Call /initialize first.',
-            executionTimeMs: Date.now() - startTime
-        });
+/** Ошибка неверной команды: повтор не поможет. */
+function invalidCommand(message) {
+    const error = new Error(message);
+    error.agentErrorCode = 'INVALID_COMMAND';
+    return error;
+}
+
+/**
+ * Код ошибки для ответа (AgentErrorCode на стороне Java): по нему платформа решает, повторять ли шаг.
+ */
+function errorCode(error) {
+    if (error.agentErrorCode) {
+        return error.agentErrorCode;
+    }
+    const message = error.message || '';
+    if (/net::ERR_|NS_ERROR_|page\.goto/i.test(message)) {
+        return 'NAVIGATION_FAILED';
     }
+    if (error.name === 'TimeoutError'
+        || /waiting for|not found|not visible|not attached|detached|not stable|not enabled|intercepts pointer events|outside of the viewport/i.test(message)) {
+        return 'ELEMENT_NOT_READY';
+    }
+    return 'COMMAND_FAILED';
+}
 
-    const { type, target, explanation, parameters = {} } = req.body;
+/**
+ * Выполняет одну команду на странице сессии и возвращает данные результата; при ошибке бросает исключение.
+ */
+async function runCommand(session, { type, target, explanation, parameters = {} }) {
+    const { page } = session;
+    let result = {};
+
+    switch (type) {
+        case 'OPEN_PAGE': {
+            const url = target.startsWith('http') ? target : `${session.baseUrl}${target}`;
+            await page.goto(url, { waitUntil: 'domcontentloaded' });
+            if (config.delays.openPageDelayMs > 0) {
+                await page.waitForTimeout(config.delays.openPageDelayMs);
+            }
+            result = { url };
+            break;
+        }
 
+        case 'CLICK':
+            await page.waitForSelector(target, { timeout: config.timeouts.selectorMs });
+            await highlightElement(page, target);
+            const coords = await getElementCoordinates(page, target);
+            await smoothMove(session, coords.x, coords.y);
+            if (config.delays.pauseBeforeClickMs > 0) {
+                await page.waitForTimeout(config.delays.pauseBeforeClickMs);
+            } else {
+                await page.waitForTimeout(delayMs(config.delays.clickFallbackMinMs, config.delays.clickFallbackMaxMs));
+            }
+            await page.mouse.down();
+            await page.waitForTimeout(delayMs(config.delays.mouseDownUpMinMs, config.delays.mouseDownUpMaxMs));
+            await page.mouse.up();
+            result = mergeCoordinates({ selector: target, selectorUsed: target }, coords);
+            break;
+
+        case 'HOVER':
+            await page.waitForSelector(target, { timeout: config.timeouts.selectorMs });
+            await highlightElement(page, target);
+            const hoverCoords = await getElementCoordinates(page, target);
+            await smoothMove(session, hoverCoords.x, hoverCoords.y);
+            result = mergeCoordinates({ selector: target, selectorUsed: target }, hoverCoords);
+            break;
+
+        case 'TYPE':
+            await page.waitForSelector(target, { timeout: config.timeouts.selectorMs });
+            await highlightElement(page, target);
+            const typeCoords = await getElementCoordinates(page, target);
+            await smoothMove(session, typeCoords.x, typeCoords.y);
+            if (config.delays.pauseBeforeClickMs > 0) {
+                await page.waitForTimeout(config.delays.pauseBeforeClickMs);
+            } else {
+                await page.waitForTimeout(delayMs(config.delays.typeFocusFallbackMinMs, config.delays.typeFocusFallbackMaxMs));
+            }
+            await page.mouse.click(typeCoords.x, typeCoords.y, {
+                delay: delayMs(config.delays.typeMouseClickMinMs, config.delays.typeMouseClickMaxMs),
+            });
+            await page.keyboard.press('ControlOrMeta+A');
+            await page.keyboard.press('Backspace');
+            await page.keyboard.type(parameters.text || '', {
+                delay: delayMs(config.delays.typeKeypressMinMs, config.delays.typeKeypressMaxMs),
+            });
+            if (parameters.pressEnter) {
+                await page.waitForTimeout(delayMs(config.delays.afterTypeEnterMinMs, config.delays.afterTypeEnterMaxMs));
+                await page.keyboard.press('Enter');
+            }
+            result = mergeCoordinates({ selector: target, selectorUsed: target, text: parameters.text }, typeCoords);
+            break;
+
+        case 'WAIT':
+            result = await waitForCondition(page, target, parameters);
+            break;
+
+        case 'EXPLAIN':
+            // Логируем объяснение
+            console.log(`[EXPLAIN] ${explanation}`);
+            result = { message: explanation };
+            break;
+
+        case 'HIGHLIGHT':
+            await page.waitForSelector(target, { timeout: config.timeouts.selectorMs });
+            await highlightElement(page, target);
+            result = { selector: target };
+            break;
+
+        case 'SCREENSHOT':
+            // явная команда снимает кадр при любой политике
+            result = await captureScreenshot(session);
+            break;
+
+        case 'RESOLVE_COORDS':
+            await page.waitForSelector(target, { timeout: config.timeouts.selectorMs });
+            const resolvedCoords = await getElementCoordinates(page, target);
+            result = mergeCoordinates({ selector: target, selectorUsed: target }, resolvedCoords);
+            break;
+
+        case 'CLICK_AT':
+            if (parameters.x === undefined || parameters.y === undefined) {
+                throw invalidCommand('CLICK_AT requires numeric x and y parameters');
+            }
+            await smoothMove(session, Number(parameters.x), Number(parameters.y));
+            if (config.delays.pauseBeforeClickMs > 0) {
+                await page.waitForTimeout(config.delays.pauseBeforeClickMs);
+            } else {
+                await page.waitForTimeout(delayMs(config.delays.clickFallbackMinMs, config.delays.clickFallbackMaxMs));
+            }
+            await page.mouse.down();
+            await page.waitForTimeout(delayMs(config.delays.mouseDownUpMinMs, config.delays.mouseDownUpMaxMs));
+            await page.mouse.up();
+            result = {
+                x: Number(parameters.x),
+                y: Number(parameters.y),
+                button: parameters.button || 'left',
+                selectorUsed: parameters.selectorUsed || target || null
+            };
+            break;
+
+        // Составные команды: элемент находится и действие выполняется в одном вызове, данные — как у
+        // RESOLVE_COORDS и действия вместе
+        case 'RESOLVE_AND_CLICK':
+        case 'RESOLVE_AND_HOVER':
+        case 'RESOLVE_AND_TYPE': {
+            const resolved = await runCommand(session, { type: 'RESOLVE_COORDS', target, explanation });
+            const action = type.substring('RESOLVE_AND_'.length);
+            const acted = action === 'CLICK'
+                ? await runCommand(session, {
+                    type: 'CLICK_AT',
+                    target,
+                    explanation,
+                    parameters: { ...parameters, x: resolved.x, y: resolved.y, selectorUsed: target }
+                })
+                : await runCommand(session, { type: action, target, explanation, parameters });
+            result = { ...resolved, ...acted, selectorUsed: target };
+            break;
+        }
+
+        default:
+            throw invalidCommand(`Unknown command type: ${type}`);
+    }
+
+    return result;
+}
+
+/**
+ * WAIT: ждёт событие, после которого условие выполнено, и возвращается сразу; timeout — только верхняя граница.
+ * Условие — parameters.condition/value (WaitCondition), у старых клиентов — строка в target.
+ */
+async function waitForCondition(page, target, parameters) {
+    const timeout = parameters.timeout || config.timeouts.waitDefaultMs;
+    let condition = parameters.condition;
+    let value = parameters.value;
+    if (!condition) {
+        const legacy = target || 'domcontentloaded';
+        if (legacy === 'networkidle') {
+            condition = 'NETWORK_IDLE';
+        } else if (legacy === 'domcontentloaded' || legacy === 'load' || legacy === 'result') {
+            condition = 'PAGE_LOADED';
+            value = legacy === 'result' ? 'domcontentloaded' : legacy;
+        } else {
+            condition = 'SELECTOR_VISIBLE';
+            value = legacy;
+        }
+    }
+    const startTime = Date.now();
+    switch (condition) {
+        case 'SELECTOR_VISIBLE':
+            await page.waitForSelector(value, { timeout, state: 'visible' });
+            break;
+        case 'TEXT_PRESENT':
+            await page.getByText(value).first().waitFor({ timeout, state: 'visible' });
+            break;
+        case 'NETWORK_IDLE':
+            await page.waitForLoadState('networkidle', { timeout });
+            break;
+        case 'URL_MATCHES':
+            await page.waitForURL(value, { timeout, waitUntil: 'commit' });
+            break;
+        case 'PAGE_LOADED':
+            await page.waitForLoadState(value || 'domcontentloaded', { timeout });
+            break;
+        default:
+            throw invalidCommand(`Unknown wait condition: ${condition}`);
+    }
+    return { condition, value, timeout, waitedMs: Date.now() - startTime };
+}
+
+/** Скриншот ошибки для ответа; пустой объект при политике NEVER или если снять не удалось. */
+async function errorData(session) {
+    if (session.screenshotPolicy.mode === 'NEVER') {
+        return {};
+    }
     try {
-        let result = {};
-
-        switch (type) {
-            case 'OPEN_PAGE': {
-                const url = target.startsWith('http') ? target : `${baseUrl}${target}`;
-                await page.goto(url, { waitUntil: 'domcontentloaded' });
-                if (config.delays.openPageDelayMs > 0) {
-                    await page.waitForTimeout(config.delays.openPageDelayMs);
-                }
-                result = { url };
-                break;
+        await session.page.waitForTimeout(delayMs(config.delays.errorScreenshotDelayMinMs, config.delays.errorScreenshotDelayMaxMs));
+        return await captureScreenshot(session);
+    } catch (ignored) {
+        return {};
+    }
+}
+
+/**
+ * Параметры команды пакета: {@code coordsFrom} — индекс предыдущей команды RESOLVE_COORDS,
+ * координаты x/y которой подставляются в команду (CLICK_AT по координатам из того же пакета).
+ */
+function resolveBatchParameters(parameters, results) {
+    if (parameters.coordsFrom === undefined) {
+        return parameters;
+    }
+    const source = results[Number(parameters.coordsFrom)];
+    if (!source || !source.success || source.data.x === undefined || source.data.y === undefined) {
+        throw invalidCommand(`coordsFrom ${parameters.coordsFrom} does not reference resolved coordinates`);
+    }
+    const { coordsFrom, ...rest } = parameters;
+    return { ...rest, x: source.data.x, y: source.data.y };
+}
+
+/** Выполняет одну команду в сессии; HTTP-статус и тело ответа — общие для /execute и канала /ws. */
+async function executeCommand(session, command) {
+    const startTime = Date.now();
+
+    if (!session) {
+        return {
+            status: 400,
+            body: {
+                success: false,
+                error: 'Browser not initialized. Call /initialize first.',
+                errorCode: 'NOT_INITIALIZED',
+                executionTimeMs: Date.now() - startTime
             }
+        };
+    }
 
-            case 'CLICK':
-                await page.waitForSelector(target, { timeout: config.timeouts.selectorMs });
-                await highlightElement(page, target);
-                const coords = await getElementCoordinates(page, target);
-                await smoothMove(page, coords.x, coords.y);
-                if (config.delays.pauseBeforeClickMs > 0) {
-                    await page.waitForTimeout(config.delays.pauseBeforeClickMs);
-                } else {
-                    await page.waitForTimeout(delayMs(config.delays.clickFallbackMinMs, config.delays.clickFallbackMaxMs));
-                }
-                await page.mouse.down();
-                await page.waitForTimeout(delayMs(config.delays.mouseDownUpMinMs, config.delays.mouseDownUpMaxMs));
-                await page.mouse.up();
-                result = mergeCoordinates({ selector: target, selectorUsed: target }, coords);
-                break;
+    const { type, explanation } = command;
 
-            case 'HOVER':
-                await page.waitForSelector(target, { timeout: config.timeouts.selectorMs });
-                await highlightElement(page, target);
-                const hoverCoords = await getElementCoordinates(page, target);
-                await smoothMove(page, hoverCoords.x, hoverCoords.y);
-                result = mergeCoordinates({ selector: target, selectorUsed: target }, hoverCoords);
-                break;
+    try {
+        const result = await withStepScreenshot(session, await runCommand(session, command));
+        return {
+            status: 200,
+            body: {
+                success: true,
+                message: explanation || `Command ${type} executed successfully`,
+                data: result,
+                executionTimeMs: Date.now() - startTime
+            }
+        };
+    } catch (error) {
+        const executionTime = Date.now() - startTime;
+        console.error(`[ERROR] Command ${type} failed:`, error);
+        return {
+            status: 500,
+            body: {
+                success: false,
+                error: error.message,
+                errorCode: errorCode(error),
+                data: await errorData(session),
+                executionTimeMs: executionTime
+            }
+        };
+    }
+}
 
-            case 'TYPE':
-                await page.waitForSelector(target, { timeout: config.timeouts.selectorMs });
-                await highlightElement(page, target);
-                const typeCoords = await getElementCoordinates(page, target);
-                await smoothMove(page, typeCoords.x, typeCoords.y);
-                if (config.delays.pauseBeforeClickMs > 0) {
-                    await page.waitForTimeout(config.delays.pauseBeforeClickMs);
-                } else {
-                    await page.waitForTimeout(delayMs(config.delays.typeFocusFallbackMinMs, config.delays.typeFocusFallbackMaxMs));
-                }
-                await page.mouse.click(typeCoords.x, typeCoords.y, {
-                    delay: delayMs(config.delays.typeMouseClickMinMs, config.delays.typeMouseClickMaxMs),
-                });
-                await page.keyboard.press('ControlOrMeta+A');
-                await page.keyboard.press('Backspace');
-                await page.keyboard.type(parameters.text || '', {
-                    delay: delayMs(config.delays.typeKeypressMinMs, config.delays.typeKeypressMaxMs),
-                });
-                if (parameters.pressEnter) {
-                    await page.waitForTimeout(delayMs(config.delays.afterTypeEnterMinMs, config.delays.afterTypeEnterMaxMs));
-                    await page.keyboard.press('Enter');
-                }
-                result = mergeCoordinates({ selector: target, selectorUsed: target, text: parameters.text }, typeCoords);
-                break;
+// Выполнение команды
+app.post('/execute', async (req, res) => {
+    const { status, body } = await executeCommand(sessionFor(req), req.body);
+    res.status(status).json(body);
+});
 
-            case 'WAIT':
-                const timeout = parameters.timeout || config.timeouts.waitDefaultMs;
-                const condition = target || 'domcontentloaded';
-                if (condition === 'networkidle' || condition === 'domcontentloaded' || condition === 'load') {
-                    await page.waitForLoadState(condition, { timeout });
-                } else if (condition === 'result') {
-                    await page.waitForLoadState('domcontentloaded', { timeout });
-                } else {
-                    await page.waitForSelector(condition, { timeout, state: 'visible' });
-                }
-                result = { condition, timeout };
-                break;
+/** Отправляет событие во все открытые каналы /ws сессии. */
+function broadcast(session, type, data = {}) {
+    if (channels.size === 0) {
+        return;
+    }
+    const message = JSON.stringify({ event: { type, data, timestampMs: Date.now() } });
+    for (const channel of channels) {
+        if (channel.sessionId === session.id && channel.readyState === channel.OPEN) {
+            channel.send(message);
+        }
+    }
+}
 
-            case 'EXPLAIN':
-                // Логируем объяснение
-                console.log(`[EXPLAIN] ${explanation}`);
-                result = { message: explanation };
-                break;
+/** События страницы для каналов /ws: переходы основного фрейма, загрузка, ошибки консоли и страницы. */
+function watchPage(session) {
+    const watched = session.page;
+    watched.on('framenavigated', frame => {
+        if (frame === watched.mainFrame()) {
+            broadcast(session, 'NAVIGATED', { url: frame.url() });
+        }
+    });
+    watched.on('load', () => broadcast(session, 'PAGE_LOADED', { url: watched.url() }));
+    watched.on('console', message => {
+        if (message.type() === 'error') {
+            broadcast(session, 'CONSOLE_ERROR', { text: message.text() });
+        }
+    });
+    watched.on('pageerror', error => broadcast(session, 'PAGE_ERROR', { message: error.message }));
+}
 
-            case 'HIGHLIGHT':
-                await page.waitForSelector(target, { timeout: config.timeouts.selectorMs });
-                await highlightElement(page, target);
-                result = { selector: target };
-                break;
+// Пакет команд за один запрос: выполняются по порядку, при stopOnFailure — до первой ошибки
+app.post('/execute-batch', async (req, res) => {
+    const startTime = Date.now();
+    const session = sessionFor(req);
 
-            case 'SCREENSHOT':
-                const screenshotPath = path.join(SCREENSHOTS_DIR, `screenshot-${Date.now()}.png`);
-                await page.screenshot({ path: screenshotPath, fullPage: false });
-                result = { screenshot: screenshotPath };
-                break;
+    if (!session) {
+        return res.status(400).json({
+            success: false,
+            error: 'Browser not initialized. Call /initialize first.',
+            errorCode: 'NOT_INITIALIZED',
+            results: [],
+            executionTimeMs: Date.now() - startTime
+        });
+    }
 
-            case 'RESOLVE_COORDS':
-                await page.waitForSelector(target, { timeout: config.timeouts.selectorMs });
-                const resolvedCoords = await getElementCoordinates(page, target);
-                result = mergeCoordinates({ selector: target, selectorUsed: target }, resolvedCoords);
+    const { commands = [], stopOnFailure = true } = req.body;
+    const results = [];
+    let success = true;
+    for (const command of commands) {
+        const commandStart = Date.now();
+        try {
+            const parameters = resolveBatchParameters(command.parameters || {}, results);
+            const result = await withStepScreenshot(session, await runCommand(session, { ...command, parameters }));
+            results.push({
+                success: true,
+                message: command.explanation || `Command ${command.type} executed successfully`,
+                data: result,
+                executionTimeMs: Date.now() - commandStart
+            });
+        } catch (error) {
+            console.error(`[ERROR] Batch command ${command.type} failed:`, error);
+            success = false;
+            results.push({
+                success: false,
+                error: error.message,
+                errorCode: errorCode(error),
+                data: await errorData(session),
+                executionTimeMs: Date.now() - commandStart
+            });
+            if (stopOnFailure) {
                 break;
+            }
+        }
+    }
+    res.json({ success, results, executionTimeMs: Date.now() - startTime });
+});
 
-            case 'CLICK_AT':
-                if (parameters.x === undefined || parameters.y === undefined) {
-                    throw new Error('CLICK_AT requires numeric x and y parameters');
-                }
-                await smoothMove(page, Number(parameters.x), Number(parameters.y));
-                if (config.delays.pauseBeforeClickMs > 0) {
-                    await page.waitForTimeout(config.delays.pauseBeforeClickMs);
-                } else {
-                    await page.waitForTimeout(delayMs(config.delays.clickFallbackMinMs, config.delays.clickFallbackMaxMs));
+// Сброс сессии между планами без новой инициализации: RELOAD — перезагрузка страницы, CLEAR_STORAGE — cookies,
+// localStorage/sessionStorage текущего origin и переход на about:blank
+app.post('/reset', async (req, res) => {
+    const startTime = Date.now();
+    const session = sessionFor(req);
+    if (!session) {
+        return res.status(400).json({
+            success: false,
+            error: 'Browser not initialized. Call /initialize first.',
+            errorCode: 'NOT_INITIALIZED',
+            executionTimeMs: 0
+        });
+    }
+    const { mode = 'CLEAR_STORAGE' } = req.body || {};
+    try {
+        if (mode === 'RELOAD') {
+            await session.page.reload({ waitUntil: 'domcontentloaded' });
+        } else if (mode === 'CLEAR_STORAGE') {
+            await session.context.clearCookies();
+            await session.page.evaluate(() => {
+                try {
+                    window.localStorage.clear();
+                    window.sessionStorage.clear();
+                } catch (ignored) {
+                    // about:blank и страницы без доступа к хранилищу
                 }
-                await page.mouse.down();
-                await page.waitForTimeout(delayMs(config.delays.mouseDownUpMinMs, config.delays.mouseDownUpMaxMs));
-                await page.mouse.up();
-                result = {
-                    x: Number(parameters.x),
-                    y: Number(parameters.y),
-                    button: parameters.button || 'left',
-                    selectorUsed: parameters.selectorUsed || target || null
-                };
-                break;
-
-            default:
-                throw new Error(`Unknown command type: ${type}`);
+            });
+            await session.page.goto('about:blank');
+        } else if (mode !== 'NONE') {
+            throw invalidCommand(`Unknown reset mode: ${mode}`);
         }
-
-        const executionTime = Date.now() - startTime;
-        
+        session.cursorState = newCursorState();
+        session.successfulSteps = 0;
         res.json({
             success: true,
-            message: explanation || `Command ${type} executed successfully`,
-            data: result,
-            executionTimeMs: executionTime
+            message: `Session reset (${mode})`,
+            data: { session: session.id, mode },
+            executionTimeMs: Date.now() - startTime
         });
-
     } catch (error) {
-        const executionTime = Date.now() - startTime;
-        console.error(`[ERROR] Command ${type} failed:`, error);
-        let errorScreenshot = null;
-        try {
-            await page.waitForTimeout(delayMs(config.delays.errorScreenshotDelayMinMs, config.delays.errorScreenshotDelayMaxMs));
-            errorScreenshot = await captureStepScreenshot(page, 'error');
-        } catch (ignored) {}
-        
+        console.error('[RESET ERROR]', error.message);
         res.status(500).json({
             success: false,
             error: error.message,
-            data: errorScreenshot ? { screenshot: errorScreenshot } : {},
-            executionTimeMs: executionTime
+            errorCode: errorCode(error),
+            executionTimeMs: Date.now() - startTime
         });
     }
 });
 
-// Закрытие браузера
+// Закрытие сессии; браузер закрывается вместе с последней сессией
 app.post('/close', async (req, res) => {
     try {
-        if (context) {
-            await context.close();
-            context = null;
-        }
-        if (browser) {
+        await closeSession(sessionId(req));
+        if (browser && sessions.size === 0) {
             await browser.close();
             browser = null;
+            browserHeadless = null;
         }
-        page = null;
-        cursorState = { x: 0, y: 0, initialized: false };
 
         res.json({
             success: true,
@@ -447,7 +830,7 @@ process.on('SIGINT', async () => {
     process.exit(0);
 });
 
-app.listen(config.server.port, () => {
+const server = app.listen(config.server.port, () => {
     console.log(`Playwright Server running on http://localhost:${config.server.port}`);
     console.log(`Headless mode: ${config.server.headless}`);
     console.log(`ACTION_DELAY_MULTIPLIER: ${config.delays.actionDelayMultiplier}`);
@@ -460,5 +843,50 @@ app.listen(config.server.port, () => {
     console.log(`Screenshots directory: ${SCREENSHOTS_DIR}`);
 });
 
+// Постоянный канал: {id, command} → {id, response}; команды канала выполняются по порядку получения,
+// ответ и события страницы идут по тому же соединению. Сессия канала — параметр ?session= (по умолчанию 'default').
+const channelServer = new WebSocketServer({ noServer: true });
 
-
+/**
+ * Слушатель upgrade получает каждый запрос с заголовком Upgrade, а не только /ws: например, HttpClient JDK
+ * с HTTP/2 по http шлёт Upgrade: h2c в POST /execute. В ws уходит только WebSocket-запрос к /ws; остальные
+ * возвращаются в HTTP-сервер без заголовков upgrade, и Express обрабатывает их как обычные запросы HTTP/1.1.
+ */
+server.on('upgrade', (req, socket, head) => {
+    const { pathname } = new URL(req.url, 'http://localhost');
+    if (pathname === '/ws' && (req.headers.upgrade || '').toLowerCase() === 'websocket') {
+        channelServer.handleUpgrade(req, socket, head, channel => channelServer.emit('connection', channel, req));
+        return;
+    }
+    const lines = [`${req.method} ${req.url} HTTP/${req.httpVersion}`];
+    for (let i = 0; i < req.rawHeaders.length; i += 2) {
+        const name = req.rawHeaders[i].toLowerCase();
+        if (name !== 'upgrade' && name !== 'connection' && name !== 'http2-settings') {
+            lines.push(`${req.rawHeaders[i]}: ${req.rawHeaders[i + 1]}`);
+        }
+    }
+    socket.unshift(Buffer.concat([Buffer.from(lines.join('\r\n') + '\r\n\r\n', 'latin1'), head]));
+    server.emit('connection', socket);
+});
+channelServer.on('connection', (channel, upgrade) => {
+    channel.sessionId = new URL(upgrade.url, 'http://localhost').searchParams.get('session') || DEFAULT_SESSION;
+    channels.add(channel);
+    let queue = Promise.resolve();
+    channel.on('message', raw => {
+        let request;
+        try {
+            request = JSON.parse(raw.toString());
+        } catch (error) {
+            console.error('[WS ERROR] Malformed message:', error.message);
+            return;
+        }
+        queue = queue.then(async () => {
+            const { body } = await executeCommand(sessions.get(channel.sessionId), request.command || {});
+            if (channel.readyState === channel.OPEN) {
+                channel.send(JSON.stringify({ id: request.id, response: body }));
+            }
+        });
+    });
+    channel.on('close', () => channels.delete(channel));
+    channel.on('error', error => console.error('[WS ERROR]', error.message));
+});
@@ -0,0 +1,366 @@
+package com.zaborstik.platform.agent.client;
+
+import com.sun.net.httpserver.HttpServer;
+import com.zaborstik.platform.agent.dto.AgentBatchResponse;
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import com.zaborstik.platform.agent.dto.CircuitBreakerPolicy;
+import com.zaborstik.platform.agent.dto.ScreenshotPolicy;
+import com.zaborstik.platform.agent.dto.SessionResetMode;
+import com.zaborstik.platform.agent.service.CancellationToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentClientTest {
+
+    private HttpServer server;
+    private final CountDownLatch requestReceived = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger batchRequests = new AtomicInteger();
+    private final AtomicReference<String> batchBody = new AtomicReference<>();
+    private final AtomicReference<String> initializeBody = new AtomicReference<>();
+    private final AtomicReference<String> initializeSession = new AtomicReference<>();
+    private final AtomicReference<String> initializeUpgrade = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/execute", exchange -> {
+            requestReceived.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"success\":true,\"message\":\"ok\",\"executionTimeMs\":1}".getBytes(StandardCharsets.UTF_8);
+            try (OutputStream out = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(200, body.length);
+                out.write(body);
+            } catch (IOException ignored) {
+                // клиент уже отменил запрос / client already aborted the request
+            }
+        });
+        server.createContext("/execute-batch", exchange -> {
+            batchRequests.incrementAndGet();
+            batchBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] body = ("{\"success\":false,\"results\":["
+                + "{\"success\":true,\"message\":\"coords\",\"data\":{\"x\":10.5,\"y\":20.5},\"executionTimeMs\":3},"
+                + "{\"success\":false,\"error\":\"Element detached\",\"data\":{},\"executionTimeMs\":4}],"
+                + "\"executionTimeMs\":8}").getBytes(StandardCharsets.UTF_8);
+            try (OutputStream out = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(200, body.length);
+                out.write(body);
+            }
+        });
+        server.createContext("/initialize", exchange -> {
+            initializeBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            initializeSession.set(exchange.getRequestHeaders().getFirst(AgentClient.SESSION_HEADER));
+            initializeUpgrade.set(exchange.getRequestHeaders().getFirst("Upgrade"));
+            byte[] body = "{\"success\":true,\"message\":\"Browser initialized\",\"executionTimeMs\":0}"
+                .getBytes(StandardCharsets.UTF_8);
+            try (OutputStream out = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(200, body.length);
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void cancelShouldAbortInFlightCommand() throws Exception {
+        AgentClient client = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort());
+        CancellationToken token = CancellationToken.create();
+        Thread canceller = new Thread(() -> {
+            try {
+                requestReceived.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            token.cancel("stop");
+        });
+        canceller.start();
+
+        long started = System.nanoTime();
+        AgentResponse response = client.execute(AgentCommand.explain("hello"), Duration.ofSeconds(30), token);
+        long elapsedMs = Duration.ofNanos(System.nanoTime() - started).toMillis();
+
+        assertFalse(response.success());
+        assertTrue(response.error().startsWith("Command cancelled"), response.error());
+        assertTrue(elapsedMs < 5_000, "Request was not aborted, elapsed=" + elapsedMs);
+    }
+
+    @Test
+    void commandShouldCompleteWhenNotCancelled() throws Exception {
+        AgentClient client = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort());
+        release.countDown();
+
+        AgentResponse response = client.execute(AgentCommand.explain("hello"), Duration.ofSeconds(5),
+            CancellationToken.create());
+
+        assertTrue(response.success());
+        assertEquals("ok", response.message());
+    }
+
+    @Test
+    void executeAsyncShouldCompleteManyInFlightCommandsOnFewThreads() {
+        AgentHttpOptions options = new AgentHttpOptions(HttpClient.Version.HTTP_1_1, Duration.ofSeconds(5), 2);
+        AgentClient client = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort(),
+            Duration.ofSeconds(10), options.newHttpClient());
+
+        List<CompletableFuture<AgentResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(client.executeAsync(AgentCommand.explain("hello " + i)));
+        }
+        // сервер держит ответы до release: вызывающий поток не заблокирован / server holds responses until release
+        assertTrue(futures.stream().noneMatch(CompletableFuture::isDone));
+        release.countDown();
+
+        for (CompletableFuture<AgentResponse> future : futures) {
+            AgentResponse response = future.join();
+            assertTrue(response.success(), response.error());
+            assertEquals("ok", response.message());
+        }
+    }
+
+    @Test
+    void cancellingAsyncCommandShouldAbortExchange() throws Exception {
+        AgentClient client = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort());
+
+        CompletableFuture<AgentResponse> future = client.executeAsync(AgentCommand.explain("hello"));
+        assertTrue(requestReceived.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(true));
+
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    void executeAsyncShouldCompleteWithFailureWhenAgentIsUnreachable() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        AgentClient client = new AgentClient("http://127.0.0.1:" + port);
+
+        AgentResponse response = client.executeAsync(AgentCommand.explain("hello"), Duration.ofSeconds(5)).join();
+
+        assertFalse(response.success());
+        assertTrue(response.error().startsWith("Failed to communicate with agent"), response.error());
+        assertEquals("AGENT_UNREACHABLE", response.errorCode());
+    }
+
+    @Test
+    void openCircuitShouldRejectCommandsWithoutContactingAgent() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        AgentClient client = new AgentClient("http://127.0.0.1:" + port, Duration.ofSeconds(5),
+            new CircuitBreakerPolicy(2, 2, 0.5, Duration.ofSeconds(5), 1.0, Duration.ofMinutes(1), 1));
+
+        client.execute(AgentCommand.explain("first"));
+        client.execute(AgentCommand.explain("second"));
+        assertEquals(CircuitBreaker.State.OPEN, client.circuitState());
+
+        AgentResponse rejected = client.execute(AgentCommand.explain("third"));
+        AgentBatchResponse rejectedBatch = client.executeBatch(List.of(AgentCommand.explain("fourth")));
+        AgentResponse rejectedInit = client.initialize("http://app", true);
+
+        assertFalse(rejected.success());
+        assertEquals("Circuit breaker open for agent http://127.0.0.1:" + port, rejected.error());
+        assertEquals(0, rejected.executionTimeMs());
+        assertEquals("CIRCUIT_OPEN", rejected.errorCode());
+        assertEquals(rejected.error(), rejectedBatch.error());
+        assertEquals(rejected.error(), rejectedInit.error());
+    }
+
+    @Test
+    void failedCommandShouldNotOpenCircuit() throws Exception {
+        server.createContext("/failing/execute", exchange -> {
+            byte[] body = "{\"success\":false,\"error\":\"Element not found\",\"executionTimeMs\":1}"
+                .getBytes(StandardCharsets.UTF_8);
+            try (OutputStream out = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(500, body.length);
+                out.write(body);
+            }
+        });
+        AgentClient client = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort() + "/failing",
+            Duration.ofSeconds(5), new CircuitBreakerPolicy(2, 2, 0.5, Duration.ofSeconds(5), 1.0,
+                Duration.ofMinutes(1), 1));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("Element not found", client.execute(AgentCommand.explain("missing")).error());
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitState());
+    }
+
+    @Test
+    void defaultClientShouldNotAskPlainHttpAgentForH2cUpgrade() throws Exception {
+        assertEquals(HttpClient.Version.HTTP_1_1, AgentHttpOptions.defaults().version());
+        AgentClient client = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort());
+
+        assertTrue(client.initialize("http://app", true).success());
+        assertNull(initializeUpgrade.get(), "Express agent would route an upgrade request away from its routes");
+    }
+
+    @Test
+    void httpOptionsShouldRejectInvalidValues() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new AgentHttpOptions(HttpClient.Version.HTTP_2, Duration.ZERO, 2));
+        assertThrows(IllegalArgumentException.class,
+            () -> new AgentHttpOptions(HttpClient.Version.HTTP_2, Duration.ofSeconds(1), 0));
+    }
+
+    @Test
+    void executeBatchShouldSendAllCommandsInOneRequest() {
+        AgentClient client = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort());
+
+        AgentBatchResponse response = client.executeBatch(List.of(
+            AgentCommand.resolveCoords("#submit", "resolve"),
+            AgentCommand.clickAtResolved(0, "click", "#submit"),
+            AgentCommand.explain("not reached")));
+
+        assertEquals(1, batchRequests.get());
+        assertTrue(batchBody.get().contains("\"stopOnFailure\":true"), batchBody.get());
+        assertTrue(batchBody.get().contains("\"coordsFrom\":0"), batchBody.get());
+        assertFalse(response.success());
+        assertFalse(response.unsupported());
+        assertEquals(2, response.results().size());
+        assertEquals(10.5, response.result(0).data().get("x"));
+        assertEquals("Element detached", response.result(1).error());
+        assertNull(response.result(2));
+    }
+
+    @Test
+    void executeBatchShouldReportUnsupportedWhenAgentHasNoBatchEndpoint() throws IOException {
+        HttpServer legacy = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        legacy.start();
+        try {
+            AgentClient client = new AgentClient("http://127.0.0.1:" + legacy.getAddress().getPort());
+
+            AgentBatchResponse response = client.executeBatch(List.of(AgentCommand.explain("hello")));
+
+            assertTrue(response.unsupported());
+            assertFalse(response.success());
+            assertTrue(response.results().isEmpty());
+        } finally {
+            legacy.stop(0);
+        }
+    }
+
+    @Test
+    void executeBatchShouldRejectEmptyBatch() {
+        AgentClient client = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort());
+
+        assertThrows(IllegalArgumentException.class, () -> client.executeBatch(List.of()));
+    }
+
+    @Test
+    void agentWithoutChannelShouldKeepCommandsOnHttp() throws Exception {
+        AgentClient client = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort(),
+            Duration.ofSeconds(5), (CircuitBreakerPolicy) null, true);
+        release.countDown();
+
+        AgentResponse initialized = client.initialize("http://app", true);
+        AgentResponse response = client.execute(AgentCommand.explain("hello"));
+
+        assertTrue(initialized.success());
+        assertFalse(client.isChannelOpen());
+        assertTrue(response.success(), response.error());
+        assertEquals("ok", response.message());
+    }
+
+    @Test
+    void initializeShouldSendScreenshotPolicy() throws Exception {
+        ScreenshotPolicy policy = new ScreenshotPolicy(ScreenshotPolicy.Mode.SAMPLED, 5, ScreenshotPolicy.Format.JPEG,
+            70, 960);
+        AgentClient client = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort(),
+            Duration.ofSeconds(5), null, false, policy);
+
+        assertTrue(client.initialize("http://app", true).success());
+
+        String body = initializeBody.get();
+        assertTrue(body.contains("\"screenshots\":{\"mode\":\"SAMPLED\",\"sampleEvery\":5,\"format\":\"JPEG\","
+            + "\"quality\":70,\"maxWidth\":960}"), body);
+    }
+
+    @Test
+    void screenshotUriShouldPointToAgentScreenshotEndpoint() {
+        AgentClient client = new AgentClient("http://agent:3000/");
+
+        assertEquals("http://agent:3000/screenshots/ab12.png",
+            client.screenshotUri("/opt/agent/screenshots/ab12.png").toString());
+        assertEquals("http://agent:3000/screenshots/ab12.jpeg",
+            client.screenshotUri("C:\\agent\\screenshots\\ab12.jpeg").toString());
+        assertThrows(IllegalArgumentException.class, () -> client.screenshotUri("/opt/agent/screenshots/"));
+    }
+
+    @Test
+    void sessionClientShouldAddressItsAgentSessionAndResetIt() throws Exception {
+        AtomicReference<String> resetSession = new AtomicReference<>();
+        AtomicReference<String> resetBody = new AtomicReference<>();
+        server.createContext("/reset", exchange -> {
+            resetSession.set(exchange.getRequestHeaders().getFirst(AgentClient.SESSION_HEADER));
+            resetBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] body = "{\"success\":true,\"message\":\"Session reset (RELOAD)\",\"executionTimeMs\":2}"
+                .getBytes(StandardCharsets.UTF_8);
+            try (OutputStream out = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(200, body.length);
+                out.write(body);
+            }
+        });
+        AgentClient shared = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort(),
+            Duration.ofSeconds(5), CircuitBreakerPolicy.defaultPolicy());
+        AgentClient session = shared.withSession("pool-1");
+
+        assertTrue(shared.initialize("http://app", true).success());
+        assertNull(initializeSession.get(), "a client without a session uses the agent default session");
+        assertTrue(session.initialize("http://app", true).success());
+        assertEquals("pool-1", initializeSession.get());
+        assertEquals("pool-1", session.sessionId());
+
+        AgentResponse reset = session.reset(SessionResetMode.RELOAD, Duration.ofSeconds(5));
+        assertTrue(reset.success());
+        assertEquals("pool-1", resetSession.get());
+        assertTrue(resetBody.get().contains("\"mode\":\"RELOAD\""), resetBody.get());
+        assertTrue(session.reset(SessionResetMode.NONE, Duration.ofSeconds(5)).success());
+        assertThrows(IllegalArgumentException.class, () -> shared.withSession(" "));
+    }
+
+    @Test
+    void resetShouldFailOnAgentWithoutResetEndpoint() {
+        AgentClient client = new AgentClient("http://127.0.0.1:" + server.getAddress().getPort())
+            .withSession("pool-2");
+
+        AgentResponse reset = client.reset(SessionResetMode.CLEAR_STORAGE, Duration.ofSeconds(5));
+
+        assertFalse(reset.success());
+        assertTrue(reset.error().contains("status 404"), reset.error());
+    }
+}
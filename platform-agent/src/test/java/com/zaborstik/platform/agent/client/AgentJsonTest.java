@@ -0,0 +1,72 @@
+package com.zaborstik.platform.agent.client;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import com.zaborstik.platform.agent.dto.LazyJsonMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentJsonTest {
+
+    @Test
+    void shouldWriteCommandAndBatch() throws Exception {
+        AgentCommand command = AgentCommand.click("#buy", "Buy");
+
+        String single = new String(AgentJson.writeCommand(command), StandardCharsets.UTF_8);
+        String batch = new String(AgentJson.writeBatch(List.of(command), false), StandardCharsets.UTF_8);
+
+        assertTrue(single.startsWith("{\"type\":\"CLICK\",\"target\":\"#buy\""));
+        assertTrue(batch.startsWith("{\"commands\":[{\"type\":\"CLICK\""));
+        assertTrue(batch.endsWith("\"stopOnFailure\":false}"));
+    }
+
+    @Test
+    void shouldParseBodySplitAcrossBuffers() throws Exception {
+        String json = "{\"success\":true,\"message\":\"done\",\"data\":{\"text\":\"" + "x".repeat(5000)
+            + "\"},\"executionTimeMs\":7}";
+
+        AgentJson.Body<AgentResponse> body = receive(json, 1000);
+
+        AgentResponse response = body.value();
+        assertTrue(response.success());
+        assertEquals(7, response.executionTimeMs());
+        assertInstanceOf(LazyJsonMap.class, response.data());
+        assertEquals(5000, ((String) response.data().get("text")).length());
+    }
+
+    @Test
+    void shouldKeepRawTextWhenBodyIsNotJson() throws Exception {
+        AgentJson.Body<AgentResponse> body = receive("Bad Gateway from proxy", 4);
+
+        assertThrows(IOException.class, body::value);
+        assertEquals("Bad Gateway from proxy", body.text());
+    }
+
+    private static AgentJson.Body<AgentResponse> receive(String json, int chunkSize) throws Exception {
+        HttpResponse.BodySubscriber<AgentJson.Body<AgentResponse>> subscriber = AgentJson.RESPONSE_BODY.apply(null);
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, bytes.length - offset);
+            subscriber.onNext(List.of(ByteBuffer.wrap(bytes, offset, length).slice()));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().get();
+    }
+}
@@ -0,0 +1,110 @@
+package com.zaborstik.platform.agent.client;
+
+import com.zaborstik.platform.agent.dto.CircuitBreakerPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker("http://agent",
+        new CircuitBreakerPolicy(4, 4, 0.5, Duration.ofMillis(100), 0.75, Duration.ofSeconds(10), 2), nanos::get);
+
+    @Test
+    void shouldOpenWhenFailureRateReachesThreshold() {
+        succeed(2);
+        fail(1);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        fail(1);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void shouldNotDecideBeforeMinimumCalls() {
+        fail(3);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void shouldOpenWhenSlowCallRateReachesThreshold() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onSuccess(150);
+        }
+        succeed(1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void slidingWindowShouldForgetOldOutcomes() {
+        succeed(3);
+        fail(1);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        // окно из 4: вытесняется успех, 2 из 4 ошибок / window of 4: a success is evicted, 2 of 4 failed
+        fail(1);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void shouldCloseAfterSuccessfulTrialCalls() {
+        fail(4);
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        breaker.onSuccess(1);
+        breaker.onSuccess(1);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void shouldReopenWhenTrialCallsFail() {
+        fail(4);
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        fail(2);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        nanos.addAndGet(Duration.ofSeconds(5).toNanos());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void releasedTrialPermitShouldBeReusable() {
+        fail(4);
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+
+        breaker.release();
+
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    private void succeed(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onSuccess(1);
+        }
+    }
+
+    private void fail(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onFailure(1);
+        }
+    }
+}
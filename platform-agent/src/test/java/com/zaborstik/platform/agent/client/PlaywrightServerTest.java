@@ -0,0 +1,112 @@
+package com.zaborstik.platform.agent.client;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentErrorCode;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Клиент против настоящего {@code playwright-server.js}. Нужны Node.js и зависимости агента
+ * ({@code npm install} в {@code src/main/resources}); без них тесты пропускаются.
+ *
+ * Client against the real {@code playwright-server.js}. Requires Node.js and the agent dependencies
+ * ({@code npm install} in {@code src/main/resources}); the tests are skipped without them.
+ */
+class PlaywrightServerTest {
+    private static final Path RESOURCES = Path.of("src", "main", "resources");
+
+    private static Process server;
+    private static String baseUrl;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        assumeTrue(Files.exists(RESOURCES.resolve("playwright-server.js")), "playwright-server.js not found");
+        assumeTrue(nodeModulesInstalled(), "node or agent dependencies are not installed");
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        ProcessBuilder builder = new ProcessBuilder("node", "playwright-server.js", "--headless")
+            .directory(RESOURCES.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        builder.environment().put("PORT", String.valueOf(port));
+        builder.environment().put("SCREENSHOTS_DIR", Files.createTempDirectory("agent-screenshots").toString());
+        server = builder.start();
+        baseUrl = "http://127.0.0.1:" + port;
+
+        AgentClient client = new AgentClient(baseUrl);
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!client.isAvailable()) {
+            assertTrue(server.isAlive(), "playwright-server.js exited on start");
+            assertTrue(System.currentTimeMillis() < deadline, "playwright-server.js did not start within 15s");
+            Thread.sleep(100);
+        }
+    }
+
+    @AfterAll
+    static void stopServer() throws InterruptedException {
+        if (server != null) {
+            server.destroy();
+            server.waitFor(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void http2ClientShouldReachExpressRoutesDespiteH2cUpgrade() throws Exception {
+        // HTTP/2 по http: JDK шлёт Upgrade: h2c в каждом новом соединении /
+        // HTTP/2 over http: the JDK sends Upgrade: h2c on every new connection
+        HttpClient http2 = new AgentHttpOptions(HttpClient.Version.HTTP_2, Duration.ofSeconds(5), 2).newHttpClient();
+        AgentClient client = new AgentClient(baseUrl, Duration.ofSeconds(10), http2);
+
+        assertTrue(client.isAvailable());
+        for (int i = 0; i < 3; i++) {
+            AgentResponse response = client.execute(AgentCommand.explain("no session yet"));
+            assertFalse(response.success());
+            // ответ Express, а не отказ ws / an Express answer rather than a ws rejection
+            assertEquals(AgentErrorCode.NOT_INITIALIZED.name(), response.errorCode(), response.toString());
+        }
+    }
+
+    @Test
+    void channelShouldStillUpgradeOnWsPath() throws Exception {
+        URI uri = URI.create(baseUrl.replace("http://", "ws://") + "/ws?session=probe");
+        WebSocketAgentTransport transport = WebSocketAgentTransport.connect(AgentHttpOptions.defaults().newHttpClient(),
+            uri, Duration.ofSeconds(5), event -> { }).get(10, TimeUnit.SECONDS);
+        try {
+            AgentResponse response = transport.executeAsync(AgentCommand.explain("no session yet"),
+                Duration.ofSeconds(5)).get(10, TimeUnit.SECONDS);
+            assertEquals(AgentErrorCode.NOT_INITIALIZED.name(), response.errorCode(), response.toString());
+        } finally {
+            transport.close();
+        }
+    }
+
+    private static boolean nodeModulesInstalled() throws InterruptedException {
+        try {
+            Process check = new ProcessBuilder("node", "-e",
+                "require.resolve('express'); require.resolve('ws'); require.resolve('playwright')")
+                .directory(RESOURCES.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            return check.waitFor(15, TimeUnit.SECONDS) && check.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
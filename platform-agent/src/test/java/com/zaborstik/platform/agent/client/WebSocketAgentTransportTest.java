@@ -0,0 +1,238 @@
+package com.zaborstik.platform.agent.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentErrorCode;
+import com.zaborstik.platform.agent.dto.AgentEvent;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebSocketAgentTransportTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private ChannelServer server;
+    private WebSocketAgentTransport transport;
+    private final List<AgentEvent> events = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new ChannelServer();
+        transport = WebSocketAgentTransport.connect(HttpClient.newHttpClient(),
+                URI.create("ws://127.0.0.1:" + server.port() + "/ws"), Duration.ofSeconds(5), events::add)
+            .get(5, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        transport.close();
+        server.close();
+    }
+
+    @Test
+    void shouldMatchPipelinedResponsesById() throws Exception {
+        CompletableFuture<AgentResponse> first = transport.executeAsync(AgentCommand.click("#first", "first"), null);
+        CompletableFuture<AgentResponse> second = transport.executeAsync(AgentCommand.click("#second", "second"), null);
+
+        JsonNode firstRequest = server.receive();
+        JsonNode secondRequest = server.receive();
+        assertEquals("#first", firstRequest.path("command").path("target").asText());
+        assertEquals("#second", secondRequest.path("command").path("target").asText());
+        assertFalse(first.isDone());
+
+        server.send(response(secondRequest.path("id").asLong(), "second done"));
+        server.send(response(firstRequest.path("id").asLong(), "first done"));
+
+        assertEquals("first done", first.get(5, TimeUnit.SECONDS).message());
+        assertEquals("second done", second.get(5, TimeUnit.SECONDS).message());
+    }
+
+    @Test
+    void shouldDeliverKnownEventsToListener() throws Exception {
+        server.send("{\"event\":{\"type\":\"SOMETHING_NEW\",\"data\":{},\"timestampMs\":1}}");
+        server.send("{\"event\":{\"type\":\"NAVIGATED\",\"data\":{\"url\":\"http://app/orders\"},\"timestampMs\":2}}");
+        // ответ после событий: к его приходу события уже доставлены / a response after the events: by the time
+        // it arrives the events have been delivered
+        CompletableFuture<AgentResponse> command = transport.executeAsync(AgentCommand.click("#a", "a"), null);
+        server.send(response(server.receive().path("id").asLong(), "done"));
+        command.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, events.size());
+        assertEquals(AgentEvent.Type.NAVIGATED, events.get(0).type());
+        assertEquals("http://app/orders", events.get(0).url());
+        assertEquals(2, events.get(0).timestampMs());
+    }
+
+    @Test
+    void shouldTimeOutUnansweredCommand() throws Exception {
+        AgentResponse response = transport.executeAsync(AgentCommand.click("#slow", "slow"), Duration.ofMillis(100))
+            .get(5, TimeUnit.SECONDS);
+
+        assertFalse(response.success());
+        assertEquals(AgentErrorCode.AGENT_TIMEOUT.name(), response.errorCode());
+        assertTrue(transport.isOpen());
+    }
+
+    @Test
+    void shouldFailPendingCommandsWhenAgentClosesChannel() throws Exception {
+        CompletableFuture<AgentResponse> pending = transport.executeAsync(AgentCommand.click("#a", "a"), null);
+        server.receive();
+
+        server.sendClose();
+
+        AgentResponse response = pending.get(5, TimeUnit.SECONDS);
+        assertEquals(AgentErrorCode.AGENT_UNREACHABLE.name(), response.errorCode());
+        assertFalse(transport.isOpen());
+        AgentResponse afterClose = transport.executeAsync(AgentCommand.click("#b", "b"), null).get(5, TimeUnit.SECONDS);
+        assertEquals(AgentErrorCode.AGENT_UNREACHABLE.name(), afterClose.errorCode());
+    }
+
+    private static String response(long id, String message) {
+        return "{\"id\":" + id + ",\"response\":{\"success\":true,\"message\":\"" + message
+            + "\",\"data\":{},\"executionTimeMs\":1}}";
+    }
+
+    /**
+     * Минимальный WebSocket-сервер на одно соединение: рукопожатие, текстовые кадры и закрытие.
+     *
+     * Minimal single-connection WebSocket server: handshake, text frames and close.
+     */
+    private static final class ChannelServer implements AutoCloseable {
+        private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+        private final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        private final CompletableFuture<Socket> connection = new CompletableFuture<>();
+
+        ChannelServer() throws IOException {
+            Thread acceptor = new Thread(this::serve, "test-channel-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        JsonNode receive() throws Exception {
+            String text = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(text, "no message from client");
+            return MAPPER.readTree(text);
+        }
+
+        void send(String text) throws Exception {
+            writeFrame(0x1, text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void sendClose() throws Exception {
+            writeFrame(0x8, new byte[] {0x03, (byte) 0xE8});
+        }
+
+        private void writeFrame(int opcode, byte[] payload) throws Exception {
+            Socket socket = connection.get(5, TimeUnit.SECONDS);
+            synchronized (this) {
+                OutputStream out = socket.getOutputStream();
+                out.write(0x80 | opcode);
+                if (payload.length < 126) {
+                    out.write(payload.length);
+                } else {
+                    out.write(126);
+                    out.write(payload.length >>> 8);
+                    out.write(payload.length & 0xFF);
+                }
+                out.write(payload);
+                out.flush();
+            }
+        }
+
+        private void serve() {
+            try (Socket socket = serverSocket.accept()) {
+                handshake(socket);
+                connection.complete(socket);
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                while (true) {
+                    int opcode = in.readUnsignedByte() & 0x0F;
+                    int length = in.readUnsignedByte() & 0x7F;
+                    if (length == 126) {
+                        length = in.readUnsignedShort();
+                    } else if (length == 127) {
+                        length = (int) in.readLong();
+                    }
+                    byte[] mask = in.readNBytes(4);
+                    byte[] payload = in.readNBytes(length);
+                    for (int i = 0; i < payload.length; i++) {
+                        payload[i] ^= mask[i % 4];
+                    }
+                    if (opcode == 0x8) {
+                        return;
+                    }
+                    if (opcode == 0x1) {
+                        received.add(new String(payload, StandardCharsets.UTF_8));
+                    }
+                }
+            } catch (IOException e) {
+                connection.completeExceptionally(e);
+            }
+        }
+
+        private static void handshake(Socket socket) throws IOException {
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            String key = null;
+            for (String line = reader.readLine(); line != null && !line.isEmpty(); line = reader.readLine()) {
+                if (line.toLowerCase().startsWith("sec-websocket-key:")) {
+                    key = line.substring(line.indexOf(':') + 1).trim();
+                }
+            }
+            String response = "HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + accept(key) + "\r\n\r\n";
+            socket.getOutputStream().write(response.getBytes(StandardCharsets.ISO_8859_1));
+            socket.getOutputStream().flush();
+        }
+
+        private static String accept(String key) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest((key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1));
+                return Base64.getEncoder().encodeToString(digest);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            Socket socket = connection.getNow(null);
+            if (socket != null) {
+                socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.zaborstik.platform.agent.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerPolicyTest {
+
+    private static final Duration SECOND = Duration.ofSeconds(1);
+
+    @Test
+    void defaultPolicyShouldBeValid() {
+        CircuitBreakerPolicy policy = CircuitBreakerPolicy.defaultPolicy();
+
+        assertTrue(policy.minimumCalls() <= policy.windowSize());
+        assertTrue(policy.halfOpenCalls() <= policy.windowSize());
+    }
+
+    @Test
+    void shouldRejectInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerPolicy(0, 1, 0.5, SECOND, 0.5, SECOND, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerPolicy(5, 6, 0.5, SECOND, 0.5, SECOND, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerPolicy(5, 5, 0.0, SECOND, 0.5, SECOND, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerPolicy(5, 5, 0.5, Duration.ZERO, 0.5, SECOND, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerPolicy(5, 5, 0.5, SECOND, 1.5, SECOND, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerPolicy(5, 5, 0.5, SECOND, 0.5, Duration.ZERO, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerPolicy(5, 5, 0.5, SECOND, 0.5, SECOND, 6));
+    }
+}
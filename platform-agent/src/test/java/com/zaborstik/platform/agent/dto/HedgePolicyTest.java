@@ -0,0 +1,34 @@
+package com.zaborstik.platform.agent.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgePolicyTest {
+
+    @Test
+    void defaultPolicyShouldHedgeReadOperationsOnly() {
+        HedgePolicy policy = HedgePolicy.defaultPolicy();
+
+        assertTrue(policy.isEnabled());
+        assertTrue(policy.isHedgeable("read_text"));
+        assertTrue(policy.isHedgeable("take_screenshot"));
+        assertFalse(policy.isHedgeable("wait"));
+        assertFalse(policy.isHedgeable("click"));
+        assertFalse(policy.isHedgeable(null));
+    }
+
+    @Test
+    void disabledPolicyShouldNotBeEnabled() {
+        assertFalse(HedgePolicy.disabled().isEnabled());
+    }
+
+    @Test
+    void shouldRejectInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> new HedgePolicy(Set.of("wait"), 1.0, 0.1, 20));
+        assertThrows(IllegalArgumentException.class, () -> new HedgePolicy(Set.of("wait"), 0.95, 1.5, 20));
+        assertThrows(IllegalArgumentException.class, () -> new HedgePolicy(Set.of("wait"), 0.95, 0.1, 0));
+    }
+}
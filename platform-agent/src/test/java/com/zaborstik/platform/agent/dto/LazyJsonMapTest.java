@@ -0,0 +1,84 @@
+package com.zaborstik.platform.agent.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyJsonMapTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String RESPONSE = """
+        {"success":true,"message":"ok","data":{"text":"hello","nodes":[{"id":1},{"id":2}],"screenshot":"/tmp/s.png"},
+         "executionTimeMs":5}
+        """;
+
+    @Test
+    void lookupShouldNotBindWholeObject() throws Exception {
+        AgentResponse response = read(RESPONSE);
+        LazyJsonMap data = assertInstanceOf(LazyJsonMap.class, response.data());
+
+        assertEquals("/tmp/s.png", data.get("screenshot"));
+        assertEquals(List.of(Map.of("id", 1), Map.of("id", 2)), data.get("nodes"));
+        assertTrue(data.containsKey("text"));
+        assertFalse(data.containsKey("missing"));
+        assertNull(data.get("missing"));
+        assertFalse(data.isMaterialized());
+    }
+
+    @Test
+    void iterationShouldBindOnceAndKeepOrder() throws Exception {
+        LazyJsonMap data = (LazyJsonMap) read(RESPONSE).data();
+
+        assertEquals(List.of("text", "nodes", "screenshot"), List.copyOf(data.keySet()));
+        assertTrue(data.isMaterialized());
+        assertEquals(3, data.size());
+        assertEquals("hello", data.get("text"));
+        assertThrows(UnsupportedOperationException.class, () -> data.put("text", "changed"));
+        assertEquals(Map.of("text", "hello", "nodes", List.of(Map.of("id", 1), Map.of("id", 2)),
+            "screenshot", "/tmp/s.png"), data);
+    }
+
+    @Test
+    void serializationShouldWriteSameObject() throws Exception {
+        LazyJsonMap data = (LazyJsonMap) read(RESPONSE).data();
+
+        String json = MAPPER.writeValueAsString(Map.of("metadata", data));
+
+        assertEquals("{\"metadata\":{\"text\":\"hello\",\"nodes\":[{\"id\":1},{\"id\":2}],\"screenshot\":\"/tmp/s.png\"}}",
+            json);
+    }
+
+    @Test
+    void readerWithoutSourceShouldBindDataRightAway() throws Exception {
+        Map<String, Object> data = MAPPER.readValue(RESPONSE, AgentResponse.class).data();
+
+        assertFalse(data instanceof LazyJsonMap);
+        assertEquals("/tmp/s.png", data.get("screenshot"));
+    }
+
+    @Test
+    void stepResultShouldKeepDataUnbound() throws Exception {
+        LazyJsonMap data = (LazyJsonMap) read(RESPONSE).data();
+
+        StepExecutionResult result = StepExecutionResult.success("click", "#buy", "ok", 5, null, data);
+
+        assertSame(data, result.metadata());
+        assertFalse(data.isMaterialized());
+    }
+
+    @Test
+    void missingOrNonObjectDataShouldBeHandled() throws Exception {
+        assertEquals(Map.of(), read("{\"success\":true,\"data\":null}").data());
+        assertEquals(Map.of(), read("{\"success\":true}").data());
+        assertThrows(Exception.class, () -> read("{\"success\":true,\"data\":[1]}"));
+    }
+
+    private static AgentResponse read(String json) throws Exception {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return MAPPER.readerFor(AgentResponse.class).withAttribute(LazyJsonMap.SOURCE_ATTRIBUTE, bytes).readValue(bytes);
+    }
+}
@@ -0,0 +1,41 @@
+package com.zaborstik.platform.agent.dto;
+
+import com.zaborstik.platform.core.plan.PlanStep;
+import com.zaborstik.platform.core.plan.PlanStepAction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NavigationPolicyTest {
+
+    @Test
+    void defaultPolicyShouldAllowSkippingAnyStep() {
+        assertTrue(NavigationPolicy.defaultPolicy().maySkip(step("act-open")));
+    }
+
+    @Test
+    void disabledPolicyShouldNeverSkip() {
+        assertFalse(NavigationPolicy.disabled().maySkip(step("act-open")));
+    }
+
+    @Test
+    void forcedActionShouldAlwaysNavigate() {
+        NavigationPolicy policy = new NavigationPolicy(true, Set.of("act-reload"));
+
+        assertFalse(policy.maySkip(step("act-reload")));
+        assertTrue(policy.maySkip(step("act-open")));
+    }
+
+    @Test
+    void nullForcedActionsShouldBeEmpty() {
+        assertEquals(Set.of(), new NavigationPolicy(true, null).forcedActions());
+    }
+
+    private static PlanStep step(String actionId) {
+        return new PlanStep("step-1", "plan-1", "wf-plan-step", "new", "ent-page", "/catalog", 0, "Open",
+            List.of(new PlanStepAction(actionId, null)));
+    }
+}
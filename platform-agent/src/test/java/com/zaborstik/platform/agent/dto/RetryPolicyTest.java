@@ -2,6 +2,8 @@ package com.zaborstik.platform.agent.dto;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class RetryPolicyTest {
@@ -39,4 +41,69 @@ class RetryPolicyTest {
 
         assertFalse(policy.isRetryable("Something unexpected"));
     }
+
+    @Test
+    void classifyShouldPreferErrorCodeOverMessagePatterns() {
+        RetryPolicy policy = RetryPolicy.defaultPolicy();
+
+        assertEquals(AgentErrorCode.Category.PERMANENT, policy.classify("INVALID_COMMAND", "selector not found"));
+        assertEquals(AgentErrorCode.Category.ELEMENT_NOT_READY, policy.classify("ELEMENT_NOT_READY", "detached"));
+        assertEquals(AgentErrorCode.Category.TRANSIENT_NETWORK, policy.classify("AGENT_UNREACHABLE", "refused"));
+        assertEquals(AgentErrorCode.Category.PERMANENT, policy.classify("CIRCUIT_OPEN", "timeout"));
+    }
+
+    @Test
+    void classifyShouldFallBackToPatternsWithoutKnownCode() {
+        RetryPolicy policy = RetryPolicy.defaultPolicy();
+
+        assertEquals(AgentErrorCode.Category.TRANSIENT_NETWORK, policy.classify(null, "Element not found"));
+        assertEquals(AgentErrorCode.Category.TRANSIENT_NETWORK, policy.classify("FUTURE_CODE", "timeout"));
+        assertEquals(AgentErrorCode.Category.PERMANENT, policy.classify(null, "Something unexpected"));
+    }
+
+    @Test
+    void backoffShouldGrowExponentiallyUpToMaxDelay() {
+        RetryPolicy policy = new RetryPolicy(5, 100, List.of(), 2.0, 500, 0.0, 10, 10);
+
+        assertEquals(100, policy.backoffMs(AgentErrorCode.Category.TRANSIENT_NETWORK, 1, 0.5));
+        assertEquals(200, policy.backoffMs(AgentErrorCode.Category.TRANSIENT_NETWORK, 2, 0.5));
+        assertEquals(400, policy.backoffMs(AgentErrorCode.Category.TRANSIENT_NETWORK, 3, 0.5));
+        assertEquals(500, policy.backoffMs(AgentErrorCode.Category.TRANSIENT_NETWORK, 4, 0.5));
+    }
+
+    @Test
+    void elementNotReadyShouldGetFastFirstRetry() {
+        RetryPolicy policy = new RetryPolicy(3, 100, List.of(), 2.0, 500, 0.0, 10, 10);
+
+        assertEquals(10, policy.backoffMs(AgentErrorCode.Category.ELEMENT_NOT_READY, 1, 0.5));
+        assertEquals(100, policy.backoffMs(AgentErrorCode.Category.ELEMENT_NOT_READY, 2, 0.5));
+        assertEquals(200, policy.backoffMs(AgentErrorCode.Category.ELEMENT_NOT_READY, 3, 0.5));
+    }
+
+    @Test
+    void jitterShouldReduceDelayWithinBounds() {
+        RetryPolicy policy = new RetryPolicy(2, 1000, List.of(), 2.0, 8000, 0.5, 100, 10);
+
+        assertEquals(1000, policy.backoffMs(AgentErrorCode.Category.TRANSIENT_NETWORK, 1, 0.0));
+        assertEquals(750, policy.backoffMs(AgentErrorCode.Category.TRANSIENT_NETWORK, 1, 0.5));
+        assertTrue(policy.backoffMs(AgentErrorCode.Category.TRANSIENT_NETWORK, 1, 0.999) >= 500);
+    }
+
+    @Test
+    void fixedDelayConstructorShouldKeepConstantDelays() {
+        RetryPolicy policy = new RetryPolicy(3, 250, List.of("timeout"));
+
+        assertEquals(250, policy.backoffMs(AgentErrorCode.Category.TRANSIENT_NETWORK, 3, 0.9));
+        assertEquals(250, policy.backoffMs(AgentErrorCode.Category.ELEMENT_NOT_READY, 1, 0.9));
+        assertEquals(RetryPolicy.UNLIMITED_BUDGET, policy.planRetryBudget());
+    }
+
+    @Test
+    void shouldRejectInvalidBackoffValues() {
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(1, 100, List.of(), 0.5, 100, 0.0, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(1, 100, List.of(), 2.0, 50, 0.0, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(1, 100, List.of(), 2.0, 100, 1.5, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(1, 100, List.of(), 2.0, 100, 0.0, -1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(1, 100, List.of(), 2.0, 100, 0.0, 0, -1));
+    }
 }
@@ -0,0 +1,40 @@
+package com.zaborstik.platform.agent.dto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScreenshotPolicyTest {
+
+    @Test
+    void defaultPolicyShouldCaptureOnFailureAsPng() {
+        ScreenshotPolicy policy = ScreenshotPolicy.defaultPolicy();
+
+        assertEquals(ScreenshotPolicy.Mode.ON_FAILURE, policy.mode());
+        assertEquals(ScreenshotPolicy.Format.PNG, policy.format());
+        assertEquals(0, policy.maxWidth());
+    }
+
+    @Test
+    void shouldParseModesAndFormatsFromConfigurationValues() {
+        assertEquals(ScreenshotPolicy.Mode.ON_FAILURE, ScreenshotPolicy.Mode.parse("on-failure"));
+        assertEquals(ScreenshotPolicy.Mode.SAMPLED, ScreenshotPolicy.Mode.parse(" Sampled "));
+        assertEquals(ScreenshotPolicy.Mode.NEVER, ScreenshotPolicy.Mode.parse("NEVER"));
+        assertEquals(ScreenshotPolicy.Format.JPEG, ScreenshotPolicy.Format.parse("jpg"));
+        assertEquals(ScreenshotPolicy.Format.PNG, ScreenshotPolicy.Format.parse("png"));
+        assertThrows(IllegalArgumentException.class, () -> ScreenshotPolicy.Mode.parse("sometimes"));
+        assertThrows(IllegalArgumentException.class, () -> ScreenshotPolicy.Format.parse("gif"));
+    }
+
+    @Test
+    void shouldRejectInvalidValues() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new ScreenshotPolicy(ScreenshotPolicy.Mode.SAMPLED, 0, ScreenshotPolicy.Format.PNG, 80, 0));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ScreenshotPolicy(ScreenshotPolicy.Mode.ALWAYS, 1, ScreenshotPolicy.Format.JPEG, 101, 0));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ScreenshotPolicy(ScreenshotPolicy.Mode.ALWAYS, 1, ScreenshotPolicy.Format.JPEG, 80, -1));
+        assertThrows(NullPointerException.class,
+            () -> new ScreenshotPolicy(null, 1, ScreenshotPolicy.Format.PNG, 80, 0));
+    }
+}
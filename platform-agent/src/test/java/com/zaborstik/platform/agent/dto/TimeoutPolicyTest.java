@@ -0,0 +1,43 @@
+package com.zaborstik.platform.agent.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeoutPolicyTest {
+
+    @Test
+    void noneShouldHaveNoLimits() {
+        TimeoutPolicy policy = TimeoutPolicy.none();
+
+        assertNull(policy.planTimeout());
+        assertNull(policy.defaultStepTimeout());
+        assertNull(policy.forOperation("click"));
+    }
+
+    @Test
+    void forOperationShouldPreferPerOperationTimeout() {
+        TimeoutPolicy policy = new TimeoutPolicy(
+            Duration.ofMinutes(1),
+            Duration.ofSeconds(10),
+            Map.of("open_page", Duration.ofSeconds(30))
+        );
+
+        assertEquals(Duration.ofSeconds(30), policy.forOperation("open_page"));
+        assertEquals(Duration.ofSeconds(10), policy.forOperation("click"));
+        assertEquals(Duration.ofSeconds(10), policy.forOperation(null));
+    }
+
+    @Test
+    void shouldRejectNonPositiveTimeouts() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new TimeoutPolicy(Duration.ZERO, null, Map.of()));
+        assertThrows(IllegalArgumentException.class,
+            () -> new TimeoutPolicy(null, Duration.ofMillis(-1), Map.of()));
+        assertThrows(IllegalArgumentException.class,
+            () -> new TimeoutPolicy(null, null, Map.of("click", Duration.ZERO)));
+    }
+}
@@ -0,0 +1,43 @@
+package com.zaborstik.platform.agent.dto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaitConditionTest {
+
+    @Test
+    void shouldParsePrefixedConditions() {
+        assertEquals(WaitCondition.visible("#orders"), WaitCondition.parse("visible:#orders"));
+        assertEquals(WaitCondition.text("Order saved"), WaitCondition.parse("text: Order saved"));
+        assertEquals(WaitCondition.url("**/orders/*"), WaitCondition.parse("url:**/orders/*"));
+        assertEquals(WaitCondition.networkIdle(), WaitCondition.parse("networkidle"));
+    }
+
+    @Test
+    void shouldKeepLegacyTargets() {
+        assertEquals(WaitCondition.pageLoaded(), WaitCondition.parse("result"));
+        assertEquals(WaitCondition.pageLoaded(), WaitCondition.parse(null));
+        assertEquals(new WaitCondition(WaitCondition.Kind.PAGE_LOADED, "load"), WaitCondition.parse("load"));
+        assertEquals(WaitCondition.visible(".spinner-done"), WaitCondition.parse(".spinner-done"));
+    }
+
+    @Test
+    void shouldRequireValueForElementTextAndUrlConditions() {
+        assertThrows(IllegalArgumentException.class, () -> WaitCondition.parse("text:"));
+        assertThrows(IllegalArgumentException.class, () -> WaitCondition.url(" "));
+        assertThrows(NullPointerException.class, () -> new WaitCondition(null, "#a"));
+    }
+
+    @Test
+    void commandShouldCarryConditionAndLegacyTarget() {
+        AgentCommand command = AgentCommand.wait(WaitCondition.text("Order saved"), "Wait for confirmation", 3000);
+
+        assertEquals("text:Order saved", command.target());
+        assertEquals("TEXT_PRESENT", command.parameters().get("condition"));
+        assertEquals("Order saved", command.parameters().get("value"));
+        assertEquals(3000L, command.parameters().get("timeout"));
+        assertEquals(1000L, command.withParameter("timeout", 1000L).parameters().get("timeout"));
+        assertEquals("TEXT_PRESENT", command.withParameter("timeout", 1000L).parameters().get("condition"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.zaborstik.platform.agent.metrics;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionMetricsTest {
+
+    @Test
+    void snapshotShouldGroupLatenciesByOperationAndCommandType() {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        metrics.recordStep("click", 100);
+        metrics.recordStep("click", 200);
+        metrics.recordStep("open_page", 900);
+        metrics.recordCommand(AgentCommand.CommandType.RESOLVE_COORDS, 20);
+        metrics.recordCommand(AgentCommand.CommandType.CLICK_AT, 50);
+        metrics.recordRetry("click");
+        metrics.recordRetry("click");
+        metrics.recordInit(1_500);
+        metrics.recordQueueWait(3);
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+
+        assertEquals(2, snapshot.stepLatency().get("click").count());
+        assertEquals(300, snapshot.stepLatency().get("click").sumMs());
+        assertEquals(1, snapshot.stepLatency().get("open_page").count());
+        assertEquals(2, snapshot.commandLatency().size());
+        assertEquals(50, snapshot.commandLatency().get("CLICK_AT").maxMs());
+        assertEquals(2L, snapshot.retries().get("click"));
+        assertEquals(1, snapshot.initLatency().count());
+        assertEquals(3, snapshot.queueWait().sumMs());
+    }
+
+    @Test
+    void emptyRegistryShouldProduceEmptySnapshot() {
+        MetricsSnapshot snapshot = new ExecutionMetrics().snapshot();
+
+        assertTrue(snapshot.stepLatency().isEmpty());
+        assertTrue(snapshot.commandLatency().isEmpty());
+        assertTrue(snapshot.retries().isEmpty());
+        assertEquals(HistogramSnapshot.empty(), snapshot.initLatency());
+    }
+
+    @Test
+    void shouldRejectNullOperation() {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+
+        assertThrows(NullPointerException.class, () -> metrics.recordStep(null, 1));
+        assertThrows(NullPointerException.class, () -> metrics.recordRetry(null));
+    }
+}
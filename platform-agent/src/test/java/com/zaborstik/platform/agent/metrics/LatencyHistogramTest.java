@@ -0,0 +1,64 @@
+package com.zaborstik.platform.agent.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramShouldReturnZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(0.95));
+    }
+
+    @Test
+    void percentileShouldBeWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram(0);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 10L);
+        }
+
+        long p50 = histogram.percentile(0.50);
+        long p95 = histogram.percentile(0.95);
+
+        assertEquals(100, histogram.count());
+        assertTrue(p50 >= 500 && p50 <= 500 * 1.26, "p50=" + p50);
+        assertTrue(p95 >= 950 && p95 <= 950 * 1.26, "p95=" + p95);
+    }
+
+    @Test
+    void decayShouldLetRecentLatenciesDominate() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1_000);
+        }
+        for (int i = 0; i < 400; i++) {
+            histogram.record(10);
+        }
+
+        assertTrue(histogram.percentile(0.95) <= 13, "p95=" + histogram.percentile(0.95));
+    }
+
+    @Test
+    void snapshotShouldTrackSumAndMax() {
+        LatencyHistogram histogram = new LatencyHistogram(0);
+        histogram.record(10);
+        histogram.record(30);
+        histogram.record(-5);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(3, snapshot.count());
+        assertEquals(40, snapshot.sumMs());
+        assertEquals(30, snapshot.maxMs());
+        assertEquals(histogram.percentile(0.99), snapshot.p99Ms());
+    }
+
+    @Test
+    void shouldRejectInvalidQuantile() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram().percentile(1.5));
+    }
+}
@@ -0,0 +1,54 @@
+package com.zaborstik.platform.agent.metrics;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrometheusTextFormatTest {
+
+    @Test
+    void shouldRenderSummariesAndCounters() {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        metrics.recordStep("click", 100);
+        metrics.recordCommand(AgentCommand.CommandType.HOVER, 40);
+        metrics.recordRetry("click");
+        metrics.recordInit(700);
+
+        String text = PrometheusTextFormat.format(metrics.snapshot());
+
+        assertTrue(text.contains("# TYPE platform_step_latency_milliseconds summary\n"));
+        assertTrue(text.contains("platform_step_latency_milliseconds{operation=\"click\",quantile=\"0.5\"} "));
+        assertTrue(text.contains("platform_step_latency_milliseconds_sum{operation=\"click\"} 100\n"));
+        assertTrue(text.contains("platform_agent_command_latency_milliseconds_count{command=\"HOVER\"} 1\n"));
+        assertTrue(text.contains("platform_agent_init_latency_milliseconds_sum 700\n"));
+        assertTrue(text.contains("platform_agent_init_latency_milliseconds{quantile=\"0.99\"} "));
+        assertTrue(text.contains("platform_executor_queue_wait_milliseconds_count 0\n"));
+        assertTrue(text.contains("# TYPE platform_step_retries_total counter\n"));
+        assertTrue(text.contains("platform_step_retries_total{operation=\"click\"} 1\n"));
+    }
+
+    @Test
+    void shouldRenderCallbackLagPerListener() {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        metrics.recordCallbackLag("plan-callback", 12);
+        metrics.recordCallbackDrop("progress");
+
+        String text = PrometheusTextFormat.format(metrics.snapshot());
+
+        assertTrue(text.contains("platform_callback_lag_milliseconds_sum{listener=\"plan-callback\"} 12\n"), text);
+        assertTrue(text.contains("platform_callback_lag_milliseconds{listener=\"plan-callback\",quantile=\"0.99\"} "));
+        assertTrue(text.contains("# TYPE platform_callback_dropped_total counter\n"));
+        assertTrue(text.contains("platform_callback_dropped_total{listener=\"progress\"} 1\n"));
+    }
+
+    @Test
+    void shouldEscapeLabelValues() {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        metrics.recordStep("say \"hi\"\\now", 1);
+
+        String text = PrometheusTextFormat.format(metrics.snapshot());
+
+        assertTrue(text.contains("operation=\"say \\\"hi\\\"\\\\now\""), text);
+    }
+}
@@ -0,0 +1,215 @@
+package com.zaborstik.platform.agent.pool;
+
+import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.client.AgentException;
+import com.zaborstik.platform.agent.client.CircuitBreaker;
+import com.zaborstik.platform.agent.service.AgentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AgentPoolTest {
+
+    private final Map<String, AgentClient> clients = new HashMap<>();
+    private final Map<AgentClient, AgentService> services = new HashMap<>();
+    private AgentPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = newPool(List.of("http://agent-a", "http://agent-b"), 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void shouldRouteNewSessionsToLeastLoadedAgent() throws Exception {
+        AgentPool.Lease first = pool.acquire();
+        AgentPool.Lease second = pool.acquire();
+
+        assertNotEquals(first.url(), second.url());
+        assertSame(services.get(clients.get(first.url())), first.service());
+
+        first.close();
+        AgentPool.Lease third = pool.acquire();
+        assertEquals(first.url(), third.url());
+        second.close();
+        third.close();
+        assertTrue(pool.stats().stream().allMatch(stats -> stats.inFlight() == 0));
+    }
+
+    @Test
+    void shouldPreferFasterAgentUntilItIsMoreLoaded() throws Exception {
+        try (AgentPool.Lease a = leaseOn("http://agent-a"); AgentPool.Lease b = leaseOn("http://agent-b")) {
+            a.recordLatency(100);
+            b.recordLatency(10);
+        }
+
+        AgentPool.Lease fast = pool.acquire();
+        assertEquals("http://agent-b", fast.url());
+        for (int i = 0; i < 8; i++) {
+            assertEquals("http://agent-b", pool.acquire().url());
+        }
+        // b: (9 + 1) * 10 = a: (0 + 1) * 100, при равенстве выигрывает менее загруженный / fewer in flight wins a tie
+        assertEquals("http://agent-a", pool.acquire().url());
+    }
+
+    @Test
+    void shouldSkipUnhealthyAgentUntilItRecovers() throws Exception {
+        when(clients.get("http://agent-a").isAvailable()).thenReturn(false, true);
+        when(clients.get("http://agent-b").isAvailable()).thenReturn(true);
+
+        pool.checkHealth();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("http://agent-b", pool.acquire().url());
+        }
+        assertFalse(stats("http://agent-a").healthy());
+
+        pool.checkHealth();
+        assertTrue(stats("http://agent-a").healthy());
+        assertEquals("http://agent-a", pool.acquire().url());
+    }
+
+    @Test
+    void shouldFailWhenNoAgentIsHealthy() {
+        when(clients.get("http://agent-a").isAvailable()).thenReturn(false);
+        when(clients.get("http://agent-b").isAvailable()).thenReturn(false);
+
+        pool.checkHealth();
+
+        assertTrue(pool.tryAcquire().isEmpty());
+        assertThrows(AgentException.class, pool::acquire);
+    }
+
+    @Test
+    void shouldFailOverImmediatelyWhenCircuitOpens() throws Exception {
+        when(clients.get("http://agent-a").circuitState()).thenReturn(CircuitBreaker.State.OPEN);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("http://agent-b", pool.acquire().url());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, stats("http://agent-a").circuit());
+        assertTrue(stats("http://agent-a").healthy());
+
+        when(clients.get("http://agent-a").circuitState()).thenReturn(CircuitBreaker.State.HALF_OPEN);
+        assertEquals("http://agent-a", pool.acquire().url());
+    }
+
+    @Test
+    void removedAgentShouldDrainBeforeClosingItsSession() throws Exception {
+        AgentPool.Lease running = leaseOn("http://agent-a");
+        AgentService drainedService = running.service();
+
+        CompletableFuture<Void> drained = pool.removeEndpoint("http://agent-a");
+
+        assertFalse(drained.isDone());
+        assertTrue(stats("http://agent-a").draining());
+        assertEquals("http://agent-b", pool.acquire().url());
+        verify(drainedService, never()).close();
+
+        running.close();
+
+        assertTrue(drained.isDone());
+        verify(drainedService).close();
+        assertEquals(List.of("http://agent-b"), pool.stats().stream().map(AgentEndpointStats::url).toList());
+    }
+
+    @Test
+    void addedAgentShouldReceiveSessions() throws Exception {
+        pool.removeEndpoint("http://agent-a").join();
+        pool.removeEndpoint("http://agent-b").join();
+        assertTrue(pool.tryAcquire().isEmpty());
+
+        pool.addEndpoint("http://agent-c");
+
+        assertEquals("http://agent-c", pool.acquire().url());
+        assertThrows(IllegalArgumentException.class, () -> pool.addEndpoint("http://agent-c"));
+    }
+
+    @Test
+    void concurrentLeasesOnOneAgentShouldGetSeparateSessionsUpToLimit() throws Exception {
+        pool.close();
+        pool = newPool(List.of("http://agent-a"), 2);
+        AgentClient agentClient = clients.get("http://agent-a");
+
+        AgentPool.Lease first = pool.acquire();
+        AgentPool.Lease second = pool.acquire();
+
+        assertSame(services.get(agentClient), first.service());
+        assertNotSame(first.service(), second.service());
+        verify(agentClient).withSession(startsWith("pool-"));
+        assertTrue(pool.tryAcquire().isEmpty(), "both sessions of the agent are leased");
+
+        AgentService released = second.service();
+        second.close();
+        try (AgentPool.Lease third = pool.acquire()) {
+            assertSame(released, third.service());
+        }
+        verify(agentClient).withSession(anyString());
+
+        first.close();
+        pool.removeEndpoint("http://agent-a").join();
+        verify(first.service()).close();
+        verify(released).close();
+    }
+
+    @Test
+    void optionsShouldRejectInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> new AgentPoolOptions(Duration.ZERO, 1, 0.2, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AgentPoolOptions(Duration.ofSeconds(1), 0, 0.2, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AgentPoolOptions(Duration.ofSeconds(1), 1, 0.0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AgentPoolOptions(Duration.ofSeconds(1), 1, 1.5, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AgentPoolOptions(Duration.ofSeconds(1), 1, 0.2, 0));
+        assertEquals(1, AgentPoolOptions.defaults().maxSessionsPerAgent());
+    }
+
+    private AgentPool newPool(List<String> urls, int maxSessionsPerAgent) {
+        return new AgentPool(urls,
+            url -> clients.computeIfAbsent(url, ignored -> newClient()),
+            client -> services.computeIfAbsent(client, ignored -> mock(AgentService.class)),
+            new AgentPoolOptions(Duration.ofMinutes(1), 1, 0.5, maxSessionsPerAgent));
+    }
+
+    private static AgentClient newClient() {
+        AgentClient client = mock(AgentClient.class);
+        when(client.withSession(anyString())).thenAnswer(invocation -> mock(AgentClient.class));
+        return client;
+    }
+
+    private AgentPool.Lease leaseOn(String url) throws AgentException {
+        // берём сессии, пока не попадём на нужный агент / lease until the wanted agent is hit
+        List<AgentPool.Lease> others = new ArrayList<>();
+        try {
+            while (true) {
+                AgentPool.Lease lease = pool.acquire();
+                if (lease.url().equals(url)) {
+                    return lease;
+                }
+                others.add(lease);
+            }
+        } finally {
+            others.forEach(AgentPool.Lease::close);
+        }
+    }
+
+    private AgentEndpointStats stats(String url) {
+        return pool.stats().stream().filter(stats -> stats.url().equals(url)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,212 @@
+package com.zaborstik.platform.agent.pool;
+
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import com.zaborstik.platform.agent.dto.SessionResetMode;
+import com.zaborstik.platform.agent.service.AgentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionPoolTest {
+    private static final String BASE_URL = "http://app";
+
+    private final List<AgentService> created = new CopyOnWriteArrayList<>();
+    private SessionPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void shouldLeasePreInitializedSessionAndRefillInBackground() throws Exception {
+        pool = newPool(options(2, 4, 0));
+        pool.start();
+        awaitStats(stats -> stats.idle() == 2);
+
+        try (SessionPool.Lease lease = pool.acquire()) {
+            assertTrue(lease.warm());
+            assertTrue(lease.service().isSessionOpen());
+            assertEquals(BASE_URL, lease.baseUrl());
+            awaitStats(stats -> stats.idle() == 2 && stats.leased() == 1);
+        }
+
+        SessionPoolStats stats = stats();
+        assertEquals(1, stats.warmHits());
+        assertEquals(0, stats.coldStarts());
+        assertEquals(3, created.size(), "two warmed on start and one refilled after the lease");
+    }
+
+    @Test
+    void shouldResetReturnedSessionAndLeaseItAgain() throws Exception {
+        pool = newPool(options(1, 2, 0));
+        pool.start();
+        awaitStats(stats -> stats.idle() == 1);
+
+        SessionPool.Lease first = pool.acquire();
+        AgentService service = first.service();
+        first.close();
+        verify(service, timeout(10_000)).resetSession(SessionResetMode.CLEAR_STORAGE);
+        // сброшенная сессия остаётся, даже если пул уже дополнен до цели, и выдаётся первой /
+        // the reset session stays even if the pool was already refilled to the target, and is leased first
+        awaitStats(stats -> stats.recycled() == 1 && stats.warming() == 0);
+
+        try (SessionPool.Lease second = pool.acquire()) {
+            assertSame(service, second.service());
+        }
+        verify(service, never()).close();
+    }
+
+    @Test
+    void shouldDiscardSessionAfterFailedPlanOrPlanLimit() throws Exception {
+        pool = newPool(options(1, 2, 2));
+        pool.start();
+        awaitStats(stats -> stats.idle() == 1);
+
+        SessionPool.Lease lease = pool.acquire();
+        AgentService failed = lease.service();
+        // неуспешный план закрывает сессию / a failed plan leaves the session closed
+        when(failed.isSessionOpen()).thenReturn(false);
+        lease.close();
+        verify(failed, timeout(10_000)).close();
+        verify(failed, never()).resetSession(any());
+        awaitStats(stats -> stats.discarded() == 1 && stats.idle() == 1);
+
+        SessionPool.Lease firstPlan = pool.acquire();
+        AgentService limited = firstPlan.service();
+        firstPlan.close();
+        awaitStats(stats -> stats.recycled() == 1 && stats.leased() == 0);
+        SessionPool.Lease secondPlan = pool.acquire();
+        assertSame(limited, secondPlan.service());
+        secondPlan.close();
+
+        verify(limited, timeout(10_000)).close();
+        awaitStats(stats -> stats.discarded() == 2);
+    }
+
+    @Test
+    void shouldStartColdWithoutWarmSessionAndRaiseTarget() throws Exception {
+        pool = newPool(options(0, 4, 0));
+
+        try (SessionPool.Lease lease = pool.acquire()) {
+            assertFalse(lease.warm());
+            assertFalse(lease.service().isSessionOpen(), "the plan initializes a cold session itself");
+            verify(lease.service(), never()).openSession();
+            awaitStats(stats -> stats.target() == 1 && stats.idle() == 1);
+        }
+        assertEquals(1, stats().coldStarts());
+    }
+
+    @Test
+    void shouldSizeWarmSessionsByDemandAndTrimSurplus() throws Exception {
+        pool = newPool(new SessionPoolOptions(0, 3, SessionResetMode.RELOAD, 0, Duration.ofMinutes(1), 1.0));
+        List<SessionPool.Lease> leases = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            SessionPool.Lease lease = pool.acquire();
+            lease.service().openSession();
+            leases.add(lease);
+        }
+        pool.resize();
+        assertEquals(3, stats().target());
+        assertEquals(3.0, stats().demand());
+        leases.forEach(SessionPool.Lease::close);
+        awaitStats(stats -> stats.leased() == 0 && stats.warming() == 0
+            && stats.recycled() + stats.discarded() == 3);
+        assertEquals(3, stats().idle());
+
+        // пик последнего интервала ещё 3, затем спроса нет / the last interval peak is still 3, then no demand
+        pool.resize();
+        assertEquals(3, stats().target());
+        pool.resize();
+        SessionPoolStats stats = stats();
+        assertEquals(0, stats.target());
+        assertEquals(0.0, stats.demand());
+        assertEquals(0, stats.idle());
+        for (AgentService service : created) {
+            verify(service, timeout(10_000)).close();
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidOptions() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new SessionPoolOptions(-1, 2, SessionResetMode.NONE, 0, Duration.ofSeconds(1), 0.5));
+        assertThrows(IllegalArgumentException.class,
+            () -> new SessionPoolOptions(3, 2, SessionResetMode.NONE, 0, Duration.ofSeconds(1), 0.5));
+        assertThrows(IllegalArgumentException.class,
+            () -> new SessionPoolOptions(0, 2, SessionResetMode.NONE, -1, Duration.ofSeconds(1), 0.5));
+        assertThrows(IllegalArgumentException.class,
+            () -> new SessionPoolOptions(0, 2, SessionResetMode.NONE, 0, Duration.ZERO, 0.5));
+        assertThrows(IllegalArgumentException.class,
+            () -> new SessionPoolOptions(0, 2, SessionResetMode.NONE, 0, Duration.ofSeconds(1), 0.0));
+        assertThrows(NullPointerException.class,
+            () -> new SessionPoolOptions(0, 2, null, 0, Duration.ofSeconds(1), 0.5));
+        assertEquals(SessionResetMode.CLEAR_STORAGE, SessionResetMode.parse("clear-storage"));
+        assertThrows(IllegalArgumentException.class, () -> SessionResetMode.parse("wipe"));
+    }
+
+    private SessionPool newPool(SessionPoolOptions options) {
+        return new SessionPool(BASE_URL, baseUrl -> {
+            AgentService service = newSession();
+            created.add(service);
+            return service;
+        }, options);
+    }
+
+    private static SessionPoolOptions options(int minWarm, int maxWarm, int maxPlans) {
+        return new SessionPoolOptions(minWarm, maxWarm, SessionResetMode.CLEAR_STORAGE, maxPlans,
+            Duration.ofMinutes(1), 0.5);
+    }
+
+    private static AgentService newSession() {
+        AgentService service = mock(AgentService.class);
+        AtomicBoolean open = new AtomicBoolean();
+        try {
+            when(service.openSession()).thenAnswer(invocation -> {
+                open.set(true);
+                return AgentResponse.success("Browser initialized", Map.of(), 0);
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        when(service.isSessionOpen()).thenAnswer(invocation -> open.get());
+        when(service.resetSession(any())).thenReturn(true);
+        return service;
+    }
+
+    private SessionPoolStats stats() {
+        return pool.stats().stream().filter(stats -> stats.baseUrl().equals(BASE_URL)).findFirst().orElseThrow();
+    }
+
+    private void awaitStats(Predicate<SessionPoolStats> condition) throws InterruptedException {
+        await(() -> pool.stats().stream().anyMatch(stats -> stats.baseUrl().equals(BASE_URL) && condition.test(stats)));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not reached within 10s");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.zaborstik.platform.agent.service;
 
 import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.dto.AgentBatchResponse;
 import com.zaborstik.platform.agent.dto.AgentCommand;
 import com.zaborstik.platform.agent.dto.AgentResponse;
 import com.zaborstik.platform.agent.dto.RetryPolicy;
@@ -24,6 +25,10 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -126,6 +131,317 @@ class AgentServiceCommandMappingTest {
         assertEquals("", command.parameters().get("value"));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldSendClickStepAsOneBatch() throws Exception {
+        AgentService batching = batchingService();
+        when(agentClient.initialize(any(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 0));
+        when(agentClient.executeBatch(anyList(), eq(true), any(), any())).thenReturn(new AgentBatchResponse(true,
+            List.of(AgentResponse.success("coords", Map.of("x", 10.5, "y", 20.5), 3),
+                AgentResponse.success("clicked", Map.of("button", "left"), 4)), null, 8, false));
+        stubClickAction();
+
+        List<StepExecutionResult> results = batching.executePlan(plan(clickStep("s1", 0)));
+
+        ArgumentCaptor<List<AgentCommand>> captor = ArgumentCaptor.forClass(List.class);
+        verify(agentClient).executeBatch(captor.capture(), eq(true), any(), any());
+        List<AgentCommand> batch = captor.getValue();
+        assertEquals(AgentCommand.CommandType.RESOLVE_COORDS, batch.get(0).type());
+        assertEquals(AgentCommand.CommandType.CLICK_AT, batch.get(1).type());
+        assertEquals(0, batch.get(1).parameters().get("coordsFrom"));
+        verify(agentClient, never()).execute(any());
+        assertTrue(results.get(0).success());
+        assertEquals("CLICK_AT", results.get(0).commandType());
+        assertEquals(10.5, results.get(0).metadata().get("x"));
+        assertEquals("left", results.get(0).metadata().get("button"));
+    }
+
+    @Test
+    void shouldReportResolveFailureWhenBatchStopsEarly() throws Exception {
+        AgentService batching = batchingService();
+        when(agentClient.initialize(any(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 0));
+        when(agentClient.executeBatch(anyList(), eq(true), any(), any())).thenReturn(new AgentBatchResponse(false,
+            List.of(new AgentResponse(false, null, "Element not found: #buy", Map.of(), 3)), null, 3, false));
+        stubClickAction();
+
+        List<StepExecutionResult> results = batching.executePlan(plan(clickStep("s1", 0)));
+
+        assertFalse(results.get(0).success());
+        assertEquals("RESOLVE_COORDS", results.get(0).commandType());
+        assertEquals("Element not found: #buy", results.get(0).error());
+    }
+
+    @Test
+    void shouldFallBackToSingleCommandsWhenAgentHasNoBatchEndpoint() throws Exception {
+        AgentService batching = batchingService();
+        when(agentClient.initialize(any(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 0));
+        when(agentClient.executeBatch(anyList(), eq(true), any(), any())).thenReturn(AgentBatchResponse.unsupported(1));
+        when(agentClient.execute(any())).thenReturn(AgentResponse.success("done", Map.of("x", 1.0, "y", 2.0), 1));
+        stubClickAction();
+        PlanStep first = clickStep("s1", 0);
+        PlanStep second = clickStep("s2", 1);
+
+        List<StepExecutionResult> results = batching.executePlan(
+            new Plan("p1", "wf-plan", "new", first.id(), null, null, List.of(first, second)));
+
+        assertTrue(results.stream().allMatch(StepExecutionResult::success));
+        verify(agentClient, times(1)).executeBatch(anyList(), anyBoolean(), any(), any());
+        verify(agentClient, times(4)).execute(any());
+    }
+
+    @Test
+    void shouldSendClickStepAsOneFusedCommand() throws Exception {
+        AgentService fusing = fusingService();
+        when(agentClient.initialize(any(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 0));
+        when(agentClient.execute(any())).thenReturn(AgentResponse.success("clicked",
+            Map.of("x", 10.5, "y", 20.5, "selectorUsed", "#buy", "button", "left"), 5));
+        stubClickAction();
+
+        List<StepExecutionResult> results = fusing.executePlan(plan(clickStep("s1", 0)));
+
+        ArgumentCaptor<AgentCommand> captor = ArgumentCaptor.forClass(AgentCommand.class);
+        verify(agentClient, times(1)).execute(captor.capture());
+        assertEquals(AgentCommand.CommandType.RESOLVE_AND_CLICK, captor.getValue().type());
+        assertEquals("#buy", captor.getValue().target());
+        verify(agentClient, never()).executeBatch(anyList(), anyBoolean(), any(), any());
+        assertTrue(results.get(0).success());
+        assertEquals("RESOLVE_AND_CLICK", results.get(0).commandType());
+        assertEquals(10.5, results.get(0).metadata().get("x"));
+        assertEquals("left", results.get(0).metadata().get("button"));
+    }
+
+    @Test
+    void shouldFallBackToBatchWhenAgentDoesNotKnowFusedCommands() throws Exception {
+        AgentService fusing = fusingService();
+        when(agentClient.initialize(any(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 0));
+        when(agentClient.execute(any())).thenReturn(
+            new AgentResponse(false, null, "Unknown command type: RESOLVE_AND_CLICK", Map.of(), 1, "INVALID_COMMAND"));
+        when(agentClient.executeBatch(anyList(), eq(true), any(), any())).thenReturn(new AgentBatchResponse(true,
+            List.of(AgentResponse.success("coords", Map.of("x", 1.0, "y", 2.0), 1),
+                AgentResponse.success("clicked", Map.of(), 1)), null, 2, false));
+        stubClickAction();
+        PlanStep first = clickStep("s1", 0);
+        PlanStep second = clickStep("s2", 1);
+
+        List<StepExecutionResult> results = fusing.executePlan(
+            new Plan("p1", "wf-plan", "new", first.id(), null, null, List.of(first, second)));
+
+        assertTrue(results.stream().allMatch(StepExecutionResult::success));
+        assertEquals("CLICK_AT", results.get(0).commandType());
+        verify(agentClient, times(1)).execute(any());
+        verify(agentClient, times(2)).executeBatch(anyList(), anyBoolean(), any(), any());
+    }
+
+    @Test
+    void shouldReportFusedCommandFailure() throws Exception {
+        AgentService fusing = fusingService();
+        when(agentClient.initialize(any(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 0));
+        when(agentClient.execute(any())).thenReturn(
+            new AgentResponse(false, null, "Element not found: #buy", Map.of(), 3, "ELEMENT_NOT_READY"));
+        stubClickAction();
+
+        List<StepExecutionResult> results = fusing.executePlan(plan(clickStep("s1", 0)));
+
+        assertFalse(results.get(0).success());
+        assertEquals("RESOLVE_AND_CLICK", results.get(0).commandType());
+        assertEquals("ELEMENT_NOT_READY", results.get(0).metadata().get("errorCode"));
+        verify(agentClient, never()).executeBatch(anyList(), anyBoolean(), any(), any());
+    }
+
+    @Test
+    void shouldCoalesceExplainHoverClickOnSameTarget() throws Exception {
+        AgentService coalescing = coalescingService();
+        when(agentClient.initialize(any(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 0));
+        when(agentClient.executeBatch(anyList(), eq(true), any(), any())).thenReturn(new AgentBatchResponse(true,
+            List.of(AgentResponse.success("explained", Map.of(), 1),
+                AgentResponse.success("hovered", Map.of("x", 1.0, "y", 2.0), 2),
+                AgentResponse.success("clicked", Map.of("x", 1.0, "y", 2.0), 3)), null, 6, false));
+        stubCosmeticActions();
+        stubClickAction();
+        StepExecutionCallback callback = org.mockito.Mockito.mock(StepExecutionCallback.class);
+
+        List<StepExecutionResult> results = coalescing.executePlan(buyPlan(), callback);
+
+        ArgumentCaptor<List<AgentCommand>> captor = ArgumentCaptor.captor();
+        verify(agentClient).executeBatch(captor.capture(), eq(true), any(), any());
+        assertEquals(List.of(AgentCommand.CommandType.EXPLAIN, AgentCommand.CommandType.RESOLVE_AND_HOVER,
+            AgentCommand.CommandType.RESOLVE_AND_CLICK), captor.getValue().stream().map(AgentCommand::type).toList());
+        verify(agentClient, never()).execute(any());
+        assertEquals(List.of("s1", "s2", "s3"), results.stream().map(StepExecutionResult::stepType).toList());
+        assertTrue(results.stream().allMatch(StepExecutionResult::success));
+        assertEquals("RESOLVE_AND_HOVER", results.get(1).commandType());
+        assertEquals(3, results.get(2).executionTimeMs());
+        org.mockito.InOrder order = org.mockito.Mockito.inOrder(callback, agentClient);
+        order.verify(agentClient).executeBatch(anyList(), eq(true), any(), any());
+        for (int i = 0; i < 3; i++) {
+            order.verify(callback).onStepStarted(any(), eq(i), eq(3));
+            order.verify(callback).onStepCompleted(any(), eq(results.get(i)), eq(i));
+        }
+    }
+
+    @Test
+    void cancellationBeforeGroupShouldNotSendBatch() throws Exception {
+        AgentService coalescing = coalescingService();
+        CancellationToken cancellation = CancellationToken.create();
+        when(agentClient.initialize(any(), anyBoolean(), any(), any())).thenAnswer(invocation -> {
+            cancellation.cancel("stop");
+            return AgentResponse.success("ok", Map.of(), 0);
+        });
+        stubCosmeticActions();
+        stubClickAction();
+        StepExecutionCallback callback = org.mockito.Mockito.mock(StepExecutionCallback.class);
+
+        List<StepExecutionResult> results = coalescing.executePlan(buyPlan(), callback,
+            ExecutionOptions.defaults().withCancellation(cancellation));
+
+        assertEquals(List.of("s1"), results.stream().map(StepExecutionResult::stepType).toList());
+        assertEquals(true, results.get(0).metadata().get("cancelled"));
+        verify(agentClient, never()).executeBatch(anyList(), anyBoolean(), any(), any());
+        verify(agentClient, never()).execute(any());
+        verify(callback, never()).onStepStarted(any(), org.mockito.ArgumentMatchers.anyInt(), eq(3));
+    }
+
+    @Test
+    void cancellationDuringGroupShouldCancelUnfinishedSteps() throws Exception {
+        AgentService coalescing = coalescingService();
+        CancellationToken cancellation = CancellationToken.create();
+        when(agentClient.initialize(any(), anyBoolean(), any(), any()))
+            .thenReturn(AgentResponse.success("ok", Map.of(), 0));
+        when(agentClient.executeBatch(anyList(), eq(true), any(), any())).thenAnswer(invocation -> {
+            cancellation.cancel("stop");
+            return new AgentBatchResponse(false, List.of(AgentResponse.success("explained", Map.of(), 1),
+                AgentResponse.failure("Command cancelled", 0)), null, 1, false);
+        });
+        stubCosmeticActions();
+        stubClickAction();
+        StepExecutionCallback callback = org.mockito.Mockito.mock(StepExecutionCallback.class);
+
+        List<StepExecutionResult> results = coalescing.executePlan(buyPlan(), callback,
+            ExecutionOptions.defaults().withCancellation(cancellation));
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).success());
+        assertEquals(true, results.get(1).metadata().get("cancelled"));
+        assertEquals(true, results.get(2).metadata().get("cancelled"));
+        verify(agentClient, never()).execute(any());
+        verify(callback).onStepStarted(any(), eq(0), eq(3));
+        verify(callback).onStepCompleted(any(), eq(results.get(0)), eq(0));
+        verify(callback, times(1)).onStepStarted(any(), org.mockito.ArgumentMatchers.anyInt(), eq(3));
+        verify(callback, times(1)).onStepCompleted(any(), any(), org.mockito.ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    void shouldContinueStepByStepFromFailedCoalescedStep() throws Exception {
+        AgentService coalescing = coalescingService();
+        when(agentClient.initialize(any(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 0));
+        when(agentClient.executeBatch(anyList(), eq(true), any(), any())).thenReturn(new AgentBatchResponse(false,
+            List.of(AgentResponse.success("explained", Map.of(), 1),
+                new AgentResponse(false, null, "Element not visible: #buy", Map.of(), 2, "ELEMENT_NOT_READY")),
+            null, 3, false));
+        when(agentClient.execute(any())).thenReturn(AgentResponse.success("done", Map.of(), 1));
+        stubCosmeticActions();
+        stubClickAction();
+
+        List<StepExecutionResult> results = coalescing.executePlan(buyPlan());
+
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(StepExecutionResult::success));
+        ArgumentCaptor<AgentCommand> captor = ArgumentCaptor.forClass(AgentCommand.class);
+        verify(agentClient, times(2)).execute(captor.capture());
+        assertEquals(List.of(AgentCommand.CommandType.RESOLVE_AND_HOVER, AgentCommand.CommandType.RESOLVE_AND_CLICK),
+            captor.getAllValues().stream().map(AgentCommand::type).toList());
+    }
+
+    @Test
+    void failedMiddleStepOfGroupShouldStartOnlyExecutedSteps() throws Exception {
+        AgentService coalescing = coalescingService();
+        when(agentClient.initialize(any(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 0));
+        when(agentClient.executeBatch(anyList(), eq(true), any(), any())).thenReturn(new AgentBatchResponse(false,
+            List.of(AgentResponse.success("explained", Map.of(), 1),
+                new AgentResponse(false, null, "Element not visible: #buy", Map.of(), 2, "ELEMENT_NOT_READY")),
+            null, 3, false));
+        when(agentClient.execute(any())).thenReturn(
+            new AgentResponse(false, null, "Element not visible: #buy", Map.of(), 2, "ELEMENT_NOT_READY"));
+        stubCosmeticActions();
+        stubClickAction();
+        StepExecutionCallback callback = org.mockito.Mockito.mock(StepExecutionCallback.class);
+
+        List<StepExecutionResult> results = coalescing.executePlan(buyPlan(), true, callback);
+
+        assertEquals(List.of("s1", "s2"), results.stream().map(StepExecutionResult::stepType).toList());
+        assertTrue(results.get(0).success());
+        assertFalse(results.get(1).success());
+        org.mockito.InOrder order = org.mockito.Mockito.inOrder(callback);
+        order.verify(callback).onStepStarted(any(), eq(0), eq(3));
+        order.verify(callback).onStepCompleted(any(), eq(results.get(0)), eq(0));
+        order.verify(callback).onStepStarted(any(), eq(1), eq(3));
+        order.verify(callback).onStepCompleted(any(), eq(results.get(1)), eq(1));
+        verify(callback, times(1)).onStepStarted(any(), eq(1), eq(3));
+        verify(callback, never()).onStepStarted(any(), eq(2), eq(3));
+    }
+
+    @Test
+    void shouldSendEachStepWhenCoalescingIsOff() throws Exception {
+        AgentService fusing = fusingService();
+        when(agentClient.initialize(any(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 0));
+        when(agentClient.execute(any())).thenReturn(AgentResponse.success("done", Map.of(), 1));
+        stubCosmeticActions();
+        stubClickAction();
+
+        List<StepExecutionResult> results = fusing.executePlan(buyPlan());
+
+        assertTrue(results.stream().allMatch(StepExecutionResult::success));
+        verify(agentClient, times(3)).execute(any());
+        verify(agentClient, never()).executeBatch(anyList(), anyBoolean(), any(), any());
+    }
+
+    private AgentService coalescingService() {
+        return new AgentService(agentClient, resolver, "https://example.org", true, AgentServiceOptions.defaults()
+            .withRetryPolicy(RetryPolicy.noRetry())
+            .withCoordinateMode(CoordinateStepMode.FUSED)
+            .withCoalesceCommands(true));
+    }
+
+    private void stubCosmeticActions() {
+        when(resolver.findAction("act-explain")).thenReturn(Optional.of(
+            Action.of("act-explain", "Explain", "explain", "D", "t")));
+        when(resolver.findAction("act-hover")).thenReturn(Optional.of(
+            Action.of("act-hover", "Hover", "hover", "D", "t")));
+    }
+
+    private static Plan buyPlan() {
+        List<PlanStep> steps = List.of(
+            new PlanStep("s1", "p1", "wf-plan-step", "new", "ent-button", "#buy", 0, "Explain buy",
+                List.of(new PlanStepAction("act-explain", null))),
+            new PlanStep("s2", "p1", "wf-plan-step", "new", "ent-button", "#buy", 1, "Hover buy",
+                List.of(new PlanStepAction("act-hover", null))),
+            new PlanStep("s3", "p1", "wf-plan-step", "new", "ent-button", "#buy", 2, "Buy",
+                List.of(new PlanStepAction("act-click", null))));
+        return new Plan("p1", "wf-plan", "new", "s1", null, null, steps);
+    }
+
+    private AgentService fusingService() {
+        return new AgentService(agentClient, resolver, "https://example.org", true, AgentServiceOptions.defaults()
+            .withRetryPolicy(RetryPolicy.noRetry())
+            .withCoordinateMode(CoordinateStepMode.FUSED));
+    }
+
+    private AgentService batchingService() {
+        return new AgentService(agentClient, resolver, "https://example.org", true, AgentServiceOptions.defaults()
+            .withRetryPolicy(RetryPolicy.noRetry())
+            .withCoordinateMode(CoordinateStepMode.BATCH));
+    }
+
+    private void stubClickAction() {
+        when(resolver.findAction("act-click")).thenReturn(Optional.of(
+            Action.of("act-click", "Click", "click", "D", "t")));
+    }
+
+    private static PlanStep clickStep(String id, int index) {
+        return new PlanStep(id, "p1", "wf-plan-step", "new", "ent-button", "#buy", index, "Buy",
+            List.of(new PlanStepAction("act-click", null)));
+    }
+
     private Plan plan(PlanStep step) {
         return new Plan("p1", "wf-plan", "new", step.id(), null, null, List.of(step));
     }
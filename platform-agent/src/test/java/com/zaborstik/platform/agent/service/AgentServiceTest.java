@@ -1,9 +1,20 @@
 package com.zaborstik.platform.agent.service;
 
 import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentErrorCode;
+import com.zaborstik.platform.agent.dto.AgentEvent;
 import com.zaborstik.platform.agent.dto.AgentResponse;
+import com.zaborstik.platform.agent.dto.HedgePolicy;
+import com.zaborstik.platform.agent.dto.NavigationPolicy;
 import com.zaborstik.platform.agent.dto.RetryPolicy;
+import com.zaborstik.platform.agent.dto.SessionResetMode;
 import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.agent.dto.TimeoutPolicy;
+import com.zaborstik.platform.agent.metrics.MetricsSnapshot;
+import com.zaborstik.platform.agent.trace.Span;
+import com.zaborstik.platform.agent.trace.SpanData;
+import com.zaborstik.platform.agent.trace.Tracer;
 import com.zaborstik.platform.core.domain.Action;
 import com.zaborstik.platform.core.plan.Plan;
 import com.zaborstik.platform.core.plan.PlanStep;
@@ -12,15 +23,24 @@ import com.zaborstik.platform.core.resolver.Resolver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -58,7 +78,7 @@ class AgentServiceTest {
             List.of(new PlanStepAction("act-1", "50"))
         );
 
-        when(resolver.findAction("act-1"))
+        org.mockito.Mockito.lenient().when(resolver.findAction("act-1"))
             .thenReturn(Optional.of(Action.of("act-1", "Wait", "wait", "Wait", "act-type-validation")));
 
         oneStepPlan = new Plan(
@@ -87,6 +107,44 @@ class AgentServiceTest {
         verify(agentClient).execute(any());
     }
 
+    @Test
+    void shouldReportActualWaitTime() throws Exception {
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.success("ok", Map.of("condition", "PAGE_LOADED", "waitedMs", 7), 12))
+            .thenReturn(AgentResponse.success("ok", Map.of(), 15));
+
+        List<StepExecutionResult> reported = agentService.executePlan(oneStepPlan);
+        List<StepExecutionResult> measured = agentService.executePlan(oneStepPlan);
+
+        assertEquals(7, reported.get(0).metadata().get("waitedMs"));
+        assertEquals(15L, measured.get(0).metadata().get("waitedMs"));
+        verify(agentClient, times(2)).execute(org.mockito.ArgumentMatchers.argThat((AgentCommand command) ->
+            command.type() == AgentCommand.CommandType.WAIT
+                && "PAGE_LOADED".equals(command.parameters().get("condition"))
+                && Long.valueOf(50L).equals(command.parameters().get("timeout"))));
+    }
+
+    @Test
+    void shouldReferenceHashedScreenshotByAgentUrl() throws Exception {
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.success("ok",
+                Map.of("screenshot", "/srv/agent/screenshots/ab12.png", "screenshotSha256", "ab12"), 10))
+            .thenReturn(AgentResponse.success("ok", Map.of("screenshot", "/srv/agent/screenshots/legacy.png"), 10));
+        when(agentClient.screenshotUri("/srv/agent/screenshots/ab12.png"))
+            .thenReturn(URI.create("http://agent:3000/screenshots/ab12.png"));
+
+        StepExecutionResult hashed = agentService.executePlan(oneStepPlan).get(0);
+        StepExecutionResult legacy = agentService.executePlan(oneStepPlan).get(0);
+
+        assertEquals("http://agent:3000/screenshots/ab12.png", hashed.screenshotPath());
+        assertEquals("ab12", hashed.metadata().get("screenshotSha256"));
+        assertEquals("/srv/agent/screenshots/legacy.png", legacy.screenshotPath());
+    }
+
     @Test
     void shouldRetryForRetryableFailureUntilLimit() throws Exception {
         when(agentClient.initialize(any(), anyBoolean()))
@@ -117,6 +175,51 @@ class AgentServiceTest {
         verify(agentClient, org.mockito.Mockito.times(1)).execute(any());
     }
 
+    @Test
+    void shouldNotRetryPermanentErrorCodeEvenWhenMessageMatchesPattern() throws Exception {
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.failure(AgentErrorCode.INVALID_COMMAND, "timeout parameter not found", 10));
+
+        List<StepExecutionResult> results = agentService.executePlan(oneStepPlan);
+
+        assertFalse(results.get(0).success());
+        assertEquals(0, results.get(0).retryCount());
+        assertEquals("INVALID_COMMAND", results.get(0).metadata().get("errorCode"));
+        verify(agentClient).execute(any());
+    }
+
+    @Test
+    void shouldRetryElementNotReadyCodeWithoutMatchingPattern() throws Exception {
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.failure(AgentErrorCode.ELEMENT_NOT_READY, "locator.click: detached", 10))
+            .thenReturn(AgentResponse.success("ok", Map.of(), 10));
+
+        List<StepExecutionResult> results = agentService.executePlan(oneStepPlan);
+
+        assertTrue(results.get(0).success());
+        assertEquals(1, results.get(0).retryCount());
+    }
+
+    @Test
+    void planRetryBudgetShouldCapRetries() throws Exception {
+        AgentService service = new AgentService(agentClient, resolver, "https://example.org", true,
+            new RetryPolicy(2, 0, List.of(), 1.0, 0, 0.0, 0, 1));
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.failure(AgentErrorCode.AGENT_TIMEOUT, "request timed out", 10));
+
+        List<StepExecutionResult> results = service.executePlan(oneStepPlan);
+
+        assertFalse(results.get(0).success());
+        assertEquals(1, results.get(0).retryCount());
+        verify(agentClient, times(2)).execute(any());
+    }
+
     @Test
     void shouldSucceedOnSecondAttempt() throws Exception {
         when(agentClient.initialize(any(), anyBoolean()))
@@ -134,4 +237,414 @@ class AgentServiceTest {
         assertEquals(1, results.get(0).retryCount());
         verify(agentClient, org.mockito.Mockito.times(2)).execute(any());
     }
+
+    @Test
+    void shouldRecordStepCommandRetryAndInitMetrics() throws Exception {
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", java.util.Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(
+                AgentResponse.failure("timeout", 10),
+                AgentResponse.success("ok", java.util.Map.of(), 10)
+            );
+
+        agentService.executePlan(oneStepPlan);
+
+        MetricsSnapshot snapshot = agentService.metrics().snapshot();
+        assertEquals(1, snapshot.stepLatency().get("wait").count());
+        assertEquals(2, snapshot.commandLatency().get("WAIT").count());
+        assertEquals(1L, snapshot.retries().get("wait"));
+        assertEquals(1, snapshot.initLatency().count());
+    }
+
+    @Test
+    void shouldTracePlanPhasesUnderCallerSpan() throws Exception {
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", java.util.Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(
+                AgentResponse.failure("timeout", 10),
+                AgentResponse.success("ok", java.util.Map.of(), 10)
+            );
+        List<SpanData> spans = new java.util.concurrent.CopyOnWriteArrayList<>();
+        Span root = new Tracer(spans::add, 1.0).startTrace("test");
+
+        agentService.executePlan(oneStepPlan, null, ExecutionOptions.defaults().withTraceSpan(root));
+
+        List<String> names = spans.stream().map(SpanData::name).toList();
+        assertEquals(List.of("plan.compile", "agent.initialize", "agent.wait", "step.retry_wait", "agent.wait",
+            "plan.step", "agent.plan"), names);
+        SpanData step = spans.get(5);
+        assertEquals("step-1", step.attributes().get("step.id"));
+        assertEquals(1, step.attributes().get("step.retries"));
+        assertNotNull(spans.get(2).error());
+        assertEquals(root.spanId(), spans.get(6).parentSpanId());
+        assertTrue(spans.stream().allMatch(span -> span.traceId().equals(root.traceId())));
+    }
+
+    @Test
+    void shouldPassPerOperationTimeoutToAgentClient() throws Exception {
+        AgentService service = new AgentService(agentClient, resolver, "https://example.org", true,
+            AgentServiceOptions.defaults()
+                .withRetryPolicy(RetryPolicy.noRetry())
+                .withTimeoutPolicy(new TimeoutPolicy(null, Duration.ofSeconds(10),
+                    Map.of("wait", Duration.ofSeconds(5)))));
+        when(agentClient.initialize(any(), anyBoolean(), eq(Duration.ofSeconds(10))))
+            .thenReturn(AgentResponse.success("initialized", java.util.Map.of(), 0));
+        when(agentClient.execute(any(), eq(Duration.ofSeconds(5))))
+            .thenReturn(AgentResponse.success("ok", java.util.Map.of(), 10));
+
+        List<StepExecutionResult> results = service.executePlan(oneStepPlan);
+
+        assertTrue(results.get(0).success());
+        verify(agentClient, never()).execute(any());
+    }
+
+    @Test
+    void shouldSkipStepsWhenPlanDeadlineExpired() throws Exception {
+        when(agentClient.initialize(any(), anyBoolean(), any()))
+            .thenReturn(AgentResponse.success("initialized", java.util.Map.of(), 0));
+
+        List<StepExecutionResult> results = agentService.executePlan(oneStepPlan, null,
+            ExecutionOptions.defaults().withDeadline(ExecutionDeadline.after(Duration.ZERO)));
+
+        assertEquals(1, results.size());
+        assertFalse(results.get(0).success());
+        assertEquals(Boolean.TRUE, results.get(0).metadata().get("deadlineExceeded"));
+        verify(agentClient, never()).execute(any());
+        verify(agentClient, never()).execute(any(), any());
+    }
+
+    @Test
+    void shouldNotRetryWhenRemainingBudgetIsShorterThanRetryDelay() throws Exception {
+        AgentService service = new AgentService(agentClient, resolver, "https://example.org", true,
+            AgentServiceOptions.defaults()
+                .withRetryPolicy(new RetryPolicy(3, 60_000, List.of("timeout")))
+                .withTimeoutPolicy(new TimeoutPolicy(Duration.ofSeconds(30), null, Map.of())));
+        when(agentClient.initialize(any(), anyBoolean(), any()))
+            .thenReturn(AgentResponse.success("initialized", java.util.Map.of(), 0));
+        when(agentClient.execute(any(), any()))
+            .thenReturn(AgentResponse.failure("timeout while waiting element", 10));
+
+        List<StepExecutionResult> results = service.executePlan(oneStepPlan);
+
+        assertFalse(results.get(0).success());
+        assertEquals(0, results.get(0).retryCount());
+        verify(agentClient, org.mockito.Mockito.times(1)).execute(any(), any());
+    }
+
+    @Test
+    void shouldNotStartStepsWhenCancelledBeforeStart() throws Exception {
+        CancellationToken token = CancellationToken.create();
+        token.cancel("stop");
+        when(agentClient.initialize(any(), anyBoolean(), any(), eq(token)))
+            .thenReturn(AgentResponse.success("initialized", java.util.Map.of(), 0));
+        when(agentClient.close()).thenReturn(AgentResponse.success("closed", java.util.Map.of(), 0));
+
+        List<StepExecutionResult> results = agentService.executePlan(oneStepPlan, null,
+            ExecutionOptions.defaults().withCancellation(token));
+
+        assertEquals(1, results.size());
+        assertFalse(results.get(0).success());
+        assertEquals(Boolean.TRUE, results.get(0).metadata().get("cancelled"));
+        verify(agentClient, never()).execute(any(), any(), any());
+        verify(agentClient).close();
+    }
+
+    @Test
+    void cancelShouldAbortRetryDelayAndReleaseSession() throws Exception {
+        AgentService service = new AgentService(agentClient, resolver, "https://example.org", true,
+            new RetryPolicy(3, 60_000, List.of("timeout")));
+        CancellationToken token = CancellationToken.create();
+        when(agentClient.initialize(any(), anyBoolean(), any(), eq(token)))
+            .thenReturn(AgentResponse.success("initialized", java.util.Map.of(), 0));
+        when(agentClient.execute(any(), any(), eq(token))).thenAnswer(invocation -> {
+            new Thread(() -> {
+                token.await(Duration.ofMillis(50));
+                token.cancel("stop");
+            }).start();
+            return AgentResponse.failure("timeout while waiting element", 10);
+        });
+        when(agentClient.close()).thenReturn(AgentResponse.success("closed", java.util.Map.of(), 0));
+
+        long started = System.nanoTime();
+        List<StepExecutionResult> results = service.executePlan(oneStepPlan, null,
+            ExecutionOptions.defaults().withCancellation(token));
+        long elapsedMs = Duration.ofNanos(System.nanoTime() - started).toMillis();
+
+        assertTrue(elapsedMs < 10_000, "Retry delay was not aborted, elapsed=" + elapsedMs);
+        assertEquals(1, results.size());
+        assertEquals(Boolean.TRUE, results.get(0).metadata().get("cancelled"));
+        verify(agentClient, org.mockito.Mockito.times(1)).execute(any(), any(), eq(token));
+        verify(agentClient).close();
+    }
+
+    @Test
+    void reuseSessionShouldInitializeBrowserOnlyOnce() throws Exception {
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", java.util.Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.success("ok", java.util.Map.of(), 10));
+        ExecutionOptions options = ExecutionOptions.defaults().withReuseSession(true);
+
+        agentService.executePlan(oneStepPlan, null, options);
+        agentService.executePlan(oneStepPlan, null, options);
+
+        verify(agentClient, org.mockito.Mockito.times(1)).initialize(any(), anyBoolean());
+        verify(agentClient, org.mockito.Mockito.times(2)).execute(any());
+    }
+
+    @Test
+    void reuseSessionShouldReinitializeAfterFailedPlan() throws Exception {
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", java.util.Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.failure("something unexpected", 10))
+            .thenReturn(AgentResponse.success("ok", java.util.Map.of(), 10));
+        ExecutionOptions options = ExecutionOptions.defaults().withReuseSession(true);
+
+        agentService.executePlan(oneStepPlan, null, options);
+        agentService.executePlan(oneStepPlan, null, options);
+
+        verify(agentClient, org.mockito.Mockito.times(2)).initialize(any(), anyBoolean());
+    }
+
+    @Test
+    void openedSessionShouldServePlanWithoutInitializationAndCloseOnFailedReset() throws Exception {
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", java.util.Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.success("ok", java.util.Map.of(), 10));
+        when(agentClient.reset(eq(SessionResetMode.CLEAR_STORAGE), any()))
+            .thenReturn(AgentResponse.success("reset", java.util.Map.of(), 1))
+            .thenReturn(AgentResponse.failure("Failed to reset agent session: status 404", 1));
+
+        assertFalse(agentService.resetSession(SessionResetMode.CLEAR_STORAGE), "nothing to reset before opening");
+        assertTrue(agentService.openSession().success());
+        assertTrue(agentService.isSessionOpen());
+        agentService.executePlan(oneStepPlan, null, ExecutionOptions.defaults().withReuseSession(true));
+        verify(agentClient, times(1)).initialize(any(), anyBoolean());
+
+        assertTrue(agentService.resetSession(SessionResetMode.CLEAR_STORAGE));
+        assertTrue(agentService.isSessionOpen());
+        assertFalse(agentService.resetSession(SessionResetMode.CLEAR_STORAGE));
+        assertFalse(agentService.isSessionOpen());
+    }
+
+    @Test
+    void retriesShouldReuseCompiledCommand() throws Exception {
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", java.util.Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.failure("timeout while waiting element", 10));
+
+        agentService.executePlan(oneStepPlan);
+
+        verify(agentClient, org.mockito.Mockito.times(3)).execute(any());
+        verify(resolver, org.mockito.Mockito.times(1)).findAction("act-1");
+    }
+
+    @Test
+    void shouldRejectUnexecutablePlanWithoutStartingBrowser() throws Exception {
+        when(resolver.findAction("act-fly"))
+            .thenReturn(Optional.of(Action.of("act-fly", "Fly", "fly", "Fly", "act-type-validation")));
+        PlanStep valid = oneStepPlan.steps().get(0);
+        PlanStep invalid = new PlanStep(
+            "step-2", "plan-1", "wf-plan-step", "new", "ent-page", "#x", 1, "Fly",
+            List.of(new PlanStepAction("act-fly", null))
+        );
+        Plan plan = new Plan("plan-1", "wf-plan", "new", "step-1", "target", "explanation", List.of(valid, invalid));
+
+        List<StepExecutionResult> results = agentService.executePlan(plan);
+
+        assertEquals(2, results.size());
+        assertFalse(results.get(0).success());
+        assertEquals("step-1", results.get(0).stepType());
+        assertEquals(0, results.get(0).stepIndex());
+        assertEquals(true, results.get(0).metadata().get("planRejected"));
+        assertFalse(results.get(1).success());
+        assertEquals("step-2", results.get(1).stepType());
+        assertEquals(1, results.get(1).stepIndex());
+        assertEquals("Unknown executor operation: fly", results.get(1).error());
+        assertEquals(true, results.get(1).metadata().get("compilationFailed"));
+        verify(agentClient, never()).initialize(any(), anyBoolean());
+        verify(agentClient, never()).execute(any());
+    }
+
+    @Test
+    void shouldSkipOpenPageWhenAlreadyOnTargetUrl() throws Exception {
+        stubOpenPageAction();
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.success("ok", Map.of(), 10));
+        Plan plan = openPagePlan("/catalog", "https://example.org/catalog/", "/orders");
+
+        List<StepExecutionResult> results = agentService.executePlan(plan);
+
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(StepExecutionResult::success));
+        assertNull(results.get(0).metadata().get("skipped"));
+        assertEquals("already on page", results.get(1).metadata().get("skipped"));
+        assertEquals("https://example.org/catalog", results.get(1).metadata().get("url"));
+        assertEquals("OPEN_PAGE", results.get(1).commandType());
+        assertNull(results.get(2).metadata().get("skipped"));
+        verify(agentClient, times(2)).execute(any());
+    }
+
+    @Test
+    void shouldNavigateAgainAfterCommandThatMayLeaveThePage() throws Exception {
+        stubOpenPageAction();
+        when(resolver.findAction("act-select"))
+            .thenReturn(Optional.of(Action.of("act-select", "Select", "select_option", "Select", "act-type-ui")));
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.success("ok", Map.of(), 10));
+        List<PlanStep> steps = List.of(
+            openPageStep(0, "/catalog", "act-open"),
+            new PlanStep("step-1", "plan-nav", "wf-plan-step", "new", "ent-page", "#sort", 1, "Sort",
+                List.of(new PlanStepAction("act-select", "price"))),
+            openPageStep(2, "/catalog", "act-open")
+        );
+
+        List<StepExecutionResult> results = agentService.executePlan(
+            new Plan("plan-nav", "wf-plan", "new", "step-0", "target", "explanation", steps));
+
+        assertTrue(results.stream().allMatch(StepExecutionResult::success));
+        assertNull(results.get(2).metadata().get("skipped"));
+        verify(agentClient, times(3)).execute(any());
+    }
+
+    @Test
+    void shouldSkipOpenPageWhenAgentReportsNavigationToTarget() throws Exception {
+        stubOpenPageAction();
+        when(resolver.findAction("act-select"))
+            .thenReturn(Optional.of(Action.of("act-select", "Select", "select_option", "Select", "act-type-ui")));
+        ArgumentCaptor<Consumer<AgentEvent>> listener = ArgumentCaptor.captor();
+        verify(agentClient).addEventListener(listener.capture());
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(agentClient.execute(any())).thenAnswer(invocation -> {
+            AgentCommand command = invocation.getArgument(0);
+            if (command.type() == AgentCommand.CommandType.SELECT_OPTION) {
+                // событие канала приходит раньше ответа / the channel event arrives before the response
+                listener.getValue().accept(new AgentEvent(AgentEvent.Type.NAVIGATED,
+                    Map.of("url", "https://example.org/catalog/?sort=price"), 0));
+            }
+            return AgentResponse.success("ok", Map.of(), 10);
+        });
+        List<PlanStep> steps = List.of(
+            openPageStep(0, "/catalog", "act-open"),
+            new PlanStep("step-1", "plan-nav", "wf-plan-step", "new", "ent-page", "#sort", 1, "Sort",
+                List.of(new PlanStepAction("act-select", "price"))),
+            openPageStep(2, "/catalog/?sort=price", "act-open"),
+            openPageStep(3, "/catalog", "act-open")
+        );
+
+        List<StepExecutionResult> results = agentService.executePlan(
+            new Plan("plan-nav", "wf-plan", "new", "step-0", "target", "explanation", steps));
+
+        assertTrue(results.stream().allMatch(StepExecutionResult::success));
+        assertEquals("already on page", results.get(2).metadata().get("skipped"));
+        assertNull(results.get(3).metadata().get("skipped"));
+        verify(agentClient, times(3)).execute(any());
+    }
+
+    @Test
+    void shouldAlwaysNavigateForForcedActions() throws Exception {
+        stubOpenPageAction();
+        when(resolver.findAction("act-reload"))
+            .thenReturn(Optional.of(Action.of("act-reload", "Reload", "open_page", "Reload", "act-type-ui")));
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.success("ok", Map.of(), 10));
+        AgentService service = new AgentService(agentClient, resolver, "https://example.org", true,
+            AgentServiceOptions.defaults().withNavigationPolicy(new NavigationPolicy(true, Set.of("act-reload"))));
+        List<PlanStep> steps = List.of(
+            openPageStep(0, "/catalog", "act-open"),
+            openPageStep(1, "/catalog", "act-reload")
+        );
+
+        List<StepExecutionResult> results = service.executePlan(
+            new Plan("plan-nav", "wf-plan", "new", "step-0", "target", "explanation", steps));
+
+        assertNull(results.get(1).metadata().get("skipped"));
+        verify(agentClient, times(2)).execute(org.mockito.ArgumentMatchers.argThat(
+            (AgentCommand command) -> command.type() == AgentCommand.CommandType.OPEN_PAGE));
+    }
+
+    @Test
+    void reusedSessionShouldNotSkipFirstOpenPageOfNextPlan() throws Exception {
+        stubOpenPageAction();
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.success("ok", Map.of(), 10));
+        ExecutionOptions options = ExecutionOptions.defaults().withReuseSession(true);
+
+        agentService.executePlan(openPagePlan("/catalog"), null, options);
+        List<StepExecutionResult> results = agentService.executePlan(openPagePlan("/catalog", "/catalog"), null,
+            options);
+
+        verify(agentClient, times(1)).initialize(any(), anyBoolean());
+        verify(agentClient, times(2)).execute(any());
+        assertNull(results.get(0).metadata().get("skipped"));
+        assertEquals("already on page", results.get(1).metadata().get("skipped"));
+    }
+
+    @Test
+    void hedgeMirrorShouldOpenOnFirstHedgeableReadAndCloseOnReset() throws Exception {
+        AgentService service = new AgentService(agentClient, resolver, "https://example.org", true,
+            AgentServiceOptions.defaults().withHedgePolicy(HedgePolicy.defaultPolicy()));
+        AgentClient mirrorClient = org.mockito.Mockito.mock(AgentClient.class);
+        stubOpenPageAction();
+        when(resolver.findAction("act-read"))
+            .thenReturn(Optional.of(Action.of("act-read", "Read", "read_text", "Read", "act-type-ui")));
+        when(agentClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(agentClient.execute(any()))
+            .thenReturn(AgentResponse.success("ok", Map.of(), 10));
+        when(agentClient.execute(any(), any(), any()))
+            .thenReturn(AgentResponse.success("text", Map.of(), 10));
+        when(agentClient.withSession(org.mockito.ArgumentMatchers.anyString())).thenReturn(mirrorClient);
+        when(mirrorClient.initialize(any(), anyBoolean()))
+            .thenReturn(AgentResponse.success("initialized", Map.of(), 0));
+        when(mirrorClient.execute(any()))
+            .thenReturn(AgentResponse.success("ok", Map.of(), 10));
+
+        assertTrue(service.executePlan(openPagePlan("/catalog")).get(0).success());
+        verify(agentClient, never()).withSession(org.mockito.ArgumentMatchers.anyString());
+
+        PlanStep read = new PlanStep("step-1", "plan-nav", "wf-plan-step", "new", "ent-page", "#title", 1,
+            "Read title", List.of(new PlanStepAction("act-read", null)));
+        Plan plan = new Plan("plan-nav", "wf-plan", "new", "step-0", "target", "explanation",
+            List.of(openPageStep(0, "/catalog", "act-open"), read));
+        assertTrue(service.executePlan(plan).stream().allMatch(StepExecutionResult::success));
+        verify(agentClient, org.mockito.Mockito.timeout(5_000)).withSession(org.mockito.ArgumentMatchers.anyString());
+        verify(mirrorClient, org.mockito.Mockito.timeout(5_000)).execute(any());
+
+        service.resetSession(SessionResetMode.NONE);
+
+        verify(mirrorClient, org.mockito.Mockito.timeout(5_000)).close();
+    }
+
+    private void stubOpenPageAction() {
+        when(resolver.findAction("act-open"))
+            .thenReturn(Optional.of(Action.of("act-open", "Open", "open_page", "Open", "act-type-ui")));
+    }
+
+    private static PlanStep openPageStep(int index, String url, String actionId) {
+        return new PlanStep("step-" + index, "plan-nav", "wf-plan-step", "new", "ent-page", url, index,
+            "Open " + url, List.of(new PlanStepAction(actionId, null)));
+    }
+
+    private static Plan openPagePlan(String... urls) {
+        List<PlanStep> steps = new java.util.ArrayList<>();
+        for (int i = 0; i < urls.length; i++) {
+            steps.add(openPageStep(i, urls[i], "act-open"));
+        }
+        return new Plan("plan-nav", "wf-plan", "new", "step-0", "target", "explanation", steps);
+    }
 }
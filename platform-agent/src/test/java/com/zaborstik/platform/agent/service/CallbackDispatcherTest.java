@@ -0,0 +1,235 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.plan.PlanStep;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallbackDispatcherTest {
+
+    private final Plan plan = new Plan("p1", "wf-plan", "new", "s0", null, null, List.of());
+
+    @Test
+    void slowListenerShouldNotBlockPublisher() {
+        RecordingListener slow = new RecordingListener(Duration.ofMillis(100));
+        CallbackDispatcher dispatcher = new CallbackDispatcher(16, CallbackDispatcher.OverflowPolicy.BLOCK)
+            .subscribe("slow", slow);
+
+        long started = System.nanoTime();
+        dispatcher.onPlanStarted(plan);
+        dispatcher.onStepStarted(step(0), 0, 1);
+        dispatcher.onStepCompleted(step(0), StepExecutionResult.success("s0", "t", "ok", 1, null), 0);
+        dispatcher.onPlanCompleted(plan, List.of(), true);
+        long publishMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        dispatcher.close();
+
+        assertTrue(publishMs < 100, "publisher waited for listener: " + publishMs + "ms");
+        assertEquals(List.of("planStarted", "stepStarted:0", "stepCompleted:0", "planCompleted:true"), slow.events);
+        CallbackDispatcher.ListenerStats stats = dispatcher.stats().get(0);
+        assertEquals(4, stats.delivered());
+        assertEquals(0, stats.pending());
+        assertTrue(stats.maxLagMs() >= 100, "lag was not measured: " + stats.maxLagMs());
+    }
+
+    @Test
+    void dropPolicyShouldDiscardEventsWhenBufferIsFull() throws Exception {
+        RecordingListener blocked = new RecordingListener(Duration.ZERO);
+        CallbackDispatcher dispatcher = new CallbackDispatcher(2, CallbackDispatcher.OverflowPolicy.DROP)
+            .subscribe("blocked", blocked);
+
+        dispatcher.onPlanStarted(plan);
+        assertTrue(blocked.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            dispatcher.onStepStarted(step(i), i, 10);
+        }
+        blocked.release.countDown();
+        dispatcher.close();
+
+        CallbackDispatcher.ListenerStats stats = dispatcher.stats().get(0);
+        assertEquals(11, stats.published());
+        assertEquals(8, stats.dropped());
+        assertEquals(3, stats.delivered());
+        assertEquals(List.of("planStarted", "stepStarted:0", "stepStarted:1"), blocked.events);
+    }
+
+    @Test
+    void coalescePolicyShouldKeepLatestStepEventAndAllPlanEvents() throws Exception {
+        RecordingListener blocked = new RecordingListener(Duration.ZERO);
+        CallbackDispatcher dispatcher = new CallbackDispatcher(2, CallbackDispatcher.OverflowPolicy.COALESCE)
+            .subscribe("ui", blocked);
+
+        dispatcher.onPlanStarted(plan);
+        assertTrue(blocked.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            dispatcher.onStepStarted(step(i), i, 10);
+        }
+        blocked.release.countDown();
+        dispatcher.onPlanCompleted(plan, List.of(), false);
+        dispatcher.close();
+
+        assertEquals(List.of("planStarted", "stepStarted:0", "stepStarted:1", "stepStarted:9", "planCompleted:false"),
+            blocked.events);
+        CallbackDispatcher.ListenerStats stats = dispatcher.stats().get(0);
+        assertEquals(7, stats.coalesced());
+        assertEquals(0, stats.dropped());
+    }
+
+    @Test
+    void blockPolicyShouldDeliverEveryEvent() {
+        RecordingListener listener = new RecordingListener(Duration.ofMillis(1));
+        CallbackDispatcher dispatcher = new CallbackDispatcher(1, CallbackDispatcher.OverflowPolicy.BLOCK)
+            .subscribe("db", listener);
+
+        for (int i = 0; i < 20; i++) {
+            dispatcher.onStepStarted(step(i), i, 20);
+        }
+        dispatcher.close();
+
+        assertEquals(20, listener.events.size());
+        assertEquals("stepStarted:19", listener.events.get(19));
+        assertEquals(0, dispatcher.stats().get(0).dropped());
+    }
+
+    @Test
+    void failingListenerShouldNotAffectOtherListeners() {
+        RecordingListener healthy = new RecordingListener(Duration.ZERO);
+        healthy.release.countDown();
+        StepExecutionCallback failing = new StepExecutionCallback() {
+            @Override
+            public void onStepStarted(PlanStep step, int stepIndex, int totalSteps) {
+            }
+
+            @Override
+            public void onStepCompleted(PlanStep step, StepExecutionResult result, int stepIndex) {
+            }
+
+            @Override
+            public void onPlanStarted(Plan plan) {
+                throw new IllegalStateException("boom");
+            }
+
+            @Override
+            public void onPlanCompleted(Plan plan, List<StepExecutionResult> results, boolean success) {
+            }
+        };
+        CallbackDispatcher dispatcher = new CallbackDispatcher()
+            .subscribe("failing", failing)
+            .subscribe("healthy", healthy);
+
+        dispatcher.onPlanStarted(plan);
+        dispatcher.close();
+
+        assertEquals(1, dispatcher.stats().get(0).failures());
+        assertEquals(1, dispatcher.stats().get(0).delivered());
+        assertEquals(List.of("planStarted"), healthy.events);
+    }
+
+    @Test
+    void shouldRejectSubscriptionAfterClose() {
+        CallbackDispatcher dispatcher = new CallbackDispatcher();
+        dispatcher.close();
+
+        assertThrows(IllegalStateException.class,
+            () -> dispatcher.subscribe("late", StepExecutionCallback.noOp()));
+        assertThrows(IllegalArgumentException.class,
+            () -> new CallbackDispatcher(0, CallbackDispatcher.OverflowPolicy.DROP));
+    }
+
+    @Test
+    void routeShouldDeliverRunEventsOnChannelAndWaitOnClose() {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        CallbackDispatcher dispatcher = new CallbackDispatcher(16, CallbackDispatcher.OverflowPolicy.BLOCK, metrics);
+        RecordingListener subscriber = new RecordingListener(Duration.ZERO);
+        subscriber.release.countDown();
+        dispatcher.subscribe("subscriber", subscriber);
+        RecordingListener runCallback = new RecordingListener(Duration.ofMillis(50));
+
+        long started = System.nanoTime();
+        try (CallbackDispatcher.Route route = dispatcher.route("plan-callback", runCallback)) {
+            route.onPlanStarted(plan);
+            route.onStepStarted(step(0), 0, 1);
+            route.onPlanCompleted(plan, List.of(), true);
+            long publishMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            assertTrue(publishMs < 50, "run waited for its callback: " + publishMs + "ms");
+        }
+
+        assertEquals(List.of("planStarted", "stepStarted:0", "planCompleted:true"), runCallback.events);
+        assertTrue(subscriber.events.isEmpty(), "subscribers must not get routed events");
+        assertEquals(3, metrics.snapshot().callbackLag().get("plan-callback").count());
+        dispatcher.close();
+    }
+
+    @Test
+    void routeShouldDeliverSynchronouslyAfterClose() {
+        CallbackDispatcher dispatcher = new CallbackDispatcher();
+        dispatcher.close();
+        RecordingListener runCallback = new RecordingListener(Duration.ZERO);
+        runCallback.release.countDown();
+
+        dispatcher.route("plan-callback", runCallback).onPlanStarted(plan);
+
+        assertEquals(List.of("planStarted"), runCallback.events);
+    }
+
+    private static PlanStep step(int index) {
+        return new PlanStep("s" + index, "p1", "wf-plan-step", "new", "ent-page", "#x", index, "Step " + index,
+            List.of());
+    }
+
+    /**
+     * Слушатель, который ждёт {@code release} на первом событии и затем спит {@code delay} на каждом.
+     */
+    private static final class RecordingListener implements StepExecutionCallback {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final Duration delay;
+
+        private RecordingListener(Duration delay) {
+            this.delay = delay;
+            if (!delay.isZero()) {
+                release.countDown();
+            }
+        }
+
+        private void record(String event) {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+        }
+
+        @Override
+        public void onStepStarted(PlanStep step, int stepIndex, int totalSteps) {
+            record("stepStarted:" + stepIndex);
+        }
+
+        @Override
+        public void onStepCompleted(PlanStep step, StepExecutionResult result, int stepIndex) {
+            record("stepCompleted:" + stepIndex);
+        }
+
+        @Override
+        public void onPlanStarted(Plan plan) {
+            record("planStarted");
+        }
+
+        @Override
+        public void onPlanCompleted(Plan plan, List<StepExecutionResult> results, boolean success) {
+            record("planCompleted:" + success);
+        }
+    }
+}
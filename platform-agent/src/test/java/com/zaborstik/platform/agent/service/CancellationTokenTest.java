@@ -0,0 +1,72 @@
+package com.zaborstik.platform.agent.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CancellationTokenTest {
+
+    @Test
+    void cancelShouldRunHandlersOnce() {
+        CancellationToken token = CancellationToken.create();
+        AtomicInteger calls = new AtomicInteger();
+        token.onCancel(calls::incrementAndGet);
+
+        assertTrue(token.cancel("stop"));
+        assertFalse(token.cancel("again"));
+
+        assertTrue(token.isCancelled());
+        assertEquals("stop", token.reason());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void closedRegistrationShouldNotRun() {
+        CancellationToken token = CancellationToken.create();
+        AtomicInteger calls = new AtomicInteger();
+        CancellationToken.Registration registration = token.onCancel(calls::incrementAndGet);
+
+        registration.close();
+        token.cancel("stop");
+
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void handlerRegisteredAfterCancelShouldRunImmediately() {
+        CancellationToken token = CancellationToken.create();
+        token.cancel(null);
+        AtomicInteger calls = new AtomicInteger();
+
+        token.onCancel(calls::incrementAndGet);
+
+        assertEquals(1, calls.get());
+        assertEquals("cancelled", token.reason());
+    }
+
+    @Test
+    void awaitShouldReturnAsSoonAsTokenIsCancelled() {
+        CancellationToken token = CancellationToken.create();
+        Thread canceller = new Thread(() -> {
+            token.await(Duration.ofMillis(50));
+            token.cancel("stop");
+        });
+        canceller.start();
+
+        long started = System.nanoTime();
+        assertTrue(token.await(Duration.ofSeconds(10)));
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).toMillis() < 5_000);
+    }
+
+    @Test
+    void noneShouldNotBeCancellable() {
+        CancellationToken token = CancellationToken.none();
+
+        assertFalse(token.isCancellable());
+        assertFalse(token.await(Duration.ofMillis(1)));
+        assertThrows(UnsupportedOperationException.class, () -> token.cancel("stop"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.core.plan.PlanStep;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandCoalescerTest {
+
+    @Test
+    void shouldGroupCosmeticStepsWithFollowingStepOnSameTarget() {
+        List<CompiledPlan.Step> steps = List.of(
+            explain(0, "#buy"), coordinate(1, "hover", "#buy"), coordinate(2, "click", "#buy"),
+            coordinate(3, "click", "#buy"));
+
+        List<CompiledPlan.Step> group = CommandCoalescer.group(steps, 0, true, step -> false);
+
+        assertEquals(3, group.size());
+        assertEquals(AgentCommand.CommandType.RESOLVE_AND_HOVER, CommandCoalescer.command(group.get(1)).type());
+        assertEquals(AgentCommand.CommandType.RESOLVE_AND_CLICK, CommandCoalescer.command(group.get(2)).type());
+    }
+
+    @Test
+    void shouldStopAtOtherTarget() {
+        List<CompiledPlan.Step> steps = List.of(explain(0, "#buy"), coordinate(1, "click", "#cancel"));
+
+        assertTrue(CommandCoalescer.group(steps, 0, true, step -> false).isEmpty());
+    }
+
+    @Test
+    void shouldNotStartGroupAtActionStep() {
+        List<CompiledPlan.Step> steps = List.of(coordinate(0, "click", "#buy"), explain(1, "#buy"));
+
+        assertTrue(CommandCoalescer.group(steps, 0, true, step -> false).isEmpty());
+    }
+
+    @Test
+    void shouldLeaveCoordinateStepsOutWithoutFusedCommands() {
+        List<CompiledPlan.Step> steps = List.of(
+            explain(0, "#buy"), explain(1, "#buy"), coordinate(2, "hover", "#buy"));
+
+        assertEquals(2, CommandCoalescer.group(steps, 0, false, step -> false).size());
+        assertTrue(CommandCoalescer.group(steps, 1, false, step -> false).isEmpty());
+    }
+
+    @Test
+    void shouldLeaveExcludedStepsOut() {
+        List<CompiledPlan.Step> steps = List.of(explain(0, "#article"), readText(1, "#article"));
+
+        assertEquals(2, CommandCoalescer.group(steps, 0, true, step -> false).size());
+        assertTrue(CommandCoalescer.group(steps, 0, true, step -> step.operation().equals("read_text")).isEmpty());
+    }
+
+    private static CompiledPlan.Step explain(int index, String target) {
+        return new CompiledPlan.Step(planStep(index, target), index, "explain", null,
+            AgentCommand.explain("Explain " + target), null, null);
+    }
+
+    private static CompiledPlan.Step readText(int index, String target) {
+        return new CompiledPlan.Step(planStep(index, target), index, "read_text", target,
+            AgentCommand.readText(target, "Read"), null, null);
+    }
+
+    private static CompiledPlan.Step coordinate(int index, String operation, String target) {
+        AgentCommand command = operation.equals("hover")
+            ? AgentCommand.hover(target, "Hover")
+            : AgentCommand.click(target, "Click");
+        return new CompiledPlan.Step(planStep(index, target), index, operation, target, command,
+            AgentCommand.resolveCoords(target, "Resolve"), AgentCommand.fused(command));
+    }
+
+    private static PlanStep planStep(int index, String target) {
+        return new PlanStep("s" + index, "p1", "wf-plan-step", "new", "ent-button", target, index, "Step " + index,
+            List.of());
+    }
+}
@@ -0,0 +1,96 @@
+package com.zaborstik.platform.agent.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventRingTest {
+
+    @Test
+    void shouldRoundCapacityUpAndRejectWhenFull() {
+        EventRing<Integer> ring = new EventRing<>(3);
+
+        assertEquals(4, ring.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+    }
+
+    @Test
+    void shouldKeepFifoOrderAcrossWrapAround() {
+        EventRing<Integer> ring = new EventRing<>(2);
+        List<Integer> polled = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ring.offer(i));
+            if (i % 2 == 1) {
+                polled.add(ring.poll());
+                polled.add(ring.poll());
+            }
+        }
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), polled);
+        assertNull(ring.poll());
+    }
+
+    @Test
+    void concurrentProducersShouldNotLoseElements() throws Exception {
+        EventRing<Integer> ring = new EventRing<>(64);
+        int producers = 4;
+        int perProducer = 10_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        Set<Integer> seen = new HashSet<>();
+        while (seen.size() < producers * perProducer) {
+            Integer value = ring.poll();
+            if (value != null) {
+                assertTrue(seen.add(value), "duplicate " + value);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(ring.poll());
+    }
+
+    @Test
+    void shouldRejectInvalidCapacityAndUseAtLeastTwoSlots() {
+        assertThrows(IllegalArgumentException.class, () -> new EventRing<>(0));
+
+        EventRing<Integer> ring = new EventRing<>(1);
+
+        assertEquals(2, ring.capacity());
+        assertTrue(ring.offer(1));
+        assertTrue(ring.offer(2));
+        assertFalse(ring.offer(3));
+    }
+}
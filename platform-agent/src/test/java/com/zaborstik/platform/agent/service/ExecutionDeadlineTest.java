@@ -0,0 +1,46 @@
+package com.zaborstik.platform.agent.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionDeadlineTest {
+
+    @Test
+    void noneShouldNeverExpireAndKeepTimeout() {
+        ExecutionDeadline deadline = ExecutionDeadline.none();
+
+        assertFalse(deadline.isBounded());
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remaining().isEmpty());
+        assertNull(deadline.cap(null));
+        assertEquals(Duration.ofSeconds(5), deadline.cap(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void capShouldUseRemainingBudgetWhenItIsSmaller() {
+        ExecutionDeadline deadline = ExecutionDeadline.after(Duration.ofSeconds(2));
+
+        Duration capped = deadline.cap(Duration.ofMinutes(1));
+
+        assertTrue(capped.compareTo(Duration.ofSeconds(2)) <= 0);
+        assertTrue(deadline.cap(null).compareTo(Duration.ofSeconds(2)) <= 0);
+        assertEquals(Duration.ofMillis(100), deadline.cap(Duration.ofMillis(100)));
+    }
+
+    @Test
+    void zeroBudgetShouldBeExpired() {
+        ExecutionDeadline deadline = ExecutionDeadline.after(Duration.ZERO);
+
+        assertTrue(deadline.isBounded());
+        assertTrue(deadline.isExpired());
+        assertEquals(Duration.ZERO, deadline.remaining().orElseThrow());
+    }
+
+    @Test
+    void afterShouldRejectNegativeBudget() {
+        assertThrows(IllegalArgumentException.class, () -> ExecutionDeadline.after(Duration.ofMillis(-1)));
+    }
+}
@@ -0,0 +1,89 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HedgeMirrorTest {
+
+    private static final String PAGE = "http://localhost:8080/catalog";
+
+    @Mock
+    private AgentClient primary;
+
+    @Mock
+    private AgentClient mirror;
+
+    @Test
+    void shouldBeReadyAfterMirroringTheLoadedPage() throws Exception {
+        stubMirror();
+        HedgeMirror hedgeMirror = new HedgeMirror(primary, "http://localhost:8080", true, null);
+
+        hedgeMirror.follow(PAGE);
+
+        assertSame(mirror, awaitReady(hedgeMirror, PAGE));
+        assertNull(hedgeMirror.readyFor("http://localhost:8080/cart"));
+        verify(mirror).initialize("http://localhost:8080", true);
+        verify(mirror).execute(any(AgentCommand.class));
+        hedgeMirror.close();
+        verify(mirror, timeout(5_000)).close();
+    }
+
+    @Test
+    void invalidateShouldMakeMirrorStale() throws Exception {
+        stubMirror();
+        HedgeMirror hedgeMirror = new HedgeMirror(primary, "http://localhost:8080", true, null);
+        hedgeMirror.follow(PAGE);
+        awaitReady(hedgeMirror, PAGE);
+
+        hedgeMirror.invalidate();
+
+        assertNull(hedgeMirror.readyFor(PAGE));
+        hedgeMirror.close();
+    }
+
+    @Test
+    void failedLoadShouldLeaveMirrorUnready() throws Exception {
+        when(primary.withSession(anyString())).thenReturn(mirror);
+        when(mirror.initialize(anyString(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 1));
+        when(mirror.execute(any(AgentCommand.class))).thenReturn(AgentResponse.failure("net::ERR", 1));
+        HedgeMirror hedgeMirror = new HedgeMirror(primary, "http://localhost:8080", true, null);
+
+        hedgeMirror.follow(PAGE);
+
+        verify(mirror, timeout(5_000)).execute(any(AgentCommand.class));
+        hedgeMirror.close();
+        assertNull(hedgeMirror.readyFor(PAGE));
+    }
+
+    private void stubMirror() throws Exception {
+        when(primary.withSession(anyString())).thenReturn(mirror);
+        when(mirror.initialize(anyString(), anyBoolean())).thenReturn(AgentResponse.success("ok", Map.of(), 1));
+        when(mirror.execute(any(AgentCommand.class))).thenReturn(AgentResponse.success("ok", Map.of(), 1));
+    }
+
+    private static AgentClient awaitReady(HedgeMirror hedgeMirror, String url) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        AgentClient ready;
+        while ((ready = hedgeMirror.readyFor(url)) == null) {
+            assertTrue(System.currentTimeMillis() < deadline, "mirror did not open " + url);
+            Thread.sleep(10);
+        }
+        return ready;
+    }
+}
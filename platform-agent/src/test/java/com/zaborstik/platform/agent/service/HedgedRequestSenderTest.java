@@ -0,0 +1,120 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import com.zaborstik.platform.agent.dto.HedgePolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HedgedRequestSenderTest {
+
+    private static final AgentCommand READ = AgentCommand.readText("#price", "read price");
+
+    @Mock
+    private AgentClient primary;
+
+    @Mock
+    private AgentClient hedge;
+
+    @Test
+    void shouldNotHedgeUntilEnoughSamples() throws Exception {
+        HedgedRequestSender sender = new HedgedRequestSender(primary, hedge,
+            new HedgePolicy(Set.of("read_text"), 0.95, 1.0, 5));
+        when(primary.execute(any(), any(), any())).thenReturn(AgentResponse.success("ok", Map.of(), 1));
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(sender.send("read_text", READ, null, CancellationToken.none()).success());
+        }
+
+        assertEquals(0, sender.hedgedRequests());
+        assertTrue(sender.thresholdMs("read_text") >= 0);
+        verify(hedge, never()).execute(any(), any(), any());
+    }
+
+    @Test
+    void slowPrimaryShouldBeHedgedAndCancelled() throws Exception {
+        HedgedRequestSender sender = new HedgedRequestSender(primary, hedge,
+            new HedgePolicy(Set.of("read_text"), 0.95, 1.0, 5));
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+        when(primary.execute(any(), any(), any())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() <= 5) {
+                return AgentResponse.success("fast", Map.of(), 1);
+            }
+            CancellationToken token = invocation.getArgument(2);
+            primaryCancelled.set(token.await(Duration.ofSeconds(10)));
+            return AgentResponse.failure("Command cancelled", 0);
+        });
+        when(hedge.execute(any(), any(), any())).thenReturn(AgentResponse.success("hedged", Map.of(), 1));
+        for (int i = 0; i < 5; i++) {
+            sender.send("read_text", READ, null, CancellationToken.none());
+        }
+
+        long started = System.nanoTime();
+        AgentResponse response = sender.send("read_text", READ, Duration.ofSeconds(30), CancellationToken.none());
+        long elapsedMs = Duration.ofNanos(System.nanoTime() - started).toMillis();
+
+        assertEquals("hedged", response.message());
+        assertEquals(1, sender.hedgedRequests());
+        assertEquals(1, sender.hedgeWins());
+        assertTrue(elapsedMs < 5_000, "elapsed=" + elapsedMs);
+        Thread.sleep(50);
+        assertTrue(primaryCancelled.get());
+    }
+
+    @Test
+    void hedgingShouldRespectMaxRatio() throws Exception {
+        HedgedRequestSender sender = new HedgedRequestSender(primary, hedge,
+            new HedgePolicy(Set.of("read_text"), 0.5, 0.01, 5));
+        AtomicInteger calls = new AtomicInteger();
+        when(primary.execute(any(), any(), any())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() > 5) {
+                Thread.sleep(30);
+            }
+            return AgentResponse.success("primary", Map.of(), 1);
+        });
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("primary", sender.send("read_text", READ, null, CancellationToken.none()).message());
+        }
+
+        assertEquals(0, sender.hedgedRequests());
+        verify(hedge, never()).execute(any(), any(), any());
+    }
+
+    @Test
+    void shouldWaitForPrimaryWhileNoMirrorIsReady() throws Exception {
+        HedgedRequestSender sender = new HedgedRequestSender(primary, () -> null,
+            new HedgePolicy(Set.of("read_text"), 0.5, 1.0, 5));
+        AtomicInteger calls = new AtomicInteger();
+        when(primary.execute(any(), any(), any())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() > 5) {
+                Thread.sleep(100);
+            }
+            return AgentResponse.success("primary", Map.of(), 1);
+        });
+        for (int i = 0; i < 5; i++) {
+            sender.send("read_text", READ, null, CancellationToken.none());
+        }
+
+        assertEquals("primary", sender.send("read_text", READ, null, CancellationToken.none()).message());
+        assertEquals(0, sender.hedgedRequests());
+        verify(hedge, never()).execute(any(), any(), any());
+    }
+}
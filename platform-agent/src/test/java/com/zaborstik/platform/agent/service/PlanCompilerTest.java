@@ -0,0 +1,122 @@
+package com.zaborstik.platform.agent.service;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.core.domain.Action;
+import com.zaborstik.platform.core.domain.UIBinding;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.plan.PlanStep;
+import com.zaborstik.platform.core.plan.PlanStepAction;
+import com.zaborstik.platform.core.resolver.Resolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PlanCompilerTest {
+
+    @Mock
+    private Resolver resolver;
+
+    private PlanCompiler compiler;
+
+    @BeforeEach
+    void setUp() {
+        compiler = new PlanCompiler(resolver);
+    }
+
+    @Test
+    void shouldCompileCoordinateStepWithResolvedSelector() {
+        when(resolver.findAction("act-click")).thenReturn(Optional.of(
+            Action.of("act-click", "Click", "click", "D", "t")));
+        when(resolver.findUIBinding("btn")).thenReturn(Optional.of(
+            new UIBinding("btn", "#submit", UIBinding.SelectorType.CSS, null)));
+
+        CompiledPlan program = compiler.compile(plan(
+            step("s1", "action(btn)", "Submit", new PlanStepAction("act-click", null))));
+
+        assertTrue(program.isExecutable());
+        CompiledPlan.Step compiled = program.steps().get(0);
+        assertEquals("click", compiled.operation());
+        assertEquals("#submit", compiled.selector());
+        assertTrue(compiled.isCoordinateStep());
+        assertEquals(AgentCommand.CommandType.RESOLVE_COORDS, compiled.resolveCoords().type());
+        assertEquals("#submit", compiled.resolveCoords().target());
+        assertEquals(AgentCommand.CommandType.CLICK, compiled.command().type());
+        assertEquals(AgentCommand.CommandType.RESOLVE_AND_CLICK, compiled.fusedCommand().type());
+        assertEquals("#submit", compiled.fusedCommand().target());
+    }
+
+    @Test
+    void shouldParseMetaValueAtCompileTime() {
+        when(resolver.findAction("act-type")).thenReturn(Optional.of(
+            Action.of("act-type", "Type", "type", "D", "t")));
+        when(resolver.findAction("act-wait")).thenReturn(Optional.of(
+            Action.of("act-wait", "Wait", "wait", "D", "t")));
+
+        CompiledPlan program = compiler.compile(plan(
+            step("s1", "#q", "Search", new PlanStepAction("act-type", "laptop\\n")),
+            step("s2", "result", "Wait", new PlanStepAction("act-wait", "250"))));
+
+        assertTrue(program.isExecutable());
+        AgentCommand type = program.steps().get(0).command();
+        assertEquals("laptop", type.parameters().get("text"));
+        assertEquals(true, type.parameters().get("pressEnter"));
+        AgentCommand wait = program.steps().get(1).command();
+        assertEquals(AgentCommand.CommandType.WAIT, wait.type());
+        assertEquals(250L, wait.parameters().get("timeout"));
+        assertEquals("PAGE_LOADED", wait.parameters().get("condition"));
+        assertEquals(AgentCommand.CommandType.RESOLVE_AND_TYPE, program.steps().get(0).fusedCommand().type());
+        assertEquals("laptop", program.steps().get(0).fusedCommand().parameters().get("text"));
+        assertFalse(program.steps().get(1).isCoordinateStep());
+        assertNull(program.steps().get(1).fusedCommand());
+    }
+
+    @Test
+    void shouldCollectProblemsForUnknownOperationAndEmptySelector() {
+        when(resolver.findAction("act-fly")).thenReturn(Optional.of(
+            Action.of("act-fly", "Fly", "fly", "D", "t")));
+        when(resolver.findAction("act-read")).thenReturn(Optional.of(
+            Action.of("act-read", "Read", "read_text", "D", "t")));
+        when(resolver.findAction("act-open")).thenReturn(Optional.of(
+            Action.of("act-open", "Open", "open_page", "D", "t")));
+
+        CompiledPlan program = compiler.compile(plan(
+            step("s1", "https://example.org", "Open", new PlanStepAction("act-open", null)),
+            step("s2", "#x", "Fly", new PlanStepAction("act-fly", null)),
+            step("s3", "", "Read", new PlanStepAction("act-read", null))));
+
+        assertFalse(program.isExecutable());
+        assertEquals(2, program.problems().size());
+        assertEquals(1, program.problems().get(0).stepIndex());
+        assertEquals("Unknown executor operation: fly", program.problems().get(0).message());
+        assertEquals(2, program.problems().get(1).stepIndex());
+        assertEquals("Target selector is empty for read_text step", program.problems().get(1).message());
+    }
+
+    @Test
+    void shouldReportStepWithoutResolvableOperation() {
+        when(resolver.isWorkflowStepInternalName("new")).thenReturn(true);
+
+        CompiledPlan program = compiler.compile(plan(
+            step("s1", "#x", "Unknown", new PlanStepAction("missing", null))));
+
+        assertFalse(program.isExecutable());
+        assertTrue(program.problems().get(0).message().startsWith("Cannot resolve executor operation"));
+    }
+
+    private static PlanStep step(String id, String target, String displayName, PlanStepAction action) {
+        return new PlanStep(id, "p1", "wf-plan-step", "new", target, target, 0, displayName, List.of(action));
+    }
+
+    private static Plan plan(PlanStep... steps) {
+        return new Plan("p1", "wf-plan", "new", steps[0].id(), null, null, List.of(steps));
+    }
+}
@@ -0,0 +1,72 @@
+package com.zaborstik.platform.agent.trace;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSpanExporterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldWriteOtlpJsonLines() throws Exception {
+        FileSpanExporter exporter = new FileSpanExporter(dir, "test-service");
+        exporter.export(new SpanData("0af7651916cd43dd8448eb211c80319c", "b7ad6b7169203331", null, "plan.execute",
+            1_000L, 5_000L, Map.of("plan.id", "plan-1", "step.index", 3, "plan.success", false), "plan failed"));
+        exporter.close();
+
+        List<String> lines = Files.readAllLines(exporter.currentFile());
+        assertEquals(1, lines.size());
+        JsonNode request = new ObjectMapper().readTree(lines.get(0));
+        JsonNode resourceSpans = request.get("resourceSpans").get(0);
+        assertEquals("test-service",
+            resourceSpans.get("resource").get("attributes").get(0).get("value").get("stringValue").asText());
+        JsonNode span = resourceSpans.get("scopeSpans").get(0).get("spans").get(0);
+        assertEquals("0af7651916cd43dd8448eb211c80319c", span.get("traceId").asText());
+        assertEquals("plan.execute", span.get("name").asText());
+        assertEquals("1000", span.get("startTimeUnixNano").asText());
+        assertEquals("5000", span.get("endTimeUnixNano").asText());
+        assertEquals(2, span.get("status").get("code").asInt());
+        assertFalse(span.has("parentSpanId"));
+        assertEquals(3, span.get("attributes").size());
+        assertEquals(1, exporter.exportedCount());
+    }
+
+    @Test
+    void shouldRotateFilesAndKeepLimit() throws Exception {
+        FileSpanExporter exporter = new FileSpanExporter(dir, "test-service", 200, 3, 1024);
+        for (int i = 0; i < 20; i++) {
+            exporter.export(new SpanData("0af7651916cd43dd8448eb211c80319c", "b7ad6b716920333" + (i % 10), null,
+                "span-" + i, 0L, 1L, Map.of(), null));
+            Thread.sleep(5);
+        }
+        exporter.close();
+
+        try (var files = Files.list(dir)) {
+            List<String> names = files.map(path -> path.getFileName().toString()).sorted().toList();
+            assertTrue(names.size() <= 3, names.toString());
+            assertTrue(names.contains("spans.1.jsonl"), names.toString());
+        }
+        assertEquals(20, exporter.exportedCount());
+    }
+
+    @Test
+    void shouldCountSpansExportedAfterClose() throws Exception {
+        FileSpanExporter exporter = new FileSpanExporter(dir, "test-service");
+        exporter.close();
+
+        exporter.export(new SpanData("0af7651916cd43dd8448eb211c80319c", "b7ad6b7169203331", null, "late",
+            0L, 1L, Map.of(), null));
+
+        assertEquals(1, exporter.droppedCount());
+    }
+}
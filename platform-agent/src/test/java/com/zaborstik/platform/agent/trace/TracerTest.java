@@ -0,0 +1,69 @@
+package com.zaborstik.platform.agent.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TracerTest {
+
+    @Test
+    void childSpansShouldShareTraceAndReferenceParent() {
+        List<SpanData> spans = new CopyOnWriteArrayList<>();
+        Tracer tracer = new Tracer(spans::add, 1.0);
+
+        Span root = tracer.startTrace("plan.execute").setAttribute("plan.id", "plan-1");
+        try (Span child = root.child("plan.step")) {
+            child.setAttribute("step.index", 0).recordError("timeout");
+        }
+        root.end();
+        root.end();
+
+        assertEquals(2, spans.size());
+        SpanData child = spans.get(0);
+        SpanData parent = spans.get(1);
+        assertEquals(32, parent.traceId().length());
+        assertEquals(16, parent.spanId().length());
+        assertNull(parent.parentSpanId());
+        assertEquals(parent.traceId(), child.traceId());
+        assertEquals(parent.spanId(), child.parentSpanId());
+        assertEquals("plan-1", parent.attributes().get("plan.id"));
+        assertEquals(0, child.attributes().get("step.index"));
+        assertEquals("timeout", child.error());
+        assertTrue(child.endEpochNanos() >= child.startEpochNanos());
+    }
+
+    @Test
+    void unsampledTraceShouldRecordNothing() {
+        List<SpanData> spans = new CopyOnWriteArrayList<>();
+        Tracer tracer = new Tracer(spans::add, 0.0);
+
+        Span root = tracer.startTrace("plan.execute");
+        Span child = root.child("plan.step").setAttribute("step.id", "s1");
+        child.end();
+        root.end();
+
+        assertFalse(root.isRecording());
+        assertSame(Span.noop(), child);
+        assertTrue(spans.isEmpty());
+    }
+
+    @Test
+    void sampleRatioShouldApplyPerTrace() {
+        List<SpanData> spans = new CopyOnWriteArrayList<>();
+        Tracer tracer = new Tracer(spans::add, 0.5);
+
+        for (int i = 0; i < 2_000; i++) {
+            tracer.startTrace("plan.execute").end();
+        }
+
+        assertTrue(spans.size() > 800 && spans.size() < 1_200, "sampled=" + spans.size());
+    }
+
+    @Test
+    void shouldRejectInvalidSampleRatio() {
+        assertThrows(IllegalArgumentException.class, () -> new Tracer(span -> { }, 1.5));
+    }
+}
@@ -1,34 +1,213 @@
 package com.zaborstik.platform.api.config;
 
 import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.dto.CircuitBreakerPolicy;
+import com.zaborstik.platform.agent.dto.ScreenshotPolicy;
+import com.zaborstik.platform.agent.dto.SessionResetMode;
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+import com.zaborstik.platform.agent.pool.AgentPool;
+import com.zaborstik.platform.agent.pool.AgentPoolOptions;
+import com.zaborstik.platform.agent.pool.SessionPool;
+import com.zaborstik.platform.agent.pool.SessionPoolOptions;
 import com.zaborstik.platform.agent.service.AgentService;
+import com.zaborstik.platform.agent.service.CallbackDispatcher;
+import com.zaborstik.platform.agent.trace.FileSpanExporter;
+import com.zaborstik.platform.agent.trace.Tracer;
+import com.zaborstik.platform.api.service.AttachmentStore;
+import com.zaborstik.platform.api.service.ExecutionJournalService;
+import com.zaborstik.platform.api.service.PlanService;
 import com.zaborstik.platform.core.resolver.Resolver;
 import com.zaborstik.platform.executor.PlanExecutor;
+import com.zaborstik.platform.executor.journal.ExecutionJournal;
+import com.zaborstik.platform.executor.journal.JournalFlusher;
+import com.zaborstik.platform.executor.log.LogRetention;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
 /**
- * Конфигурация browser executor через Playwright-агент.
+ * Конфигурация browser executor через Playwright-агент. Свойства {@code platform.agent.*} основного сервиса
+ * связываются в {@link AgentServiceProperties}; все свойства с описаниями — в {@code application.properties}.
+ *
+ * Browser executor configuration through the Playwright agent. The {@code platform.agent.*} properties of the main
+ * service are bound to {@link AgentServiceProperties}; all properties are described in {@code application.properties}.
  */
 @Configuration
+@EnableConfigurationProperties(AgentServiceProperties.class)
 public class AgentExecutionConfiguration {
 
+    @Bean
+    @ConditionalOnProperty(name = "platform.agent.circuit-breaker.enabled", havingValue = "true", matchIfMissing = true)
+    public CircuitBreakerPolicy agentCircuitBreakerPolicy(
+            @Value("${platform.agent.circuit-breaker.failure-rate:0.5}") double failureRate,
+            @Value("${platform.agent.circuit-breaker.slow-call-ms:10000}") long slowCallMs,
+            @Value("${platform.agent.circuit-breaker.open-ms:15000}") long openMs) {
+        CircuitBreakerPolicy defaults = CircuitBreakerPolicy.defaultPolicy();
+        return new CircuitBreakerPolicy(defaults.windowSize(), defaults.minimumCalls(), failureRate,
+            Duration.ofMillis(slowCallMs), defaults.slowCallRateThreshold(), Duration.ofMillis(openMs),
+            defaults.halfOpenCalls());
+    }
+
+    @Bean
+    public ScreenshotPolicy agentScreenshotPolicy(
+            @Value("${platform.agent.screenshots.mode:on-failure}") String mode,
+            @Value("${platform.agent.screenshots.sample-every:10}") int sampleEvery,
+            @Value("${platform.agent.screenshots.format:png}") String format,
+            @Value("${platform.agent.screenshots.quality:80}") int quality,
+            @Value("${platform.agent.screenshots.max-width:0}") int maxWidth) {
+        return new ScreenshotPolicy(ScreenshotPolicy.Mode.parse(mode), sampleEvery,
+            ScreenshotPolicy.Format.parse(format), quality, maxWidth);
+    }
+
+    @Bean
+    public AttachmentStore attachmentStore(@Value("${platform.attachments.dir:./data/attachments}") String dir) {
+        return new AttachmentStore(Path.of(dir));
+    }
+
     @Bean(destroyMethod = "")
-    public AgentClient agentClient(@Value("${platform.agent.server-url:http://localhost:3000}") String serverUrl) {
-        return new AgentClient(serverUrl);
+    public AgentClient agentClient(@Value("${platform.agent.server-url:http://localhost:3000}") String serverUrl,
+                                   @Value("${platform.agent.websocket.enabled:false}") boolean webSocket,
+                                   ObjectProvider<CircuitBreakerPolicy> circuitBreakerPolicy,
+                                   ScreenshotPolicy screenshotPolicy) {
+        return newAgentClient(serverUrl, circuitBreakerPolicy.getIfAvailable(), webSocket, screenshotPolicy);
+    }
+
+    @Bean
+    public ExecutionMetrics executionMetrics() {
+        return new ExecutionMetrics();
+    }
+
+    @Bean(destroyMethod = "close")
+    public Tracer tracer(@Value("${platform.tracing.enabled:false}") boolean enabled,
+                         @Value("${platform.tracing.dir:./data/traces}") String dir,
+                         @Value("${platform.tracing.sample-ratio:0.1}") double sampleRatio,
+                         @Value("${platform.tracing.max-file-bytes:16777216}") long maxFileBytes,
+                         @Value("${platform.tracing.max-files:5}") int maxFiles) throws IOException {
+        if (!enabled) {
+            return Tracer.noop();
+        }
+        return new Tracer(new FileSpanExporter(Path.of(dir), "automation-platform", maxFileBytes, maxFiles, 8192),
+            sampleRatio);
     }
 
     @Bean(destroyMethod = "")
     public AgentService agentService(AgentClient agentClient,
                                      Resolver resolver,
-                                     @Value("${platform.agent.base-url:http://localhost:8080}") String baseUrl,
-                                     @Value("${platform.agent.headless:false}") boolean headless) {
-        return new AgentService(agentClient, resolver, baseUrl, headless);
+                                     ExecutionMetrics executionMetrics,
+                                     AgentServiceProperties properties) {
+        return new AgentService(agentClient, resolver, properties.baseUrl(), properties.headless(),
+            properties.toOptions(executionMetrics));
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnExpression("!'${platform.agent.server-urls:}'.isBlank()")
+    public AgentPool agentPool(AgentService agentService,
+                               ObjectProvider<CircuitBreakerPolicy> circuitBreakerPolicy,
+                               ScreenshotPolicy screenshotPolicy,
+                               @Value("${platform.agent.server-urls}") String serverUrls,
+                               @Value("${platform.agent.pool.health-check-interval-ms:5000}") long healthCheckIntervalMs,
+                               @Value("${platform.agent.pool.unhealthy-after:2}") int unhealthyAfter,
+                               @Value("${platform.agent.pool.max-sessions-per-agent:1}") int maxSessionsPerAgent,
+                               @Value("${platform.agent.websocket.enabled:false}") boolean webSocket) {
+        AgentPoolOptions defaults = AgentPoolOptions.defaults();
+        CircuitBreakerPolicy breakerPolicy = circuitBreakerPolicy.getIfAvailable();
+        return new AgentPool(parseUrls(serverUrls),
+            url -> newAgentClient(url, breakerPolicy, webSocket, screenshotPolicy), agentService::withClient,
+            new AgentPoolOptions(Duration.ofMillis(healthCheckIntervalMs), unhealthyAfter, defaults.latencyAlpha(),
+                maxSessionsPerAgent));
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "platform.agent.session-pool.enabled", havingValue = "true")
+    public SessionPool sessionPool(AgentService agentService,
+                                   @Value("${platform.agent.session-pool.min-warm:1}") int minWarm,
+                                   @Value("${platform.agent.session-pool.max-warm:4}") int maxWarm,
+                                   @Value("${platform.agent.session-pool.reset:clear-storage}") String reset,
+                                   @Value("${platform.agent.session-pool.max-plans:50}") int maxPlans,
+                                   @Value("${platform.agent.session-pool.resize-interval-ms:10000}") long resizeIntervalMs) {
+        return new SessionPool(agentService, new SessionPoolOptions(minWarm, maxWarm, SessionResetMode.parse(reset),
+            maxPlans, Duration.ofMillis(resizeIntervalMs), SessionPoolOptions.defaults().demandAlpha()));
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "platform.executor.callbacks.async", havingValue = "true", matchIfMissing = true)
+    public CallbackDispatcher callbackDispatcher(
+            ExecutionMetrics executionMetrics,
+            @Value("${platform.executor.callbacks.capacity:1024}") int capacity,
+            @Value("${platform.executor.callbacks.overflow:block}") String overflow) {
+        return new CallbackDispatcher(capacity,
+            CallbackDispatcher.OverflowPolicy.valueOf(overflow.trim().toUpperCase(Locale.ROOT)), executionMetrics);
+    }
+
+    @Bean
+    public PlanExecutor planExecutor(AgentService agentService,
+                                     ObjectProvider<AgentPool> agentPool,
+                                     ObjectProvider<SessionPool> sessionPool,
+                                     ObjectProvider<ExecutionJournal> executionJournal,
+                                     ObjectProvider<CallbackDispatcher> callbackDispatcher,
+                                     @Value("${platform.executor.log.in-memory-entries:0}") int inMemoryEntries,
+                                     @Value("${platform.executor.log.spill-dir:./data/execution-log}") String spillDir) {
+        LogRetention logRetention = inMemoryEntries > 0
+            ? LogRetention.spillingAfter(inMemoryEntries, Path.of(spillDir))
+            : LogRetention.unbounded();
+        AgentPool pool = agentPool.getIfAvailable();
+        SessionPool sessions = sessionPool.getIfAvailable();
+        PlanExecutor executor;
+        if (pool != null) {
+            executor = new PlanExecutor(pool, executionJournal.getIfAvailable(), logRetention);
+        } else if (sessions != null) {
+            executor = new PlanExecutor(sessions, executionJournal.getIfAvailable(), logRetention);
+        } else {
+            executor = new PlanExecutor(agentService, executionJournal.getIfAvailable(), logRetention);
+        }
+        CallbackDispatcher dispatcher = callbackDispatcher.getIfAvailable();
+        return dispatcher != null ? executor.withCallbackDispatcher(dispatcher) : executor;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "platform.executor.journal.enabled", havingValue = "true")
+    public ExecutionJournal executionJournal(@Value("${platform.executor.journal.path:./data/execution-journal.bin}") String path) throws IOException {
+        return ExecutionJournal.open(Path.of(path));
     }
 
     @Bean
-    public PlanExecutor planExecutor(AgentService agentService) {
-        return new PlanExecutor(agentService);
+    @ConditionalOnProperty(name = "platform.executor.journal.enabled", havingValue = "true")
+    public ExecutionJournalService executionJournalService(PlanService planService, ExecutionJournal executionJournal) {
+        return new ExecutionJournalService(planService, executionJournal);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "platform.executor.journal.enabled", havingValue = "true")
+    public JournalFlusher journalFlusher(ExecutionJournal executionJournal,
+                                         ExecutionJournalService executionJournalService,
+                                         @Value("${platform.executor.journal.flush-interval-ms:500}") long flushIntervalMs) {
+        return new JournalFlusher(executionJournal, executionJournalService, Duration.ofMillis(flushIntervalMs));
+    }
+
+    private static AgentClient newAgentClient(String serverUrl, CircuitBreakerPolicy circuitBreakerPolicy,
+                                              boolean webSocket, ScreenshotPolicy screenshotPolicy) {
+        return new AgentClient(serverUrl, Duration.ofSeconds(30), circuitBreakerPolicy, webSocket, screenshotPolicy);
+    }
+
+    static List<String> parseUrls(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(value.split(","))
+            .map(String::trim)
+            .filter(url -> !url.isEmpty())
+            .distinct()
+            .toList();
     }
 }
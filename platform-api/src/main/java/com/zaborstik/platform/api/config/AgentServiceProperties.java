@@ -0,0 +1,132 @@
+package com.zaborstik.platform.api.config;
+
+import com.zaborstik.platform.agent.dto.HedgePolicy;
+import com.zaborstik.platform.agent.dto.NavigationPolicy;
+import com.zaborstik.platform.agent.dto.TimeoutPolicy;
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+import com.zaborstik.platform.agent.service.AgentServiceOptions;
+import com.zaborstik.platform.agent.service.CoordinateStepMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Свойства {@code platform.agent.*} основного {@link com.zaborstik.platform.agent.service.AgentService}.
+ * <p>
+ * {@code platform.agent.*} properties of the main {@link com.zaborstik.platform.agent.service.AgentService}.
+ *
+ * @param baseUrl          базовый URL тестируемого приложения / base URL of the application under test
+ * @param headless         запускать браузер без окна / run the browser headless
+ * @param planTimeoutMs    таймаут плана, 0 — без ограничения / plan timeout, 0 for none
+ * @param stepTimeoutMs    таймаут команды по умолчанию, 0 — без ограничения / default command timeout, 0 for none
+ * @param stepTimeouts     таймауты по операциям, {@code operation:ms,operation:ms} / per-operation timeouts
+ * @param hedge            хеджирование чтений / hedging of reads
+ * @param navigation       пропуск повторной навигации / skipping redundant navigation
+ * @param batchCommands    команды шага с координатами одним {@code /execute-batch} /
+ *                         coordinate step commands in one {@code /execute-batch}
+ * @param fusedCommands    шаг с координатами одной составной командой ({@link CoordinateStepMode#FUSED}) /
+ *                         a coordinate step as one fused command ({@link CoordinateStepMode#FUSED})
+ * @param coalesceCommands объединять шаги {@code explain}/{@code hover} со следующим шагом на той же цели /
+ *                         coalesce {@code explain}/{@code hover} steps with the next step on the same target
+ */
+@ConfigurationProperties(prefix = "platform.agent")
+public record AgentServiceProperties(@DefaultValue("http://localhost:8080") String baseUrl,
+                                     @DefaultValue("false") boolean headless,
+                                     @DefaultValue("0") long planTimeoutMs,
+                                     @DefaultValue("0") long stepTimeoutMs,
+                                     @DefaultValue("") String stepTimeouts,
+                                     @DefaultValue Hedge hedge,
+                                     @DefaultValue Navigation navigation,
+                                     @DefaultValue("true") boolean batchCommands,
+                                     @DefaultValue("true") boolean fusedCommands,
+                                     @DefaultValue("true") boolean coalesceCommands) {
+
+    /**
+     * @param enabled  хеджировать {@code read_text}/{@code take_screenshot} во второй сессии того же агента /
+     *                 hedge {@code read_text}/{@code take_screenshot} to a second session of the same agent
+     * @param quantile квантиль задержки, после которого отправляется хедж / latency quantile that triggers a hedge
+     * @param maxRatio максимальная доля хедж-запросов / maximum share of hedged requests
+     */
+    public record Hedge(@DefaultValue("false") boolean enabled,
+                        @DefaultValue("0.95") double quantile,
+                        @DefaultValue("0.1") double maxRatio) {
+    }
+
+    /**
+     * @param skipRedundant пропускать {@code open_page} на текущую страницу /
+     *                      skip {@code open_page} to the current page
+     * @param forceActions  действия (через запятую), которые всегда выполняют переход /
+     *                      actions (comma separated) that always navigate
+     */
+    public record Navigation(@DefaultValue("true") boolean skipRedundant,
+                             @DefaultValue("") String forceActions) {
+    }
+
+    /**
+     * Настройки сервиса с общим реестром метрик. Service options with the shared metrics registry.
+     */
+    public AgentServiceOptions toOptions(ExecutionMetrics metrics) {
+        TimeoutPolicy timeoutPolicy = new TimeoutPolicy(
+            toDuration(planTimeoutMs),
+            toDuration(stepTimeoutMs),
+            parseStepTimeouts(stepTimeouts)
+        );
+        HedgePolicy hedgePolicy = hedge.enabled()
+            ? new HedgePolicy(HedgePolicy.IDEMPOTENT_READ_OPERATIONS, hedge.quantile(), hedge.maxRatio(), 20)
+            : HedgePolicy.disabled();
+        CoordinateStepMode coordinateMode = fusedCommands ? CoordinateStepMode.FUSED
+            : batchCommands ? CoordinateStepMode.BATCH : CoordinateStepMode.SEQUENTIAL;
+        return AgentServiceOptions.defaults()
+            .withTimeoutPolicy(timeoutPolicy)
+            .withHedgePolicy(hedgePolicy)
+            .withMetrics(metrics)
+            .withNavigationPolicy(new NavigationPolicy(navigation.skipRedundant(),
+                parseActionIds(navigation.forceActions())))
+            .withCoordinateMode(coordinateMode)
+            .withCoalesceCommands(coalesceCommands);
+    }
+
+    private static Duration toDuration(long millis) {
+        return millis > 0 ? Duration.ofMillis(millis) : null;
+    }
+
+    static Set<String> parseActionIds(String value) {
+        if (value == null || value.isBlank()) {
+            return Set.of();
+        }
+        return Arrays.stream(value.split(","))
+            .map(String::trim)
+            .filter(id -> !id.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+    }
+
+    static Map<String, Duration> parseStepTimeouts(String value) {
+        Map<String, Duration> timeouts = new LinkedHashMap<>();
+        if (value == null || value.isBlank()) {
+            return timeouts;
+        }
+        for (String entry : value.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int separator = trimmed.lastIndexOf(':');
+            if (separator <= 0 || separator == trimmed.length() - 1) {
+                throw new IllegalArgumentException("Invalid platform.agent.step-timeouts entry: " + trimmed);
+            }
+            String operation = trimmed.substring(0, separator).trim();
+            try {
+                timeouts.put(operation, Duration.ofMillis(Long.parseLong(trimmed.substring(separator + 1).trim())));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid platform.agent.step-timeouts entry: " + trimmed, e);
+            }
+        }
+        return timeouts;
+    }
+}
@@ -0,0 +1,44 @@
+package com.zaborstik.platform.api.controller;
+
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+import com.zaborstik.platform.agent.metrics.MetricsSnapshot;
+import com.zaborstik.platform.agent.metrics.PrometheusTextFormat;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST контроллер метрик исполнения: текстовый формат Prometheus и JSON-срез с перцентилями.
+ */
+@RestController
+@RequestMapping("/api/metrics")
+@Tag(name = "Metrics")
+public class MetricsController {
+
+    private final ExecutionMetrics executionMetrics;
+
+    public MetricsController(ExecutionMetrics executionMetrics) {
+        this.executionMetrics = executionMetrics;
+    }
+
+    @GetMapping
+    @Operation(summary = "Execution metrics in Prometheus text format")
+    @ApiResponse(responseCode = "200", description = "Metrics returned")
+    public ResponseEntity<String> prometheus() {
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_TYPE, PrometheusTextFormat.CONTENT_TYPE)
+            .body(PrometheusTextFormat.format(executionMetrics.snapshot()));
+    }
+
+    @GetMapping("/snapshot")
+    @Operation(summary = "Execution metrics snapshot with percentiles")
+    @ApiResponse(responseCode = "200", description = "Snapshot returned")
+    public MetricsSnapshot snapshot() {
+        return executionMetrics.snapshot();
+    }
+}
@@ -109,18 +109,46 @@ public class PlanController {
     @Operation(summary = "Execute plan")
     @ApiResponse(responseCode = "200", description = "Plan executed")
     @ApiResponse(responseCode = "404", description = "Plan not found")
+    @ApiResponse(responseCode = "409", description = "Plan is already running")
     public ResponseEntity<?> executePlan(@PathVariable("planId") String planId) {
-        return planExecutionService.executePlan(planId)
-            .<ResponseEntity<?>>map(ResponseEntity::ok)
-            .orElseGet(() -> {
-                ErrorResponseDTO error = new ErrorResponseDTO(
-                    HttpStatus.NOT_FOUND.value(),
-                    "Not Found",
-                    "Plan with id '" + planId + "' not found",
-                    "/api/plans/" + planId + "/execute"
-                );
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
-            });
+        try {
+            return planExecutionService.executePlan(planId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> {
+                    ErrorResponseDTO error = new ErrorResponseDTO(
+                        HttpStatus.NOT_FOUND.value(),
+                        "Not Found",
+                        "Plan with id '" + planId + "' not found",
+                        "/api/plans/" + planId + "/execute"
+                    );
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+                });
+        } catch (IllegalStateException ex) {
+            ErrorResponseDTO error = new ErrorResponseDTO(
+                HttpStatus.CONFLICT.value(),
+                "Conflict",
+                ex.getMessage(),
+                "/api/plans/" + planId + "/execute"
+            );
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
+    }
+
+    @PostMapping("/{planId}/cancel")
+    @Operation(summary = "Cancel running plan")
+    @ApiResponse(responseCode = "202", description = "Cancellation requested")
+    @ApiResponse(responseCode = "409", description = "Plan is not running")
+    public ResponseEntity<?> cancelPlan(@PathVariable("planId") String planId) {
+        if (planExecutionService.cancelPlan(planId)) {
+            return ResponseEntity.accepted().build();
+        }
+        ErrorResponseDTO error = new ErrorResponseDTO(
+            HttpStatus.CONFLICT.value(),
+            "Conflict",
+            "Plan with id '" + planId + "' is not running",
+            "/api/plans/" + planId + "/cancel"
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
     }
 
     @PatchMapping("/{id}/transition")
@@ -9,6 +9,7 @@ public class ExecutePlanResponse {
     private String planId;
     private String planResultId;
     private boolean success;
+    private boolean cancelled;
     private int totalSteps;
     private int failedSteps;
     private Instant startedTime;
@@ -38,6 +39,14 @@ public class ExecutePlanResponse {
         this.success = success;
     }
 
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
     public int getTotalSteps() {
         return totalSteps;
     }
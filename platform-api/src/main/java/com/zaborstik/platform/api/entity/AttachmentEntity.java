@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 
 /**
  * Вложение (zbrtstk.attachment). Скриншоты, артефакты выполнения.
+ * Содержимое, сохранённое в {@link com.zaborstik.platform.api.service.AttachmentStore}, описывают хеш, тип, размер и
+ * файл; у вложения-ссылки (содержимое недоступно) они пустые.
  */
 @Entity
 @Table(name = "attachment", schema = "zbrtstk")
@@ -16,10 +18,30 @@ public class AttachmentEntity {
     @Column(name = "displayname")
     private String displayname;
 
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "content_type", length = 64)
+    private String contentType;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+
+    @Column(name = "storage_path", length = 1024)
+    private String storagePath;
+
     public AttachmentEntity() {}
 
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
     public String getDisplayname() { return displayname; }
     public void setDisplayname(String displayname) { this.displayname = displayname; }
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+    public Long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(Long sizeBytes) { this.sizeBytes = sizeBytes; }
+    public String getStoragePath() { return storagePath; }
+    public void setStoragePath(String storagePath) { this.storagePath = storagePath; }
 }
@@ -4,6 +4,10 @@ import com.zaborstik.platform.api.entity.AttachmentEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface AttachmentRepository extends JpaRepository<AttachmentEntity, String> {
+
+    Optional<AttachmentEntity> findFirstByContentHash(String contentHash);
 }
@@ -0,0 +1,210 @@
+package com.zaborstik.platform.api.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Хранилище содержимого вложений (скриншотов) на диске, адресуемое по SHA-256: файл {@code <хеш>.<расширение>}.
+ * Байты не проходят через JSON и кучу: кадр с агента ({@code http(s)://...}) пишется потоком прямо в файл
+ * ({@link HttpResponse.BodyHandlers#ofFile(Path)}), локальный файл копируется через {@link FileChannel}, хеш
+ * считается по каналу блоками. Одинаковые кадры хранятся один раз.
+ *
+ * On-disk content store of attachments (screenshots), addressed by SHA-256: file {@code <hash>.<extension>}.
+ * The bytes go through neither JSON nor the heap: a frame from the agent ({@code http(s)://...}) is streamed
+ * straight into a file ({@link HttpResponse.BodyHandlers#ofFile(Path)}), a local file is copied through a
+ * {@link FileChannel}, and the hash is computed over the channel block by block. Identical frames are stored once.
+ */
+public class AttachmentStore {
+    private static final Logger log = LoggerFactory.getLogger(AttachmentStore.class);
+    private static final int HASH_BUFFER_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final HttpClient httpClient;
+    private final Duration timeout;
+
+    /**
+     * Содержимое в хранилище.
+     *
+     * Stored content.
+     *
+     * @param sha256      хеш содержимого (hex) / content hash (hex)
+     * @param contentType MIME-тип / MIME type
+     * @param sizeBytes   размер / size
+     * @param path        файл в хранилище / file in the store
+     */
+    public record StoredFile(String sha256, String contentType, long sizeBytes, Path path) {
+        public StoredFile {
+            Objects.requireNonNull(sha256, "sha256 cannot be null");
+            Objects.requireNonNull(contentType, "contentType cannot be null");
+            Objects.requireNonNull(path, "path cannot be null");
+        }
+    }
+
+    public AttachmentStore(Path directory) {
+        this(directory, HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build(), Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param timeout таймаут загрузки одного файла с агента / timeout of one download from the agent
+     */
+    public AttachmentStore(Path directory, HttpClient httpClient, Duration timeout) {
+        this.directory = Objects.requireNonNull(directory, "directory cannot be null");
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient cannot be null");
+        this.timeout = Objects.requireNonNull(timeout, "timeout cannot be null");
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Сохраняет содержимое по ссылке: URL агента или путь к локальному файлу. Пустой результат — ссылка не
+     * указывает на доступное содержимое (например, путь на другой машине).
+     *
+     * Stores the content behind a reference: an agent URL or a local file path. Empty when the reference does not
+     * point to reachable content (e.g. a path on another host).
+     *
+     * @throws IOException ошибка загрузки или записи / download or write failure
+     */
+    public Optional<StoredFile> store(String reference) throws IOException {
+        Objects.requireNonNull(reference, "reference cannot be null");
+        String lower = reference.toLowerCase(Locale.ROOT);
+        if (lower.startsWith("http://") || lower.startsWith("https://")) {
+            return Optional.of(download(URI.create(reference)));
+        }
+        Path source;
+        try {
+            source = Path.of(reference);
+        } catch (InvalidPathException e) {
+            return Optional.empty();
+        }
+        return Files.isRegularFile(source) ? Optional.of(copy(source)) : Optional.empty();
+    }
+
+    private StoredFile download(URI uri) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "download-", ".part");
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(timeout).GET().build();
+            HttpResponse<Path> response = httpClient.send(request, HttpResponse.BodyHandlers.ofFile(temp));
+            if (response.statusCode() != 200) {
+                throw new IOException("Failed to download " + uri + ": status " + response.statusCode());
+            }
+            String contentType = response.headers().firstValue("Content-Type")
+                .map(value -> value.split(";", 2)[0].trim())
+                .orElseGet(() -> contentType(uri.getPath()));
+            return moveIntoStore(temp, sha256(temp), contentType);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download of " + uri + " interrupted", e);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private StoredFile copy(Path source) throws IOException {
+        String sha256 = sha256(source);
+        String contentType = contentType(source.getFileName().toString());
+        Path target = target(sha256, contentType);
+        if (Files.exists(target)) {
+            return new StoredFile(sha256, contentType, Files.size(target), target);
+        }
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "copy-", ".part");
+        try {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long size = in.size();
+                for (long position = 0; position < size; ) {
+                    position += in.transferTo(position, size - position, out);
+                }
+            }
+            return moveIntoStore(temp, sha256, contentType);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Переносит файл в хранилище под именем по хешу; если такой файл уже есть, новый удаляется вызывающим.
+     *
+     * Moves the file into the store under its hash name; when that file already exists the caller deletes the new one.
+     */
+    private StoredFile moveIntoStore(Path temp, String sha256, String contentType) throws IOException {
+        Path target = target(sha256, contentType);
+        if (!Files.exists(target)) {
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                if (!Files.exists(target)) {
+                    throw e;
+                }
+                // тот же кадр сохранён параллельно / the same frame was stored concurrently
+            }
+        } else {
+            log.debug("Attachment {} already stored, skipping duplicate", sha256);
+        }
+        return new StoredFile(sha256, contentType, Files.size(target), target);
+    }
+
+    private Path target(String sha256, String contentType) {
+        return directory.resolve(sha256 + extension(contentType));
+    }
+
+    static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String contentType(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".png")) {
+            return "image/png";
+        }
+        if (lower.endsWith(".jpeg") || lower.endsWith(".jpg")) {
+            return "image/jpeg";
+        }
+        return "application/octet-stream";
+    }
+
+    private static String extension(String contentType) {
+        return switch (contentType) {
+            case "image/png" -> ".png";
+            case "image/jpeg" -> ".jpeg";
+            default -> ".bin";
+        };
+    }
+}
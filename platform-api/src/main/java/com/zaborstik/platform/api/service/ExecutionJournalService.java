@@ -0,0 +1,136 @@
+package com.zaborstik.platform.api.service;
+
+import com.zaborstik.platform.executor.journal.ExecutionJournal;
+import com.zaborstik.platform.executor.journal.JournalRecord;
+import com.zaborstik.platform.executor.journal.JournalSink;
+import com.zaborstik.platform.executor.journal.RecoveredPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Перенос журнала исполнения в БД.
+ * <p>
+ * В фоне (через {@link com.zaborstik.platform.executor.journal.JournalFlusher}) обновляет шаг,
+ * на котором находится выполнение плана; при старте приложения восстанавливает планы,
+ * прерванные падением JVM: сохраняет результат, переводит выполненные шаги и сам план в итоговый статус.
+ * Также восстанавливаются завершённые планы, итог которых {@link PlanExecutionService} не успел сохранить
+ * (нет PLAN_PERSISTED); пока такие планы есть, журнал не сжимается.
+ * <p>
+ * Moves the execution journal to the DB.
+ * <p>
+ * In the background (through {@link com.zaborstik.platform.executor.journal.JournalFlusher}) it updates the step
+ * the plan execution is at; on application startup it recovers plans interrupted by a JVM crash: it persists
+ * the result and moves the executed steps and the plan itself to their final status.
+ * Completed plans whose outcome {@link PlanExecutionService} had not persisted yet (no PLAN_PERSISTED) are
+ * recovered the same way; while such plans exist, the journal is not compacted.
+ */
+public class ExecutionJournalService implements JournalSink {
+    private static final Logger log = LoggerFactory.getLogger(ExecutionJournalService.class);
+
+    private final PlanService planService;
+    private final ExecutionJournal journal;
+    private final Set<String> unpersistedPlans = ConcurrentHashMap.newKeySet();
+
+    public ExecutionJournalService(PlanService planService, ExecutionJournal journal) {
+        this.planService = planService;
+        this.journal = journal;
+    }
+
+    /**
+     * Сохраняет прогресс: для каждого плана в пачке — только последний начатый шаг (одна запись в БД на план).
+     * Запоминает завершённые планы, итог которых ещё не сохранён.
+     *
+     * Persists progress: only the last started step of every plan in the batch (one DB write per plan).
+     * Remembers completed plans whose outcome is not persisted yet.
+     */
+    @Override
+    public void flush(List<JournalRecord> records) {
+        Map<String, String> lastStartedStepByPlan = new LinkedHashMap<>();
+        for (JournalRecord record : records) {
+            switch (record.type()) {
+                case STEP_STARTED -> lastStartedStepByPlan.put(record.planId(), record.stepId());
+                case PLAN_COMPLETED -> unpersistedPlans.add(record.planId());
+                case PLAN_PERSISTED -> unpersistedPlans.remove(record.planId());
+                default -> {
+                }
+            }
+        }
+        lastStartedStepByPlan.forEach(this::safelyUpdateStoppedAt);
+    }
+
+    /**
+     * Журнал сжимается, только когда итог каждого завершённого плана сохранён.
+     *
+     * The journal is compacted only once the outcome of every completed plan is persisted.
+     */
+    @Override
+    public boolean allowsCompaction() {
+        return unpersistedPlans.isEmpty();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedPlans() {
+        List<RecoveredPlan> interruptedPlans = journal.recoveredPlans();
+        List<RecoveredPlan> unpersisted = journal.unpersistedPlans();
+        if (interruptedPlans.isEmpty() && unpersisted.isEmpty()) {
+            return;
+        }
+        log.warn("Recovering {} interrupted and {} unpersisted plan(s) of the previous run from {}",
+            interruptedPlans.size(), unpersisted.size(), journal.path());
+        for (RecoveredPlan plan : interruptedPlans) {
+            recover(plan);
+        }
+        for (RecoveredPlan plan : unpersisted) {
+            recover(plan);
+        }
+        journal.markRecovered();
+    }
+
+    private void recover(RecoveredPlan plan) {
+        try {
+            planService.createPlanResult(plan.planId(), plan.success(), plan.startedAt(), plan.lastActivityAt());
+        } catch (Exception ex) {
+            log.warn("Failed to create result for interrupted plan {}", plan.planId(), ex);
+            return;
+        }
+        for (JournalRecord step : plan.completedSteps()) {
+            safelyTransitionPlanStep(plan.planId(), step.stepId(), "in_progress");
+            safelyTransitionPlanStep(plan.planId(), step.stepId(), step.success() ? "completed" : "failed");
+        }
+        if (plan.lastStartedStepId() != null) {
+            safelyUpdateStoppedAt(plan.planId(), plan.lastStartedStepId());
+        }
+        String finalStep = plan.success() ? "completed" : "failed";
+        try {
+            planService.transitionPlan(plan.planId(), finalStep);
+        } catch (Exception ex) {
+            log.warn("Failed to transition recovered plan {} to {}", plan.planId(), finalStep, ex);
+        }
+        log.info("{} plan {} recovered as {}: {} step(s) completed before the crash",
+            plan.completed() ? "Unpersisted" : "Interrupted", plan.planId(), finalStep, plan.completedSteps().size());
+    }
+
+    private void safelyTransitionPlanStep(String planId, String stepId, String targetStep) {
+        try {
+            planService.transitionPlanStep(planId, stepId, targetStep);
+        } catch (Exception ex) {
+            log.warn("Failed to transition plan step {}:{} to {}", planId, stepId, targetStep, ex);
+        }
+    }
+
+    private void safelyUpdateStoppedAt(String planId, String stepId) {
+        try {
+            planService.updateStoppedAtPlanStep(planId, stepId);
+        } catch (Exception ex) {
+            log.warn("Failed to update stoppedAtPlanStep for plan {} and step {}", planId, stepId, ex);
+        }
+    }
+}
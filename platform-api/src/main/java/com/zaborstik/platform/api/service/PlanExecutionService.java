@@ -1,23 +1,43 @@
 package com.zaborstik.platform.api.service;
 
 import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.agent.service.CancellationToken;
+import com.zaborstik.platform.agent.service.ExecutionOptions;
+import com.zaborstik.platform.agent.service.StepExecutionCallback;
+import com.zaborstik.platform.agent.trace.Span;
+import com.zaborstik.platform.agent.trace.Tracer;
 import com.zaborstik.platform.api.dto.ExecutePlanResponse;
 import com.zaborstik.platform.api.entity.AttachmentEntity;
 import com.zaborstik.platform.api.entity.PlanResultEntity;
 import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.plan.PlanStep;
 import com.zaborstik.platform.core.plan.PlanStepAction;
 import com.zaborstik.platform.executor.ExecutionLogEntry;
 import com.zaborstik.platform.executor.PlanExecutionResult;
 import com.zaborstik.platform.executor.PlanExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Оркестрация выполнения плана через browser executor и сохранение итогов в БД.
+ * Выполняющиеся планы можно отменить через {@link #cancelPlan(String)}.
+ * Каждый запуск трассируется ({@link Tracer}): span {@code plan.execute} включает выполнение агентом
+ * и {@code plan.persist} — сохранение итогов в БД.
+ * Скриншот шага сохраняется в {@link AttachmentStore} (байты потоком с агента или из файла, одинаковые кадры —
+ * одно вложение); без хранилища или при недоступном содержимом вложение хранит только ссылку.
+ * Во время выполнения {@code stoppedAtPlanStep} плана следует за начатым шагом ({@link StepProgressCallback});
+ * с {@code CallbackDispatcher} исполнителя эта запись в БД не задерживает шаги. С журналом исполнения
+ * начатый шаг переносит в БД {@link ExecutionJournalService}, и колбэк не регистрируется; после сохранения итога
+ * план отмечается в журнале ({@link PlanExecutor#markPersisted(String)}), иначе итог восстановится при старте.
  */
 @Service
 public class PlanExecutionService {
@@ -25,11 +45,34 @@ public class PlanExecutionService {
 
     private final PlanService planService;
     private final PlanExecutor planExecutor;
+    private final Tracer tracer;
+    private final AttachmentStore attachmentStore;
+    private final ConcurrentMap<String, CancellationToken> runningPlans = new ConcurrentHashMap<>();
 
     public PlanExecutionService(PlanService planService,
                                 PlanExecutor planExecutor) {
+        this(planService, planExecutor, Tracer.noop());
+    }
+
+    public PlanExecutionService(PlanService planService,
+                                PlanExecutor planExecutor,
+                                Tracer tracer) {
+        this(planService, planExecutor, tracer, null);
+    }
+
+    /**
+     * @param attachmentStore хранилище содержимого скриншотов; null — вложение хранит только ссылку /
+     *                        screenshot content store; null keeps only the reference in the attachment
+     */
+    @Autowired
+    public PlanExecutionService(PlanService planService,
+                                PlanExecutor planExecutor,
+                                Tracer tracer,
+                                AttachmentStore attachmentStore) {
         this.planService = planService;
         this.planExecutor = planExecutor;
+        this.tracer = tracer != null ? tracer : Tracer.noop();
+        this.attachmentStore = attachmentStore;
     }
 
     public Optional<ExecutePlanResponse> executePlan(String planId) {
@@ -39,9 +82,35 @@ public class PlanExecutionService {
         }
 
         Plan plan = maybePlan.get();
-        safelyTransitionPlan(plan.id(), "in_progress");
-        PlanExecutionResult executionResult = planExecutor.execute(plan);
+        CancellationToken cancellation = CancellationToken.create();
+        if (runningPlans.putIfAbsent(plan.id(), cancellation) != null) {
+            throw new IllegalStateException("Plan " + plan.id() + " is already running");
+        }
+        Span traceSpan = tracer.startTrace("plan.execute").setAttribute("plan.id", plan.id());
+        try {
+            PlanExecutionResult executionResult;
+            try {
+                safelyTransitionPlan(plan.id(), "in_progress");
+                executionResult = planExecutor.execute(plan, progressCallback(plan.id()),
+                    ExecutionOptions.defaults().withCancellation(cancellation).withTraceSpan(traceSpan));
+            } finally {
+                runningPlans.remove(plan.id(), cancellation);
+            }
+            traceSpan.setAttribute("plan.success", executionResult.success());
+            try (Span persistSpan = traceSpan.child("plan.persist").setAttribute("plan.id", plan.id())) {
+                ExecutePlanResponse response = persistResult(executionResult);
+                planExecutor.markPersisted(plan.id());
+                return Optional.of(response);
+            }
+        } catch (RuntimeException e) {
+            traceSpan.recordError(e.getMessage());
+            throw e;
+        } finally {
+            traceSpan.end();
+        }
+    }
 
+    private ExecutePlanResponse persistResult(PlanExecutionResult executionResult) {
         PlanResultEntity planResult = planService.createPlanResult(
             executionResult.planId(),
             executionResult.success(),
@@ -59,6 +128,10 @@ public class PlanExecutionService {
                 safelyTransitionPlanStep(executionResult.planId(), logEntry.step().id(), "completed");
                 continue;
             }
+            if (executionResult.cancelled() && Boolean.TRUE.equals(stepResult.metadata().get("cancelled"))) {
+                safelyTransitionPlanStep(executionResult.planId(), logEntry.step().id(), "cancelled");
+                continue;
+            }
             safelyTransitionPlanStep(executionResult.planId(), logEntry.step().id(), "failed");
             failedSteps++;
             String actionId = resolveActionId(logEntry);
@@ -70,8 +143,7 @@ public class PlanExecutionService {
             String screenshotPath = resolveScreenshotPath(stepResult);
             String attachmentId = null;
             if (screenshotPath != null && !screenshotPath.isBlank()) {
-                AttachmentEntity attachment = planService.createAttachment(screenshotPath);
-                attachmentId = attachment.getId();
+                attachmentId = createAttachment(screenshotPath).getId();
             }
 
             String message = stepResult.message() != null ? stepResult.message() : logEntry.step().displayName();
@@ -89,17 +161,80 @@ public class PlanExecutionService {
             );
         }
 
-        safelyTransitionPlan(executionResult.planId(), executionResult.success() ? "completed" : "failed");
+        safelyTransitionPlan(executionResult.planId(), resolveFinalStep(executionResult));
 
         ExecutePlanResponse response = new ExecutePlanResponse();
         response.setPlanId(executionResult.planId());
         response.setPlanResultId(planResult.getId());
         response.setSuccess(executionResult.success());
+        response.setCancelled(executionResult.cancelled());
         response.setTotalSteps(executionResult.logEntries().size());
         response.setFailedSteps(failedSteps);
         response.setStartedTime(executionResult.startedAt());
         response.setFinishedTime(executionResult.finishedAt());
-        return Optional.of(response);
+        return response;
+    }
+
+    /**
+     * Отменяет выполняющийся план: прерывает текущую команду агента и закрывает браузерную сессию.
+     *
+     * Cancels a running plan: aborts the in-flight agent command and closes the browser session.
+     *
+     * @return true, если план выполнялся и был отменён / true if the plan was running and got cancelled
+     */
+    public boolean cancelPlan(String planId) {
+        CancellationToken cancellation = runningPlans.get(planId);
+        if (cancellation == null) {
+            return false;
+        }
+        log.info("Cancelling plan {}", planId);
+        return cancellation.cancel("cancelled by request");
+    }
+
+    /**
+     * Колбэк прогресса плана; с журналом {@code stoppedAtPlanStep} обновляет {@link ExecutionJournalService}.
+     *
+     * Plan progress callback; with the journal {@link ExecutionJournalService} updates {@code stoppedAtPlanStep}.
+     */
+    private StepExecutionCallback progressCallback(String planId) {
+        return planExecutor.isJournaled() ? StepExecutionCallback.noOp() : new StepProgressCallback(planId);
+    }
+
+    /**
+     * Отмечает в плане начатый шаг, пока план выполняется.
+     *
+     * Marks the started step on the plan while the plan runs.
+     */
+    private final class StepProgressCallback implements StepExecutionCallback {
+        private final String planId;
+
+        private StepProgressCallback(String planId) {
+            this.planId = planId;
+        }
+
+        @Override
+        public void onStepStarted(PlanStep step, int stepIndex, int totalSteps) {
+            safelyUpdateStoppedAt(planId, step.id());
+        }
+
+        @Override
+        public void onStepCompleted(PlanStep step, StepExecutionResult result, int stepIndex) {
+        }
+
+        @Override
+        public void onPlanStarted(Plan plan) {
+        }
+
+        @Override
+        public void onPlanCompleted(Plan plan, List<StepExecutionResult> results, boolean success) {
+        }
+    }
+
+    private static String resolveFinalStep(PlanExecutionResult executionResult) {
+        if (executionResult.cancelled()) {
+            return "cancelled";
+        }
+        return executionResult.success() ? "completed" : "failed";
     }
 
     private void safelyTransitionPlan(String planId, String targetStep) {
@@ -134,6 +269,20 @@ public class PlanExecutionService {
             .orElse(null);
     }
 
+    private AttachmentEntity createAttachment(String screenshotPath) {
+        if (attachmentStore != null) {
+            try {
+                Optional<AttachmentStore.StoredFile> content = attachmentStore.store(screenshotPath);
+                if (content.isPresent()) {
+                    return planService.createAttachment(screenshotPath, content.get());
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.warn("Failed to store screenshot {}, keeping the reference only", screenshotPath, ex);
+            }
+        }
+        return planService.createAttachment(screenshotPath);
+    }
+
     private String resolveScreenshotPath(StepExecutionResult stepResult) {
         if (stepResult.screenshotPath() != null && !stepResult.screenshotPath().isBlank()) {
             return stepResult.screenshotPath();
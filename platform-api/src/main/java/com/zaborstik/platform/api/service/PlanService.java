@@ -219,6 +219,27 @@ public class PlanService {
         return attachmentRepository.save(attachment);
     }
 
+    /**
+     * Вложение с содержимым из {@link AttachmentStore}; содержимое с тем же хешем уже есть — возвращается его запись.
+     *
+     * Attachment with content from the {@link AttachmentStore}; when content with the same hash already exists its
+     * record is returned.
+     */
+    @Transactional
+    public AttachmentEntity createAttachment(String displayName, AttachmentStore.StoredFile content) {
+        Objects.requireNonNull(content, "content");
+        return attachmentRepository.findFirstByContentHash(content.sha256()).orElseGet(() -> {
+            AttachmentEntity attachment = new AttachmentEntity();
+            attachment.setId(UUID.randomUUID().toString());
+            attachment.setDisplayname(displayName);
+            attachment.setContentHash(content.sha256());
+            attachment.setContentType(content.contentType());
+            attachment.setSizeBytes(content.sizeBytes());
+            attachment.setStoragePath(content.path().toString());
+            return attachmentRepository.save(attachment);
+        });
+    }
+
     private PlanResponse toResponse(Plan plan) {
         PlanResponse r = new PlanResponse();
         r.setId(plan.id());
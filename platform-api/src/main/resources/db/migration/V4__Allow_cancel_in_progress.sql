@@ -0,0 +1,9 @@
+-- Отмена выполняющегося плана: in_progress -> cancelled для плана и шага плана.
+-- Идемпотентные вставки (WHERE NOT EXISTS) для совместимости с H2 и PostgreSQL.
+INSERT INTO system.workflow_transition (id, workflow, from_step, to_step)
+SELECT 'wft-15', 'wf-plan', 'in_progress', 'cancelled'
+WHERE NOT EXISTS (SELECT 1 FROM system.workflow_transition WHERE id = 'wft-15');
+
+INSERT INTO system.workflow_transition (id, workflow, from_step, to_step)
+SELECT 'wft-16', 'wf-plan-step', 'in_progress', 'cancelled'
+WHERE NOT EXISTS (SELECT 1 FROM system.workflow_transition WHERE id = 'wft-16');
@@ -0,0 +1,6 @@
+-- Содержимое вложения в хранилище, адресуемом по SHA-256 (AttachmentStore): одинаковые кадры — одна запись.
+ALTER TABLE zbrtstk.attachment ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64); -- SHA-256 содержимого (hex)
+ALTER TABLE zbrtstk.attachment ADD COLUMN IF NOT EXISTS content_type VARCHAR(64); -- MIME-тип
+ALTER TABLE zbrtstk.attachment ADD COLUMN IF NOT EXISTS size_bytes BIGINT; -- размер в байтах
+ALTER TABLE zbrtstk.attachment ADD COLUMN IF NOT EXISTS storage_path VARCHAR(1024); -- файл в хранилище
+CREATE INDEX IF NOT EXISTS idx_attachment_content_hash ON zbrtstk.attachment(content_hash);
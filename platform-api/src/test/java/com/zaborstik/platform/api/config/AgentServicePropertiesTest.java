@@ -0,0 +1,68 @@
+package com.zaborstik.platform.api.config;
+
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+import com.zaborstik.platform.agent.service.AgentServiceOptions;
+import com.zaborstik.platform.agent.service.CoordinateStepMode;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentServicePropertiesTest {
+
+    @Test
+    void shouldUseDefaultsWhenNothingIsSet() {
+        AgentServiceProperties properties = bind(Map.of());
+
+        assertEquals("http://localhost:8080", properties.baseUrl());
+        assertFalse(properties.headless());
+        AgentServiceOptions options = properties.toOptions(new ExecutionMetrics());
+        assertNull(options.timeoutPolicy().planTimeout());
+        assertFalse(options.hedgePolicy().isEnabled());
+        assertTrue(options.navigationPolicy().skipRedundant());
+        assertEquals(CoordinateStepMode.FUSED, options.coordinateMode());
+        assertTrue(options.coalesceCommands());
+    }
+
+    @Test
+    void shouldMapPropertiesToServiceOptions() {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        AgentServiceProperties properties = bind(Map.of(
+            "platform.agent.base-url", "https://shop.test",
+            "platform.agent.plan-timeout-ms", "120000",
+            "platform.agent.step-timeouts", "open_page:45000, wait:5000",
+            "platform.agent.hedge.enabled", "true",
+            "platform.agent.navigation.force-actions", "act-reload, act-refresh",
+            "platform.agent.fused-commands", "false",
+            "platform.agent.coalesce-commands", "false"));
+
+        AgentServiceOptions options = properties.toOptions(metrics);
+
+        assertEquals("https://shop.test", properties.baseUrl());
+        assertEquals(Duration.ofMinutes(2), options.timeoutPolicy().planTimeout());
+        assertEquals(Map.of("open_page", Duration.ofSeconds(45), "wait", Duration.ofSeconds(5)),
+            options.timeoutPolicy().stepTimeouts());
+        assertTrue(options.hedgePolicy().isEnabled());
+        assertEquals(Set.of("act-reload", "act-refresh"), options.navigationPolicy().forcedActions());
+        assertEquals(CoordinateStepMode.BATCH, options.coordinateMode());
+        assertFalse(options.coalesceCommands());
+        assertSame(metrics, options.metrics());
+    }
+
+    @Test
+    void shouldRejectMalformedStepTimeouts() {
+        AgentServiceProperties properties = bind(Map.of("platform.agent.step-timeouts", "open_page"));
+
+        assertThrows(IllegalArgumentException.class, () -> properties.toOptions(new ExecutionMetrics()));
+    }
+
+    private static AgentServiceProperties bind(Map<String, String> values) {
+        return new Binder(new MapConfigurationPropertySource(values))
+            .bindOrCreate("platform.agent", AgentServiceProperties.class);
+    }
+}
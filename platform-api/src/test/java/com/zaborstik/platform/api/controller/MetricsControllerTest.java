@@ -0,0 +1,54 @@
+package com.zaborstik.platform.api.controller;
+
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+import com.zaborstik.platform.api.exception.GlobalExceptionHandler;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(MetricsController.class)
+@Import(GlobalExceptionHandler.class)
+class MetricsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ExecutionMetrics executionMetrics;
+
+    @Test
+    void shouldServePrometheusText() throws Exception {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        metrics.recordStep("click", 120);
+        metrics.recordCommand(AgentCommand.CommandType.CLICK_AT, 80);
+        when(executionMetrics.snapshot()).thenReturn(metrics.snapshot());
+
+        mockMvc.perform(get("/api/metrics"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", containsString("version=0.0.4")))
+            .andExpect(content().string(containsString("platform_step_latency_milliseconds_count{operation=\"click\"} 1")))
+            .andExpect(content().string(containsString("platform_agent_command_latency_milliseconds_sum{command=\"CLICK_AT\"} 80")));
+    }
+
+    @Test
+    void shouldServeJsonSnapshot() throws Exception {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        metrics.recordInit(300);
+        metrics.recordRetry("read_text");
+        when(executionMetrics.snapshot()).thenReturn(metrics.snapshot());
+
+        mockMvc.perform(get("/api/metrics/snapshot"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.initLatency.count").value(1))
+            .andExpect(jsonPath("$.retries.read_text").value(1));
+    }
+}
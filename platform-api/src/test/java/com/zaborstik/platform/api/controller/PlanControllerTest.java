@@ -158,6 +158,22 @@ class PlanControllerTest {
             .andExpect(jsonPath("$.success").value(true));
     }
 
+    @Test
+    void shouldAcceptCancelForRunningPlan() throws Exception {
+        when(planExecutionService.cancelPlan("plan-1")).thenReturn(true);
+
+        mockMvc.perform(post("/api/plans/plan-1/cancel"))
+            .andExpect(status().isAccepted());
+    }
+
+    @Test
+    void shouldReturnConflictOnCancelForIdlePlan() throws Exception {
+        when(planExecutionService.cancelPlan("plan-1")).thenReturn(false);
+
+        mockMvc.perform(post("/api/plans/plan-1/cancel"))
+            .andExpect(status().isConflict());
+    }
+
     @Test
     void shouldTransitionPlanSuccessfully() throws Exception {
         TransitionPlanRequest request = new TransitionPlanRequest();
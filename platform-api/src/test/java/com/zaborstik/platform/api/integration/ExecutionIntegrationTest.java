@@ -10,6 +10,7 @@ import com.zaborstik.platform.api.repository.PlanResultRepository;
 import com.zaborstik.platform.api.repository.PlanStepLogRepository;
 import com.zaborstik.platform.agent.dto.StepExecutionResult;
 import com.zaborstik.platform.agent.service.AgentService;
+import com.zaborstik.platform.agent.service.ExecutionOptions;
 import com.zaborstik.platform.executor.ExecutionLogEntry;
 import com.zaborstik.platform.executor.PlanExecutionResult;
 import com.zaborstik.platform.executor.PlanExecutor;
@@ -184,7 +185,7 @@ class ExecutionIntegrationTest {
 
         long attachmentCountBefore = attachmentRepository.count();
 
-        when(planExecutor.execute(any(Plan.class))).thenAnswer(invocation -> {
+        when(planExecutor.execute(any(Plan.class), any(), any(ExecutionOptions.class))).thenAnswer(invocation -> {
             Plan plan = invocation.getArgument(0);
             StepExecutionResult success = StepExecutionResult.success(
                 plan.steps().get(0).id(),
@@ -0,0 +1,109 @@
+package com.zaborstik.platform.api.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttachmentStoreTest {
+    private static final byte[] FRAME = "frame-bytes".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final AtomicInteger downloads = new AtomicInteger();
+    private AttachmentStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/screenshots/frame.png", exchange -> {
+            downloads.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            try (OutputStream out = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(200, FRAME.length);
+                out.write(FRAME);
+            }
+        });
+        server.createContext("/screenshots/missing.png", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        store = new AttachmentStore(tempDir.resolve("store"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void shouldStreamAgentScreenshotIntoContentAddressedFile() throws Exception {
+        AttachmentStore.StoredFile first = store.store(url("/screenshots/frame.png")).orElseThrow();
+        AttachmentStore.StoredFile second = store.store(url("/screenshots/frame.png")).orElseThrow();
+
+        assertEquals(sha256(FRAME), first.sha256());
+        assertEquals("image/png", first.contentType());
+        assertEquals(FRAME.length, first.sizeBytes());
+        assertEquals(store.directory().resolve(sha256(FRAME) + ".png"), first.path());
+        assertArrayEquals(FRAME, Files.readAllBytes(first.path()));
+        assertEquals(first, second);
+        assertEquals(2, downloads.get());
+        assertEquals(1, filesInStore(), "duplicate frame and temporary files must not stay in the store");
+    }
+
+    @Test
+    void shouldCopyLocalScreenshotOnceForIdenticalFrames() throws Exception {
+        Path firstShot = Files.write(tempDir.resolve("error-1.jpeg"), FRAME);
+        Path secondShot = Files.write(tempDir.resolve("error-2.jpeg"), FRAME);
+
+        AttachmentStore.StoredFile first = store.store(firstShot.toString()).orElseThrow();
+        AttachmentStore.StoredFile second = store.store(secondShot.toString()).orElseThrow();
+
+        assertEquals("image/jpeg", first.contentType());
+        assertEquals(first.path(), second.path());
+        assertArrayEquals(FRAME, Files.readAllBytes(first.path()));
+        assertEquals(1, filesInStore());
+    }
+
+    @Test
+    void shouldReturnEmptyForUnreachablePathAndFailForMissingAgentFile() throws Exception {
+        assertEquals(Optional.empty(), store.store(tempDir.resolve("absent.png").toString()));
+        assertThrows(IOException.class, () -> store.store(url("/screenshots/missing.png")));
+        assertEquals(0, filesInStore());
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private long filesInStore() throws IOException {
+        if (!Files.isDirectory(store.directory())) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(store.directory())) {
+            return files.count();
+        }
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
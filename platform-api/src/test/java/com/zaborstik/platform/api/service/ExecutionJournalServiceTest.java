@@ -0,0 +1,133 @@
+package com.zaborstik.platform.api.service;
+
+import com.zaborstik.platform.executor.journal.ExecutionJournal;
+import com.zaborstik.platform.executor.journal.JournalRecord;
+import com.zaborstik.platform.executor.journal.RecoveredPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExecutionJournalServiceTest {
+
+    @Mock
+    private PlanService planService;
+
+    @Mock
+    private ExecutionJournal journal;
+
+    @InjectMocks
+    private ExecutionJournalService service;
+
+    @Test
+    void flushShouldPersistOnlyLastStartedStepPerPlan() {
+        service.flush(List.of(
+            JournalRecord.planStarted("plan-1"),
+            JournalRecord.stepStarted("plan-1", "step-1", 0),
+            JournalRecord.stepCompleted("plan-1", "step-1", 0, true, 10, null),
+            JournalRecord.stepStarted("plan-1", "step-2", 1),
+            JournalRecord.stepStarted("plan-2", "step-a", 0)
+        ));
+
+        verify(planService).updateStoppedAtPlanStep("plan-1", "step-2");
+        verify(planService).updateStoppedAtPlanStep("plan-2", "step-a");
+        verifyNoMoreInteractions(planService);
+    }
+
+    @Test
+    void recoverShouldPersistInterruptedPlanAndMarkJournalRecovered() {
+        Instant startedAt = Instant.parse("2026-03-15T10:00:00Z");
+        Instant lastActivityAt = Instant.parse("2026-03-15T10:00:05Z");
+        when(journal.recoveredPlans()).thenReturn(List.of(new RecoveredPlan(
+            "plan-1",
+            startedAt,
+            lastActivityAt,
+            List.of(
+                JournalRecord.stepCompleted("plan-1", "step-1", 0, true, 10, null),
+                JournalRecord.stepCompleted("plan-1", "step-2", 1, false, 10, "boom")
+            ),
+            "step-3"
+        )));
+
+        service.recoverInterruptedPlans();
+
+        verify(planService).createPlanResult("plan-1", false, startedAt, lastActivityAt);
+        verify(planService).transitionPlanStep("plan-1", "step-1", "completed");
+        verify(planService).transitionPlanStep("plan-1", "step-2", "failed");
+        verify(planService).updateStoppedAtPlanStep("plan-1", "step-3");
+        verify(planService).transitionPlan("plan-1", "failed");
+        verify(journal).markRecovered();
+    }
+
+    @Test
+    void flushShouldHoldCompactionUntilCompletedPlanIsPersisted() {
+        service.flush(List.of(JournalRecord.planStarted("plan-1"), JournalRecord.planCompleted("plan-1", true)));
+        assertFalse(service.allowsCompaction());
+
+        service.flush(List.of(JournalRecord.planPersisted("plan-1")));
+        assertTrue(service.allowsCompaction());
+    }
+
+    @Test
+    void recoverShouldPersistCompletedPlanWhoseResultWasNotSaved() {
+        Instant startedAt = Instant.parse("2026-03-15T10:00:00Z");
+        Instant finishedAt = Instant.parse("2026-03-15T10:00:07Z");
+        when(journal.recoveredPlans()).thenReturn(List.of());
+        when(journal.unpersistedPlans()).thenReturn(List.of(new RecoveredPlan(
+            "plan-1",
+            startedAt,
+            finishedAt,
+            List.of(JournalRecord.stepCompleted("plan-1", "step-1", 0, true, 10, null)),
+            "step-1",
+            true,
+            true
+        )));
+
+        service.recoverInterruptedPlans();
+
+        verify(planService).createPlanResult("plan-1", true, startedAt, finishedAt);
+        verify(planService).transitionPlanStep("plan-1", "step-1", "completed");
+        verify(planService).transitionPlan("plan-1", "completed");
+        verify(journal).markRecovered();
+    }
+
+    @Test
+    void recoverShouldDoNothingWhenJournalIsClean() {
+        when(journal.recoveredPlans()).thenReturn(List.of());
+        when(journal.unpersistedPlans()).thenReturn(List.of());
+
+        service.recoverInterruptedPlans();
+
+        verifyNoInteractions(planService);
+        verify(journal, never()).markRecovered();
+    }
+
+    @Test
+    void recoverShouldContinueWhenStepTransitionFails() {
+        when(journal.recoveredPlans()).thenReturn(List.of(new RecoveredPlan(
+            "plan-1", Instant.now(), Instant.now(),
+            List.of(JournalRecord.stepCompleted("plan-1", "step-1", 0, true, 10, null)),
+            null
+        )));
+        doThrow(new IllegalStateException("not allowed"))
+            .when(planService).transitionPlanStep(eq("plan-1"), eq("step-1"), anyString());
+
+        service.recoverInterruptedPlans();
+
+        verify(planService).createPlanResult(eq("plan-1"), eq(false), any(Instant.class), any(Instant.class));
+        verify(planService).transitionPlan("plan-1", "failed");
+        verify(journal).markRecovered();
+    }
+}
@@ -2,6 +2,10 @@ package com.zaborstik.platform.api.service;
 
 import com.zaborstik.platform.agent.dto.StepExecutionResult;
 import com.zaborstik.platform.agent.service.AgentService;
+import com.zaborstik.platform.agent.service.ExecutionOptions;
+import com.zaborstik.platform.agent.service.StepExecutionCallback;
+import com.zaborstik.platform.agent.trace.SpanData;
+import com.zaborstik.platform.agent.trace.Tracer;
 import com.zaborstik.platform.api.dto.ExecutePlanResponse;
 import com.zaborstik.platform.api.entity.AttachmentEntity;
 import com.zaborstik.platform.api.entity.PlanResultEntity;
@@ -17,10 +21,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -100,7 +107,7 @@ class PlanExecutionServiceTest {
         attachment.setDisplayname("/tmp/error.png");
 
         when(planService.getPlanDomain("plan-1")).thenReturn(Optional.of(plan));
-        when(planExecutor.execute(plan)).thenReturn(executionResult);
+        when(planExecutor.execute(eq(plan), any(), any(ExecutionOptions.class))).thenReturn(executionResult);
         when(planService.createPlanResult(eq("plan-1"), eq(false), any(Instant.class), any(Instant.class)))
             .thenReturn(planResult);
         when(planService.createAttachment("/tmp/error.png")).thenReturn(attachment);
@@ -123,6 +130,7 @@ class PlanExecutionServiceTest {
         verify(planService).transitionPlanStep("plan-1", "step-2", "in_progress");
         verify(planService).transitionPlanStep("plan-1", "step-2", "failed");
         verify(planService).transitionPlan("plan-1", "failed");
+        verify(planExecutor).markPersisted("plan-1");
         verify(planService).createAttachment("/tmp/error.png");
         verify(planService).createPlanStepLog(
             eq("plan-1"),
@@ -137,6 +145,181 @@ class PlanExecutionServiceTest {
         );
     }
 
+    @Test
+    void shouldTransitionToCancelledWhenPlanCancelled() {
+        PlanStep step1 = new PlanStep("step-1", "plan-1", "wf-plan-step", "new", "ent-page", "result", 0,
+            "Wait result", List.of(new PlanStepAction("act-wait", "1000")));
+        Plan plan = new Plan("plan-1", "wf-plan", "new", "step-1", "target", "explanation", List.of(step1));
+        StepExecutionResult cancelled = StepExecutionResult.failure(
+            "step-1", "Wait result", "Plan cancelled: cancelled by request", 20, Map.of("cancelled", true));
+        PlanExecutionResult executionResult = new PlanExecutionResult(
+            "plan-1", false, Instant.now(), Instant.now(),
+            List.of(new ExecutionLogEntry("plan-1", 0, step1, cancelled, Instant.now())),
+            true
+        );
+        PlanResultEntity planResult = new PlanResultEntity();
+        planResult.setId("result-1");
+
+        when(planService.getPlanDomain("plan-1")).thenReturn(Optional.of(plan));
+        when(planExecutor.execute(eq(plan), any(), any(ExecutionOptions.class))).thenAnswer(invocation -> {
+            assertTrue(planExecutionService.cancelPlan("plan-1"));
+            ExecutionOptions options = invocation.getArgument(2);
+            assertTrue(options.cancellation().isCancelled());
+            return executionResult;
+        });
+        when(planService.createPlanResult(eq("plan-1"), eq(false), any(Instant.class), any(Instant.class)))
+            .thenReturn(planResult);
+
+        Optional<ExecutePlanResponse> response = planExecutionService.executePlan("plan-1");
+
+        assertTrue(response.isPresent());
+        assertTrue(response.get().isCancelled());
+        verify(planService).transitionPlanStep("plan-1", "step-1", "cancelled");
+        verify(planService).transitionPlan("plan-1", "cancelled");
+        verify(planService, never()).createPlanStepLog(any(), any(), any(), any(), any(), any(), any(), anyLong(), any());
+        assertFalse(planExecutionService.cancelPlan("plan-1"));
+    }
+
+    @Test
+    void shouldMarkStartedStepWhilePlanRuns() {
+        PlanStep step1 = new PlanStep("step-1", "plan-1", "wf-plan-step", "new", "ent-page", "result", 0,
+            "Wait result", List.of(new PlanStepAction("act-wait", "1000")));
+        Plan plan = new Plan("plan-1", "wf-plan", "new", "step-1", "target", "explanation", List.of(step1));
+        PlanExecutionResult executionResult = new PlanExecutionResult(
+            "plan-1", true, Instant.now(), Instant.now(),
+            List.of(new ExecutionLogEntry("plan-1", 0, step1,
+                StepExecutionResult.success("step-1", "Wait result", "ok", 5, null, Map.of()), Instant.now()))
+        );
+        PlanResultEntity planResult = new PlanResultEntity();
+        planResult.setId("result-1");
+
+        when(planService.getPlanDomain("plan-1")).thenReturn(Optional.of(plan));
+        when(planExecutor.execute(eq(plan), any(StepExecutionCallback.class), any(ExecutionOptions.class)))
+            .thenAnswer(invocation -> {
+                StepExecutionCallback callback = invocation.getArgument(1);
+                callback.onStepStarted(step1, 0, 1);
+                verify(planService).updateStoppedAtPlanStep("plan-1", "step-1");
+                return executionResult;
+            });
+        when(planService.createPlanResult(eq("plan-1"), eq(true), any(Instant.class), any(Instant.class)))
+            .thenReturn(planResult);
+
+        assertTrue(planExecutionService.executePlan("plan-1").isPresent());
+    }
+
+    @Test
+    void shouldLeaveStartedStepToJournalWhenExecutorIsJournaled() {
+        PlanStep step1 = new PlanStep("step-1", "plan-1", "wf-plan-step", "new", "ent-page", "result", 0,
+            "Wait result", List.of(new PlanStepAction("act-wait", "1000")));
+        Plan plan = new Plan("plan-1", "wf-plan", "new", "step-1", "target", "explanation", List.of(step1));
+        PlanExecutionResult executionResult = new PlanExecutionResult(
+            "plan-1", true, Instant.now(), Instant.now(),
+            List.of(new ExecutionLogEntry("plan-1", 0, step1,
+                StepExecutionResult.success("step-1", "Wait result", "ok", 5, null, Map.of()), Instant.now()))
+        );
+        PlanResultEntity planResult = new PlanResultEntity();
+        planResult.setId("result-1");
+
+        when(planService.getPlanDomain("plan-1")).thenReturn(Optional.of(plan));
+        when(planExecutor.isJournaled()).thenReturn(true);
+        when(planExecutor.execute(eq(plan), any(StepExecutionCallback.class), any(ExecutionOptions.class)))
+            .thenAnswer(invocation -> {
+                StepExecutionCallback callback = invocation.getArgument(1);
+                assertSame(StepExecutionCallback.noOp(), callback);
+                callback.onStepStarted(step1, 0, 1);
+                verify(planService, never()).updateStoppedAtPlanStep(any(), any());
+                return executionResult;
+            });
+        when(planService.createPlanResult(eq("plan-1"), eq(true), any(Instant.class), any(Instant.class)))
+            .thenReturn(planResult);
+
+        assertTrue(planExecutionService.executePlan("plan-1").isPresent());
+    }
+
+    @Test
+    void shouldTraceExecutionAndPersistence() {
+        PlanStep step1 = new PlanStep("step-1", "plan-1", "wf-plan-step", "new", "ent-page", "result", 0,
+            "Wait result", List.of(new PlanStepAction("act-wait", "1000")));
+        Plan plan = new Plan("plan-1", "wf-plan", "new", "step-1", "target", "explanation", List.of(step1));
+        PlanExecutionResult executionResult = new PlanExecutionResult(
+            "plan-1", true, Instant.now(), Instant.now(),
+            List.of(new ExecutionLogEntry("plan-1", 0, step1,
+                StepExecutionResult.success("step-1", "Wait result", "ok", 5, null, Map.of()), Instant.now()))
+        );
+        PlanResultEntity planResult = new PlanResultEntity();
+        planResult.setId("result-1");
+        List<SpanData> spans = new CopyOnWriteArrayList<>();
+        PlanExecutionService tracedService = new PlanExecutionService(planService, planExecutor,
+            new Tracer(spans::add, 1.0));
+
+        when(planService.getPlanDomain("plan-1")).thenReturn(Optional.of(plan));
+        when(planExecutor.execute(eq(plan), any(), any(ExecutionOptions.class))).thenAnswer(invocation -> {
+            ExecutionOptions options = invocation.getArgument(2);
+            assertTrue(options.traceSpan().isRecording());
+            return executionResult;
+        });
+        when(planService.createPlanResult(eq("plan-1"), eq(true), any(Instant.class), any(Instant.class)))
+            .thenReturn(planResult);
+
+        tracedService.executePlan("plan-1");
+
+        assertEquals(List.of("plan.persist", "plan.execute"), spans.stream().map(SpanData::name).toList());
+        assertEquals(spans.get(1).spanId(), spans.get(0).parentSpanId());
+        assertEquals(true, spans.get(1).attributes().get("plan.success"));
+    }
+
+    @Test
+    void shouldStoreScreenshotContentAndFallBackToReference() throws Exception {
+        PlanStep step1 = new PlanStep("step-1", "plan-1", "wf-plan-step", "new", "ent-button", "#submit", 0,
+            "Click submit", List.of(new PlanStepAction("act-click", null)));
+        PlanStep step2 = new PlanStep("step-2", "plan-1", "wf-plan-step", "new", "ent-button", "#next", 1,
+            "Click next", List.of(new PlanStepAction("act-click", null)));
+        Plan plan = new Plan("plan-1", "wf-plan", "new", "step-1", "target", "explanation", List.of(step1, step2));
+        String storedUrl = "http://agent:3000/screenshots/ab12.png";
+        String unreachableUrl = "http://agent:3000/screenshots/cd34.png";
+        PlanExecutionResult executionResult = new PlanExecutionResult(
+            "plan-1", false, Instant.now(), Instant.now(),
+            List.of(
+                new ExecutionLogEntry("plan-1", 0, step1,
+                    StepExecutionResult.failure("step-1", "Click submit", "Element not found", 10,
+                        Map.of("screenshot", storedUrl)),
+                    Instant.now()),
+                new ExecutionLogEntry("plan-1", 1, step2,
+                    StepExecutionResult.failure("step-2", "Click next", "Element not found", 10,
+                        Map.of("screenshot", unreachableUrl)),
+                    Instant.now())
+            )
+        );
+        PlanResultEntity planResult = new PlanResultEntity();
+        planResult.setId("result-1");
+        AttachmentStore.StoredFile content = new AttachmentStore.StoredFile("ab12", "image/png", 42,
+            Path.of("/data/attachments/ab12.png"));
+        AttachmentStore attachmentStore = mock(AttachmentStore.class);
+        when(attachmentStore.store(storedUrl)).thenReturn(Optional.of(content));
+        when(attachmentStore.store(unreachableUrl)).thenThrow(new IOException("status 404"));
+        AttachmentEntity stored = new AttachmentEntity();
+        stored.setId("attachment-stored");
+        AttachmentEntity reference = new AttachmentEntity();
+        reference.setId("attachment-reference");
+        PlanExecutionService storingService = new PlanExecutionService(planService, planExecutor, Tracer.noop(),
+            attachmentStore);
+
+        when(planService.getPlanDomain("plan-1")).thenReturn(Optional.of(plan));
+        when(planExecutor.execute(eq(plan), any(), any(ExecutionOptions.class))).thenReturn(executionResult);
+        when(planService.createPlanResult(eq("plan-1"), eq(false), any(Instant.class), any(Instant.class)))
+            .thenReturn(planResult);
+        when(planService.createAttachment(storedUrl, content)).thenReturn(stored);
+        when(planService.createAttachment(unreachableUrl)).thenReturn(reference);
+
+        storingService.executePlan("plan-1");
+
+        verify(planService).createPlanStepLog(eq("plan-1"), eq("step-1"), eq("result-1"), eq("act-click"), any(),
+            any(), any(), anyLong(), eq("attachment-stored"));
+        verify(planService).createPlanStepLog(eq("plan-1"), eq("step-2"), eq("result-1"), eq("act-click"), any(),
+            any(), any(), anyLong(), eq("attachment-reference"));
+        verify(planService, never()).createAttachment(storedUrl);
+    }
+
     @Test
     void shouldReturnEmptyWhenPlanMissing() {
         when(planService.getPlanDomain("missing")).thenReturn(Optional.empty());
@@ -2,6 +2,7 @@ package com.zaborstik.platform.api.service;
 
 import com.zaborstik.platform.api.dto.CreatePlanRequest;
 import com.zaborstik.platform.api.dto.PlanResponse;
+import com.zaborstik.platform.api.entity.AttachmentEntity;
 import com.zaborstik.platform.api.entity.PlanEntity;
 import com.zaborstik.platform.api.entity.WorkflowEntity;
 import com.zaborstik.platform.api.entity.WorkflowStepEntity;
@@ -18,6 +19,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 
@@ -136,6 +138,29 @@ class PlanServiceTest {
         verify(planMapper, never()).toDomain(any());
     }
 
+    @Test
+    void shouldReuseAttachmentWithSameContentHash() {
+        AttachmentEntity existing = new AttachmentEntity();
+        existing.setId("attachment-1");
+        AttachmentStore.StoredFile duplicate = new AttachmentStore.StoredFile("ab12", "image/png", 10,
+            Path.of("/data/attachments/ab12.png"));
+        AttachmentStore.StoredFile fresh = new AttachmentStore.StoredFile("cd34", "image/jpeg", 20,
+            Path.of("/data/attachments/cd34.jpeg"));
+        when(attachmentRepository.findFirstByContentHash("ab12")).thenReturn(Optional.of(existing));
+        when(attachmentRepository.findFirstByContentHash("cd34")).thenReturn(Optional.empty());
+        when(attachmentRepository.save(any(AttachmentEntity.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        AttachmentEntity reused = planService.createAttachment("http://agent/screenshots/ab12.png", duplicate);
+        AttachmentEntity created = planService.createAttachment("http://agent/screenshots/cd34.jpeg", fresh);
+
+        assertSame(existing, reused);
+        assertEquals("cd34", created.getContentHash());
+        assertEquals("image/jpeg", created.getContentType());
+        assertEquals(20L, created.getSizeBytes());
+        assertEquals(Path.of("/data/attachments/cd34.jpeg").toString(), created.getStoragePath());
+        verify(attachmentRepository, times(1)).save(any(AttachmentEntity.class));
+    }
+
     private static CreatePlanRequest.PlanStepActionRequest createActionRequest(String actionId, String metaValue) {
         CreatePlanRequest.PlanStepActionRequest a = new CreatePlanRequest.PlanStepActionRequest();
         a.setActionId(actionId);
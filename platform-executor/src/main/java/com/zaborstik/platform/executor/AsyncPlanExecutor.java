@@ -1,23 +1,37 @@
 package com.zaborstik.platform.executor;
 
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+import com.zaborstik.platform.agent.service.ExecutionOptions;
 import com.zaborstik.platform.core.plan.Plan;
 
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 public class AsyncPlanExecutor {
     private final PlanExecutor planExecutor;
     private final ExecutorService executorService;
+    private final ExecutionMetrics metrics;
 
     public AsyncPlanExecutor(PlanExecutor planExecutor) {
         this(planExecutor, Executors.newCachedThreadPool());
     }
 
     public AsyncPlanExecutor(PlanExecutor planExecutor, ExecutorService executorService) {
+        this(planExecutor, executorService, null);
+    }
+
+    /**
+     * @param metrics реестр, в который записывается ожидание плана в очереди; null — не записывать /
+     *                registry receiving plan queue wait time; null disables recording
+     */
+    public AsyncPlanExecutor(PlanExecutor planExecutor, ExecutorService executorService, ExecutionMetrics metrics) {
         this.planExecutor = Objects.requireNonNull(planExecutor, "planExecutor cannot be null");
         this.executorService = Objects.requireNonNull(executorService, "executorService cannot be null");
+        this.metrics = metrics;
     }
 
     public CompletableFuture<PlanExecutionResult> executeAsync(Plan plan) {
@@ -25,7 +39,43 @@ public class AsyncPlanExecutor {
     }
 
     public CompletableFuture<PlanExecutionResult> executeAsync(Plan plan, boolean stopOnFailure) {
-        return CompletableFuture.supplyAsync(() -> planExecutor.execute(plan, stopOnFailure), executorService);
+        return CompletableFuture.supplyAsync(queued(() -> planExecutor.execute(plan, stopOnFailure)), executorService);
+    }
+
+    /**
+     * Асинхронно выполняет план. Отмена возвращённого future отменяет токен
+     * {@link ExecutionOptions#cancellation()}, если он отменяемый.
+     *
+     * Executes plan asynchronously. Cancelling the returned future cancels the
+     * {@link ExecutionOptions#cancellation()} token when it is cancellable.
+     */
+    public CompletableFuture<PlanExecutionResult> executeAsync(Plan plan, ExecutionOptions options) {
+        CompletableFuture<PlanExecutionResult> future =
+            CompletableFuture.supplyAsync(queued(() -> planExecutor.execute(plan, null, options)), executorService);
+        if (options != null && options.cancellation().isCancellable()) {
+            future.whenComplete((result, error) -> {
+                if (error instanceof CancellationException) {
+                    options.cancellation().cancel("future cancelled");
+                }
+            });
+        }
+        return future;
+    }
+
+    /**
+     * Оборачивает задачу так, чтобы записать время от постановки в очередь до начала выполнения.
+     *
+     * Wraps the task to record the time from queueing to the start of execution.
+     */
+    private Supplier<PlanExecutionResult> queued(Supplier<PlanExecutionResult> task) {
+        if (metrics == null) {
+            return task;
+        }
+        long queuedAt = System.nanoTime();
+        return () -> {
+            metrics.recordQueueWait((System.nanoTime() - queuedAt) / 1_000_000L);
+            return task.get();
+        };
     }
 
     public void shutdown() {
@@ -1,40 +1,79 @@
 package com.zaborstik.platform.executor;
 
 import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.executor.log.ExecutionLogStore;
 
 import java.time.Instant;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 
 /**
  * Высокоуровневый результат исполнения плана.
- * Содержит агрегированный статус, временные метки и execution_log.
+ * Содержит агрегированный статус, временные метки, execution_log и признак отмены.
+ * Если execution_log передан как {@link ExecutionLogStore}, он не копируется: результат
+ * забирает хранилище (с вытеснением на диск) и запрещает его изменение.
  */
 public record PlanExecutionResult(String planId, boolean success, Instant startedAt, Instant finishedAt,
-                                  List<ExecutionLogEntry> logEntries) {
+                                  List<ExecutionLogEntry> logEntries, boolean cancelled) {
     public PlanExecutionResult(String planId,
                                boolean success,
                                Instant startedAt,
                                Instant finishedAt,
-                               List<ExecutionLogEntry> logEntries) {
+                               List<ExecutionLogEntry> logEntries,
+                               boolean cancelled) {
         this.planId = Objects.requireNonNull(planId, "planId cannot be null");
-        this.success = success;
+        this.success = success && !cancelled;
         this.startedAt = startedAt;
         this.finishedAt = finishedAt;
-        this.logEntries = logEntries != null
-                ? List.copyOf(logEntries)
-                : List.of();
+        if (logEntries instanceof ExecutionLogStore store) {
+            this.logEntries = store.seal();
+        } else {
+            this.logEntries = logEntries != null
+                    ? List.copyOf(logEntries)
+                    : List.of();
+        }
+        this.cancelled = cancelled;
+    }
+
+    public PlanExecutionResult(String planId,
+                               boolean success,
+                               Instant startedAt,
+                               Instant finishedAt,
+                               List<ExecutionLogEntry> logEntries) {
+        this(planId, success, startedAt, finishedAt, logEntries, false);
     }
 
     /**
      * Удобный метод для получения «сырых» результатов выполнения шагов.
+     * Возвращает ленивое неизменяемое представление execution_log: вытесненные на диск записи
+     * читаются только при обращении к ним.
+     *
+     * Lazy read-only view over the execution_log: spilled entries are read back only when accessed.
      */
     public List<StepExecutionResult> getStepResults() {
-        return logEntries.stream()
-                .map(ExecutionLogEntry::result)
-                .toList();
+        return new StepResultsView(logEntries);
+    }
+
+    private static final class StepResultsView extends AbstractList<StepExecutionResult> implements RandomAccess {
+        private final List<ExecutionLogEntry> entries;
+
+        private StepResultsView(List<ExecutionLogEntry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public StepExecutionResult get(int index) {
+            return entries.get(index).result();
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
     }
 
     @Override
@@ -42,6 +81,7 @@ public record PlanExecutionResult(String planId, boolean success, Instant starte
         return "PlanExecutionResult{" +
                 "planId='" + planId + '\'' +
                 ", success=" + success +
+                ", cancelled=" + cancelled +
                 ", startedAt=" + startedAt +
                 ", finishedAt=" + finishedAt +
                 ", steps=" + logEntries.size() +
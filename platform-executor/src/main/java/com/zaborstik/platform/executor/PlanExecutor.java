@@ -1,17 +1,30 @@
 package com.zaborstik.platform.executor;
 
+import com.zaborstik.platform.agent.client.AgentException;
 import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.agent.pool.AgentPool;
+import com.zaborstik.platform.agent.pool.SessionPool;
 import com.zaborstik.platform.agent.service.AgentService;
+import com.zaborstik.platform.agent.service.CallbackDispatcher;
+import com.zaborstik.platform.agent.service.ExecutionOptions;
 import com.zaborstik.platform.agent.service.StepExecutionCallback;
 import com.zaborstik.platform.core.plan.Plan;
 import com.zaborstik.platform.core.plan.PlanStep;
+import com.zaborstik.platform.executor.journal.ExecutionJournal;
+import com.zaborstik.platform.executor.journal.JournalRecord;
+import com.zaborstik.platform.executor.journal.JournalingStepExecutionCallback;
+import com.zaborstik.platform.executor.log.ExecutionLogStore;
+import com.zaborstik.platform.executor.log.LogRetention;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
 
 /**
  * Исполнитель планов.
@@ -23,14 +36,128 @@ import java.util.Objects;
  *
  * Takes {@link Plan}, passes steps to {@link AgentService}, collects execution_log
  * and returns aggregated {@link PlanExecutionResult}.
+ * <p>
+ * С {@link AgentPool} каждый запуск плана получает сессию на наименее загруженном здоровом агенте,
+ * а задержки шагов возвращаются в пул для маршрутизации. With an {@link AgentPool} every plan run gets a session
+ * on the least loaded healthy agent, and step latencies are fed back to the pool for routing.
+ * С {@link SessionPool} каждый запуск берёт тёплую браузерную сессию и выполняется с
+ * {@link ExecutionOptions#reuseSession()}, без инициализации браузера. With a {@link SessionPool} every run leases
+ * a warm browser session and runs with {@link ExecutionOptions#reuseSession()}, without browser initialization.
+ * <p>
+ * С {@link CallbackDispatcher} колбэк запуска вызывается потоком диспетчера, а не потоком исполнения: медленный
+ * колбэк не задерживает шаги; {@code execute} возвращает результат после доставки всех событий запуска.
+ * With a {@link CallbackDispatcher} the run callback is invoked by the dispatcher thread instead of the executing
+ * thread, so a slow callback does not delay steps; {@code execute} returns after all run events are delivered.
  */
 public class PlanExecutor {
     private static final Logger log = LoggerFactory.getLogger(PlanExecutor.class);
+    /** Канал диспетчера для колбэков запусков / dispatcher channel for run callbacks */
+    public static final String CALLBACK_CHANNEL = "plan-callback";
 
     private final AgentService agentService;
+    private final AgentPool agentPool;
+    private final SessionPool sessionPool;
+    private final ExecutionJournal journal;
+    private final LogRetention logRetention;
+    private final CallbackDispatcher callbackDispatcher;
 
     public PlanExecutor(AgentService agentService) {
-        this.agentService = Objects.requireNonNull(agentService, "agentService cannot be null");
+        this(agentService, null);
+    }
+
+    /**
+     * @param agentService сервис агента / agent service
+     * @param journal      журнал исполнения для восстановления после сбоя, может быть null /
+     *                     execution journal for crash recovery, may be null
+     */
+    public PlanExecutor(AgentService agentService, ExecutionJournal journal) {
+        this(agentService, journal, LogRetention.unbounded());
+    }
+
+    /**
+     * @param logRetention хранение execution_log результата: окно в памяти и каталог вытеснения /
+     *                     execution_log retention of the result: in-memory window and spill directory
+     */
+    public PlanExecutor(AgentService agentService, ExecutionJournal journal, LogRetention logRetention) {
+        this(Objects.requireNonNull(agentService, "agentService cannot be null"), null, null, journal, logRetention,
+            null);
+    }
+
+    /**
+     * @param agentPool пул агентов, из которого каждый запуск берёт сессию / agent pool every run leases a session from
+     */
+    public PlanExecutor(AgentPool agentPool, ExecutionJournal journal, LogRetention logRetention) {
+        this(null, Objects.requireNonNull(agentPool, "agentPool cannot be null"), null, journal, logRetention, null);
+    }
+
+    /**
+     * @param sessionPool пул тёплых сессий, из которого каждый запуск берёт сессию /
+     *                    warm session pool every run leases a session from
+     */
+    public PlanExecutor(SessionPool sessionPool, ExecutionJournal journal, LogRetention logRetention) {
+        this(null, null, Objects.requireNonNull(sessionPool, "sessionPool cannot be null"), journal, logRetention,
+            null);
+    }
+
+    private PlanExecutor(AgentService agentService, AgentPool agentPool, SessionPool sessionPool,
+                         ExecutionJournal journal, LogRetention logRetention, CallbackDispatcher callbackDispatcher) {
+        this.agentService = agentService;
+        this.agentPool = agentPool;
+        this.sessionPool = sessionPool;
+        this.journal = journal;
+        this.logRetention = Objects.requireNonNull(logRetention, "logRetention cannot be null");
+        this.callbackDispatcher = callbackDispatcher;
+    }
+
+    /**
+     * Копия исполнителя, доставляющая колбэки запусков через канал {@link #CALLBACK_CHANNEL} диспетчера.
+     * Журнал исполнения по-прежнему пишется синхронно. Диспетчер закрывает владелец.
+     *
+     * Copy of the executor that delivers run callbacks through the {@link #CALLBACK_CHANNEL} dispatcher channel.
+     * The execution journal is still written synchronously. The owner closes the dispatcher.
+     */
+    public PlanExecutor withCallbackDispatcher(CallbackDispatcher callbackDispatcher) {
+        return new PlanExecutor(agentService, agentPool, sessionPool, journal, logRetention,
+            Objects.requireNonNull(callbackDispatcher, "callbackDispatcher cannot be null"));
+    }
+
+    /**
+     * Пишет ли исполнитель журнал исполнения: тогда начатые шаги уже попадают в журнал.
+     *
+     * Whether the executor writes the execution journal, which then already records started steps.
+     */
+    public boolean isJournaled() {
+        return journal != null;
+    }
+
+    /**
+     * Берёт ли исполнитель сессию из пула на каждый запуск; такой исполнитель можно вызывать из нескольких потоков.
+     *
+     * Whether the executor leases a pool session for every run; such an executor may be called from several threads.
+     */
+    public boolean isPooled() {
+        return agentPool != null || sessionPool != null;
+    }
+
+    /**
+     * Отмечает в журнале, что владелец сохранил итог плана; без журнала ничего не делает.
+     * Завершённый план без этой отметки восстанавливается после падения JVM
+     * ({@link ExecutionJournal#unpersistedPlans()}).
+     *
+     * Records in the journal that the owner persisted the plan outcome; does nothing without a journal.
+     * A completed plan without this record is recovered after a JVM crash
+     * ({@link ExecutionJournal#unpersistedPlans()}).
+     */
+    public void markPersisted(String planId) {
+        Objects.requireNonNull(planId, "planId cannot be null");
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.append(JournalRecord.planPersisted(planId));
+        } catch (IOException e) {
+            log.warn("Failed to append PLAN_PERSISTED for plan {} to execution journal: {}", planId, e.getMessage());
+        }
     }
 
     /**
@@ -51,22 +178,120 @@ public class PlanExecutor {
 
     public PlanExecutionResult execute(Plan plan, boolean stopOnFailure, StepExecutionCallback callback) {
         Objects.requireNonNull(plan, "plan cannot be null");
-        StepExecutionCallback effectiveCallback = callback != null ? callback : StepExecutionCallback.noOp();
         log.info("Executing plan {} target={}",
             plan.id(), plan.target());
 
         Instant startedAt = Instant.now();
-        List<ExecutionLogEntry> logEntries = new ArrayList<>();
+        List<StepExecutionResult> results;
+        try (CallbackDispatcher.Route route = route(callback)) {
+            StepExecutionCallback effectiveCallback = wrapCallback(plan, route != null ? route : callback);
+            results = sessionPool != null
+                ? runInSession(service -> service.executePlan(plan, effectiveCallback,
+                    ExecutionOptions.defaults().withStopOnFailure(stopOnFailure).withReuseSession(true)))
+                : runOnAgent(service -> service.executePlan(plan, stopOnFailure, effectiveCallback));
+        }
+        return buildResult(plan, stopOnFailure, false, startedAt, results);
+    }
+
+    /**
+     * Выполняет план с параметрами запуска (дедлайн плана, остановка на ошибке).
+     *
+     * Executes plan with run options (plan deadline, stop on failure).
+     *
+     * @param plan     план для исполнения / plan to execute
+     * @param callback колбэк прогресса, может быть null / progress callback, may be null
+     * @param options  параметры запуска / run options
+     */
+    public PlanExecutionResult execute(Plan plan, StepExecutionCallback callback, ExecutionOptions options) {
+        Objects.requireNonNull(plan, "plan cannot be null");
+        ExecutionOptions effectiveOptions = options != null ? options : ExecutionOptions.defaults();
+        log.info("Executing plan {} target={} deadline={}",
+            plan.id(), plan.target(), effectiveOptions.deadline());
+
+        Instant startedAt = Instant.now();
+        List<StepExecutionResult> results;
+        try (CallbackDispatcher.Route route = route(callback)) {
+            StepExecutionCallback effectiveCallback = wrapCallback(plan, route != null ? route : callback);
+            results = sessionPool != null
+                ? runInSession(service -> service.executePlan(plan, effectiveCallback,
+                    effectiveOptions.withReuseSession(true)))
+                : runOnAgent(service -> service.executePlan(plan, effectiveCallback, effectiveOptions));
+        }
+        boolean cancelled = effectiveOptions.cancellation().isCancelled();
+        return buildResult(plan, effectiveOptions.stopOnFailure() || cancelled, cancelled, startedAt, results);
+    }
+
+    private List<StepExecutionResult> runOnAgent(Function<AgentService, List<StepExecutionResult>> run) {
+        if (agentPool == null) {
+            return run.apply(agentService);
+        }
+        AgentPool.Lease lease;
+        try {
+            lease = agentPool.acquire();
+        } catch (AgentException e) {
+            log.error("Plan cannot start: {}", e.getMessage());
+            return List.of(StepExecutionResult.failure("initialize", "browser", e.getMessage(), 0, Map.of(), 0, -1,
+                null));
+        }
+        try (lease) {
+            log.debug("Plan routed to agent {}", lease.url());
+            List<StepExecutionResult> results = run.apply(lease.service());
+            for (StepExecutionResult result : results) {
+                if (result.executionTimeMs() > 0) {
+                    lease.recordLatency(result.executionTimeMs());
+                }
+            }
+            return results;
+        }
+    }
 
+    /**
+     * Выполняет план в сессии из {@link SessionPool}; сессия возвращается в пул после плана.
+     *
+     * Runs the plan in a {@link SessionPool} session; the session goes back to the pool after the plan.
+     */
+    private List<StepExecutionResult> runInSession(Function<AgentService, List<StepExecutionResult>> run) {
+        try (SessionPool.Lease lease = sessionPool.acquire()) {
+            log.debug("Plan runs in {} session for {}", lease.warm() ? "warm" : "new", lease.baseUrl());
+            return run.apply(lease.service());
+        }
+    }
+
+    /**
+     * Маршрут колбэка запуска через диспетчер; null без диспетчера или колбэка.
+     *
+     * Route of the run callback through the dispatcher; null without a dispatcher or a callback.
+     */
+    private CallbackDispatcher.Route route(StepExecutionCallback callback) {
+        return callbackDispatcher != null && callback != null && callback != StepExecutionCallback.noOp()
+            ? callbackDispatcher.route(CALLBACK_CHANNEL, callback)
+            : null;
+    }
+
+    private StepExecutionCallback wrapCallback(Plan plan, StepExecutionCallback callback) {
+        StepExecutionCallback effectiveCallback = callback != null ? callback : StepExecutionCallback.noOp();
+        if (journal != null) {
+            effectiveCallback = new JournalingStepExecutionCallback(journal, plan.id(), effectiveCallback);
+        }
+        return effectiveCallback;
+    }
+
+    private PlanExecutionResult buildResult(Plan plan, boolean stopOnFailure, boolean cancelled, Instant startedAt,
+                                            List<StepExecutionResult> results) {
+        List<ExecutionLogEntry> logEntries = logRetention.spills()
+            ? new ExecutionLogStore(logRetention)
+            : new ArrayList<>();
+        boolean success = true;
         List<PlanStep> steps = plan.steps();
-        List<StepExecutionResult> results = agentService.executePlan(plan, stopOnFailure, effectiveCallback);
 
         int stepsSize = steps.size();
         int resultsSize = results.size();
         int count = Math.min(stepsSize, resultsSize);
         int processedCount = count;
 
-        if (stopOnFailure) {
+        // Отклонённый план уже содержит результат каждого шага, включая шаги после первого невыполненного.
+        // A rejected plan already holds a result for every step, including the ones after the first unexecuted step.
+        if (stopOnFailure && !rejected(results)) {
             for (int i = 0; i < count; i++) {
                 if (!results.get(i).success()) {
                     processedCount = i + 1;
@@ -78,6 +303,7 @@ public class PlanExecutor {
         for (int i = 0; i < processedCount; i++) {
             PlanStep step = steps.get(i);
             StepExecutionResult result = results.get(i);
+            success &= result.success();
             logEntries.add(new ExecutionLogEntry(
                 plan.id(),
                 i,
@@ -95,13 +321,16 @@ public class PlanExecutor {
                 StepExecutionResult syntheticFailure = StepExecutionResult.failure(
                     step.id(),
                     step.displayName(),
-                    "Step was not executed by agent (no result returned)",
+                    cancelled
+                        ? "Step was not executed: plan cancelled"
+                        : "Step was not executed by agent (no result returned)",
                     0,
-                    java.util.Map.of(),
+                    cancelled ? Map.of("cancelled", true) : Map.of(),
                     0,
                     i,
                     null
                 );
+                success = false;
                 logEntries.add(new ExecutionLogEntry(
                     plan.id(),
                     i,
@@ -112,7 +341,6 @@ public class PlanExecutor {
             }
         }
 
-        boolean success = logEntries.stream().allMatch(e -> e.result().success());
         Instant finishedAt = Instant.now();
 
         PlanExecutionResult executionResult = new PlanExecutionResult(
@@ -120,14 +348,24 @@ public class PlanExecutor {
             success,
             startedAt,
             finishedAt,
-            logEntries
+            logEntries,
+            cancelled
         );
 
         log.info("Plan {} execution finished with status={}, steps={}",
-            plan.id(), success ? "SUCCESS" : "FAILED", logEntries.size());
+            plan.id(), cancelled ? "CANCELLED" : success ? "SUCCESS" : "FAILED", logEntries.size());
 
         return executionResult;
     }
+
+    private static boolean rejected(List<StepExecutionResult> results) {
+        for (StepExecutionResult result : results) {
+            if (Boolean.TRUE.equals(result.metadata().get("compilationFailed"))) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
 
 
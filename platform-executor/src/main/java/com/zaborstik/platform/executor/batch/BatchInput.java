@@ -0,0 +1,157 @@
+package com.zaborstik.platform.executor.batch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.executor.fanout.PlanTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Ленивое чтение входного NDJSON. Строка — задание:
+ * {@code {"id": "...", "plan": {...}}} или шаблон {@code {"id": "...", "plan": {...}, "entityIds": ["...", ...]}},
+ * где в плане плейсхолдер заменяется на каждый entityId ({@link PlanTemplate#substituting}).
+ * Элементы, чьи ключи уже есть в прогрессе, и повторы ключей пропускаются.
+ *
+ * Lazy reader of the input NDJSON. A line is a job:
+ * {@code {"id": "...", "plan": {...}}} or a template {@code {"id": "...", "plan": {...}, "entityIds": ["...", ...]}}
+ * whose placeholder is replaced with every entityId ({@link PlanTemplate#substituting}).
+ * Items whose keys are already in the progress file and duplicate keys are skipped.
+ */
+final class BatchInput implements Iterator<BatchItem>, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(BatchInput.class);
+
+    private final BufferedReader reader;
+    private final ObjectMapper objectMapper;
+    private final String placeholder;
+    private final Set<String> completed;
+    private final Set<String> seen = new HashSet<>();
+    private final Deque<BatchItem> buffered = new ArrayDeque<>();
+    private long lineNumber;
+    private long skipped;
+    private boolean eof;
+
+    BatchInput(Path input, ObjectMapper objectMapper, String placeholder, Set<String> completed) throws IOException {
+        this.reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+        this.objectMapper = objectMapper;
+        this.placeholder = placeholder;
+        this.completed = completed;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (buffered.isEmpty() && !eof) {
+            readLine();
+        }
+        return !buffered.isEmpty();
+    }
+
+    @Override
+    public BatchItem next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return buffered.poll();
+    }
+
+    /**
+     * Число элементов, пропущенных как уже выполненные.
+     *
+     * Number of items skipped as already finished.
+     */
+    long skipped() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readLine() {
+        String line;
+        try {
+            line = reader.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read batch input", e);
+        }
+        if (line == null) {
+            eof = true;
+            return;
+        }
+        lineNumber++;
+        if (line.isBlank()) {
+            return;
+        }
+        String fallbackId = "line-" + lineNumber;
+        JsonNode job;
+        try {
+            job = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            enqueue(fallbackId, null, () -> {
+                throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+            });
+            return;
+        }
+        String jobId = job.hasNonNull("id") ? job.get("id").asText() : fallbackId;
+        JsonNode entityIds = job.get("entityIds");
+        if (entityIds == null || !entityIds.isArray()) {
+            enqueue(jobId, null, () -> readPlan(job));
+            return;
+        }
+        PlanTemplate template;
+        try {
+            template = PlanTemplate.substituting(readPlan(job), placeholder);
+        } catch (IllegalArgumentException e) {
+            template = entityId -> {
+                throw e;
+            };
+        }
+        for (JsonNode entityIdNode : entityIds) {
+            String entityId = entityIdNode.asText();
+            PlanTemplate itemTemplate = template;
+            enqueue(jobId, entityId, () -> itemTemplate.instantiate(entityId));
+        }
+    }
+
+    private void enqueue(String jobId, String entityId, Supplier<Plan> plan) {
+        String key = entityId != null ? jobId + "/" + entityId : jobId;
+        if (completed.contains(key)) {
+            skipped++;
+            return;
+        }
+        if (!seen.add(key)) {
+            log.warn("Skipping duplicate batch item {} at line {}", key, lineNumber);
+            return;
+        }
+        buffered.add(new BatchItem(key, jobId, entityId, plan));
+    }
+
+    private Plan readPlan(JsonNode job) {
+        JsonNode plan = job.get("plan");
+        if (plan == null || !plan.isObject()) {
+            throw new IllegalArgumentException("Input line has no plan object");
+        }
+        try {
+            return objectMapper.treeToValue(plan, Plan.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid plan: " + e.getMessage(), e);
+        }
+    }
+}
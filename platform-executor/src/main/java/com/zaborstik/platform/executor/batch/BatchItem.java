@@ -0,0 +1,27 @@
+package com.zaborstik.platform.executor.batch;
+
+import com.zaborstik.platform.core.plan.Plan;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Элемент пакета: одна строка входного файла или один entityId шаблона.
+ * План строится лениво, непосредственно перед выполнением.
+ *
+ * Batch item: one input line or one entityId of a template.
+ * The plan is built lazily, right before execution.
+ *
+ * @param key      уникальный ключ элемента для прогресса / unique item key used for progress
+ * @param jobId    id задания из входного файла / job id from the input file
+ * @param entityId entityId шаблона или null / template entityId or null
+ * @param plan     построитель плана; бросает исключение для некорректной строки /
+ *                 plan builder; throws for an invalid input line
+ */
+record BatchItem(String key, String jobId, String entityId, Supplier<Plan> plan) {
+
+    BatchItem {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(plan, "plan cannot be null");
+    }
+}
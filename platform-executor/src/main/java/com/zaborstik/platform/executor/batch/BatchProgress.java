@@ -0,0 +1,65 @@
+package com.zaborstik.platform.executor.batch;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Файл прогресса: по строке на ключ завершённого элемента. Ключ дописывается после того, как результат
+ * записан в выходной файл, поэтому после сбоя элемент может быть выполнен повторно, но не потерян.
+ *
+ * Progress file: one line per finished item key. A key is appended after the result has been written
+ * to the output file, so after a crash an item may run twice but is never lost.
+ */
+final class BatchProgress implements Closeable {
+    private final Set<String> completed;
+    private final BufferedWriter writer;
+
+    private BatchProgress(Set<String> completed, BufferedWriter writer) {
+        this.completed = completed;
+        this.writer = writer;
+    }
+
+    static BatchProgress open(Path file) throws IOException {
+        Set<String> completed = new HashSet<>();
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    completed.add(line);
+                }
+            }
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new BatchProgress(completed, writer);
+    }
+
+    /**
+     * Ключи, завершённые в предыдущих запусках.
+     *
+     * Keys finished by previous runs.
+     */
+    Set<String> completed() {
+        return completed;
+    }
+
+    void markDone(String key) throws IOException {
+        writer.write(key);
+        writer.newLine();
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
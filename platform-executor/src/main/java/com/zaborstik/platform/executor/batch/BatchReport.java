@@ -0,0 +1,40 @@
+package com.zaborstik.platform.executor.batch;
+
+import com.zaborstik.platform.executor.fanout.FanOutSummary;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Итог пакетного запуска.
+ *
+ * Batch run report.
+ *
+ * @param summary статистика выполненных в этом запуске элементов / statistics of items run in this invocation
+ * @param skipped элементы, пропущенные как уже выполненные / items skipped as already finished
+ */
+public record BatchReport(FanOutSummary summary, long skipped) {
+
+    public BatchReport {
+        Objects.requireNonNull(summary, "summary cannot be null");
+    }
+
+    public boolean hasFailures() {
+        return summary.failed() > 0;
+    }
+
+    /**
+     * Текстовый отчёт: пропускная способность и перцентили задержки.
+     *
+     * Text report with throughput and latency percentiles.
+     */
+    public String format() {
+        return String.format(Locale.ROOT,
+            "items=%d succeeded=%d failed=%d skipped=%d cancelled=%s%n"
+                + "wall=%dms throughput=%.2f/s%n"
+                + "latency p50=%dms p95=%dms p99=%dms max=%dms",
+            summary.total(), summary.succeeded(), summary.failed(), skipped, summary.cancelled(),
+            summary.wallTimeMs(), summary.throughputPerSecond(),
+            summary.p50Ms(), summary.p95Ms(), summary.p99Ms(), summary.maxMs());
+    }
+}
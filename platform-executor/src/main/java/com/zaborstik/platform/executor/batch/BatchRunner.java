@@ -0,0 +1,254 @@
+package com.zaborstik.platform.executor.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.service.AgentService;
+import com.zaborstik.platform.agent.service.CancellationToken;
+import com.zaborstik.platform.core.domain.Action;
+import com.zaborstik.platform.core.domain.UIBinding;
+import com.zaborstik.platform.core.resolver.InMemoryResolver;
+import com.zaborstik.platform.executor.ExecutionLogEntry;
+import com.zaborstik.platform.executor.PlanExecutor;
+import com.zaborstik.platform.executor.fanout.FanOutExecutor;
+import com.zaborstik.platform.executor.fanout.FanOutItemResult;
+import com.zaborstik.platform.executor.fanout.FanOutOptions;
+import com.zaborstik.platform.executor.fanout.FanOutSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Пакетный запуск планов без Spring API: читает задания из NDJSON ({@link BatchInput}), выполняет их
+ * через {@link FanOutExecutor} на нескольких агентах и построчно пишет результаты в выходной NDJSON.
+ * Ключи завершённых элементов сохраняются в файл прогресса, повторный запуск продолжает с места остановки.
+ * По завершении возвращает {@link BatchReport} с пропускной способностью и перцентилями задержки.
+ *
+ * Batch plan runner without the Spring API: reads jobs from NDJSON ({@link BatchInput}), runs them
+ * through {@link FanOutExecutor} on several agents and writes results line by line to an output NDJSON.
+ * Keys of finished items are stored in a progress file, so a rerun resumes where the previous one stopped.
+ * Returns a {@link BatchReport} with throughput and latency percentiles.
+ */
+public class BatchRunner implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(BatchRunner.class);
+
+    static final String USAGE = "Usage: BatchRunner --input <jobs.ndjson> --output <results.ndjson> "
+        + "--agents <url[,url...]> [--progress <file>] [--concurrency <n>] [--catalog <catalog.json>] "
+        + "[--base-url <url>] [--headless] [--placeholder <token>] [--stop-on-failure <true|false>]";
+
+    private final BatchRunnerOptions options;
+    private final FanOutExecutor fanOut;
+    private final List<AgentService> agentServices;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param executors исполнители, по одному на агент / executors, one per agent
+     */
+    public BatchRunner(BatchRunnerOptions options, List<PlanExecutor> executors) {
+        this(options, executors, List.of());
+    }
+
+    private BatchRunner(BatchRunnerOptions options, List<PlanExecutor> executors, List<AgentService> agentServices) {
+        this.options = Objects.requireNonNull(options, "options cannot be null");
+        this.fanOut = new FanOutExecutor(executors);
+        this.agentServices = agentServices;
+    }
+
+    /**
+     * Создаёт исполнителей для всех {@link BatchRunnerOptions#agentUrls()} с Resolver из каталога.
+     *
+     * Creates executors for all {@link BatchRunnerOptions#agentUrls()} with a resolver loaded from the catalog.
+     */
+    public static BatchRunner create(BatchRunnerOptions options) throws IOException {
+        InMemoryResolver resolver = options.catalog() != null ? loadCatalog(options.catalog()) : new InMemoryResolver();
+        List<AgentService> services = new ArrayList<>(options.agentUrls().size());
+        List<PlanExecutor> executors = new ArrayList<>(options.agentUrls().size());
+        for (String url : options.agentUrls()) {
+            AgentService service = new AgentService(new AgentClient(url), resolver, options.baseUrl(),
+                options.headless());
+            services.add(service);
+            executors.add(new PlanExecutor(service));
+        }
+        return new BatchRunner(options, executors, services);
+    }
+
+    /**
+     * Выполняет все ещё не завершённые элементы входного файла и блокируется до конца.
+     *
+     * Runs every not yet finished item of the input file and blocks until done.
+     *
+     * @throws IOException если не удалось прочитать вход или записать результаты / when input or output fails
+     */
+    public BatchReport run() throws IOException {
+        Map<String, BatchItem> inFlight = new ConcurrentHashMap<>();
+        CancellationToken cancellation = CancellationToken.create();
+        IOException[] writeFailure = new IOException[1];
+        Files.createDirectories(options.output().toAbsolutePath().getParent());
+
+        try (BatchProgress progress = BatchProgress.open(options.progress());
+             BatchInput input = new BatchInput(options.input(), objectMapper, options.placeholder(),
+                 progress.completed());
+             BufferedWriter output = Files.newBufferedWriter(options.output(), StandardCharsets.UTF_8,
+                 StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            log.info("Batch run: input={}, agents={}, concurrency={}, already finished={}",
+                options.input(), options.agentUrls().size(), options.concurrency(), progress.completed().size());
+
+            Iterator<String> keys = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return input.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    BatchItem item = input.next();
+                    inFlight.put(item.key(), item);
+                    return item.key();
+                }
+            };
+            FanOutOptions fanOutOptions = new FanOutOptions(options.concurrency(), options.stopOnFailure(), true,
+                cancellation);
+
+            FanOutSummary summary = fanOut.execute(
+                key -> inFlight.get(key).plan().get(),
+                keys,
+                fanOutOptions,
+                result -> {
+                    BatchItem item = inFlight.remove(result.entityId());
+                    try {
+                        output.write(toJson(item, result));
+                        output.newLine();
+                        output.flush();
+                        progress.markDone(item.key());
+                    } catch (IOException e) {
+                        writeFailure[0] = e;
+                        cancellation.cancel("failed to write batch output");
+                    }
+                });
+            if (writeFailure[0] != null) {
+                throw writeFailure[0];
+            }
+            BatchReport report = new BatchReport(summary, input.skipped());
+            log.info("Batch run finished:\n{}", report.format());
+            return report;
+        }
+    }
+
+    /**
+     * Закрывает браузерные сессии агентов, созданных {@link #create(BatchRunnerOptions)}.
+     *
+     * Closes browser sessions of agents created by {@link #create(BatchRunnerOptions)}.
+     */
+    @Override
+    public void close() {
+        agentServices.forEach(AgentService::close);
+    }
+
+    public static void main(String[] args) {
+        BatchRunnerOptions options;
+        try {
+            options = BatchRunnerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        int exitCode;
+        try (BatchRunner runner = create(options)) {
+            BatchReport report = runner.run();
+            System.out.println(report.format());
+            exitCode = report.hasFailures() ? 1 : 0;
+        } catch (IOException e) {
+            log.error("Batch run failed", e);
+            exitCode = 3;
+        }
+        System.exit(exitCode);
+    }
+
+    private String toJson(BatchItem item, FanOutItemResult result) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("key", item.key());
+        node.put("jobId", item.jobId());
+        node.put("entityId", item.entityId());
+        node.put("planId", result.planId());
+        node.put("success", result.success());
+        node.put("latencyMs", result.latencyMs());
+        String error = result.error();
+        if (result.result() != null) {
+            List<ExecutionLogEntry> entries = result.result().logEntries();
+            int failedSteps = 0;
+            for (ExecutionLogEntry entry : entries) {
+                if (!entry.result().success()) {
+                    failedSteps++;
+                    if (error == null) {
+                        error = entry.result().error();
+                    }
+                }
+            }
+            node.put("steps", entries.size());
+            node.put("failedSteps", failedSteps);
+            node.put("cancelled", result.result().cancelled());
+        }
+        node.put("error", error);
+        return objectMapper.writeValueAsString(node);
+    }
+
+    /**
+     * Каталог: {@code {"actions": [{"id", "displayName", "internalName", "actionTypeId", "metaValue"?, "description"?}],
+     * "uiBindings": [{"actionId", "selector", "selectorType"?}]}}; selectorType по умолчанию CSS.
+     *
+     * Catalog format as above; selectorType defaults to CSS.
+     */
+    static InMemoryResolver loadCatalog(Path file) throws IOException {
+        JsonNode catalog = new ObjectMapper().readTree(file.toFile());
+        InMemoryResolver resolver = new InMemoryResolver();
+        for (JsonNode action : catalog.path("actions")) {
+            resolver.registerAction(new Action(
+                required(action, "id"),
+                required(action, "displayName"),
+                required(action, "internalName"),
+                optional(action, "metaValue"),
+                optional(action, "description"),
+                required(action, "actionTypeId"),
+                null,
+                null
+            ));
+        }
+        for (JsonNode binding : catalog.path("uiBindings")) {
+            String selectorType = optional(binding, "selectorType");
+            resolver.registerUIBinding(new UIBinding(
+                required(binding, "actionId"),
+                required(binding, "selector"),
+                selectorType != null ? UIBinding.SelectorType.valueOf(selectorType) : UIBinding.SelectorType.CSS,
+                Map.of()
+            ));
+        }
+        return resolver;
+    }
+
+    private static String required(JsonNode node, String field) {
+        if (!node.hasNonNull(field)) {
+            throw new IllegalArgumentException("Catalog entry is missing '" + field + "': " + node);
+        }
+        return node.get(field).asText();
+    }
+
+    private static String optional(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+}
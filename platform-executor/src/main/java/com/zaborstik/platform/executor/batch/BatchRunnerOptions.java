@@ -0,0 +1,118 @@
+package com.zaborstik.platform.executor.batch;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Параметры пакетного запуска {@link BatchRunner}.
+ *
+ * Options of a {@link BatchRunner} batch run.
+ *
+ * @param input         NDJSON с заданиями / NDJSON file with jobs
+ * @param output        NDJSON с результатами, дописывается / NDJSON result file, appended to
+ * @param progress      файл прогресса с ключами завершённых элементов / progress file with keys of finished items
+ * @param agentUrls     адреса агентов, по одной браузерной сессии на адрес / agent URLs, one browser session each
+ * @param concurrency   максимум одновременно выполняемых планов (не больше числа агентов) /
+ *                      max plans running at once (capped by the number of agents)
+ * @param catalog       JSON-каталог действий и UI-привязок или null / JSON catalog of actions and UI bindings or null
+ * @param baseUrl       базовый URL приложения для инициализации браузера / application base URL for browser init
+ * @param headless      запуск браузера без окна / headless browser
+ * @param placeholder   подстановка entityId в шаблоны / entityId substitution token in templates
+ * @param stopOnFailure остановить план на первом неуспешном шаге / stop a plan at its first failed step
+ */
+public record BatchRunnerOptions(Path input, Path output, Path progress, List<String> agentUrls, int concurrency,
+                                 Path catalog, String baseUrl, boolean headless, String placeholder,
+                                 boolean stopOnFailure) {
+
+    public static final String DEFAULT_PLACEHOLDER = "{entityId}";
+
+    public BatchRunnerOptions {
+        Objects.requireNonNull(input, "input cannot be null");
+        Objects.requireNonNull(output, "output cannot be null");
+        progress = progress != null ? progress : Path.of(output + ".progress");
+        agentUrls = agentUrls != null ? List.copyOf(agentUrls) : List.of();
+        if (agentUrls.isEmpty()) {
+            throw new IllegalArgumentException("at least one agent url is required");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be >= 1");
+        }
+        Objects.requireNonNull(baseUrl, "baseUrl cannot be null");
+        placeholder = placeholder != null ? placeholder : DEFAULT_PLACEHOLDER;
+        if (placeholder.isEmpty()) {
+            throw new IllegalArgumentException("placeholder cannot be empty");
+        }
+    }
+
+    /**
+     * Разбирает аргументы командной строки:
+     * {@code --input <file> --output <file> --agents <url,url> [--progress <file>] [--concurrency <n>]
+     * [--catalog <file>] [--base-url <url>] [--headless] [--placeholder <token>] [--stop-on-failure]}.
+     *
+     * Parses command line arguments (see above).
+     *
+     * @throws IllegalArgumentException при неизвестном или неполном аргументе / on an unknown or incomplete argument
+     */
+    public static BatchRunnerOptions parse(String[] args) {
+        Objects.requireNonNull(args, "args cannot be null");
+        Path input = null;
+        Path output = null;
+        Path progress = null;
+        List<String> agentUrls = new ArrayList<>();
+        Integer concurrency = null;
+        Path catalog = null;
+        String baseUrl = "http://localhost:8080";
+        boolean headless = false;
+        String placeholder = DEFAULT_PLACEHOLDER;
+        boolean stopOnFailure = true;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--input" -> input = Path.of(value(args, ++i, arg));
+                case "--output" -> output = Path.of(value(args, ++i, arg));
+                case "--progress" -> progress = Path.of(value(args, ++i, arg));
+                case "--agents" -> {
+                    for (String url : value(args, ++i, arg).split(",")) {
+                        if (!url.isBlank()) {
+                            agentUrls.add(url.trim());
+                        }
+                    }
+                }
+                case "--concurrency" -> concurrency = parseInt(value(args, ++i, arg), arg);
+                case "--catalog" -> catalog = Path.of(value(args, ++i, arg));
+                case "--base-url" -> baseUrl = value(args, ++i, arg);
+                case "--headless" -> headless = true;
+                case "--placeholder" -> placeholder = value(args, ++i, arg);
+                case "--stop-on-failure" -> stopOnFailure = Boolean.parseBoolean(value(args, ++i, arg));
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if (input == null) {
+            throw new IllegalArgumentException("--input is required");
+        }
+        if (output == null) {
+            throw new IllegalArgumentException("--output is required");
+        }
+        return new BatchRunnerOptions(input, output, progress, agentUrls,
+            concurrency != null ? concurrency : Math.max(1, agentUrls.size()),
+            catalog, baseUrl, headless, placeholder, stopOnFailure);
+    }
+
+    private static String value(String[] args, int index, String name) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(name + " requires a value");
+        }
+        return args[index];
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.zaborstik.platform.executor.fanout;
+
+import com.zaborstik.platform.agent.service.ExecutionOptions;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.executor.PlanExecutionResult;
+import com.zaborstik.platform.executor.PlanExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Выполняет один шаблон плана для множества entityId.
+ *
+ * Каждый {@link PlanExecutor} из списка работает со своей браузерной сессией (своим агентом),
+ * поэтому параллелизм ограничен числом исполнителей. Исполнитель на пуле ({@link PlanExecutor#isPooled()})
+ * снимает это ограничение: его разделяют {@link FanOutOptions#parallelism()} рабочих потоков, и каждый элемент
+ * берёт свою сессию из пула. Исполнитель забирает следующий id из общего
+ * итератора, строит план через {@link PlanTemplate} и выполняет его, переиспользуя сессию между элементами.
+ * Результаты отдаются в слушатель по мере готовности; в памяти остаются только задержки для перцентилей.
+ *
+ * Runs one plan template for many entity ids.
+ *
+ * Every {@link PlanExecutor} in the list owns its own browser session (its own agent),
+ * so parallelism is capped by the number of executors. A pooled executor ({@link PlanExecutor#isPooled()})
+ * lifts the cap: {@link FanOutOptions#parallelism()} workers share it, and every item leases its own pool
+ * session. An executor pulls the next id from the shared
+ * iterator, builds the plan through {@link PlanTemplate} and runs it, reusing the session between items.
+ * Results are streamed to the listener as they complete; only latencies are kept for percentiles.
+ */
+public class FanOutExecutor {
+    private static final Logger log = LoggerFactory.getLogger(FanOutExecutor.class);
+
+    private final List<PlanExecutor> executors;
+    private final boolean pooled;
+
+    /**
+     * @param executors исполнители, по одному на агент; рабочих потоков не больше, чем исполнителей /
+     *                  executors, one per agent; there are no more workers than executors
+     */
+    public FanOutExecutor(List<PlanExecutor> executors) {
+        Objects.requireNonNull(executors, "executors cannot be null");
+        if (executors.isEmpty()) {
+            throw new IllegalArgumentException("executors cannot be empty");
+        }
+        this.executors = List.copyOf(executors);
+        this.pooled = false;
+    }
+
+    /**
+     * @param pooledExecutor исполнитель на {@code AgentPool} или {@code SessionPool}, общий для
+     *                       {@link FanOutOptions#parallelism()} рабочих потоков; параллелизм выше ёмкости пула
+     *                       (агенты × {@code maxSessionsPerAgent}) даёт неуспешные элементы /
+     *                       executor backed by an {@code AgentPool} or a {@code SessionPool}, shared by
+     *                       {@link FanOutOptions#parallelism()} workers; parallelism above the pool capacity
+     *                       (agents × {@code maxSessionsPerAgent}) yields failed items
+     */
+    public FanOutExecutor(PlanExecutor pooledExecutor) {
+        Objects.requireNonNull(pooledExecutor, "pooledExecutor cannot be null");
+        if (!pooledExecutor.isPooled()) {
+            throw new IllegalArgumentException("pooledExecutor must lease sessions from a pool");
+        }
+        this.executors = List.of(pooledExecutor);
+        this.pooled = true;
+    }
+
+    /**
+     * Выполняет шаблон для каждого id из итератора и блокируется до завершения.
+     * Слушатель вызывается последовательно (не конкурентно) из рабочих потоков.
+     *
+     * Runs the template for every id from the iterator and blocks until done.
+     * The listener is invoked serially (never concurrently) from worker threads.
+     *
+     * @param template  шаблон плана / plan template
+     * @param entityIds источник id, читается лениво / id source, consumed lazily
+     * @param options   параметры запуска / run options
+     * @param listener  получатель результатов, может быть null / result receiver, may be null
+     * @return агрегированная статистика / aggregate statistics
+     */
+    public FanOutSummary execute(PlanTemplate template, Iterator<String> entityIds, FanOutOptions options,
+                                 Consumer<FanOutItemResult> listener) {
+        Objects.requireNonNull(template, "template cannot be null");
+        Objects.requireNonNull(entityIds, "entityIds cannot be null");
+        FanOutOptions effectiveOptions = options != null ? options : FanOutOptions.defaults();
+        Consumer<FanOutItemResult> effectiveListener = listener != null ? listener : item -> { };
+
+        int workers = pooled
+            ? effectiveOptions.parallelism()
+            : Math.min(effectiveOptions.parallelism(), executors.size());
+        ExecutionOptions itemOptions = ExecutionOptions.defaults()
+            .withStopOnFailure(effectiveOptions.stopOnFailure())
+            .withReuseSession(effectiveOptions.reuseSession())
+            .withCancellation(effectiveOptions.cancellation());
+        Run run = new Run(template, entityIds, itemOptions, effectiveListener);
+
+        log.info("Starting fan-out with parallelism={}", workers);
+        long startedAt = System.nanoTime();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "fan-out-worker-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                PlanExecutor executor = executors.get(i % executors.size());
+                futures.add(pool.submit(() -> runWorker(executor, run)));
+            }
+            for (Future<?> future : futures) {
+                awaitWorker(future);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long wallTimeMs = (System.nanoTime() - startedAt) / 1_000_000;
+        FanOutSummary summary = run.summarize(wallTimeMs, effectiveOptions.cancellation().isCancelled());
+        log.info("Fan-out finished: total={}, succeeded={}, failed={}, p95={}ms, wallTime={}ms",
+            summary.total(), summary.succeeded(), summary.failed(), summary.p95Ms(), summary.wallTimeMs());
+        return summary;
+    }
+
+    private void runWorker(PlanExecutor executor, Run run) {
+        String entityId;
+        while ((entityId = run.nextEntityId()) != null) {
+            run.complete(executeItem(executor, run, entityId));
+        }
+    }
+
+    private FanOutItemResult executeItem(PlanExecutor executor, Run run, String entityId) {
+        long startedAt = System.nanoTime();
+        String planId = null;
+        try {
+            Plan plan = run.template.instantiate(entityId);
+            planId = plan.id();
+            PlanExecutionResult result = executor.execute(plan, null, run.itemOptions);
+            return new FanOutItemResult(entityId, planId, result.success(), elapsedMs(startedAt), null, result);
+        } catch (RuntimeException e) {
+            log.warn("Fan-out item {} failed: {}", entityId, e.getMessage());
+            return new FanOutItemResult(entityId, planId, false, elapsedMs(startedAt), e.getMessage(), null);
+        }
+    }
+
+    private static void awaitWorker(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Fan-out interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Fan-out worker failed", e.getCause());
+        }
+    }
+
+    private static long elapsedMs(long startedAtNanos) {
+        return (System.nanoTime() - startedAtNanos) / 1_000_000;
+    }
+
+    /**
+     * Состояние одного запуска: общий итератор, слушатель и накопленная статистика.
+     *
+     * State of one run: shared iterator, listener and collected statistics.
+     */
+    private static final class Run {
+        private final PlanTemplate template;
+        private final Iterator<String> entityIds;
+        private final ExecutionOptions itemOptions;
+        private final Consumer<FanOutItemResult> listener;
+        private final AtomicLong succeeded = new AtomicLong();
+        private long[] latencies = new long[1024];
+        private int size;
+
+        private Run(PlanTemplate template, Iterator<String> entityIds, ExecutionOptions itemOptions,
+                    Consumer<FanOutItemResult> listener) {
+            this.template = template;
+            this.entityIds = entityIds;
+            this.itemOptions = itemOptions;
+            this.listener = listener;
+        }
+
+        private String nextEntityId() {
+            if (itemOptions.cancellation().isCancelled()) {
+                return null;
+            }
+            synchronized (entityIds) {
+                return entityIds.hasNext() ? entityIds.next() : null;
+            }
+        }
+
+        private synchronized void complete(FanOutItemResult item) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = item.latencyMs();
+            if (item.success()) {
+                succeeded.incrementAndGet();
+            }
+            try {
+                listener.accept(item);
+            } catch (RuntimeException e) {
+                log.warn("Fan-out listener failed for {}: {}", item.entityId(), e.getMessage());
+            }
+        }
+
+        private synchronized FanOutSummary summarize(long wallTimeMs, boolean cancelled) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            long ok = succeeded.get();
+            return new FanOutSummary(
+                size,
+                ok,
+                size - ok,
+                percentile(sorted, 0.50),
+                percentile(sorted, 0.95),
+                percentile(sorted, 0.99),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1],
+                wallTimeMs,
+                cancelled
+            );
+        }
+
+        private static long percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(quantile * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.zaborstik.platform.executor.fanout;
+
+import com.zaborstik.platform.executor.PlanExecutionResult;
+
+/**
+ * Результат одного элемента fan-out запуска.
+ *
+ * Result of one fan-out item.
+ *
+ * @param entityId  идентификатор сущности / entity id
+ * @param planId    id построенного плана, null если шаблон не смог его построить /
+ *                  id of the built plan, null when the template failed
+ * @param success   план выполнен успешно / plan succeeded
+ * @param latencyMs время от построения плана до результата / time from building the plan to the result
+ * @param error     ошибка шаблона или исполнителя / template or executor error
+ * @param result    полный результат плана, null при ошибке / full plan result, null on error
+ */
+public record FanOutItemResult(String entityId, String planId, boolean success, long latencyMs, String error,
+                               PlanExecutionResult result) {
+}
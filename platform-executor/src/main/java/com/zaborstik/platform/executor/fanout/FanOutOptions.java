@@ -0,0 +1,38 @@
+package com.zaborstik.platform.executor.fanout;
+
+import com.zaborstik.platform.agent.service.CancellationToken;
+
+/**
+ * Параметры fan-out запуска.
+ *
+ * Fan-out run options.
+ *
+ * @param parallelism   максимум одновременно выполняемых планов (не больше числа исполнителей) /
+ *                      max plans running at once (capped by the number of executors)
+ * @param stopOnFailure остановить план элемента на первом неуспешном шаге / stop an item plan at its first failed step
+ * @param reuseSession  переиспользовать браузерную сессию исполнителя между элементами /
+ *                      reuse the executor browser session between items
+ * @param cancellation  отмена всего запуска / cancellation of the whole run
+ */
+public record FanOutOptions(int parallelism, boolean stopOnFailure, boolean reuseSession,
+                            CancellationToken cancellation) {
+
+    public FanOutOptions {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        cancellation = cancellation != null ? cancellation : CancellationToken.none();
+    }
+
+    public static FanOutOptions defaults() {
+        return new FanOutOptions(Runtime.getRuntime().availableProcessors(), true, true, CancellationToken.none());
+    }
+
+    public FanOutOptions withParallelism(int parallelism) {
+        return new FanOutOptions(parallelism, stopOnFailure, reuseSession, cancellation);
+    }
+
+    public FanOutOptions withCancellation(CancellationToken cancellation) {
+        return new FanOutOptions(parallelism, stopOnFailure, reuseSession, cancellation);
+    }
+}
@@ -0,0 +1,33 @@
+package com.zaborstik.platform.executor.fanout;
+
+/**
+ * Агрегированная статистика fan-out запуска.
+ *
+ * Aggregate statistics of a fan-out run.
+ *
+ * @param total       обработано элементов / items processed
+ * @param succeeded   успешных элементов / successful items
+ * @param failed      неуспешных элементов / failed items
+ * @param p50Ms       медиана задержки элемента / median item latency
+ * @param p95Ms       95-й перцентиль / 95th percentile
+ * @param p99Ms       99-й перцентиль / 99th percentile
+ * @param maxMs       максимальная задержка / max latency
+ * @param wallTimeMs  общее время запуска / total run time
+ * @param cancelled   запуск был отменён / run was cancelled
+ */
+public record FanOutSummary(long total, long succeeded, long failed, long p50Ms, long p95Ms, long p99Ms,
+                            long maxMs, long wallTimeMs, boolean cancelled) {
+
+    public double successRate() {
+        return total == 0 ? 0.0 : (double) succeeded / total;
+    }
+
+    /**
+     * Пропускная способность, элементов в секунду.
+     *
+     * Throughput, items per second.
+     */
+    public double throughputPerSecond() {
+        return wallTimeMs == 0 ? 0.0 : total * 1000.0 / wallTimeMs;
+    }
+}
@@ -0,0 +1,77 @@
+package com.zaborstik.platform.executor.fanout;
+
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.plan.PlanStep;
+import com.zaborstik.platform.core.plan.PlanStepAction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Шаблон плана: строит {@link Plan} для конкретного entityId.
+ * {@link FanOutExecutor} вызывает шаблон лениво, непосредственно перед выполнением элемента,
+ * поэтому тысячи планов не создаются заранее.
+ *
+ * Plan template: builds a {@link Plan} for a concrete entityId.
+ * {@link FanOutExecutor} calls it lazily right before an item runs,
+ * so thousands of plans are never built up front.
+ */
+@FunctionalInterface
+public interface PlanTemplate {
+
+    Plan instantiate(String entityId);
+
+    /**
+     * Шаблон на основе готового плана: плейсхолдер заменяется на entityId в target/explanation плана,
+     * entityId шагов и metaValue действий; каждый экземпляр получает новый id плана.
+     *
+     * Template based on an existing plan: the placeholder is replaced with the entityId in plan
+     * target/explanation, step entityId and action metaValue; every instance gets a fresh plan id.
+     *
+     * @param template    план-образец / sample plan
+     * @param placeholder строка для подстановки, например {@code {entityId}} / substitution token, e.g. {@code {entityId}}
+     */
+    static PlanTemplate substituting(Plan template, String placeholder) {
+        Objects.requireNonNull(template, "template cannot be null");
+        Objects.requireNonNull(placeholder, "placeholder cannot be null");
+        if (placeholder.isEmpty()) {
+            throw new IllegalArgumentException("placeholder cannot be empty");
+        }
+        return entityId -> {
+            String planId = UUID.randomUUID().toString();
+            List<PlanStep> steps = new ArrayList<>(template.steps().size());
+            for (PlanStep step : template.steps()) {
+                List<PlanStepAction> actions = new ArrayList<>(step.actions().size());
+                for (PlanStepAction action : step.actions()) {
+                    actions.add(new PlanStepAction(action.actionId(), replace(action.metaValue(), placeholder, entityId)));
+                }
+                steps.add(new PlanStep(
+                    step.id(),
+                    planId,
+                    step.workflowId(),
+                    step.workflowStepInternalName(),
+                    step.entityTypeId(),
+                    replace(step.entityId(), placeholder, entityId),
+                    step.sortOrder(),
+                    replace(step.displayName(), placeholder, entityId),
+                    actions
+                ));
+            }
+            return new Plan(
+                planId,
+                template.workflowId(),
+                template.workflowStepInternalName(),
+                template.stoppedAtPlanStepId(),
+                replace(template.target(), placeholder, entityId),
+                replace(template.explanation(), placeholder, entityId),
+                steps
+            );
+        };
+    }
+
+    private static String replace(String value, String placeholder, String entityId) {
+        return value != null ? value.replace(placeholder, entityId) : null;
+    }
+}
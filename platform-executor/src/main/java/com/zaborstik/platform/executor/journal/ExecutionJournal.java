@@ -0,0 +1,404 @@
+package com.zaborstik.platform.executor.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал исполнения планов: append-only файл, отображённый в память (memory-mapped).
+ * <p>
+ * Записи о старте/завершении шагов пишутся в отображённый буфер без синхронной транзакции БД,
+ * поэтому переживают падение JVM (страницы остаются в page cache ОС). При старте журнал
+ * сканируется, и планы без PLAN_COMPLETED возвращаются через {@link #recoveredPlans()}, а завершённые планы,
+ * итог которых владелец не подтвердил записью PLAN_PERSISTED, — через {@link #unpersistedPlans()}.
+ * Фоновый {@link JournalFlusher} читает новые записи и асинхронно передаёт их в БД.
+ * <p>
+ * Формат файла: заголовок (magic, version), далее записи {@code [int length][int crc32][body]}.
+ * Нулевая длина — конец журнала; запись с неверной CRC (оборванная запись) также считается концом.
+ * <p>
+ * Execution journal: append-only memory-mapped file.
+ * <p>
+ * Step start/completion records go into the mapped buffer without a synchronous DB transaction,
+ * so they survive a JVM crash (pages stay in the OS page cache). On startup the journal is scanned
+ * and plans without PLAN_COMPLETED are exposed via {@link #recoveredPlans()}, while completed plans whose owner
+ * did not confirm the outcome with a PLAN_PERSISTED record are exposed via {@link #unpersistedPlans()}.
+ * A background {@link JournalFlusher} reads new records and hands them to the DB asynchronously.
+ */
+public class ExecutionJournal implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ExecutionJournal.class);
+
+    static final int MAGIC = 0x5A4A524E;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int MAX_ERROR_LENGTH = 2000;
+    private static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final List<JournalRecord> recoveredRecords;
+    private final long tailAtOpen;
+    private MappedByteBuffer buffer;
+    private long writePosition;
+    private int inFlightPlans;
+    private boolean recoveryPending;
+
+    private ExecutionJournal(Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.recoveredRecords = scan();
+        this.tailAtOpen = writePosition;
+        this.recoveryPending = !recoveredRecords.isEmpty();
+    }
+
+    /**
+     * Открывает (или создаёт) журнал по указанному пути.
+     *
+     * Opens (or creates) the journal at the given path.
+     */
+    public static ExecutionJournal open(Path path) throws IOException {
+        return open(path, DEFAULT_CAPACITY);
+    }
+
+    public static ExecutionJournal open(Path path, int initialCapacity) throws IOException {
+        Objects.requireNonNull(path, "path cannot be null");
+        if (initialCapacity <= HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("initialCapacity is too small: " + initialCapacity);
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long capacity = Math.max(channel.size(), initialCapacity);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        int magic = buffer.getInt(0);
+        if (magic == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        } else if (magic != MAGIC || buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not an execution journal (or unsupported version): " + path);
+        }
+        return new ExecutionJournal(path, channel, buffer);
+    }
+
+    /**
+     * Добавляет запись в журнал.
+     *
+     * Appends record to the journal.
+     */
+    public synchronized void append(JournalRecord record) throws IOException {
+        Objects.requireNonNull(record, "record cannot be null");
+        byte[] body = encode(record);
+        long required = writePosition + RECORD_HEADER_SIZE + body.length + Integer.BYTES;
+        if (required > buffer.capacity()) {
+            grow(required);
+        }
+        int position = (int) writePosition;
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        buffer.put(position + RECORD_HEADER_SIZE, body);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        int next = position + RECORD_HEADER_SIZE + body.length;
+        buffer.putInt(next, 0);
+        // Длина пишется последней: запись становится видимой только целиком.
+        // Length is written last: the record becomes visible only as a whole.
+        buffer.putInt(position, body.length);
+        writePosition = next;
+
+        if (record.type() == JournalRecord.Type.PLAN_STARTED) {
+            inFlightPlans++;
+        } else if (record.type() == JournalRecord.Type.PLAN_COMPLETED && inFlightPlans > 0) {
+            inFlightPlans--;
+        }
+    }
+
+    /**
+     * Читает записи начиная с позиции {@code fromPosition} до текущего конца журнала.
+     *
+     * Reads records from {@code fromPosition} up to the current end of the journal.
+     */
+    public synchronized Batch read(long fromPosition) {
+        if (fromPosition < HEADER_SIZE || fromPosition > writePosition) {
+            throw new IllegalArgumentException("Invalid journal position: " + fromPosition);
+        }
+        List<JournalRecord> records = new ArrayList<>();
+        int position = (int) fromPosition;
+        while (position < writePosition) {
+            int length = buffer.getInt(position);
+            byte[] body = new byte[length];
+            buffer.get(position + RECORD_HEADER_SIZE, body);
+            records.add(decode(body));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return new Batch(records, position);
+    }
+
+    /**
+     * Планы, прерванные в прошлом запуске (до вызова {@link #markRecovered()}).
+     *
+     * Plans interrupted in the previous run (until {@link #markRecovered()} is called).
+     */
+    public synchronized List<RecoveredPlan> recoveredPlans() {
+        return recoveryPending ? collectPlans(false) : List.of();
+    }
+
+    /**
+     * Планы прошлого запуска с PLAN_COMPLETED, но без PLAN_PERSISTED: выполнение завершилось, а итог не был
+     * сохранён до падения JVM (до вызова {@link #markRecovered()}). Имеет смысл, если владелец журнала
+     * подтверждает сохранение итога записью {@link JournalRecord#planPersisted(String)}.
+     *
+     * Plans of the previous run with PLAN_COMPLETED but without PLAN_PERSISTED: execution finished, but the outcome
+     * was not persisted before the JVM crash (until {@link #markRecovered()} is called). Meaningful when the journal
+     * owner confirms persisted outcomes with a {@link JournalRecord#planPersisted(String)} record.
+     */
+    public synchronized List<RecoveredPlan> unpersistedPlans() {
+        return recoveryPending ? collectPlans(true) : List.of();
+    }
+
+    private List<RecoveredPlan> collectPlans(boolean completed) {
+        Map<String, List<JournalRecord>> byPlan = new LinkedHashMap<>();
+        Map<String, JournalRecord> completions = new LinkedHashMap<>();
+        for (JournalRecord record : recoveredRecords) {
+            if (record.type() == JournalRecord.Type.PLAN_STARTED) {
+                byPlan.put(record.planId(), new ArrayList<>());
+                completions.remove(record.planId());
+            }
+            List<JournalRecord> planRecords = byPlan.get(record.planId());
+            if (planRecords == null) {
+                continue;
+            }
+            if (record.type() == JournalRecord.Type.PLAN_COMPLETED) {
+                completions.put(record.planId(), record);
+            } else if (record.type() == JournalRecord.Type.PLAN_PERSISTED) {
+                byPlan.remove(record.planId());
+                completions.remove(record.planId());
+            } else {
+                planRecords.add(record);
+            }
+        }
+
+        List<RecoveredPlan> plans = new ArrayList<>();
+        for (Map.Entry<String, List<JournalRecord>> entry : byPlan.entrySet()) {
+            JournalRecord completion = completions.get(entry.getKey());
+            if ((completion != null) != completed) {
+                continue;
+            }
+            List<JournalRecord> planRecords = entry.getValue();
+            Instant startedAt = planRecords.get(0).recordedAt();
+            Instant lastActivityAt = completion != null
+                ? completion.recordedAt()
+                : planRecords.get(planRecords.size() - 1).recordedAt();
+            List<JournalRecord> completedSteps = new ArrayList<>();
+            String lastStartedStepId = null;
+            for (JournalRecord record : planRecords) {
+                if (record.type() == JournalRecord.Type.STEP_COMPLETED) {
+                    completedSteps.add(record);
+                } else if (record.type() == JournalRecord.Type.STEP_STARTED) {
+                    lastStartedStepId = record.stepId();
+                }
+            }
+            plans.add(new RecoveredPlan(entry.getKey(), startedAt, lastActivityAt, completedSteps, lastStartedStepId,
+                completion != null, completion != null && completion.success()));
+        }
+        return plans;
+    }
+
+    /**
+     * Отмечает прерванные и несохранённые планы как восстановленные; после этого журнал может быть сжат.
+     *
+     * Marks interrupted and unpersisted plans as recovered; the journal may be compacted afterwards.
+     */
+    public synchronized void markRecovered() {
+        recoveryPending = false;
+    }
+
+    /**
+     * Сбрасывает журнал в начало, если все записи прочитаны и нет планов в работе.
+     *
+     * Resets the journal to its start when all records were read and no plans are in flight.
+     *
+     * @param readPosition позиция, до которой записи уже переданы в БД / position up to which records were persisted
+     * @return true, если журнал сжат / if the journal was compacted
+     */
+    public synchronized boolean compactIfIdle(long readPosition) {
+        if (recoveryPending || inFlightPlans > 0 || readPosition != writePosition || writePosition == HEADER_SIZE) {
+            return false;
+        }
+        buffer.putInt(HEADER_SIZE, 0);
+        writePosition = HEADER_SIZE;
+        return true;
+    }
+
+    /**
+     * Сбрасывает изменённые страницы на диск.
+     *
+     * Flushes modified pages to disk.
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    /**
+     * Позиция конца журнала на момент открытия (начало новых записей этого запуска).
+     *
+     * End of the journal at open time (where records of this run start).
+     */
+    public long tailAtOpen() {
+        return tailAtOpen;
+    }
+
+    public synchronized long writePosition() {
+        return writePosition;
+    }
+
+    public synchronized int inFlightPlans() {
+        return inFlightPlans;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    private List<JournalRecord> scan() {
+        List<JournalRecord> records = new ArrayList<>();
+        int position = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length + Integer.BYTES > buffer.capacity()) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.get(position + RECORD_HEADER_SIZE, body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                log.warn("Execution journal {} has a torn record at position {}, ignoring the tail", path, position);
+                break;
+            }
+            records.add(decode(body));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if (position + Integer.BYTES <= buffer.capacity()) {
+            buffer.putInt(position, 0);
+        }
+        writePosition = position;
+        return List.copyOf(records);
+    }
+
+    private void grow(long required) throws IOException {
+        long capacity = buffer.capacity();
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Execution journal is full: " + path);
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        log.info("Execution journal {} grown to {} bytes", path, capacity);
+    }
+
+    private static byte[] encode(JournalRecord record) {
+        byte[] planId = bytes(record.planId());
+        byte[] stepId = bytes(record.stepId());
+        byte[] error = bytes(truncate(record.error()));
+        ByteBuffer body = ByteBuffer.allocate(1 + Long.BYTES + Integer.BYTES + 1 + Long.BYTES
+            + 3 * Integer.BYTES + length(planId) + length(stepId) + length(error));
+        body.put((byte) record.type().ordinal());
+        body.putLong(record.recordedAt().toEpochMilli());
+        body.putInt(record.stepIndex());
+        body.put((byte) (record.success() ? 1 : 0));
+        body.putLong(record.executionTimeMs());
+        putString(body, planId);
+        putString(body, stepId);
+        putString(body, error);
+        return body.array();
+    }
+
+    private static JournalRecord decode(byte[] bytes) {
+        ByteBuffer body = ByteBuffer.wrap(bytes);
+        JournalRecord.Type type = JournalRecord.Type.values()[body.get()];
+        Instant recordedAt = Instant.ofEpochMilli(body.getLong());
+        int stepIndex = body.getInt();
+        boolean success = body.get() == 1;
+        long executionTimeMs = body.getLong();
+        String planId = getString(body);
+        String stepId = getString(body);
+        String error = getString(body);
+        return new JournalRecord(type, planId, stepId, stepIndex, success, executionTimeMs, error, recordedAt);
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int length(byte[] value) {
+        return value != null ? value.length : 0;
+    }
+
+    private static void putString(ByteBuffer body, byte[] value) {
+        if (value == null) {
+            body.putInt(-1);
+            return;
+        }
+        body.putInt(value.length);
+        body.put(value);
+    }
+
+    private static String getString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        body.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static String truncate(String value) {
+        if (value == null || value.length() <= MAX_ERROR_LENGTH) {
+            return value;
+        }
+        return value.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /**
+     * Пачка прочитанных записей и позиция, с которой продолжать чтение.
+     *
+     * Batch of read records and the position to continue reading from.
+     */
+    public record Batch(List<JournalRecord> records, long nextPosition) {
+        public Batch {
+            records = records != null ? List.copyOf(records) : List.of();
+        }
+    }
+}
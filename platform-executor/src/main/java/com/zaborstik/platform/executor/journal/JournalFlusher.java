@@ -0,0 +1,93 @@
+package com.zaborstik.platform.executor.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновый flusher журнала исполнения.
+ * <p>
+ * С заданным интервалом читает новые записи {@link ExecutionJournal}, передаёт их в {@link JournalSink},
+ * сбрасывает страницы на диск и сжимает журнал, когда все планы завершены и sink это разрешает.
+ * <p>
+ * Background execution journal flusher.
+ * <p>
+ * Periodically reads new {@link ExecutionJournal} records, hands them to {@link JournalSink},
+ * forces pages to disk and compacts the journal once no plans are in flight and the sink allows it.
+ */
+public class JournalFlusher implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(JournalFlusher.class);
+
+    private final ExecutionJournal journal;
+    private final JournalSink sink;
+    private final Duration interval;
+    private final ScheduledExecutorService scheduler;
+    private long readPosition;
+
+    public JournalFlusher(ExecutionJournal journal, JournalSink sink, Duration interval) {
+        this.journal = Objects.requireNonNull(journal, "journal cannot be null");
+        this.sink = Objects.requireNonNull(sink, "sink cannot be null");
+        this.interval = Objects.requireNonNull(interval, "interval cannot be null");
+        if (interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.readPosition = journal.tailAtOpen();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "execution-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        long intervalMs = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Передаёт в sink все ещё не переданные записи.
+     *
+     * Hands all not yet delivered records to the sink.
+     *
+     * @return количество переданных записей / number of delivered records
+     */
+    public synchronized int flush() throws Exception {
+        ExecutionJournal.Batch batch = journal.read(readPosition);
+        if (!batch.records().isEmpty()) {
+            sink.flush(batch.records());
+            readPosition = batch.nextPosition();
+            journal.force();
+        }
+        if (sink.allowsCompaction() && journal.compactIfIdle(readPosition)) {
+            readPosition = journal.writePosition();
+        }
+        return batch.records().size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(interval.toMillis() * 2, TimeUnit.MILLISECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            scheduler.shutdownNow();
+        }
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Execution journal flush failed, will retry: {}", e.getMessage());
+        }
+    }
+}
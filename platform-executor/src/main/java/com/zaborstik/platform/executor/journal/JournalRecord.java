@@ -0,0 +1,60 @@
+package com.zaborstik.platform.executor.journal;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Одна запись журнала исполнения (append-only).
+ * Фиксирует старт/завершение плана и шагов в момент, когда они происходят, и сохранение итога плана владельцем.
+ * <p>
+ * One execution journal record (append-only).
+ * Captures plan and step start/completion at the moment they happen, and the owner persisting the plan outcome.
+ *
+ * @param type            тип записи / record type
+ * @param planId          ID плана / plan id
+ * @param stepId          ID шага (null для записей уровня плана) / step id (null for plan-level records)
+ * @param stepIndex       индекс шага (-1 для записей уровня плана) / step index (-1 for plan-level records)
+ * @param success         успешность (для *_COMPLETED) / success flag (for *_COMPLETED)
+ * @param executionTimeMs время выполнения шага / step execution time
+ * @param error           текст ошибки (усечённый) / error text (truncated)
+ * @param recordedAt      время записи / record time
+ */
+public record JournalRecord(Type type, String planId, String stepId, int stepIndex, boolean success,
+                            long executionTimeMs, String error, Instant recordedAt) {
+
+    public enum Type {
+        PLAN_STARTED,
+        STEP_STARTED,
+        STEP_COMPLETED,
+        PLAN_COMPLETED,
+        PLAN_PERSISTED
+    }
+
+    public JournalRecord {
+        Objects.requireNonNull(type, "type cannot be null");
+        Objects.requireNonNull(planId, "planId cannot be null");
+        recordedAt = recordedAt != null ? recordedAt : Instant.now();
+    }
+
+    public static JournalRecord planStarted(String planId) {
+        return new JournalRecord(Type.PLAN_STARTED, planId, null, -1, false, 0, null, Instant.now());
+    }
+
+    public static JournalRecord stepStarted(String planId, String stepId, int stepIndex) {
+        return new JournalRecord(Type.STEP_STARTED, planId, stepId, stepIndex, false, 0, null, Instant.now());
+    }
+
+    public static JournalRecord stepCompleted(String planId, String stepId, int stepIndex, boolean success,
+                                              long executionTimeMs, String error) {
+        return new JournalRecord(Type.STEP_COMPLETED, planId, stepId, stepIndex, success, executionTimeMs, error,
+            Instant.now());
+    }
+
+    public static JournalRecord planCompleted(String planId, boolean success) {
+        return new JournalRecord(Type.PLAN_COMPLETED, planId, null, -1, success, 0, null, Instant.now());
+    }
+
+    public static JournalRecord planPersisted(String planId) {
+        return new JournalRecord(Type.PLAN_PERSISTED, planId, null, -1, false, 0, null, Instant.now());
+    }
+}
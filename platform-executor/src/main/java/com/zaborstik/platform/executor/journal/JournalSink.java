@@ -0,0 +1,32 @@
+package com.zaborstik.platform.executor.journal;
+
+import java.util.List;
+
+/**
+ * Получатель записей журнала (обычно — сохранение прогресса в БД).
+ * Вызывается из фонового потока {@link JournalFlusher}, а не из потока исполнения плана.
+ * <p>
+ * Receiver of journal records (usually progress persistence to the DB).
+ * Called from the background {@link JournalFlusher} thread, not from the plan execution thread.
+ */
+@FunctionalInterface
+public interface JournalSink {
+
+    /**
+     * Обрабатывает пачку записей. Исключение означает, что пачка будет передана повторно.
+     *
+     * Handles a batch of records. An exception means the batch will be delivered again.
+     */
+    void flush(List<JournalRecord> records) throws Exception;
+
+    /**
+     * Можно ли сжать журнал после переданных записей; false, пока записи ещё нужны для восстановления
+     * (например, итог завершённого плана не сохранён).
+     *
+     * Whether the journal may be compacted after the delivered records; false while the records are still needed
+     * for recovery (for example, the outcome of a completed plan is not persisted yet).
+     */
+    default boolean allowsCompaction() {
+        return true;
+    }
+}
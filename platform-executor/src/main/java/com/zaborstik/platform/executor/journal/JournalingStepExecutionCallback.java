@@ -0,0 +1,65 @@
+package com.zaborstik.platform.executor.journal;
+
+import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.agent.service.StepExecutionCallback;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.plan.PlanStep;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Callback, который пишет события выполнения в {@link ExecutionJournal} и передаёт их дальше.
+ * Ошибка записи в журнал не прерывает выполнение плана.
+ * <p>
+ * Callback that writes execution events to {@link ExecutionJournal} and forwards them to the delegate.
+ * A journal write failure never breaks plan execution.
+ */
+public class JournalingStepExecutionCallback implements StepExecutionCallback {
+    private static final Logger log = LoggerFactory.getLogger(JournalingStepExecutionCallback.class);
+
+    private final ExecutionJournal journal;
+    private final String planId;
+    private final StepExecutionCallback delegate;
+
+    public JournalingStepExecutionCallback(ExecutionJournal journal, String planId, StepExecutionCallback delegate) {
+        this.journal = Objects.requireNonNull(journal, "journal cannot be null");
+        this.planId = Objects.requireNonNull(planId, "planId cannot be null");
+        this.delegate = delegate != null ? delegate : StepExecutionCallback.noOp();
+    }
+
+    @Override
+    public void onPlanStarted(Plan plan) {
+        append(JournalRecord.planStarted(planId));
+        delegate.onPlanStarted(plan);
+    }
+
+    @Override
+    public void onStepStarted(PlanStep step, int stepIndex, int totalSteps) {
+        append(JournalRecord.stepStarted(planId, step.id(), stepIndex));
+        delegate.onStepStarted(step, stepIndex, totalSteps);
+    }
+
+    @Override
+    public void onStepCompleted(PlanStep step, StepExecutionResult result, int stepIndex) {
+        append(JournalRecord.stepCompleted(planId, step.id(), stepIndex, result.success(),
+            result.executionTimeMs(), result.error()));
+        delegate.onStepCompleted(step, result, stepIndex);
+    }
+
+    @Override
+    public void onPlanCompleted(Plan plan, List<StepExecutionResult> results, boolean success) {
+        append(JournalRecord.planCompleted(planId, success));
+        delegate.onPlanCompleted(plan, results, success);
+    }
+
+    private void append(JournalRecord record) {
+        try {
+            journal.append(record);
+        } catch (Exception e) {
+            log.warn("Failed to append {} for plan {} to execution journal: {}", record.type(), planId, e.getMessage());
+        }
+    }
+}
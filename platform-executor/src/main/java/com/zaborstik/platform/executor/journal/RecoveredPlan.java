@@ -0,0 +1,40 @@
+package com.zaborstik.platform.executor.journal;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * План, итог которого не сохранён до падения JVM: выполнение прервано (в журнале есть PLAN_STARTED, но нет
+ * PLAN_COMPLETED) или план завершился, но владелец не успел сохранить итог (нет PLAN_PERSISTED).
+ * <p>
+ * Plan whose outcome was not persisted before a JVM crash: either its execution was interrupted (journal has
+ * PLAN_STARTED but no PLAN_COMPLETED) or the plan completed but the owner had not persisted the outcome yet
+ * (no PLAN_PERSISTED).
+ *
+ * @param planId           ID плана / plan id
+ * @param startedAt        время старта плана / plan start time
+ * @param lastActivityAt   время последней записи по плану / time of the last record for the plan
+ * @param completedSteps   записи STEP_COMPLETED в порядке выполнения / STEP_COMPLETED records in execution order
+ * @param lastStartedStepId шаг, на котором остановилось выполнение / step the execution stopped at
+ * @param completed        в журнале есть PLAN_COMPLETED / journal has PLAN_COMPLETED
+ * @param success          итог PLAN_COMPLETED; false для прерванного плана /
+ *                         PLAN_COMPLETED outcome; false for an interrupted plan
+ */
+public record RecoveredPlan(String planId, Instant startedAt, Instant lastActivityAt,
+                            List<JournalRecord> completedSteps, String lastStartedStepId,
+                            boolean completed, boolean success) {
+
+    public RecoveredPlan {
+        Objects.requireNonNull(planId, "planId cannot be null");
+        completedSteps = completedSteps != null ? List.copyOf(completedSteps) : List.of();
+    }
+
+    /**
+     * Прерванный план (без PLAN_COMPLETED). Interrupted plan (without PLAN_COMPLETED).
+     */
+    public RecoveredPlan(String planId, Instant startedAt, Instant lastActivityAt,
+                         List<JournalRecord> completedSteps, String lastStartedStepId) {
+        this(planId, startedAt, lastActivityAt, completedSteps, lastStartedStepId, false, false);
+    }
+}
@@ -0,0 +1,196 @@
+package com.zaborstik.platform.executor.log;
+
+import com.zaborstik.platform.executor.ExecutionLogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Хранилище execution_log с ограниченным окном в памяти.
+ * <p>
+ * В памяти остаются последние {@link LogRetention#inMemoryEntries()} записей; более старые кодируются
+ * ({@link LogEntryCodec}) и дописываются во временный файл, откуда читаются лениво при обращении.
+ * Файл открыт с DELETE_ON_CLOSE и освобождается при {@link #close()} или когда хранилище становится недостижимым.
+ * После {@link #seal()} хранилище доступно только для чтения.
+ * <p>
+ * execution_log store with a bounded in-memory window.
+ * <p>
+ * The latest {@link LogRetention#inMemoryEntries()} entries stay in memory; older ones are encoded
+ * ({@link LogEntryCodec}) and appended to a temporary file from which they are read back lazily.
+ * The file is opened with DELETE_ON_CLOSE and released on {@link #close()} or once the store becomes unreachable.
+ * After {@link #seal()} the store is read-only.
+ */
+public final class ExecutionLogStore extends AbstractList<ExecutionLogEntry> implements RandomAccess, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ExecutionLogStore.class);
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final int INITIAL_WINDOW_CAPACITY = 16;
+
+    private final int windowSize;
+    private final Path spillDirectory;
+    private final SpillFile spill = new SpillFile();
+    private final Cleaner.Cleanable cleanable;
+    private ExecutionLogEntry[] window;
+    private long[] offsets = new long[INITIAL_WINDOW_CAPACITY];
+    private int size;
+    private int spilled;
+    private boolean sealed;
+
+    public ExecutionLogStore(LogRetention retention) {
+        Objects.requireNonNull(retention, "retention cannot be null");
+        this.windowSize = retention.spills() ? retention.inMemoryEntries() : Integer.MAX_VALUE;
+        this.spillDirectory = retention.spillDirectory();
+        this.window = new ExecutionLogEntry[Math.min(windowSize, INITIAL_WINDOW_CAPACITY)];
+        this.cleanable = CLEANER.register(this, spill);
+    }
+
+    /**
+     * Добавляет запись; при переполнении окна самая старая запись вытесняется на диск.
+     *
+     * Appends an entry; when the window is full the oldest entry is spilled to disk.
+     */
+    @Override
+    public synchronized boolean add(ExecutionLogEntry entry) {
+        Objects.requireNonNull(entry, "entry cannot be null");
+        if (sealed) {
+            throw new UnsupportedOperationException("execution log is sealed");
+        }
+        if (size - spilled == windowSize) {
+            spillOldest();
+        } else if (size - spilled == window.length) {
+            window = Arrays.copyOf(window, (int) Math.min(windowSize, 2L * window.length));
+        }
+        window[size % window.length] = entry;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Запрещает дальнейшие изменения и возвращает это же хранилище.
+     *
+     * Forbids further modification and returns this store.
+     */
+    public synchronized ExecutionLogStore seal() {
+        sealed = true;
+        return this;
+    }
+
+    @Override
+    public synchronized ExecutionLogEntry get(int index) {
+        Objects.checkIndex(index, size);
+        if (index >= spilled) {
+            return window[index % window.length];
+        }
+        try {
+            long start = offsets[index];
+            long end = index + 1 < spilled ? offsets[index + 1] : spill.position;
+            return LogEntryCodec.decode(spill.read(start, (int) (end - start)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read spilled execution log entry " + index, e);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Число записей, вытесненных на диск.
+     *
+     * Number of entries spilled to disk.
+     */
+    public synchronized int spilledCount() {
+        return spilled;
+    }
+
+    /**
+     * Удаляет файл вытеснения; вытесненные записи больше недоступны.
+     *
+     * Deletes the spill file; spilled entries are no longer readable.
+     */
+    @Override
+    public void close() {
+        cleanable.clean();
+    }
+
+    private void spillOldest() {
+        int slot = spilled % window.length;
+        ExecutionLogEntry oldest = window[slot];
+        try {
+            if (spilled == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[spilled] = spill.append(spillDirectory, oldest);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill execution log entry", e);
+        }
+        window[slot] = null;
+        spilled++;
+    }
+
+    /**
+     * Файл вытеснения; вынесен отдельно, чтобы {@link Cleaner} не удерживал само хранилище.
+     *
+     * Spill file; kept separate so that the {@link Cleaner} does not retain the store itself.
+     */
+    private static final class SpillFile implements Runnable {
+        private final LogEntryCodec codec = new LogEntryCodec();
+        private FileChannel channel;
+        private long position;
+
+        private long append(Path directory, ExecutionLogEntry entry) throws IOException {
+            if (channel == null) {
+                Files.createDirectories(directory);
+                Path file = Files.createTempFile(directory, "execution-log-", ".bin");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+                log.debug("Spilling execution log to {}", file);
+            }
+            long start = position;
+            ByteBuffer buffer = ByteBuffer.wrap(codec.encode(entry));
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            return start;
+        }
+
+        private byte[] read(long start, int length) throws IOException {
+            if (channel == null || !channel.isOpen()) {
+                throw new IOException("spill file is closed");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new IOException("unexpected end of spill file");
+                }
+            }
+            return buffer.array();
+        }
+
+        @Override
+        public void run() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to delete execution log spill file: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.zaborstik.platform.executor.log;
+
+import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.core.plan.PlanStep;
+import com.zaborstik.platform.core.plan.PlanStepAction;
+import com.zaborstik.platform.executor.ExecutionLogEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Компактная двоичная кодировка {@link ExecutionLogEntry} для файла вытеснения.
+ * Значения metadata: строки, числа, boolean, вложенные Map/List; прочие типы сохраняются как строка.
+ * <p>
+ * Compact binary encoding of {@link ExecutionLogEntry} for the spill file.
+ * Metadata values: strings, numbers, booleans, nested maps/lists; other types are stored as strings.
+ */
+final class LogEntryCodec {
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_LONG = 2;
+    private static final byte TAG_DOUBLE = 3;
+    private static final byte TAG_BOOLEAN = 4;
+    private static final byte TAG_MAP = 5;
+    private static final byte TAG_LIST = 6;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    /**
+     * Кодирует запись; буфер кодека переиспользуется, поэтому экземпляр не потокобезопасен.
+     *
+     * Encodes the entry; the codec buffer is reused, so an instance is not thread-safe.
+     */
+    byte[] encode(ExecutionLogEntry entry) throws IOException {
+        bytes.reset();
+        writeString(entry.planId());
+        out.writeInt(entry.stepIndex());
+        writeInstant(entry.loggedAt());
+        writeStep(entry.step());
+        writeResult(entry.result());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static ExecutionLogEntry decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        String planId = readString(in);
+        int stepIndex = in.readInt();
+        Instant loggedAt = readInstant(in);
+        PlanStep step = readStep(in);
+        StepExecutionResult result = readResult(in);
+        return new ExecutionLogEntry(planId, stepIndex, step, result, loggedAt);
+    }
+
+    private void writeStep(PlanStep step) throws IOException {
+        writeString(step.id());
+        writeString(step.planId());
+        writeString(step.workflowId());
+        writeString(step.workflowStepInternalName());
+        writeString(step.entityTypeId());
+        writeString(step.entityId());
+        out.writeInt(step.sortOrder());
+        writeString(step.displayName());
+        out.writeInt(step.actions().size());
+        for (PlanStepAction action : step.actions()) {
+            writeString(action.actionId());
+            writeString(action.metaValue());
+        }
+    }
+
+    private static PlanStep readStep(DataInputStream in) throws IOException {
+        String id = readString(in);
+        String planId = readString(in);
+        String workflowId = readString(in);
+        String workflowStepInternalName = readString(in);
+        String entityTypeId = readString(in);
+        String entityId = readString(in);
+        int sortOrder = in.readInt();
+        String displayName = readString(in);
+        int actionCount = in.readInt();
+        List<PlanStepAction> actions = new ArrayList<>(actionCount);
+        for (int i = 0; i < actionCount; i++) {
+            actions.add(new PlanStepAction(readString(in), readString(in)));
+        }
+        return new PlanStep(id, planId, workflowId, workflowStepInternalName, entityTypeId, entityId,
+            sortOrder, displayName, actions);
+    }
+
+    private void writeResult(StepExecutionResult result) throws IOException {
+        writeString(result.stepType());
+        writeString(result.stepTarget());
+        out.writeBoolean(result.success());
+        writeString(result.message());
+        writeString(result.error());
+        writeInstant(result.executedAt());
+        out.writeLong(result.executionTimeMs());
+        writeString(result.screenshotPath());
+        writeValue(result.metadata());
+        out.writeInt(result.retryCount());
+        out.writeInt(result.stepIndex());
+        writeString(result.commandType());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StepExecutionResult readResult(DataInputStream in) throws IOException {
+        String stepType = readString(in);
+        String stepTarget = readString(in);
+        boolean success = in.readBoolean();
+        String message = readString(in);
+        String error = readString(in);
+        Instant executedAt = readInstant(in);
+        long executionTimeMs = in.readLong();
+        String screenshotPath = readString(in);
+        Map<String, Object> metadata = (Map<String, Object>) readValue(in);
+        int retryCount = in.readInt();
+        int stepIndex = in.readInt();
+        String commandType = readString(in);
+        return new StepExecutionResult(stepType, stepTarget, success, message, error, executedAt,
+            executionTimeMs, screenshotPath, metadata, retryCount, stepIndex, commandType);
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean(bool);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(TAG_LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(TAG_MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(String.valueOf(entry.getKey()));
+                writeValue(entry.getValue());
+            }
+        } else if (value instanceof Collection<?> collection) {
+            out.writeByte(TAG_LIST);
+            out.writeInt(collection.size());
+            for (Object item : collection) {
+                writeValue(item);
+            }
+        } else {
+            out.writeByte(TAG_STRING);
+            writeString(value.toString());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_MAP:
+                int size = in.readInt();
+                Map<String, Object> map = new LinkedHashMap<>(Math.max(4, size * 2));
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(in), readValue(in));
+                }
+                return map;
+            case TAG_LIST:
+                int length = in.readInt();
+                List<Object> list = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case TAG_STRING:
+                return readString(in);
+            default:
+                throw new IOException("Unknown value tag: " + tag);
+        }
+    }
+
+    private void writeInstant(Instant instant) throws IOException {
+        out.writeLong(instant.getEpochSecond());
+        out.writeInt(instant.getNano());
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return Instant.ofEpochSecond(in.readLong(), in.readInt());
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package com.zaborstik.platform.executor.log;
+
+import java.nio.file.Path;
+
+/**
+ * Политика хранения execution_log результата исполнения.
+ * <p>
+ * Retention policy of the execution_log of a run result.
+ *
+ * @param inMemoryEntries сколько последних записей держать в памяти / how many latest entries are kept in memory
+ * @param spillDirectory  каталог для файлов вытесненных записей; null — без вытеснения /
+ *                        directory of spill files; null disables spilling
+ */
+public record LogRetention(int inMemoryEntries, Path spillDirectory) {
+
+    public LogRetention {
+        if (inMemoryEntries <= 0) {
+            throw new IllegalArgumentException("inMemoryEntries must be > 0");
+        }
+    }
+
+    /**
+     * Весь журнал в памяти (поведение по умолчанию).
+     *
+     * Whole log in memory (default behavior).
+     */
+    public static LogRetention unbounded() {
+        return new LogRetention(Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Держать в памяти окно из {@code inMemoryEntries} записей, остальные вытеснять в {@code spillDirectory}.
+     *
+     * Keep a window of {@code inMemoryEntries} entries in memory and spill older ones to {@code spillDirectory}.
+     */
+    public static LogRetention spillingAfter(int inMemoryEntries, Path spillDirectory) {
+        if (spillDirectory == null) {
+            throw new IllegalArgumentException("spillDirectory cannot be null");
+        }
+        return new LogRetention(inMemoryEntries, spillDirectory);
+    }
+
+    public boolean spills() {
+        return spillDirectory != null && inMemoryEntries < Integer.MAX_VALUE;
+    }
+}
@@ -1,14 +1,19 @@
 package com.zaborstik.platform.executor;
 
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+import com.zaborstik.platform.agent.service.CancellationToken;
+import com.zaborstik.platform.agent.service.ExecutionOptions;
 import com.zaborstik.platform.core.plan.Plan;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
@@ -18,6 +23,8 @@ import java.util.concurrent.locks.LockSupport;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -40,6 +47,42 @@ class AsyncPlanExecutorTest {
         async.shutdown();
     }
 
+    @Test
+    void shouldRecordQueueWaitWhenMetricsAreConfigured() throws Exception {
+        Plan plan = emptyPlan("p1");
+        PlanExecutionResult expected = new PlanExecutionResult("p1", true, Instant.now(), Instant.now(), List.of());
+        when(planExecutor.execute(any(Plan.class), anyBoolean())).thenReturn(expected);
+        ExecutionMetrics metrics = new ExecutionMetrics();
+
+        AsyncPlanExecutor async = new AsyncPlanExecutor(planExecutor, Executors.newSingleThreadExecutor(), metrics);
+        async.executeAsync(plan).get(2, TimeUnit.SECONDS);
+        async.executeAsync(plan).get(2, TimeUnit.SECONDS);
+
+        assertEquals(2, metrics.snapshot().queueWait().count());
+        async.shutdown();
+    }
+
+    @Test
+    void cancellingFutureShouldCancelExecutionToken() throws Exception {
+        CancellationToken token = CancellationToken.create();
+        ExecutionOptions options = ExecutionOptions.defaults().withCancellation(token);
+        CountDownLatch started = new CountDownLatch(1);
+        when(planExecutor.execute(any(Plan.class), isNull(), eq(options))).thenAnswer(invocation -> {
+            started.countDown();
+            token.await(Duration.ofSeconds(5));
+            return new PlanExecutionResult("p1", false, Instant.now(), Instant.now(), List.of(), true);
+        });
+
+        AsyncPlanExecutor async = new AsyncPlanExecutor(planExecutor);
+        CompletableFuture<PlanExecutionResult> future = async.executeAsync(emptyPlan("p1"), options);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        future.cancel(true);
+
+        assertTrue(token.isCancelled());
+        assertEquals("future cancelled", token.reason());
+        async.shutdown();
+    }
+
     @Test
     void multiplePlansShouldRunInParallel() throws Exception {
         when(planExecutor.execute(any(Plan.class), anyBoolean())).thenAnswer(invocation -> {
@@ -71,6 +71,16 @@ class PlanExecutionResultTest {
         assertFalse(result.success());
     }
 
+    @Test
+    void cancelledResultShouldNeverBeSuccessful() {
+        PlanExecutionResult result = new PlanExecutionResult(
+            "plan-789", true, Instant.now(), Instant.now(), List.of(), true);
+
+        assertTrue(result.cancelled());
+        assertFalse(result.success());
+        assertFalse(new PlanExecutionResult("plan-789", true, Instant.now(), Instant.now(), List.of()).cancelled());
+    }
+
     @Test
     void shouldReturnEmptyListWhenLogEntriesIsNull() {
         // When
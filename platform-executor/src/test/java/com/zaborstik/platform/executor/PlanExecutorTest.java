@@ -1,21 +1,42 @@
 package com.zaborstik.platform.executor;
 
+import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.dto.SessionResetMode;
 import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.agent.pool.AgentEndpointStats;
+import com.zaborstik.platform.agent.pool.AgentPool;
+import com.zaborstik.platform.agent.pool.AgentPoolOptions;
+import com.zaborstik.platform.agent.pool.SessionPool;
+import com.zaborstik.platform.agent.pool.SessionPoolOptions;
 import com.zaborstik.platform.agent.service.AgentService;
+import com.zaborstik.platform.agent.service.CallbackDispatcher;
+import com.zaborstik.platform.agent.service.ExecutionDeadline;
+import com.zaborstik.platform.agent.service.ExecutionOptions;
 import com.zaborstik.platform.agent.service.StepExecutionCallback;
 import com.zaborstik.platform.core.plan.Plan;
 import com.zaborstik.platform.core.plan.PlanStep;
+import com.zaborstik.platform.executor.log.ExecutionLogStore;
+import com.zaborstik.platform.executor.log.LogRetention;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -69,6 +90,32 @@ class PlanExecutorTest {
         assertTrue(executionResult.logEntries().get(3).result().error().contains("not executed"));
     }
 
+    @Test
+    void rejectedPlanShouldLogCompilationFailureAgainstTheBadStep() {
+        List<StepExecutionResult> results = List.of(
+            StepExecutionResult.failure("step-1", "Step 1", "Step was not executed: plan rejected", 0,
+                Map.of("planRejected", true), 0, 0, null),
+            StepExecutionResult.failure("step-2", "Step 2", "Step was not executed: plan rejected", 0,
+                Map.of("planRejected", true), 0, 1, null),
+            StepExecutionResult.failure("step-3", "Step 3", "Unknown executor operation: fly", 0,
+                Map.of("compilationFailed", true), 0, 2, null),
+            StepExecutionResult.failure("step-4", "Step 4", "Step was not executed: plan rejected", 0,
+                Map.of("planRejected", true), 0, 3, null)
+        );
+        when(agentService.executePlan(any(Plan.class), anyBoolean(), any(StepExecutionCallback.class)))
+            .thenReturn(results);
+
+        PlanExecutionResult executionResult = executor.execute(testPlan, true);
+
+        assertFalse(executionResult.success());
+        assertEquals(4, executionResult.logEntries().size());
+        ExecutionLogEntry badStep = executionResult.logEntries().get(2);
+        assertEquals("step-3", badStep.step().id());
+        assertEquals("Unknown executor operation: fly", badStep.result().error());
+        assertEquals(true, badStep.result().metadata().get("compilationFailed"));
+        assertEquals(true, executionResult.logEntries().get(0).result().metadata().get("planRejected"));
+    }
+
     @Test
     void stopOnFailureFalseShouldProcessAllReturnedResults() {
         List<StepExecutionResult> results = List.of(
@@ -115,6 +162,124 @@ class PlanExecutorTest {
         verify(agentService).executePlan(testPlan, false, callback);
     }
 
+    @Test
+    void executeWithOptionsShouldPassDeadlineToAgentService() {
+        ExecutionOptions options = ExecutionOptions.defaults()
+            .withStopOnFailure(true)
+            .withDeadline(ExecutionDeadline.after(Duration.ofMinutes(1)));
+        when(agentService.executePlan(testPlan, callback, options))
+            .thenReturn(List.of(
+                StepExecutionResult.success("s1", "t1", "ok", 10, null),
+                StepExecutionResult.failure("s2", "t2", "Plan deadline exceeded", 0)
+            ));
+
+        PlanExecutionResult executionResult = executor.execute(testPlan, callback, options);
+
+        assertFalse(executionResult.success());
+        assertEquals(4, executionResult.logEntries().size());
+        verify(agentService).executePlan(testPlan, callback, options);
+    }
+
+    @Test
+    void callbackDispatcherShouldDeliverRunCallbackBeforeExecuteReturns() {
+        AtomicReference<String> callbackThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            Thread.sleep(50);
+            callbackThread.set(Thread.currentThread().getName());
+            return null;
+        }).when(callback).onPlanStarted(testPlan);
+        when(agentService.executePlan(eq(testPlan), any(StepExecutionCallback.class), any(ExecutionOptions.class)))
+            .thenAnswer(invocation -> {
+                StepExecutionCallback routed = invocation.getArgument(1);
+                routed.onPlanStarted(testPlan);
+                return List.of();
+            });
+
+        try (CallbackDispatcher dispatcher = new CallbackDispatcher()) {
+            executor.withCallbackDispatcher(dispatcher).execute(testPlan, callback, ExecutionOptions.defaults());
+
+            assertEquals("step-callback-" + PlanExecutor.CALLBACK_CHANNEL, callbackThread.get());
+            assertEquals(1, dispatcher.stats().get(0).delivered());
+        }
+    }
+
+    @Test
+    void logRetentionShouldSpillOlderEntriesToDisk(@TempDir Path tempDir) {
+        PlanExecutor spillingExecutor = new PlanExecutor(agentService, null, LogRetention.spillingAfter(2, tempDir));
+        List<StepExecutionResult> results = List.of(
+            StepExecutionResult.success("s1", "t1", "ok", 10, null),
+            StepExecutionResult.failure("s2", "t2", "err", 10),
+            StepExecutionResult.success("s3", "t3", "ok", 10, null),
+            StepExecutionResult.success("s4", "t4", "ok", 10, null)
+        );
+        when(agentService.executePlan(any(Plan.class), anyBoolean(), any(StepExecutionCallback.class)))
+            .thenReturn(results);
+
+        PlanExecutionResult executionResult = spillingExecutor.execute(testPlan, false);
+
+        ExecutionLogStore store = assertInstanceOf(ExecutionLogStore.class, executionResult.logEntries());
+        assertEquals(2, store.spilledCount());
+        assertFalse(executionResult.success());
+        assertEquals("step-2", executionResult.logEntries().get(1).step().id());
+        assertFalse(executionResult.getStepResults().get(1).success());
+        store.close();
+    }
+
+    @Test
+    void pooledExecutorShouldRunPlanOnLeasedAgentAndReleaseIt() {
+        when(agentService.executePlan(any(Plan.class), anyBoolean(), any(StepExecutionCallback.class)))
+            .thenReturn(List.of(
+                StepExecutionResult.success("s1", "t1", "ok", 40, null),
+                StepExecutionResult.success("s2", "t2", "ok", 40, null),
+                StepExecutionResult.success("s3", "t3", "ok", 40, null),
+                StepExecutionResult.success("s4", "t4", "ok", 40, null)
+            ));
+        try (AgentPool pool = new AgentPool(List.of("http://agent-1"), url -> mock(AgentClient.class),
+                client -> agentService, AgentPoolOptions.defaults())) {
+            PlanExecutor pooled = new PlanExecutor(pool, null, LogRetention.unbounded());
+
+            PlanExecutionResult executionResult = pooled.execute(testPlan, false);
+
+            assertTrue(executionResult.success());
+            AgentEndpointStats stats = pool.stats().get(0);
+            assertEquals(0, stats.inFlight());
+            assertEquals(1, stats.sessionsTotal());
+            assertEquals(40.0, stats.latencyMs());
+        }
+    }
+
+    @Test
+    void sessionPooledExecutorShouldRunPlanInLeasedSessionWithoutReinitialization() {
+        when(agentService.executePlan(any(Plan.class), any(StepExecutionCallback.class), any(ExecutionOptions.class)))
+            .thenReturn(List.of(StepExecutionResult.success("s1", "t1", "ok", 40, null)));
+        SessionPoolOptions options = new SessionPoolOptions(0, 1, SessionResetMode.NONE, 0, Duration.ofMinutes(1), 0.5);
+        try (SessionPool pool = new SessionPool("http://app", baseUrl -> agentService, options)) {
+            PlanExecutor pooled = new PlanExecutor(pool, null, LogRetention.unbounded());
+
+            pooled.execute(testPlan, true);
+
+            ArgumentCaptor<ExecutionOptions> captor = ArgumentCaptor.forClass(ExecutionOptions.class);
+            verify(agentService).executePlan(any(Plan.class), any(StepExecutionCallback.class), captor.capture());
+            assertTrue(captor.getValue().reuseSession());
+            assertTrue(captor.getValue().stopOnFailure());
+            assertEquals(1, pool.stats().get(0).coldStarts());
+            assertEquals(0, pool.stats().get(0).leased());
+        }
+    }
+
+    @Test
+    void pooledExecutorShouldFailPlanWhenNoAgentIsAvailable() {
+        try (AgentPool pool = new AgentPool(List.of(), url -> mock(AgentClient.class),
+                client -> agentService, AgentPoolOptions.defaults())) {
+            PlanExecutor pooled = new PlanExecutor(pool, null, LogRetention.unbounded());
+
+            PlanExecutionResult executionResult = pooled.execute(testPlan, true);
+
+            assertFalse(executionResult.success());
+            assertTrue(executionResult.logEntries().get(0).result().error().startsWith("No healthy agent"));
+        }
+    }
+
     @Test
     void shouldThrowExceptionWhenPlanIsNull() {
         assertThrows(NullPointerException.class, () -> executor.execute(null));
@@ -0,0 +1,43 @@
+package com.zaborstik.platform.executor.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRunnerOptionsTest {
+
+    @Test
+    void shouldParseArgumentsWithDefaults() {
+        BatchRunnerOptions options = BatchRunnerOptions.parse(new String[] {
+            "--input", "jobs.ndjson", "--output", "out/results.ndjson",
+            "--agents", "http://a:3000, http://b:3000", "--headless"
+        });
+
+        assertEquals(Path.of("jobs.ndjson"), options.input());
+        assertEquals(Path.of("out/results.ndjson.progress"), options.progress());
+        assertEquals(List.of("http://a:3000", "http://b:3000"), options.agentUrls());
+        assertEquals(2, options.concurrency());
+        assertTrue(options.headless());
+        assertTrue(options.stopOnFailure());
+        assertEquals("{entityId}", options.placeholder());
+        assertNull(options.catalog());
+    }
+
+    @Test
+    void shouldRejectMissingOrUnknownArguments() {
+        assertThrows(IllegalArgumentException.class,
+            () -> BatchRunnerOptions.parse(new String[] {"--input", "jobs.ndjson", "--agents", "http://a"}));
+        assertThrows(IllegalArgumentException.class,
+            () -> BatchRunnerOptions.parse(new String[] {"--input", "a", "--output", "b"}));
+        assertThrows(IllegalArgumentException.class,
+            () -> BatchRunnerOptions.parse(new String[] {"--input", "a", "--output", "b", "--agents", "x", "--bogus"}));
+        assertThrows(IllegalArgumentException.class,
+            () -> BatchRunnerOptions.parse(new String[] {"--input", "a", "--output", "b", "--agents", "x",
+                "--concurrency", "many"}));
+        assertThrows(IllegalArgumentException.class,
+            () -> BatchRunnerOptions.parse(new String[] {"--input"}));
+    }
+}
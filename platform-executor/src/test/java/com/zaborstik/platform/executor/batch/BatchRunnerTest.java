@@ -0,0 +1,146 @@
+package com.zaborstik.platform.executor.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.agent.service.ExecutionOptions;
+import com.zaborstik.platform.core.domain.UIBinding;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.resolver.InMemoryResolver;
+import com.zaborstik.platform.executor.ExecutionLogEntry;
+import com.zaborstik.platform.executor.PlanExecutionResult;
+import com.zaborstik.platform.executor.PlanExecutor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BatchRunnerTest {
+
+    private static final String PLAN = "{\"id\":\"tpl\",\"workflowId\":\"wf-plan\",\"workflowStepInternalName\":\"new\","
+        + "\"stoppedAtPlanStepId\":\"step-1\",\"target\":\"Building {entityId}\",\"explanation\":\"Open\","
+        + "\"steps\":[{\"id\":\"step-1\",\"planId\":\"tpl\",\"workflowId\":\"wf-plan-step\","
+        + "\"workflowStepInternalName\":\"new\",\"entityTypeId\":\"Building\","
+        + "\"entityId\":\"http://localhost/buildings/{entityId}\",\"sortOrder\":0,\"displayName\":\"Open page\","
+        + "\"actions\":[{\"actionId\":\"act_open\",\"metaValue\":null}]}]}";
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private PlanExecutor executor;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void shouldExpandTemplatesAndStreamResults() throws Exception {
+        List<Plan> executed = new CopyOnWriteArrayList<>();
+        when(executor.execute(any(Plan.class), isNull(), any(ExecutionOptions.class))).thenAnswer(invocation -> {
+            Plan plan = invocation.getArgument(0);
+            executed.add(plan);
+            return result(plan, !plan.target().endsWith("2"));
+        });
+        Path input = write("jobs.ndjson",
+            "{\"id\":\"egrn\",\"plan\":" + PLAN + ",\"entityIds\":[\"1\",\"2\"]}",
+            "",
+            "{\"id\":\"single\",\"plan\":" + PLAN + "}");
+
+        BatchReport report = new BatchRunner(options(input), List.of(executor)).run();
+
+        assertEquals(3, report.summary().total());
+        assertEquals(1, report.summary().failed());
+        assertTrue(report.hasFailures());
+        assertTrue(report.format().contains("throughput="));
+        assertTrue(executed.stream().anyMatch(plan -> plan.steps().get(0).entityId().equals("http://localhost/buildings/1")));
+
+        List<JsonNode> lines = readOutput();
+        assertEquals(List.of("egrn/1", "egrn/2", "single"), lines.stream().map(line -> line.get("key").asText()).toList());
+        JsonNode failed = lines.get(1);
+        assertFalse(failed.get("success").asBoolean());
+        assertEquals("2", failed.get("entityId").asText());
+        assertEquals(1, failed.get("failedSteps").asInt());
+        assertEquals("boom", failed.get("error").asText());
+        assertEquals(List.of("egrn/1", "egrn/2", "single"), Files.readAllLines(dir.resolve("out.ndjson.progress")));
+    }
+
+    @Test
+    void shouldResumeFromProgressFile() throws Exception {
+        when(executor.execute(any(Plan.class), isNull(), any(ExecutionOptions.class)))
+            .thenAnswer(invocation -> result(invocation.getArgument(0), true));
+        Path input = write("jobs.ndjson", "{\"id\":\"egrn\",\"plan\":" + PLAN + ",\"entityIds\":[\"1\",\"2\",\"3\"]}");
+        Files.writeString(dir.resolve("out.ndjson.progress"), "egrn/1\negrn/3\n");
+
+        BatchReport report = new BatchRunner(options(input), List.of(executor)).run();
+
+        assertEquals(1, report.summary().total());
+        assertEquals(2, report.skipped());
+        assertEquals("egrn/2", readOutput().get(0).get("key").asText());
+    }
+
+    @Test
+    void invalidLineShouldBecomeFailedItem() throws Exception {
+        Path input = write("jobs.ndjson", "{not json", "{\"id\":\"no-plan\"}", "{\"id\":\"no-plan\"}");
+
+        BatchReport report = new BatchRunner(options(input), List.of(executor)).run();
+
+        assertEquals(2, report.summary().total());
+        assertEquals(2, report.summary().failed());
+        List<JsonNode> lines = readOutput();
+        assertEquals("line-1", lines.get(0).get("key").asText());
+        assertTrue(lines.get(0).get("error").asText().startsWith("Invalid JSON"));
+        assertEquals("Input line has no plan object", lines.get(1).get("error").asText());
+    }
+
+    @Test
+    void shouldLoadCatalog() throws Exception {
+        Path catalog = write("catalog.json", "{\"actions\":[{\"id\":\"act_open\",\"displayName\":\"Open\","
+            + "\"internalName\":\"open_page\",\"actionTypeId\":\"type\"}],"
+            + "\"uiBindings\":[{\"actionId\":\"act_open\",\"selector\":\"#open\"}]}");
+
+        InMemoryResolver resolver = BatchRunner.loadCatalog(catalog);
+
+        assertEquals("open_page", resolver.findAction("act_open").orElseThrow().internalName());
+        assertEquals(UIBinding.SelectorType.CSS, resolver.findUIBinding("act_open").orElseThrow().selectorType());
+    }
+
+    private BatchRunnerOptions options(Path input) {
+        return new BatchRunnerOptions(input, dir.resolve("out.ndjson"), null, List.of("http://agent:3000"), 1,
+            null, "http://localhost:8080", true, null, true);
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        return Files.write(dir.resolve(name), List.of(lines));
+    }
+
+    private List<JsonNode> readOutput() throws IOException {
+        List<JsonNode> nodes = new ArrayList<>();
+        for (String line : Files.readAllLines(dir.resolve("out.ndjson"))) {
+            nodes.add(objectMapper.readTree(line));
+        }
+        return nodes;
+    }
+
+    private static PlanExecutionResult result(Plan plan, boolean success) {
+        StepExecutionResult step = success
+            ? StepExecutionResult.success("step-1", "Open page", "ok", 5, null, Map.of())
+            : StepExecutionResult.failure("step-1", "Open page", "boom", 5, Map.of());
+        return new PlanExecutionResult(plan.id(), success, Instant.now(), Instant.now(),
+            List.of(new ExecutionLogEntry(plan.id(), 0, plan.steps().get(0), step, Instant.now())));
+    }
+}
@@ -0,0 +1,163 @@
+package com.zaborstik.platform.executor.fanout;
+
+import com.zaborstik.platform.agent.service.CancellationToken;
+import com.zaborstik.platform.agent.service.ExecutionOptions;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.executor.PlanExecutionResult;
+import com.zaborstik.platform.executor.PlanExecutor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FanOutExecutorTest {
+
+    @Mock
+    private PlanExecutor first;
+
+    @Mock
+    private PlanExecutor second;
+
+    @Test
+    void shouldRunEveryEntityOnceAndStreamResults() {
+        List<ExecutionOptions> usedOptions = new CopyOnWriteArrayList<>();
+        org.mockito.stubbing.Answer<PlanExecutionResult> answer = invocation -> {
+            usedOptions.add(invocation.getArgument(2));
+            return run(invocation.getArgument(0));
+        };
+        // Один из исполнителей может успеть забрать все элементы, поэтому заглушки нестрогие.
+        lenient().when(first.execute(any(Plan.class), isNull(), any(ExecutionOptions.class))).thenAnswer(answer);
+        lenient().when(second.execute(any(Plan.class), isNull(), any(ExecutionOptions.class))).thenAnswer(answer);
+        List<String> ids = IntStream.range(0, 20).mapToObj(i -> "e" + i).toList();
+        List<FanOutItemResult> streamed = new CopyOnWriteArrayList<>();
+
+        FanOutSummary summary = new FanOutExecutor(List.of(first, second))
+            .execute(FanOutExecutorTest::plan, ids.iterator(), FanOutOptions.defaults().withParallelism(2), streamed::add);
+
+        assertEquals(20, summary.total());
+        assertEquals(20, summary.succeeded());
+        assertEquals(1.0, summary.successRate());
+        assertEquals(20, streamed.stream().map(FanOutItemResult::entityId).distinct().count());
+        assertTrue(summary.p50Ms() <= summary.p95Ms());
+        assertTrue(summary.p95Ms() <= summary.maxMs());
+        assertFalse(summary.cancelled());
+
+        assertEquals(20, usedOptions.size());
+        assertTrue(usedOptions.stream().allMatch(ExecutionOptions::reuseSession));
+    }
+
+    @Test
+    void shouldRunItemsInParallelAcrossExecutors() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        org.mockito.stubbing.Answer<PlanExecutionResult> slow = invocation -> {
+            threads.add(Thread.currentThread().getName());
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+            running.decrementAndGet();
+            return run(invocation.getArgument(0));
+        };
+        when(first.execute(any(Plan.class), isNull(), any(ExecutionOptions.class))).thenAnswer(slow);
+        when(second.execute(any(Plan.class), isNull(), any(ExecutionOptions.class))).thenAnswer(slow);
+
+        new FanOutExecutor(List.of(first, second)).execute(FanOutExecutorTest::plan,
+            List.of("a", "b", "c", "d").iterator(), FanOutOptions.defaults().withParallelism(8), null);
+
+        assertEquals(2, threads.size());
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void pooledExecutorShouldRunParallelismWorkers() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(first.isPooled()).thenReturn(true);
+        when(first.execute(any(Plan.class), isNull(), any(ExecutionOptions.class))).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+            running.decrementAndGet();
+            return run(invocation.getArgument(0));
+        });
+
+        FanOutSummary summary = new FanOutExecutor(first).execute(FanOutExecutorTest::plan,
+            List.of("a", "b", "c", "d").iterator(), FanOutOptions.defaults().withParallelism(4), null);
+
+        assertEquals(4, summary.succeeded());
+        assertEquals(4, threads.size());
+        assertEquals(4, maxRunning.get());
+    }
+
+    @Test
+    void shouldRejectExecutorWithoutPoolAsShared() {
+        assertThrows(IllegalArgumentException.class, () -> new FanOutExecutor(first));
+    }
+
+    @Test
+    void shouldCountTemplateAndExecutorFailures() {
+        when(first.execute(any(Plan.class), isNull(), any(ExecutionOptions.class)))
+            .thenReturn(new PlanExecutionResult("p", false, Instant.now(), Instant.now(), List.of()));
+        List<FanOutItemResult> streamed = new CopyOnWriteArrayList<>();
+
+        FanOutSummary summary = new FanOutExecutor(List.of(first)).execute(entityId -> {
+            if ("broken".equals(entityId)) {
+                throw new IllegalArgumentException("no such entity");
+            }
+            return plan(entityId);
+        }, List.of("ok", "broken").iterator(), FanOutOptions.defaults(), streamed::add);
+
+        assertEquals(2, summary.total());
+        assertEquals(0, summary.succeeded());
+        assertEquals(2, summary.failed());
+        FanOutItemResult broken = streamed.stream().filter(r -> r.entityId().equals("broken")).findFirst().orElseThrow();
+        assertEquals("no such entity", broken.error());
+        assertNull(broken.planId());
+    }
+
+    @Test
+    void cancellationShouldStopPullingIds() {
+        CancellationToken token = CancellationToken.create();
+        when(first.execute(any(Plan.class), isNull(), any(ExecutionOptions.class))).thenAnswer(invocation -> {
+            token.cancel("stop");
+            return run(invocation.getArgument(0));
+        });
+
+        FanOutSummary summary = new FanOutExecutor(List.of(first)).execute(FanOutExecutorTest::plan,
+            List.of("a", "b", "c").iterator(), FanOutOptions.defaults().withCancellation(token), null);
+
+        assertEquals(1, summary.total());
+        assertTrue(summary.cancelled());
+    }
+
+    @Test
+    void shouldRejectEmptyExecutors() {
+        assertThrows(IllegalArgumentException.class, () -> new FanOutExecutor(List.of()));
+    }
+
+    private static Plan plan(String entityId) {
+        return new Plan("plan-" + entityId, "wf-plan", "new", "step-1", entityId, null, List.of());
+    }
+
+    private static PlanExecutionResult run(Plan plan) {
+        return new PlanExecutionResult(plan.id(), true, Instant.now(), Instant.now(), List.of());
+    }
+}
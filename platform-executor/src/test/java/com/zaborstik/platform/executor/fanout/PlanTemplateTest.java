@@ -0,0 +1,51 @@
+package com.zaborstik.platform.executor.fanout;
+
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.plan.PlanStep;
+import com.zaborstik.platform.core.plan.PlanStepAction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanTemplateTest {
+
+    private static final String PLACEHOLDER = "{entityId}";
+
+    @Test
+    void substitutingShouldReplacePlaceholderAndAssignFreshPlanId() {
+        Plan sample = new Plan(
+            "template",
+            "wf-plan",
+            "new",
+            "step-1",
+            "Здание " + PLACEHOLDER,
+            "Заказ выписки ЕГРН",
+            List.of(new PlanStep(
+                "step-1", "template", "wf-plan-step", "new", "Building",
+                "http://localhost:8080/buildings/" + PLACEHOLDER, 0, "Открываю карточку",
+                List.of(new PlanStepAction("act_open", "http://localhost:8080/buildings/" + PLACEHOLDER))
+            ))
+        );
+
+        PlanTemplate template = PlanTemplate.substituting(sample, PLACEHOLDER);
+        Plan first = template.instantiate("93939");
+        Plan second = template.instantiate("10001");
+
+        assertNotEquals(first.id(), second.id());
+        assertEquals("Здание 93939", first.target());
+        PlanStep step = first.steps().get(0);
+        assertEquals(first.id(), step.planId());
+        assertEquals("http://localhost:8080/buildings/93939", step.entityId());
+        assertEquals("http://localhost:8080/buildings/93939", step.actions().get(0).metaValue());
+        assertEquals("http://localhost:8080/buildings/10001", second.steps().get(0).entityId());
+    }
+
+    @Test
+    void substitutingShouldRejectEmptyPlaceholder() {
+        Plan sample = new Plan("template", "wf-plan", "new", "step-1", null, null, List.of());
+
+        assertThrows(IllegalArgumentException.class, () -> PlanTemplate.substituting(sample, ""));
+    }
+}
@@ -0,0 +1,209 @@
+package com.zaborstik.platform.executor.journal;
+
+import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.agent.service.StepExecutionCallback;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.plan.PlanStep;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void appendedRecordsShouldBeReadableFromTailAtOpen() throws IOException {
+        try (ExecutionJournal journal = ExecutionJournal.open(tempDir.resolve("journal.bin"))) {
+            journal.append(JournalRecord.planStarted("p1"));
+            journal.append(JournalRecord.stepStarted("p1", "s1", 0));
+            journal.append(JournalRecord.stepCompleted("p1", "s1", 0, false, 42, "Element not found"));
+
+            ExecutionJournal.Batch batch = journal.read(journal.tailAtOpen());
+
+            assertEquals(3, batch.records().size());
+            JournalRecord completed = batch.records().get(2);
+            assertEquals(JournalRecord.Type.STEP_COMPLETED, completed.type());
+            assertEquals("s1", completed.stepId());
+            assertFalse(completed.success());
+            assertEquals(42, completed.executionTimeMs());
+            assertEquals("Element not found", completed.error());
+            assertEquals(journal.writePosition(), batch.nextPosition());
+            assertEquals(1, journal.inFlightPlans());
+        }
+    }
+
+    @Test
+    void reopenShouldRecoverOnlyPlansWithoutCompletion() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        try (ExecutionJournal journal = ExecutionJournal.open(path)) {
+            journal.append(JournalRecord.planStarted("done"));
+            journal.append(JournalRecord.planCompleted("done", true));
+            journal.append(JournalRecord.planStarted("crashed"));
+            journal.append(JournalRecord.stepStarted("crashed", "s1", 0));
+            journal.append(JournalRecord.stepCompleted("crashed", "s1", 0, true, 10, null));
+            journal.append(JournalRecord.stepStarted("crashed", "s2", 1));
+        }
+
+        try (ExecutionJournal reopened = ExecutionJournal.open(path)) {
+            List<RecoveredPlan> plans = reopened.recoveredPlans();
+
+            assertEquals(1, plans.size());
+            RecoveredPlan plan = plans.get(0);
+            assertEquals("crashed", plan.planId());
+            assertEquals(1, plan.completedSteps().size());
+            assertTrue(plan.completedSteps().get(0).success());
+            assertEquals("s2", plan.lastStartedStepId());
+            assertEquals(reopened.writePosition(), reopened.tailAtOpen());
+
+            reopened.markRecovered();
+            assertTrue(reopened.recoveredPlans().isEmpty());
+        }
+    }
+
+    @Test
+    void reopenShouldReportCompletedPlansWithoutPersistedOutcome() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        try (ExecutionJournal journal = ExecutionJournal.open(path)) {
+            journal.append(JournalRecord.planStarted("persisted"));
+            journal.append(JournalRecord.planCompleted("persisted", true));
+            journal.append(JournalRecord.planPersisted("persisted"));
+            journal.append(JournalRecord.planStarted("unpersisted"));
+            journal.append(JournalRecord.stepStarted("unpersisted", "s1", 0));
+            journal.append(JournalRecord.stepCompleted("unpersisted", "s1", 0, true, 10, null));
+            journal.append(JournalRecord.planCompleted("unpersisted", true));
+        }
+
+        try (ExecutionJournal reopened = ExecutionJournal.open(path)) {
+            List<RecoveredPlan> plans = reopened.unpersistedPlans();
+
+            assertTrue(reopened.recoveredPlans().isEmpty());
+            assertEquals(1, plans.size());
+            RecoveredPlan plan = plans.get(0);
+            assertEquals("unpersisted", plan.planId());
+            assertTrue(plan.completed());
+            assertTrue(plan.success());
+            assertEquals(1, plan.completedSteps().size());
+            assertEquals("s1", plan.lastStartedStepId());
+
+            reopened.markRecovered();
+            assertTrue(reopened.unpersistedPlans().isEmpty());
+        }
+    }
+
+    @Test
+    void tornRecordShouldBeIgnoredOnRecovery() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        long tornPosition;
+        try (ExecutionJournal journal = ExecutionJournal.open(path)) {
+            journal.append(JournalRecord.planStarted("p1"));
+            tornPosition = journal.writePosition();
+            journal.append(JournalRecord.stepStarted("p1", "s1", 0));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int bodyStart = (int) tornPosition + ExecutionJournal.RECORD_HEADER_SIZE;
+            buffer.put(bodyStart + 1, (byte) (buffer.get(bodyStart + 1) ^ 0x7F));
+            buffer.force();
+        }
+
+        try (ExecutionJournal reopened = ExecutionJournal.open(path)) {
+            List<RecoveredPlan> plans = reopened.recoveredPlans();
+
+            assertEquals(1, plans.size());
+            assertNull(plans.get(0).lastStartedStepId());
+            assertEquals(tornPosition, reopened.writePosition());
+        }
+    }
+
+    @Test
+    void journalShouldGrowBeyondInitialCapacity() throws IOException {
+        Path path = tempDir.resolve("journal.bin");
+        try (ExecutionJournal journal = ExecutionJournal.open(path, 64)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(JournalRecord.stepStarted("p1", "step-" + i, i));
+            }
+            assertEquals(100, journal.read(journal.tailAtOpen()).records().size());
+        }
+    }
+
+    @Test
+    void compactIfIdleShouldResetOnlyWhenNothingIsInFlight() throws IOException {
+        try (ExecutionJournal journal = ExecutionJournal.open(tempDir.resolve("journal.bin"))) {
+            journal.append(JournalRecord.planStarted("p1"));
+            assertFalse(journal.compactIfIdle(journal.writePosition()));
+
+            journal.append(JournalRecord.planCompleted("p1", true));
+            assertFalse(journal.compactIfIdle(journal.tailAtOpen()));
+            assertTrue(journal.compactIfIdle(journal.writePosition()));
+
+            assertEquals(journal.tailAtOpen(), journal.writePosition());
+            assertTrue(journal.read(journal.writePosition()).records().isEmpty());
+        }
+    }
+
+    @Test
+    void foreignFileShouldBeRejected() throws IOException {
+        Path path = tempDir.resolve("foreign.bin");
+        java.nio.file.Files.writeString(path, "not a journal");
+
+        assertThrows(IOException.class, () -> ExecutionJournal.open(path));
+    }
+
+    @Test
+    void journalingCallbackShouldRecordEventsAndDelegate() throws IOException {
+        PlanStep step = new PlanStep("s1", "p1", "wf", "new", "ent-page", "#btn", 0, "Click", List.of());
+        Plan plan = new Plan("p1", "wf-plan", "new", "s1", null, null, List.of(step));
+        StepExecutionResult result = StepExecutionResult.failure("s1", "Click", "boom", 5);
+        int[] delegated = new int[1];
+        StepExecutionCallback delegate = new StepExecutionCallback() {
+            @Override
+            public void onStepStarted(PlanStep s, int stepIndex, int totalSteps) {
+                delegated[0]++;
+            }
+
+            @Override
+            public void onStepCompleted(PlanStep s, StepExecutionResult r, int stepIndex) {
+                delegated[0]++;
+            }
+
+            @Override
+            public void onPlanStarted(Plan p) {
+                delegated[0]++;
+            }
+
+            @Override
+            public void onPlanCompleted(Plan p, List<StepExecutionResult> results, boolean success) {
+                delegated[0]++;
+            }
+        };
+
+        try (ExecutionJournal journal = ExecutionJournal.open(tempDir.resolve("journal.bin"))) {
+            JournalingStepExecutionCallback callback = new JournalingStepExecutionCallback(journal, "p1", delegate);
+            callback.onPlanStarted(plan);
+            callback.onStepStarted(step, 0, 1);
+            callback.onStepCompleted(step, result, 0);
+            callback.onPlanCompleted(plan, List.of(result), false);
+
+            List<JournalRecord> records = journal.read(journal.tailAtOpen()).records();
+            assertEquals(List.of(
+                JournalRecord.Type.PLAN_STARTED,
+                JournalRecord.Type.STEP_STARTED,
+                JournalRecord.Type.STEP_COMPLETED,
+                JournalRecord.Type.PLAN_COMPLETED
+            ), records.stream().map(JournalRecord::type).toList());
+            assertEquals("boom", records.get(2).error());
+            assertEquals(0, journal.inFlightPlans());
+            assertEquals(4, delegated[0]);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.zaborstik.platform.executor.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalFlusherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void flushShouldDeliverOnlyNewRecordsAndCompactWhenIdle() throws Exception {
+        List<JournalRecord> delivered = new ArrayList<>();
+        try (ExecutionJournal journal = ExecutionJournal.open(tempDir.resolve("journal.bin"))) {
+            JournalFlusher flusher = new JournalFlusher(journal, delivered::addAll, Duration.ofSeconds(1));
+
+            journal.append(JournalRecord.planStarted("p1"));
+            journal.append(JournalRecord.stepStarted("p1", "s1", 0));
+            assertEquals(2, flusher.flush());
+            assertEquals(0, flusher.flush());
+
+            journal.append(JournalRecord.planCompleted("p1", true));
+            assertEquals(1, flusher.flush());
+
+            assertEquals(3, delivered.size());
+            assertEquals(journal.tailAtOpen(), journal.writePosition());
+        }
+    }
+
+    @Test
+    void sinkShouldHoldCompactionUntilItAllowsIt() throws Exception {
+        boolean[] allows = {false};
+        JournalSink sink = new JournalSink() {
+            @Override
+            public void flush(List<JournalRecord> records) {
+            }
+
+            @Override
+            public boolean allowsCompaction() {
+                return allows[0];
+            }
+        };
+        try (ExecutionJournal journal = ExecutionJournal.open(tempDir.resolve("journal.bin"))) {
+            JournalFlusher flusher = new JournalFlusher(journal, sink, Duration.ofSeconds(1));
+            journal.append(JournalRecord.planStarted("p1"));
+            journal.append(JournalRecord.planCompleted("p1", true));
+
+            flusher.flush();
+            assertNotEquals(journal.tailAtOpen(), journal.writePosition());
+
+            allows[0] = true;
+            flusher.flush();
+            assertEquals(journal.tailAtOpen(), journal.writePosition());
+        }
+    }
+
+    @Test
+    void failedSinkShouldReceiveSameRecordsAgain() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        boolean[] fail = {true};
+        JournalSink sink = records -> {
+            batchSizes.add(records.size());
+            if (fail[0]) {
+                throw new IllegalStateException("db down");
+            }
+        };
+        try (ExecutionJournal journal = ExecutionJournal.open(tempDir.resolve("journal.bin"))) {
+            JournalFlusher flusher = new JournalFlusher(journal, sink, Duration.ofSeconds(1));
+            journal.append(JournalRecord.planStarted("p1"));
+
+            assertThrows(IllegalStateException.class, flusher::flush);
+            fail[0] = false;
+            flusher.flush();
+
+            assertEquals(List.of(1, 1), batchSizes);
+        }
+    }
+
+    @Test
+    void recoveredRecordsShouldNotBeCompactedBeforeMarkRecovered() throws Exception {
+        Path path = tempDir.resolve("journal.bin");
+        try (ExecutionJournal journal = ExecutionJournal.open(path)) {
+            journal.append(JournalRecord.planStarted("crashed"));
+        }
+        try (ExecutionJournal journal = ExecutionJournal.open(path)) {
+            JournalFlusher flusher = new JournalFlusher(journal, records -> { }, Duration.ofSeconds(1));
+
+            flusher.flush();
+            assertEquals(1, journal.recoveredPlans().size());
+
+            journal.markRecovered();
+            flusher.flush();
+            assertEquals(ExecutionJournal.HEADER_SIZE, journal.writePosition());
+        }
+    }
+
+    @Test
+    void startedFlusherShouldDeliverInBackground() throws Exception {
+        List<JournalRecord> delivered = new CopyOnWriteArrayList<>();
+        try (ExecutionJournal journal = ExecutionJournal.open(tempDir.resolve("journal.bin"))) {
+            JournalFlusher flusher = new JournalFlusher(journal, delivered::addAll, Duration.ofMillis(10));
+            flusher.start();
+            journal.append(JournalRecord.planStarted("p1"));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (delivered.isEmpty() && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+            }
+            flusher.close();
+
+            assertEquals(1, delivered.size());
+        }
+    }
+
+    @Test
+    void nonPositiveIntervalShouldBeRejected() throws Exception {
+        try (ExecutionJournal journal = ExecutionJournal.open(tempDir.resolve("journal.bin"))) {
+            assertThrows(IllegalArgumentException.class,
+                () -> new JournalFlusher(journal, records -> { }, Duration.ZERO));
+        }
+    }
+}
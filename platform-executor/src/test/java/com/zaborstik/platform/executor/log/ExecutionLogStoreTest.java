@@ -0,0 +1,141 @@
+package com.zaborstik.platform.executor.log;
+
+import com.zaborstik.platform.agent.dto.StepExecutionResult;
+import com.zaborstik.platform.core.plan.PlanStep;
+import com.zaborstik.platform.core.plan.PlanStepAction;
+import com.zaborstik.platform.executor.ExecutionLogEntry;
+import com.zaborstik.platform.executor.PlanExecutionResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionLogStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldKeepOnlyWindowInMemoryAndReadSpilledEntriesBack() {
+        try (ExecutionLogStore store = new ExecutionLogStore(LogRetention.spillingAfter(3, tempDir))) {
+            for (int i = 0; i < 10; i++) {
+                store.add(entry(i));
+            }
+
+            assertEquals(10, store.size());
+            assertEquals(7, store.spilledCount());
+            for (int i = 0; i < 10; i++) {
+                ExecutionLogEntry entry = store.get(i);
+                assertEquals(i, entry.stepIndex());
+                assertEquals("step-" + i, entry.step().id());
+                assertEquals("text " + i, entry.result().metadata().get("text"));
+            }
+        }
+    }
+
+    @Test
+    void spilledEntryShouldPreserveAllFields() {
+        Instant executedAt = Instant.parse("2026-01-02T03:04:05.123456789Z");
+        StepExecutionResult result = new StepExecutionResult("read", "#price", false, "msg", "Element not found",
+            executedAt, 42, "/tmp/shot.png",
+            Map.of("x", 10.5, "count", 3, "found", false, "nested", Map.of("items", List.of("a", "b"))),
+            2, 0, "READ_TEXT");
+        PlanStep step = new PlanStep("s0", "p1", "wf-plan-step", "new", "ent-input", "#price", 0, "Read price",
+            List.of(new PlanStepAction("act-read", null), new PlanStepAction("act-2", "meta")));
+        ExecutionLogEntry original = new ExecutionLogEntry("p1", 0, step, result, executedAt);
+
+        try (ExecutionLogStore store = new ExecutionLogStore(LogRetention.spillingAfter(1, tempDir))) {
+            store.add(original);
+            store.add(entry(1));
+
+            ExecutionLogEntry restored = store.get(0);
+
+            assertEquals(1, store.spilledCount());
+            assertEquals(original.step(), restored.step());
+            assertEquals(original.loggedAt(), restored.loggedAt());
+            assertEquals("Element not found", restored.result().error());
+            assertEquals(executedAt, restored.result().executedAt());
+            assertEquals(2, restored.result().retryCount());
+            assertEquals("READ_TEXT", restored.result().commandType());
+            assertEquals(10.5, restored.result().metadata().get("x"));
+            assertEquals(3L, restored.result().metadata().get("count"));
+            assertEquals(false, restored.result().metadata().get("found"));
+            assertEquals(Map.of("items", List.of("a", "b")), restored.result().metadata().get("nested"));
+        }
+    }
+
+    @Test
+    void closeShouldDeleteSpillFile() throws IOException {
+        ExecutionLogStore store = new ExecutionLogStore(LogRetention.spillingAfter(1, tempDir));
+        store.add(entry(0));
+        store.add(entry(1));
+        assertEquals(1, store.spilledCount());
+
+        store.close();
+
+        assertEquals(0, countFiles());
+        assertThrows(UncheckedIOException.class, () -> store.get(0));
+        assertEquals(1, store.get(1).stepIndex());
+    }
+
+    @Test
+    void resultShouldSealStoreAndExposeStepResultsLazily() {
+        ExecutionLogStore store = new ExecutionLogStore(LogRetention.spillingAfter(2, tempDir));
+        for (int i = 0; i < 5; i++) {
+            store.add(entry(i));
+        }
+
+        PlanExecutionResult result = new PlanExecutionResult("p1", true, Instant.now(), Instant.now(), store);
+
+        assertSame(store, result.logEntries());
+        assertThrows(UnsupportedOperationException.class, () -> result.logEntries().add(entry(5)));
+        List<StepExecutionResult> stepResults = result.getStepResults();
+        assertEquals(5, stepResults.size());
+        assertEquals("step-0", stepResults.get(0).stepType());
+        assertEquals(List.of("step-0", "step-1", "step-2", "step-3", "step-4"),
+            stepResults.stream().map(StepExecutionResult::stepType).toList());
+        store.close();
+    }
+
+    @Test
+    void unboundedRetentionShouldNeverSpill() {
+        try (ExecutionLogStore store = new ExecutionLogStore(LogRetention.unbounded())) {
+            for (int i = 0; i < 100; i++) {
+                store.add(entry(i));
+            }
+
+            assertEquals(100, store.size());
+            assertEquals(0, store.spilledCount());
+            assertEquals(99, store.get(99).stepIndex());
+        }
+    }
+
+    @Test
+    void retentionShouldRejectNonPositiveWindow() {
+        assertThrows(IllegalArgumentException.class, () -> LogRetention.spillingAfter(0, tempDir));
+        assertThrows(IllegalArgumentException.class, () -> LogRetention.spillingAfter(10, null));
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+
+    private static ExecutionLogEntry entry(int index) {
+        PlanStep step = new PlanStep("step-" + index, "p1", "wf-plan-step", "new", "ent-page", "#result",
+            index, "Step " + index, List.of(new PlanStepAction("act-read", null)));
+        StepExecutionResult result = StepExecutionResult.success("step-" + index, "#result", "ok", 5, null,
+            Map.of("text", "text " + index), 0, index, "READ_TEXT");
+        return new ExecutionLogEntry("p1", index, step, result, Instant.now());
+    }
+}
@@ -0,0 +1,107 @@
+package com.zaborstik.platform.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaborstik.platform.agent.client.AgentJson;
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH-замер клиентской стороны одной команды {@code read_text}: запись команды и разбор ответа агента
+ * с чтением {@code screenshot}, как в {@code AgentService}. {@code eagerMapper} повторяет прежний путь
+ * (обобщённый {@link ObjectMapper}, {@code data} сразу в {@link Map} с копией), {@code agentJson} —
+ * {@link AgentJson} с ленивым {@code data}. Аллокации на операцию показывает профайлер GC:
+ *
+ * JMH benchmark of the client side of one {@code read_text} command: writing the command and parsing the agent
+ * response, then reading {@code screenshot} as {@code AgentService} does. {@code eagerMapper} follows the former
+ * path (generic {@link ObjectMapper}, {@code data} bound to a copied {@link Map} right away), {@code agentJson}
+ * uses {@link AgentJson} with lazy {@code data}. The GC profiler reports allocation per operation:
+ *
+ * <pre>
+ * java -cp ... org.openjdk.jmh.Main AgentCodecBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AgentCodecBenchmark {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** Размер прочитанного текста в символах / read text size in characters */
+    @Param({"1024", "65536"})
+    public int textLength;
+
+    private AgentCommand command;
+    private byte[] response;
+
+    @Setup
+    public void setUp() throws IOException {
+        command = AgentCommand.readText("#article", "Read article");
+        String text = "lorem ipsum ".repeat(textLength / 12 + 1).substring(0, textLength);
+        List<Map<String, Object>> paragraphs = new ArrayList<>();
+        for (int offset = 0; offset < textLength; offset += 512) {
+            Map<String, Object> paragraph = new LinkedHashMap<>();
+            paragraph.put("offset", offset);
+            paragraph.put("text", text.substring(offset, Math.min(textLength, offset + 512)));
+            paragraphs.add(paragraph);
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("selector", "#article");
+        data.put("text", text);
+        data.put("paragraphs", paragraphs);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", true);
+        body.put("message", "Text read");
+        body.put("data", data);
+        body.put("executionTimeMs", 12);
+        response = MAPPER.writeValueAsBytes(body);
+    }
+
+    @Benchmark
+    public void eagerMapper(Blackhole blackhole) throws IOException {
+        blackhole.consume(MAPPER.writeValueAsString(command).getBytes(StandardCharsets.UTF_8));
+        EagerResponse parsed = MAPPER.readValue(new String(response, StandardCharsets.UTF_8), EagerResponse.class);
+        blackhole.consume(parsed.data().get("screenshot"));
+    }
+
+    @Benchmark
+    public void agentJson(Blackhole blackhole) throws IOException {
+        blackhole.consume(AgentJson.writeCommand(command));
+        AgentResponse parsed = AgentJson.readResponse(response);
+        blackhole.consume(parsed.data().get("screenshot"));
+    }
+
+    /**
+     * Ответ с немедленно разобранным {@code data}, как {@link AgentResponse} до ленивого разбора.
+     *
+     * Response with eagerly bound {@code data}, like {@link AgentResponse} before lazy binding.
+     */
+    public record EagerResponse(boolean success, String message, String error, Map<String, Object> data,
+                                long executionTimeMs, String errorCode) {
+        public EagerResponse {
+            data = data != null ? Map.copyOf(data) : Map.of();
+        }
+    }
+}
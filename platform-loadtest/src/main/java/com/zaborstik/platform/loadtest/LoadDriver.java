@@ -0,0 +1,250 @@
+package com.zaborstik.platform.loadtest;
+
+import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.metrics.ExecutionMetrics;
+import com.zaborstik.platform.agent.metrics.LatencyHistogram;
+import com.zaborstik.platform.agent.service.AgentService;
+import com.zaborstik.platform.agent.service.AgentServiceOptions;
+import com.zaborstik.platform.core.domain.Action;
+import com.zaborstik.platform.core.plan.Plan;
+import com.zaborstik.platform.core.plan.PlanStep;
+import com.zaborstik.platform.core.plan.PlanStepAction;
+import com.zaborstik.platform.core.resolver.InMemoryResolver;
+import com.zaborstik.platform.executor.PlanExecutionResult;
+import com.zaborstik.platform.executor.PlanExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный драйвер: прогоняет синтетические планы через настоящие {@link PlanExecutor}, {@link AgentService}
+ * и {@link AgentClient} по HTTP к встроенной заглушке {@link StubAgentServer} (или к внешнему агенту)
+ * и возвращает {@link LoadReport}. Каждый рабочий поток владеет своей сессией агента, как отдельный браузер.
+ * Сначала выполняются планы прогрева на отдельных сессиях, их метрики в отчёт не попадают.
+ * Работает без сети и браузера, поэтому пригоден для CI.
+ *
+ * Load driver: pushes synthetic plans through the real {@link PlanExecutor}, {@link AgentService}
+ * and {@link AgentClient} over HTTP to the embedded {@link StubAgentServer} (or an external agent)
+ * and returns a {@link LoadReport}. Every worker thread owns its own agent session, like a separate browser.
+ * Warm-up plans run first on separate sessions and are excluded from the report.
+ * Needs neither network nor browser, so it can run in CI.
+ */
+public class LoadDriver {
+    private static final Logger log = LoggerFactory.getLogger(LoadDriver.class);
+
+    static final String USAGE = "Usage: LoadDriver [--plans <n>] [--concurrency <n>] [--steps <n>] [--warmup <n>] "
+        + "[--latency-ms <ms>] [--jitter-ms <ms>] [--failure-rate <0..1>] [--server-error-rate <0..1>] "
+        + "[--agent-url <url>] [--batch] [--fused]";
+
+    /**
+     * Операции синтетического плана по кругу: {@code click} и {@code type} проходят через RESOLVE_COORDS.
+     *
+     * Operations of the synthetic plan in a cycle: {@code click} and {@code type} go through RESOLVE_COORDS.
+     */
+    static final List<String> OPERATIONS = List.of("open_page", "click", "type", "read_text", "wait");
+    private static final String BASE_URL = "http://app.local";
+
+    private final LoadDriverOptions options;
+    private final InMemoryResolver resolver = syntheticCatalog();
+
+    public LoadDriver(LoadDriverOptions options) {
+        this.options = Objects.requireNonNull(options, "options cannot be null");
+    }
+
+    /**
+     * Выполняет прогрев и измеряемую фазу; блокируется до завершения всех планов.
+     *
+     * Runs the warm-up and the measured phase; blocks until all plans are finished.
+     */
+    public LoadReport run() throws IOException, InterruptedException {
+        StubAgentServer stub = options.agentUrl() == null ? StubAgentServer.start(options.behavior()) : null;
+        try {
+            String agentUrl = stub != null ? stub.url() : options.agentUrl();
+            if (options.warmupPlans() > 0) {
+                log.info("Warm-up: {} plans", options.warmupPlans());
+                runPhase(agentUrl, options.warmupPlans(), new ExecutionMetrics(), new LatencyHistogram(0));
+            }
+            log.info("Load run: {} plans x {} steps, concurrency {}, agent {}, coordinate steps {}",
+                options.plans(), options.stepsPerPlan(), options.concurrency(), agentUrl, options.coordinateMode());
+            ExecutionMetrics metrics = new ExecutionMetrics();
+            LatencyHistogram planLatency = new LatencyHistogram(0);
+            Phase phase = runPhase(agentUrl, options.plans(), metrics, planLatency);
+            return new LoadReport(options.plans(), phase.failedPlans(), phase.steps(), phase.wallTimeMs(),
+                planLatency.snapshot(), metrics.snapshot(), phase.cpuNanos(), phase.allocatedBytes());
+        } finally {
+            if (stub != null) {
+                stub.close();
+            }
+        }
+    }
+
+    private Phase runPhase(String agentUrl, int plans, ExecutionMetrics metrics, LatencyHistogram planLatency)
+            throws InterruptedException {
+        int workers = Math.min(options.concurrency(), plans);
+        AtomicInteger nextPlan = new AtomicInteger();
+        LongAdder failedPlans = new LongAdder();
+        LongAdder steps = new LongAdder();
+        LongAdder cpuNanos = new LongAdder();
+        LongAdder allocatedBytes = new LongAdder();
+        AtomicBoolean measured = new AtomicBoolean(true);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers, new WorkerThreadFactory());
+        try {
+            List<AgentService> services = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                services.add(new AgentService(new AgentClient(agentUrl), resolver, BASE_URL, true,
+                    AgentServiceOptions.defaults().withMetrics(metrics).withCoordinateMode(options.coordinateMode())));
+            }
+            long startNanos = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (AgentService service : services) {
+                futures.add(pool.submit(() -> {
+                    PlanExecutor executor = new PlanExecutor(service);
+                    ThreadUsage usage = ThreadUsage.start();
+                    int index;
+                    while ((index = nextPlan.getAndIncrement()) < plans) {
+                        long planStart = System.nanoTime();
+                        PlanExecutionResult result = executor.execute(syntheticPlan(index));
+                        planLatency.record((System.nanoTime() - planStart) / 1_000_000L);
+                        steps.add(result.logEntries().size());
+                        if (!result.success()) {
+                            failedPlans.increment();
+                        }
+                    }
+                    if (!usage.addTo(cpuNanos, allocatedBytes)) {
+                        measured.set(false);
+                    }
+                    service.close();
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Load worker failed", e.getCause());
+                }
+            }
+            long wallTimeMs = (System.nanoTime() - startNanos) / 1_000_000L;
+            return new Phase(failedPlans.sum(), steps.sum(), wallTimeMs,
+                measured.get() ? cpuNanos.sum() : -1, measured.get() ? allocatedBytes.sum() : -1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Синтетический план из {@link LoadDriverOptions#stepsPerPlan()} шагов; URL страницы уникален для плана.
+     *
+     * Synthetic plan of {@link LoadDriverOptions#stepsPerPlan()} steps; the page URL is unique per plan.
+     */
+    Plan syntheticPlan(int index) {
+        String planId = "load-plan-" + index;
+        List<PlanStep> steps = new ArrayList<>(options.stepsPerPlan());
+        for (int i = 0; i < options.stepsPerPlan(); i++) {
+            String operation = OPERATIONS.get(i % OPERATIONS.size());
+            String target = operation.equals("open_page") ? "/load/" + index + "/" + i : "#field-" + i;
+            String metaValue = switch (operation) {
+                case "type" -> "value " + i;
+                case "wait" -> "10";
+                default -> null;
+            };
+            steps.add(new PlanStep(planId + "-step-" + i, planId, "wf-load-step", "new", "ent-load", target, i,
+                operation + " " + i, List.of(new PlanStepAction("act-" + operation, metaValue))));
+        }
+        return new Plan(planId, "wf-load", "new", planId + "-step-0", "load", "synthetic load plan", steps);
+    }
+
+    private static InMemoryResolver syntheticCatalog() {
+        InMemoryResolver resolver = new InMemoryResolver();
+        for (String operation : OPERATIONS) {
+            resolver.registerAction(Action.of("act-" + operation, operation, operation, operation, "act-type-load"));
+        }
+        return resolver;
+    }
+
+    public static void main(String[] args) {
+        LoadDriverOptions options;
+        try {
+            options = LoadDriverOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            System.out.println(new LoadDriver(options).run().format());
+        } catch (IOException e) {
+            log.error("Load run failed", e);
+            System.exit(3);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(3);
+        }
+    }
+
+    private record Phase(long failedPlans, long steps, long wallTimeMs, long cpuNanos, long allocatedBytes) {
+    }
+
+    /**
+     * CPU и аллокации текущего потока с момента {@link #start()}.
+     *
+     * CPU time and allocation of the current thread since {@link #start()}.
+     */
+    private record ThreadUsage(long cpuNanos, long allocatedBytes) {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        static ThreadUsage start() {
+            return new ThreadUsage(currentCpuNanos(), currentAllocatedBytes());
+        }
+
+        /**
+         * @return false, если JVM не поддерживает замер / false when the JVM cannot measure
+         */
+        boolean addTo(LongAdder cpu, LongAdder allocated) {
+            long cpuNow = currentCpuNanos();
+            long allocatedNow = currentAllocatedBytes();
+            if (cpuNow < 0 || allocatedNow < 0 || cpuNanos < 0 || allocatedBytes < 0) {
+                return false;
+            }
+            cpu.add(cpuNow - cpuNanos);
+            allocated.add(allocatedNow - allocatedBytes);
+            return true;
+        }
+
+        private static long currentCpuNanos() {
+            return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+        }
+
+        private static long currentAllocatedBytes() {
+            return THREADS instanceof com.sun.management.ThreadMXBean threads && threads.isThreadAllocatedMemoryEnabled()
+                ? threads.getCurrentThreadAllocatedBytes()
+                : -1;
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "load-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
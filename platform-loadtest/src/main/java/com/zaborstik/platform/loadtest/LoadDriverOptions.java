@@ -0,0 +1,138 @@
+package com.zaborstik.platform.loadtest;
+
+import com.zaborstik.platform.agent.service.CoordinateStepMode;
+
+import java.util.Objects;
+
+/**
+ * Параметры нагрузочного прогона {@link LoadDriver}.
+ *
+ * Options of a {@link LoadDriver} load run.
+ *
+ * @param plans        число измеряемых планов / number of measured plans
+ * @param concurrency  одновременно выполняемых планов, по одной сессии агента на поток /
+ *                     plans running at once, one agent session per worker
+ * @param stepsPerPlan шагов в синтетическом плане / steps in the synthetic plan
+ * @param warmupPlans  планов прогрева JIT, в отчёт не входят / JIT warm-up plans excluded from the report
+ * @param behavior     поведение встроенной заглушки / behaviour of the embedded stub
+ * @param agentUrl     внешний агент вместо заглушки или null / external agent instead of the stub, or null
+ * @param batchCommands отправлять шаги с координатами пакетом {@code /execute-batch} /
+ *                      send coordinate steps as one {@code /execute-batch} request
+ * @param fusedCommands отправлять шаги с координатами одной составной командой (приоритетнее пакета) /
+ *                      send coordinate steps as one fused command (takes precedence over batches)
+ */
+public record LoadDriverOptions(int plans, int concurrency, int stepsPerPlan, int warmupPlans,
+                                StubBehavior behavior, String agentUrl, boolean batchCommands,
+                                boolean fusedCommands) {
+
+    public LoadDriverOptions {
+        if (plans < 1) {
+            throw new IllegalArgumentException("plans must be >= 1");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be >= 1");
+        }
+        if (stepsPerPlan < 1) {
+            throw new IllegalArgumentException("stepsPerPlan must be >= 1");
+        }
+        if (warmupPlans < 0) {
+            throw new IllegalArgumentException("warmupPlans must be >= 0");
+        }
+        Objects.requireNonNull(behavior, "behavior cannot be null");
+        agentUrl = agentUrl != null && !agentUrl.isBlank() ? agentUrl : null;
+    }
+
+    public LoadDriverOptions(int plans, int concurrency, int stepsPerPlan, int warmupPlans,
+                             StubBehavior behavior, String agentUrl) {
+        this(plans, concurrency, stepsPerPlan, warmupPlans, behavior, agentUrl, false, false);
+    }
+
+    public LoadDriverOptions(int plans, int concurrency, int stepsPerPlan, int warmupPlans,
+                             StubBehavior behavior, String agentUrl, boolean batchCommands) {
+        this(plans, concurrency, stepsPerPlan, warmupPlans, behavior, agentUrl, batchCommands, false);
+    }
+
+    /**
+     * Способ отправки шагов с координатами для {@link com.zaborstik.platform.agent.service.AgentService}.
+     *
+     * Coordinate step mode for {@link com.zaborstik.platform.agent.service.AgentService}.
+     */
+    public CoordinateStepMode coordinateMode() {
+        if (fusedCommands) {
+            return CoordinateStepMode.FUSED;
+        }
+        return batchCommands ? CoordinateStepMode.BATCH : CoordinateStepMode.SEQUENTIAL;
+    }
+
+    public static LoadDriverOptions defaults() {
+        return new LoadDriverOptions(1000, 16, 10, 100, StubBehavior.withLatency(5, 5), null);
+    }
+
+    /**
+     * Разбирает аргументы командной строки:
+     * {@code [--plans <n>] [--concurrency <n>] [--steps <n>] [--warmup <n>] [--latency-ms <ms>] [--jitter-ms <ms>]
+     * [--failure-rate <0..1>] [--server-error-rate <0..1>] [--agent-url <url>] [--batch] [--fused]}.
+     *
+     * Parses command line arguments (see above).
+     *
+     * @throws IllegalArgumentException при неизвестном или неполном аргументе / on an unknown or incomplete argument
+     */
+    public static LoadDriverOptions parse(String[] args) {
+        Objects.requireNonNull(args, "args cannot be null");
+        LoadDriverOptions defaults = defaults();
+        int plans = defaults.plans();
+        int concurrency = defaults.concurrency();
+        int steps = defaults.stepsPerPlan();
+        int warmup = defaults.warmupPlans();
+        long latencyMs = defaults.behavior().latencyMs();
+        long jitterMs = defaults.behavior().jitterMs();
+        double failureRate = 0.0;
+        double serverErrorRate = 0.0;
+        String agentUrl = null;
+        boolean batch = false;
+        boolean fused = false;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--plans" -> plans = (int) parseLong(value(args, ++i, arg), arg);
+                case "--concurrency" -> concurrency = (int) parseLong(value(args, ++i, arg), arg);
+                case "--steps" -> steps = (int) parseLong(value(args, ++i, arg), arg);
+                case "--warmup" -> warmup = (int) parseLong(value(args, ++i, arg), arg);
+                case "--latency-ms" -> latencyMs = parseLong(value(args, ++i, arg), arg);
+                case "--jitter-ms" -> jitterMs = parseLong(value(args, ++i, arg), arg);
+                case "--failure-rate" -> failureRate = parseDouble(value(args, ++i, arg), arg);
+                case "--server-error-rate" -> serverErrorRate = parseDouble(value(args, ++i, arg), arg);
+                case "--agent-url" -> agentUrl = value(args, ++i, arg);
+                case "--batch" -> batch = true;
+                case "--fused" -> fused = true;
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        return new LoadDriverOptions(plans, concurrency, steps, warmup,
+            new StubBehavior(latencyMs, jitterMs, failureRate, serverErrorRate), agentUrl, batch, fused);
+    }
+
+    private static String value(String[] args, int index, String name) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(name + " requires a value");
+        }
+        return args[index];
+    }
+
+    private static long parseLong(String value, String name) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer: " + value, e);
+        }
+    }
+
+    private static double parseDouble(String value, String name) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number: " + value, e);
+        }
+    }
+}
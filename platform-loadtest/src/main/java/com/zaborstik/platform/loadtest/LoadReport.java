@@ -0,0 +1,85 @@
+package com.zaborstik.platform.loadtest;
+
+import com.zaborstik.platform.agent.metrics.HistogramSnapshot;
+import com.zaborstik.platform.agent.metrics.MetricsSnapshot;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Итог нагрузочного прогона: пропускная способность, перцентили задержки, CPU и аллокации клиента.
+ * CPU и аллокации измеряются на рабочих потоках драйвера (PlanExecutor, AgentService, AgentClient),
+ * внутренние потоки HttpClient и заглушки не учитываются.
+ *
+ * Load run report: throughput, latency percentiles, client CPU and allocation.
+ * CPU and allocation are measured on the driver worker threads (PlanExecutor, AgentService, AgentClient);
+ * HttpClient internal threads and the stub are not included.
+ *
+ * @param plans                измеренных планов / measured plans
+ * @param failedPlans          неуспешных планов / failed plans
+ * @param steps                выполненных шагов / executed steps
+ * @param wallTimeMs           длительность измеряемой фазы / duration of the measured phase
+ * @param planLatency          задержка плана целиком / end-to-end plan latency
+ * @param metrics              метрики шагов и команд агента / step and agent command metrics
+ * @param clientCpuNanos       CPU рабочих потоков, нс; -1 — не поддерживается JVM / worker CPU in ns, -1 if unsupported
+ * @param clientAllocatedBytes аллокации рабочих потоков; -1 — не поддерживается JVM /
+ *                             worker allocation in bytes, -1 if unsupported
+ */
+public record LoadReport(long plans, long failedPlans, long steps, long wallTimeMs, HistogramSnapshot planLatency,
+                         MetricsSnapshot metrics, long clientCpuNanos, long clientAllocatedBytes) {
+
+    public LoadReport {
+        Objects.requireNonNull(planLatency, "planLatency cannot be null");
+        Objects.requireNonNull(metrics, "metrics cannot be null");
+    }
+
+    public double plansPerSecond() {
+        return wallTimeMs == 0 ? 0.0 : plans * 1000.0 / wallTimeMs;
+    }
+
+    public double stepsPerSecond() {
+        return wallTimeMs == 0 ? 0.0 : steps * 1000.0 / wallTimeMs;
+    }
+
+    /**
+     * CPU клиента на план, мкс; -1, если не измерялось.
+     *
+     * Client CPU per plan in microseconds; -1 when not measured.
+     */
+    public long cpuMicrosPerPlan() {
+        return clientCpuNanos < 0 || plans == 0 ? -1 : clientCpuNanos / 1000 / plans;
+    }
+
+    /**
+     * Аллокации клиента на план, байт; -1, если не измерялось.
+     *
+     * Client allocation per plan in bytes; -1 when not measured.
+     */
+    public long bytesPerPlan() {
+        return clientAllocatedBytes < 0 || plans == 0 ? -1 : clientAllocatedBytes / plans;
+    }
+
+    /**
+     * Текстовый отчёт.
+     *
+     * Text report.
+     */
+    public String format() {
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+            "plans=%d failed=%d steps=%d wall=%dms%n"
+                + "throughput=%.2f plans/s %.2f steps/s%n"
+                + "plan latency p50=%dms p90=%dms p99=%dms max=%dms%n"
+                + "client cpu=%dus/plan alloc=%d bytes/plan%n",
+            plans, failedPlans, steps, wallTimeMs,
+            plansPerSecond(), stepsPerSecond(),
+            planLatency.p50Ms(), planLatency.p90Ms(), planLatency.p99Ms(), planLatency.maxMs(),
+            cpuMicrosPerPlan(), bytesPerPlan()));
+        for (Map.Entry<String, HistogramSnapshot> entry : metrics.commandLatency().entrySet()) {
+            HistogramSnapshot command = entry.getValue();
+            text.append(String.format(Locale.ROOT, "command %s count=%d p50=%dms p99=%dms%n",
+                entry.getKey(), command.count(), command.p50Ms(), command.p99Ms()));
+        }
+        return text.toString().stripTrailing();
+    }
+}
@@ -0,0 +1,339 @@
+package com.zaborstik.platform.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.zaborstik.platform.agent.dto.AgentErrorCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Встроенная заглушка Playwright-агента на {@link HttpServer} JDK: {@code GET /health}, {@code POST /initialize},
+ * {@code POST /execute}, {@code POST /execute-batch}, {@code POST /close} с тем же форматом ответов,
+ * что у {@code playwright-server.js}. В пакете задержка и ошибки применяются к каждой команде.
+ * Браузер не запускается: команды отвечают синтетическими данными после задержки {@link StubBehavior},
+ * часть ответов можно превратить в ошибки. Каждый запрос обслуживается виртуальным потоком, поэтому
+ * задержка не ограничивает параллелизм; состояние браузерной сессии не моделируется.
+ *
+ * Embedded Playwright agent stub on the JDK {@link HttpServer}: {@code GET /health}, {@code POST /initialize},
+ * {@code POST /execute}, {@code POST /execute-batch}, {@code POST /close} with the same response format as
+ * {@code playwright-server.js}. In a batch latency and failures apply to every command.
+ * No browser is started: commands answer with synthetic data after the {@link StubBehavior} latency,
+ * and a share of responses can be turned into errors. Every request is served by a virtual thread, so latency
+ * does not limit concurrency; browser session state is not modelled.
+ */
+public final class StubAgentServer implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(StubAgentServer.class);
+
+    static {
+        // Без TCP_NODELAY каждый ответ HttpServer ждёт ~40 мс (Nagle + delayed ACK), что скрывает задержку клиента.
+        // Without TCP_NODELAY every HttpServer response stalls ~40 ms (Nagle + delayed ACK), hiding client latency.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LongAdder initializeRequests = new LongAdder();
+    private final LongAdder executeRequests = new LongAdder();
+    private final LongAdder batchRequests = new LongAdder();
+    private final LongAdder injectedFailures = new LongAdder();
+    private volatile StubBehavior behavior;
+
+    private StubAgentServer(HttpServer server, StubBehavior behavior) {
+        this.server = server;
+        this.behavior = behavior;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/health", this::health);
+        server.createContext("/initialize", this::initialize);
+        server.createContext("/execute", this::execute);
+        server.createContext("/execute-batch", this::executeBatch);
+        server.createContext("/close", this::close);
+    }
+
+    /**
+     * Запускает заглушку на свободном порту loopback-интерфейса.
+     *
+     * Starts the stub on a free port of the loopback interface.
+     */
+    public static StubAgentServer start(StubBehavior behavior) throws IOException {
+        return start(0, behavior);
+    }
+
+    /**
+     * @param port порт или 0 — свободный / port or 0 for a free one
+     */
+    public static StubAgentServer start(int port, StubBehavior behavior) throws IOException {
+        Objects.requireNonNull(behavior, "behavior cannot be null");
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        StubAgentServer stub = new StubAgentServer(server, behavior);
+        server.start();
+        log.info("Stub agent server listening on {}", stub.url());
+        return stub;
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public StubBehavior behavior() {
+        return behavior;
+    }
+
+    /**
+     * Меняет поведение на лету, например для фазы с ошибками.
+     *
+     * Changes behaviour on the fly, e.g. for a failure phase.
+     */
+    public void setBehavior(StubBehavior behavior) {
+        this.behavior = Objects.requireNonNull(behavior, "behavior cannot be null");
+    }
+
+    public long initializeRequests() {
+        return initializeRequests.sum();
+    }
+
+    public long executeRequests() {
+        return executeRequests.sum();
+    }
+
+    public long batchRequests() {
+        return batchRequests.sum();
+    }
+
+    /**
+     * Число ответов, превращённых в ошибку ({@code success=false} или HTTP 500).
+     *
+     * Number of responses turned into errors ({@code success=false} or HTTP 500).
+     */
+    public long injectedFailures() {
+        return injectedFailures.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private void health(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, Map.of("status", "ok", "browser", true));
+    }
+
+    private void initialize(HttpExchange exchange) throws IOException {
+        initializeRequests.increment();
+        JsonNode body = readBody(exchange);
+        long startNanos = System.nanoTime();
+        simulateLatency(behavior);
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("baseUrl", body.path("baseUrl").asText(""));
+        data.put("headless", body.path("headless").asBoolean(true));
+        respond(exchange, 200, success("Browser initialized", data, startNanos));
+    }
+
+    private void execute(HttpExchange exchange) throws IOException {
+        executeRequests.increment();
+        JsonNode body = readBody(exchange);
+        Outcome outcome = runCommand(body, behavior);
+        respond(exchange, outcome.status(), outcome.body());
+    }
+
+    private void executeBatch(HttpExchange exchange) throws IOException {
+        batchRequests.increment();
+        JsonNode body = readBody(exchange);
+        StubBehavior current = behavior;
+        long startNanos = System.nanoTime();
+        boolean stopOnFailure = body.path("stopOnFailure").asBoolean(true);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        boolean success = true;
+        for (JsonNode command : body.path("commands")) {
+            Outcome outcome = command.path("parameters").has("coordsFrom")
+                ? withResolvedCoords(command, results, current)
+                : runCommand(command, current);
+            results.add(outcome.body());
+            if (!Boolean.TRUE.equals(outcome.body().get("success"))) {
+                success = false;
+                if (stopOnFailure) {
+                    break;
+                }
+            }
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", success);
+        response.put("results", results);
+        response.put("executionTimeMs", elapsedMs(startNanos));
+        respond(exchange, 200, response);
+    }
+
+    /**
+     * Подставляет в команду x/y из результата RESOLVE_COORDS с индексом {@code coordsFrom}, как агент.
+     *
+     * Substitutes x/y from the RESOLVE_COORDS result at index {@code coordsFrom}, like the agent does.
+     */
+    private Outcome withResolvedCoords(JsonNode command, List<Map<String, Object>> results, StubBehavior current) {
+        int index = command.path("parameters").path("coordsFrom").asInt(-1);
+        Map<String, Object> source = index >= 0 && index < results.size() ? results.get(index) : null;
+        if (source == null || !(source.get("data") instanceof Map<?, ?> data)
+                || data.get("x") == null || data.get("y") == null) {
+            return new Outcome(500, failure(AgentErrorCode.INVALID_COMMAND,
+                "coordsFrom " + index + " does not reference resolved coordinates", System.nanoTime()));
+        }
+        ObjectNode resolved = command.deepCopy();
+        ObjectNode parameters = (ObjectNode) resolved.path("parameters");
+        parameters.remove("coordsFrom");
+        parameters.put("x", ((Number) data.get("x")).doubleValue());
+        parameters.put("y", ((Number) data.get("y")).doubleValue());
+        return runCommand(resolved, current);
+    }
+
+    private Outcome runCommand(JsonNode body, StubBehavior current) {
+        long startNanos = System.nanoTime();
+        simulateLatency(current);
+
+        String type = body.path("type").asText("");
+        String target = body.path("target").asText("");
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < current.serverErrorRate()) {
+            injectedFailures.increment();
+            return new Outcome(500, failure(AgentErrorCode.COMMAND_FAILED, "Injected server error for " + type,
+                startNanos));
+        }
+        if (roll < current.serverErrorRate() + current.failureRate()) {
+            injectedFailures.increment();
+            return new Outcome(200, failure(AgentErrorCode.ELEMENT_NOT_READY,
+                "Element not found: " + target + " (injected)", startNanos));
+        }
+
+        Map<String, Object> data = commandData(type, target, body.path("parameters"));
+        if (data == null) {
+            return new Outcome(500, failure(AgentErrorCode.INVALID_COMMAND, "Unknown command type: " + type,
+                startNanos));
+        }
+        String explanation = body.path("explanation").asText("");
+        return new Outcome(200, success(
+            explanation.isEmpty() ? "Command " + type + " executed successfully" : explanation, data, startNanos));
+    }
+
+    private void close(HttpExchange exchange) throws IOException {
+        readBody(exchange);
+        respond(exchange, 200, success("Browser closed", Map.of(), System.nanoTime()));
+    }
+
+    /**
+     * Синтетические данные ответа в формате {@code playwright-server.js}; null — неизвестная команда.
+     *
+     * Synthetic response data in the {@code playwright-server.js} format; null for an unknown command.
+     */
+    private static Map<String, Object> commandData(String type, String target, JsonNode parameters) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        switch (type) {
+            case "OPEN_PAGE" -> data.put("url", target);
+            case "RESOLVE_COORDS" -> {
+                data.put("x", 100.5);
+                data.put("y", 200.5);
+                data.put("selectorUsed", target);
+            }
+            case "CLICK_AT" -> {
+                data.put("x", parameters.path("x").asDouble());
+                data.put("y", parameters.path("y").asDouble());
+                data.put("button", "left");
+                data.put("selectorUsed", parameters.path("selectorUsed").asText(target));
+            }
+            case "TYPE" -> data.put("text", parameters.path("text").asText(""));
+            case "RESOLVE_AND_CLICK", "RESOLVE_AND_HOVER", "RESOLVE_AND_TYPE" -> {
+                data.put("x", 100.5);
+                data.put("y", 200.5);
+                data.put("selectorUsed", target);
+                switch (type) {
+                    case "RESOLVE_AND_CLICK" -> data.put("button", "left");
+                    case "RESOLVE_AND_TYPE" -> data.put("text", parameters.path("text").asText(""));
+                    default -> { }
+                }
+            }
+            case "READ_TEXT" -> data.put("text", "stub text of " + target);
+            case "SCREENSHOT" -> data.put("screenshot", "stub/" + System.nanoTime() + ".png");
+            case "SELECT_OPTION" -> data.put("value", parameters.path("value").asText(""));
+            case "CLICK", "HOVER", "WAIT", "EXPLAIN", "HIGHLIGHT" -> { }
+            default -> {
+                return null;
+            }
+        }
+        return data;
+    }
+
+    private static void simulateLatency(StubBehavior behavior) {
+        long delayMs = behavior.latencyMs()
+            + (behavior.jitterMs() > 0 ? ThreadLocalRandom.current().nextLong(behavior.jitterMs() + 1) : 0);
+        if (delayMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readAllBytes();
+            return bytes.length == 0 ? objectMapper.createObjectNode() : objectMapper.readTree(bytes);
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, Object> success(String message, Map<String, Object> data, long startNanos) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", true);
+        body.put("message", message);
+        body.put("data", data);
+        body.put("executionTimeMs", elapsedMs(startNanos));
+        return body;
+    }
+
+    private static Map<String, Object> failure(AgentErrorCode errorCode, String error, long startNanos) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", false);
+        body.put("error", error);
+        body.put("errorCode", errorCode.name());
+        body.put("data", Map.of());
+        body.put("executionTimeMs", elapsedMs(startNanos));
+        return body;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    private record Outcome(int status, Map<String, Object> body) {
+    }
+}
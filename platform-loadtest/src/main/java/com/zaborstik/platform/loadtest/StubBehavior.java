@@ -0,0 +1,47 @@
+package com.zaborstik.platform.loadtest;
+
+/**
+ * Поведение {@link StubAgentServer}: искусственная задержка и внедрение ошибок.
+ *
+ * Behaviour of {@link StubAgentServer}: artificial latency and error injection.
+ *
+ * @param latencyMs       базовая задержка ответа на /execute и /initialize / base latency of /execute and /initialize
+ * @param jitterMs        случайная добавка к задержке, [0, jitterMs] / random extra latency within [0, jitterMs]
+ * @param failureRate     доля команд с ответом {@code success=false} (HTTP 200) /
+ *                        share of commands answered with {@code success=false} (HTTP 200)
+ * @param serverErrorRate доля команд с ответом HTTP 500 / share of commands answered with HTTP 500
+ */
+public record StubBehavior(long latencyMs, long jitterMs, double failureRate, double serverErrorRate) {
+
+    public StubBehavior {
+        if (latencyMs < 0 || jitterMs < 0) {
+            throw new IllegalArgumentException("latencyMs and jitterMs must be >= 0");
+        }
+        if (failureRate < 0.0 || failureRate > 1.0) {
+            throw new IllegalArgumentException("failureRate must be within [0, 1]");
+        }
+        if (serverErrorRate < 0.0 || serverErrorRate > 1.0) {
+            throw new IllegalArgumentException("serverErrorRate must be within [0, 1]");
+        }
+        if (failureRate + serverErrorRate > 1.0) {
+            throw new IllegalArgumentException("failureRate + serverErrorRate must be <= 1");
+        }
+    }
+
+    /**
+     * Мгновенные успешные ответы.
+     *
+     * Instant successful responses.
+     */
+    public static StubBehavior instant() {
+        return new StubBehavior(0, 0, 0.0, 0.0);
+    }
+
+    public static StubBehavior withLatency(long latencyMs, long jitterMs) {
+        return new StubBehavior(latencyMs, jitterMs, 0.0, 0.0);
+    }
+
+    public StubBehavior withFailures(double failureRate, double serverErrorRate) {
+        return new StubBehavior(latencyMs, jitterMs, failureRate, serverErrorRate);
+    }
+}
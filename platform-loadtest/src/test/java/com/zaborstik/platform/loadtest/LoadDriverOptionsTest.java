@@ -0,0 +1,35 @@
+package com.zaborstik.platform.loadtest;
+
+import com.zaborstik.platform.agent.service.CoordinateStepMode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadDriverOptionsTest {
+
+    @Test
+    void shouldParseArgumentsWithDefaults() {
+        LoadDriverOptions options = LoadDriverOptions.parse(new String[] {
+            "--plans", "500", "--concurrency", "8", "--latency-ms", "20", "--failure-rate", "0.05"
+        });
+
+        assertEquals(500, options.plans());
+        assertEquals(8, options.concurrency());
+        assertEquals(10, options.stepsPerPlan());
+        assertEquals(20, options.behavior().latencyMs());
+        assertEquals(0.05, options.behavior().failureRate());
+        assertNull(options.agentUrl());
+        assertFalse(options.batchCommands());
+        assertTrue(LoadDriverOptions.parse(new String[] {"--batch"}).batchCommands());
+        assertEquals(CoordinateStepMode.SEQUENTIAL, options.coordinateMode());
+        assertEquals(CoordinateStepMode.FUSED, LoadDriverOptions.parse(new String[] {"--batch", "--fused"}).coordinateMode());
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> LoadDriverOptions.parse(new String[] {"--bogus"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadDriverOptions.parse(new String[] {"--plans"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadDriverOptions.parse(new String[] {"--plans", "x"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadDriverOptions.parse(new String[] {"--concurrency", "0"}));
+    }
+}
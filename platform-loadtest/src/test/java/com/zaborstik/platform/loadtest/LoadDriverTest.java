@@ -0,0 +1,73 @@
+package com.zaborstik.platform.loadtest;
+
+import com.zaborstik.platform.agent.metrics.HistogramSnapshot;
+import com.zaborstik.platform.core.plan.Plan;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadDriverTest {
+
+    @Test
+    void shouldPushPlansThroughRealClientAndReport() throws Exception {
+        LoadDriverOptions options = new LoadDriverOptions(40, 4, 5, 4, StubBehavior.withLatency(1, 1), null);
+
+        LoadReport report = new LoadDriver(options).run();
+
+        assertEquals(40, report.plans());
+        assertEquals(0, report.failedPlans());
+        assertEquals(200, report.steps());
+        assertEquals(40, report.planLatency().count());
+        assertTrue(report.plansPerSecond() > 0);
+        HistogramSnapshot resolveCoords = report.metrics().commandLatency().get("RESOLVE_COORDS");
+        assertEquals(80, resolveCoords.count());
+        assertEquals(40, report.metrics().initLatency().count());
+        assertTrue(report.format().contains("plans=40 failed=0 steps=200"));
+    }
+
+    @Test
+    void batchedRunShouldSendCoordinateStepsInOneRoundTrip() throws Exception {
+        LoadDriverOptions options = new LoadDriverOptions(10, 2, 5, 0, StubBehavior.instant(), null, true);
+
+        LoadReport report = new LoadDriver(options).run();
+
+        assertEquals(0, report.failedPlans());
+        assertEquals(50, report.steps());
+        assertEquals(20, report.metrics().commandLatency().get("RESOLVE_COORDS").count());
+        assertEquals(10, report.metrics().commandLatency().get("CLICK_AT").count());
+    }
+
+    @Test
+    void fusedRunShouldSendOneCommandPerCoordinateStep() throws Exception {
+        LoadDriverOptions options = new LoadDriverOptions(10, 2, 5, 0, StubBehavior.instant(), null, false, true);
+
+        LoadReport report = new LoadDriver(options).run();
+
+        assertEquals(0, report.failedPlans());
+        assertEquals(50, report.steps());
+        assertNull(report.metrics().commandLatency().get("RESOLVE_COORDS"));
+        assertEquals(10, report.metrics().commandLatency().get("RESOLVE_AND_CLICK").count());
+    }
+
+    @Test
+    void shouldCountFailedPlansUnderErrorInjection() throws Exception {
+        LoadDriverOptions options = new LoadDriverOptions(10, 2, 3, 0,
+            StubBehavior.instant().withFailures(0.0, 1.0), null);
+
+        LoadReport report = new LoadDriver(options).run();
+
+        assertEquals(10, report.failedPlans());
+    }
+
+    @Test
+    void syntheticPlanShouldCycleOperations() {
+        LoadDriver driver = new LoadDriver(new LoadDriverOptions(1, 1, 7, 0, StubBehavior.instant(), null));
+
+        Plan plan = driver.syntheticPlan(3);
+
+        assertEquals("load-plan-3", plan.id());
+        assertEquals(7, plan.steps().size());
+        assertEquals("/load/3/0", plan.steps().get(0).entityId());
+        assertEquals("act-click", plan.steps().get(6).actions().get(0).actionId());
+    }
+}
@@ -0,0 +1,98 @@
+package com.zaborstik.platform.loadtest;
+
+import com.zaborstik.platform.agent.client.AgentClient;
+import com.zaborstik.platform.agent.dto.AgentBatchResponse;
+import com.zaborstik.platform.agent.dto.AgentCommand;
+import com.zaborstik.platform.agent.dto.AgentResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StubAgentServerTest {
+
+    @Test
+    void shouldServeAgentProtocolForRealClient() throws Exception {
+        try (StubAgentServer stub = StubAgentServer.start(StubBehavior.instant())) {
+            AgentClient client = new AgentClient(stub.url());
+
+            assertTrue(client.isAvailable());
+            AgentResponse init = client.initialize("http://app.local", true);
+            assertTrue(init.success());
+            assertEquals("http://app.local", init.data().get("baseUrl"));
+
+            AgentResponse coords = client.execute(AgentCommand.resolveCoords("#save", "Save"));
+            assertTrue(coords.success());
+            assertEquals(100.5, ((Number) coords.data().get("x")).doubleValue());
+
+            AgentResponse open = client.execute(AgentCommand.openPage("/orders", "Open orders"));
+            assertEquals("/orders", open.data().get("url"));
+            assertEquals("Open orders", open.message());
+
+            assertTrue(client.close().success());
+            assertEquals(1, stub.initializeRequests());
+            assertEquals(2, stub.executeRequests());
+            assertEquals(0, stub.injectedFailures());
+        }
+    }
+
+    @Test
+    void shouldInjectFailuresAndServerErrors() throws Exception {
+        try (StubAgentServer stub = StubAgentServer.start(StubBehavior.instant().withFailures(1.0, 0.0))) {
+            AgentClient client = new AgentClient(stub.url());
+
+            AgentResponse failure = client.execute(AgentCommand.readText("#total", "Read total"));
+            assertFalse(failure.success());
+            assertTrue(failure.error().contains("not found"));
+
+            stub.setBehavior(StubBehavior.instant().withFailures(0.0, 1.0));
+            AgentResponse serverError = client.execute(AgentCommand.readText("#total", "Read total"));
+            assertFalse(serverError.success());
+            assertEquals("Injected server error for READ_TEXT", serverError.error());
+            assertEquals(2, stub.injectedFailures());
+        }
+    }
+
+    @Test
+    void shouldExecuteBatchWithResolvedCoordinatesAndStopOnFailure() throws Exception {
+        try (StubAgentServer stub = StubAgentServer.start(StubBehavior.instant())) {
+            AgentClient client = new AgentClient(stub.url());
+
+            AgentBatchResponse click = client.executeBatch(List.of(
+                AgentCommand.resolveCoords("#save", "Save"),
+                AgentCommand.clickAtResolved(0, "Click save", "#save")));
+            assertTrue(click.success());
+            assertEquals(100.5, ((Number) click.result(1).data().get("x")).doubleValue());
+            assertEquals("#save", click.result(1).data().get("selectorUsed"));
+
+            stub.setBehavior(StubBehavior.instant().withFailures(1.0, 0.0));
+            AgentBatchResponse failed = client.executeBatch(List.of(
+                AgentCommand.resolveCoords("#save", "Save"),
+                AgentCommand.clickAtResolved(0, "Click save", "#save")));
+            assertFalse(failed.success());
+            assertEquals(1, failed.results().size());
+            assertEquals(2, stub.batchRequests());
+            assertEquals(0, stub.executeRequests());
+        }
+    }
+
+    @Test
+    void shouldDelayResponsesByConfiguredLatency() throws Exception {
+        try (StubAgentServer stub = StubAgentServer.start(StubBehavior.withLatency(50, 0))) {
+            AgentClient client = new AgentClient(stub.url());
+
+            long start = System.nanoTime();
+            assertTrue(client.execute(AgentCommand.explain("Explain")).success());
+
+            assertTrue((System.nanoTime() - start) / 1_000_000L >= 50);
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidBehavior() {
+        assertThrows(IllegalArgumentException.class, () -> new StubBehavior(-1, 0, 0.0, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> new StubBehavior(0, 0, 1.5, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> new StubBehavior(0, 0, 0.6, 0.6));
+    }
+}